@@ -0,0 +1,72 @@
+package info.hassan.jersey.statics.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/** Creates and removes the base directories the benchmarks serve from. */
+final class BenchmarkFiles {
+
+  /** Name of the generated stylesheet in each base directory */
+  static final String ASSET = "asset.css";
+  /** Name of a resource that is never created */
+  static final String MISSING = "missing/asset.css";
+
+  private BenchmarkFiles() {}
+
+  /**
+   * @param size number of bytes in the generated stylesheet
+   * @return a new base directory with an index.html and a stylesheet of the given size
+   */
+  static Path createBaseDir(final int size) throws IOException {
+    final Path baseDir = Files.createTempDirectory("jersey-statics-benchmark");
+    Files.write(
+        baseDir.resolve("index.html"),
+        "<html><head><link rel=\"stylesheet\" href=\"asset.css\"></head></html>"
+            .getBytes(StandardCharsets.UTF_8));
+    writeAsset(baseDir, size, 0);
+    return baseDir;
+  }
+
+  /**
+   * Rewrites the stylesheet, a different seed gives different content of the same size.
+   *
+   * @param baseDir a base directory made by {@link #createBaseDir(int)}
+   * @param size number of bytes in the stylesheet
+   * @param seed varies the content
+   */
+  static void writeAsset(final Path baseDir, final int size, final int seed) throws IOException {
+    final byte[] data = new byte[size];
+    final byte[] rule =
+        (".rule-" + seed + " { color: #fffb99; margin: 5px auto; }\n")
+            .getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i < size; i++) {
+      data[i] = rule[i % rule.length];
+    }
+    Files.write(baseDir.resolve(ASSET), data);
+  }
+
+  static void deleteBaseDir(final Path baseDir) throws IOException {
+    Files.walkFileTree(
+        baseDir,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(final Path dir, final IOException e)
+              throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+}
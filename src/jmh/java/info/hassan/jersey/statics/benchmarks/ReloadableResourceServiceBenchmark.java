@@ -0,0 +1,79 @@
+package info.hassan.jersey.statics.benchmarks;
+
+import static info.hassan.jersey.statics.benchmarks.BenchmarkFiles.ASSET;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.services.ReloadableResourceServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Readers of {@link ReloadableResourceServiceImpl} while another thread keeps rewriting the
+ * resource they read, so the watcher keeps reloading and replacing the cached entry under them. The
+ * readers alone are measured by the "unmodified" group for comparison.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class ReloadableResourceServiceBenchmark {
+
+  @Param({"1024", "1048576"})
+  public int size;
+
+  private Path baseDir;
+  private ReloadableResourceServiceImpl service;
+  private int seed;
+
+  @Setup
+  public void setup() throws IOException {
+    baseDir = BenchmarkFiles.createBaseDir(size);
+    service = new ReloadableResourceServiceImpl(baseDir);
+    service.getDataForResource(ASSET);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    service.close();
+    BenchmarkFiles.deleteBaseDir(baseDir);
+  }
+
+  @Benchmark
+  @Group("modified")
+  @GroupThreads(3)
+  public ResourceResult read() {
+    return service.getDataForResource(ASSET);
+  }
+
+  @Benchmark
+  @Group("modified")
+  @GroupThreads(1)
+  public void modify() throws IOException {
+    BenchmarkFiles.writeAsset(baseDir, size, seed++ & 1);
+  }
+
+  @Benchmark
+  @Group("unmodified")
+  @GroupThreads(3)
+  public ResourceResult readOnly() {
+    return service.getDataForResource(ASSET);
+  }
+}
@@ -0,0 +1,84 @@
+package info.hassan.jersey.statics.benchmarks;
+
+import static info.hassan.jersey.statics.benchmarks.BenchmarkFiles.ASSET;
+import static info.hassan.jersey.statics.benchmarks.BenchmarkFiles.MISSING;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.services.ResourceService;
+import info.hassan.jersey.statics.services.ResourceServiceConfig;
+import info.hassan.jersey.statics.services.ResourceServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ResourceServiceImpl#getDataForResource(String)} for cache hits, resources that are never
+ * cached, and missing resources with and without the negative cache. The biggest size is above the
+ * streaming threshold, so it is only ever held as metadata.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResourceServiceBenchmark {
+
+  @Param({"1024", "65536", "1048576", "16777216"})
+  public int size;
+
+  private Path baseDir;
+  private ResourceService cached;
+  private ResourceService uncached;
+
+  @Setup
+  public void setup() throws IOException {
+    baseDir = BenchmarkFiles.createBaseDir(size);
+    cached = new ResourceServiceImpl(baseDir);
+    // Nothing fits in the cache and nothing missing is remembered, every request goes to disk
+    uncached =
+        new ResourceServiceImpl(
+            baseDir,
+            ResourceServiceConfig.builder().cacheMaxEntryWeight(0).negativeCacheMaxSize(0).build());
+    cached.getDataForResource(ASSET);
+    cached.getDataForResource(MISSING);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    BenchmarkFiles.deleteBaseDir(baseDir);
+  }
+
+  @Benchmark
+  public ResourceResult cacheHit() {
+    return cached.getDataForResource(ASSET);
+  }
+
+  @Benchmark
+  public ResourceResult coldMiss() {
+    return uncached.getDataForResource(ASSET);
+  }
+
+  @Benchmark
+  public ResourceResult notFoundRemembered() {
+    return cached.getDataForResource(MISSING);
+  }
+
+  @Benchmark
+  public ResourceResult notFound() {
+    return uncached.getDataForResource(MISSING);
+  }
+}
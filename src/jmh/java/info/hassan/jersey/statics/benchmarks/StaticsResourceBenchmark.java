@@ -0,0 +1,87 @@
+package info.hassan.jersey.statics.benchmarks;
+
+import static info.hassan.jersey.statics.benchmarks.BenchmarkFiles.ASSET;
+import static info.hassan.jersey.statics.services.TestsHelper.requestHeaders;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.ETAG;
+import static javax.ws.rs.core.HttpHeaders.IF_NONE_MATCH;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import info.hassan.jersey.statics.resources.StaticsResource;
+import info.hassan.jersey.statics.services.ResourceServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the {@link Response} of a cached resource in {@link StaticsResource}, for the plain,
+ * compressed, not modified and range variants. The entity is not written, only the response built.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StaticsResourceBenchmark {
+
+  @Param({"1024", "1048576", "16777216"})
+  public int size;
+
+  private Path baseDir;
+  private StaticsResource resource;
+  private HttpHeaders plain;
+  private HttpHeaders gzip;
+  private HttpHeaders conditional;
+  private HttpHeaders range;
+
+  @Setup
+  public void setup() throws IOException {
+    baseDir = BenchmarkFiles.createBaseDir(size);
+    resource = new StaticsResource(new ResourceServiceImpl(baseDir));
+    plain = requestHeaders();
+    gzip = requestHeaders(ACCEPT_ENCODING, "gzip, deflate, br;q=0");
+    final String entityTag = resource.getResource(ASSET, plain).getHeaderString(ETAG);
+    conditional = requestHeaders(IF_NONE_MATCH, entityTag);
+    range = requestHeaders("Range", "bytes=0-1023");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    BenchmarkFiles.deleteBaseDir(baseDir);
+  }
+
+  @Benchmark
+  public Response identity() {
+    return resource.getResource(ASSET, plain);
+  }
+
+  @Benchmark
+  public Response gzip() {
+    return resource.getResource(ASSET, gzip);
+  }
+
+  @Benchmark
+  public Response notModified() {
+    return resource.getResource(ASSET, conditional);
+  }
+
+  @Benchmark
+  public Response range() {
+    return resource.getResource(ASSET, range);
+  }
+}
@@ -0,0 +1,200 @@
+package info.hassan.jersey.statics.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * A minimal HTTP/1.1 client over one keep-alive connection, enough to send GETs and read their
+ * responses whole: the status line, the headers it needs, and a body with a content length or in
+ * chunks. Bodies are read and dropped, so measured latencies include the transfer.
+ */
+final class HttpConnection implements Closeable {
+
+  private static final int TIMEOUT_MILLIS = 30_000;
+
+  private final String host;
+  private final int port;
+  private final boolean gzip;
+  private final byte[] discard = new byte[64 * 1024];
+  private Socket socket;
+  private InputStream in;
+  private OutputStream out;
+
+  HttpConnection(final String host, final int port, final boolean gzip) {
+    this.host = host;
+    this.port = port;
+    this.gzip = gzip;
+  }
+
+  /** A response that was read whole. */
+  static final class Response {
+    private final int status;
+    private final long bodyBytes;
+
+    private Response(final int status, final long bodyBytes) {
+      this.status = status;
+      this.bodyBytes = bodyBytes;
+    }
+
+    int getStatus() {
+      return status;
+    }
+
+    long getBodyBytes() {
+      return bodyBytes;
+    }
+  }
+
+  /**
+   * Sends the request, connecting first if the previous response closed the connection.
+   *
+   * @param path the path, starting with a '/'
+   * @return the response, its body already read
+   * @throws IOException if the connection failed, it is closed and the next request reconnects
+   */
+  Response get(final String path) throws IOException {
+    if (socket == null) {
+      connect();
+    }
+    try {
+      out.write(
+          ("GET "
+                  + path
+                  + " HTTP/1.1\r\nHost: "
+                  + host
+                  + ":"
+                  + port
+                  + (gzip ? "\r\nAccept-Encoding: gzip" : "")
+                  + "\r\n\r\n")
+              .getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      return readResponse();
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private void connect() throws IOException {
+    socket = new Socket();
+    socket.setTcpNoDelay(true);
+    socket.setSoTimeout(TIMEOUT_MILLIS);
+    socket.connect(new InetSocketAddress(host, port), TIMEOUT_MILLIS);
+    in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+    out = new BufferedOutputStream(socket.getOutputStream());
+  }
+
+  private Response readResponse() throws IOException {
+    final String statusLine = readLine();
+    if (!statusLine.startsWith("HTTP/1.1 ") || statusLine.length() < 12) {
+      throw new IOException("Not an HTTP/1.1 response: " + statusLine);
+    }
+    final int status = Integer.parseInt(statusLine.substring(9, 12));
+    long contentLength = -1;
+    boolean chunked = false;
+    boolean closing = false;
+    for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+      final int colon = line.indexOf(':');
+      if (colon < 0) {
+        continue;
+      }
+      final String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+      final String value = line.substring(colon + 1).trim();
+      if ("content-length".equals(name)) {
+        contentLength = Long.parseLong(value);
+      } else if ("transfer-encoding".equals(name)) {
+        chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+      } else if ("connection".equals(name)) {
+        closing = "close".equalsIgnoreCase(value);
+      }
+    }
+    final long bodyBytes;
+    if (chunked) {
+      bodyBytes = skipChunks();
+    } else if (contentLength >= 0) {
+      skipFully(contentLength);
+      bodyBytes = contentLength;
+    } else {
+      bodyBytes = skipToEnd();
+      closing = true;
+    }
+    if (closing) {
+      close();
+    }
+    return new Response(status, bodyBytes);
+  }
+
+  private long skipChunks() throws IOException {
+    long bodyBytes = 0;
+    while (true) {
+      final String sizeLine = readLine();
+      final int extension = sizeLine.indexOf(';');
+      final long size =
+          Long.parseLong((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+      if (size == 0) {
+        // Trailers, up to the empty line that ends the response
+        while (!readLine().isEmpty()) {
+          continue;
+        }
+        return bodyBytes;
+      }
+      skipFully(size);
+      readLine();
+      bodyBytes += size;
+    }
+  }
+
+  private void skipFully(final long length) throws IOException {
+    long left = length;
+    while (left > 0) {
+      final int read = in.read(discard, 0, (int) Math.min(left, discard.length));
+      if (read < 0) {
+        throw new EOFException("The connection was closed in a body");
+      }
+      left -= read;
+    }
+  }
+
+  private long skipToEnd() throws IOException {
+    long bodyBytes = 0;
+    for (int read = in.read(discard); read >= 0; read = in.read(discard)) {
+      bodyBytes += read;
+    }
+    return bodyBytes;
+  }
+
+  private String readLine() throws IOException {
+    final StringBuilder line = new StringBuilder(64);
+    for (int b = in.read(); b != '\n'; b = in.read()) {
+      if (b < 0) {
+        throw new EOFException("The connection was closed in a response");
+      }
+      if (b != '\r') {
+        line.append((char) b);
+      }
+    }
+    return line.toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (socket != null) {
+      try {
+        socket.close();
+      } finally {
+        socket = null;
+        in = null;
+        out = null;
+      }
+    }
+  }
+}
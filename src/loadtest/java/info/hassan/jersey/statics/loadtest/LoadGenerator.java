@@ -0,0 +1,108 @@
+package info.hassan.jersey.statics.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the request mix to a server from {@link LoadTestOptions#getConcurrency()} connections, each
+ * sending its next request once the previous one is answered. This is a closed loop: when the
+ * server slows down the load does too, so under overload the latencies are understated and the
+ * throughput is what tells the story.
+ */
+final class LoadGenerator {
+
+  private final LoadTestOptions options;
+  private final SyntheticSite site;
+  private final String host;
+  private final int port;
+  private final RequestKind[] kinds;
+  private final int[] cumulativeWeights;
+  private volatile LoadReport report = new LoadReport();
+  private volatile boolean running = true;
+
+  /**
+   * @param options the concurrency, phases and mix
+   * @param site picks the paths of each kind
+   * @param host of the server
+   * @param port of the server
+   */
+  LoadGenerator(
+      final LoadTestOptions options, final SyntheticSite site, final String host, final int port) {
+    this.options = options;
+    this.site = site;
+    this.host = host;
+    this.port = port;
+    final Map<RequestKind, Integer> mix = options.getMix();
+    this.kinds = mix.keySet().toArray(new RequestKind[0]);
+    this.cumulativeWeights = new int[kinds.length];
+    int sum = 0;
+    for (int i = 0; i < kinds.length; i++) {
+      sum += mix.get(kinds[i]);
+      cumulativeWeights[i] = sum;
+    }
+  }
+
+  /**
+   * Warms up, then measures, then waits for every connection to finish its last request.
+   *
+   * @return what was seen after the warmup
+   */
+  LoadReport run() throws InterruptedException {
+    final List<Thread> workers = new ArrayList<>(options.getConcurrency());
+    for (int i = 0; i < options.getConcurrency(); i++) {
+      final Random random = new Random(options.getSeed() + i);
+      final Thread worker = new Thread(() -> work(random), "loadtest-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+    TimeUnit.SECONDS.sleep(options.getWarmupSeconds());
+    final LoadReport measured = new LoadReport();
+    report = measured;
+    TimeUnit.SECONDS.sleep(options.getDurationSeconds());
+    measured.finish();
+    // Requests still in flight are recorded in a report no one reads
+    report = new LoadReport();
+    running = false;
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    return measured;
+  }
+
+  private void work(final Random random) {
+    try (HttpConnection connection = new HttpConnection(host, port, options.isGzip())) {
+      while (running) {
+        final RequestKind kind = pickKind(random);
+        final String path = "/" + site.pickPath(kind, random);
+        final long start = System.nanoTime();
+        try {
+          final HttpConnection.Response response = connection.get(path);
+          report.record(
+              kind,
+              System.nanoTime() - start,
+              response.getBodyBytes(),
+              response.getStatus() == kind.getExpectedStatus());
+        } catch (IOException e) {
+          report.recordFailure(kind);
+        }
+      }
+    } catch (IOException e) {
+      // Closing a connection at the end of the run, nothing left to measure
+    }
+  }
+
+  private RequestKind pickKind(final Random random) {
+    final int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    for (int i = 0; i < kinds.length; i++) {
+      if (pick < cumulativeWeights[i]) {
+        return kinds[i];
+      }
+    }
+    throw new IllegalStateException("No request kind for " + pick);
+  }
+}
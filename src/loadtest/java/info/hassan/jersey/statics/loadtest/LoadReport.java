@@ -0,0 +1,124 @@
+package info.hassan.jersey.statics.loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import info.hassan.jersey.statics.metrics.LatencyHistogram;
+
+/**
+ * What the load generator saw in one phase: the latency, errors and bytes of each request kind.
+ * Recording is thread safe, the report is printed once the phase is over.
+ */
+final class LoadReport {
+
+  private static final double[] PERCENTILES = {50, 99, 99.9};
+
+  private final Map<RequestKind, KindStats> stats = new EnumMap<>(RequestKind.class);
+  private final KindStats total = new KindStats();
+  private final long startNanos = System.nanoTime();
+  private volatile long endNanos;
+
+  LoadReport() {
+    for (RequestKind kind : RequestKind.values()) {
+      stats.put(kind, new KindStats());
+    }
+  }
+
+  /**
+   * @param kind the kind of the request
+   * @param nanos from sending the request to reading the last byte of the response
+   * @param bytes of the response body
+   * @param ok false if the status was not the expected one
+   */
+  void record(final RequestKind kind, final long nanos, final long bytes, final boolean ok) {
+    stats.get(kind).record(nanos, bytes, ok);
+    total.record(nanos, bytes, ok);
+  }
+
+  /** Counts a request that got no response, the connection failed or was closed. */
+  void recordFailure(final RequestKind kind) {
+    stats.get(kind).errors.increment();
+    total.errors.increment();
+  }
+
+  /** Marks the end of the phase, it started when the report was created. */
+  void finish() {
+    endNanos = System.nanoTime();
+  }
+
+  /** @return the requests answered in the phase, with any status */
+  long getRequests() {
+    return total.latency.getCount();
+  }
+
+  /** @return one line per request kind that was sent, and a line for all of them */
+  String format() {
+    final double seconds = (endNanos - startNanos) / 1e9;
+    final StringBuilder out = new StringBuilder();
+    out.append(
+        String.format(
+            Locale.ROOT,
+            "%-10s %10s %8s %10s %9s %10s %10s %10s %10s%n",
+            "kind",
+            "requests",
+            "errors",
+            "req/s",
+            "MB/s",
+            "p50 us",
+            "p99 us",
+            "p99.9 us",
+            "max us"));
+    for (Map.Entry<RequestKind, KindStats> entry : stats.entrySet()) {
+      if (entry.getValue().isEmpty()) {
+        continue;
+      }
+      formatLine(out, entry.getKey().getOptionName(), entry.getValue(), seconds);
+    }
+    formatLine(out, "all", total, seconds);
+    return out.toString();
+  }
+
+  private static void formatLine(
+      final StringBuilder out, final String name, final KindStats kindStats, final double seconds) {
+    final LatencyHistogram latency = kindStats.latency;
+    out.append(
+        String.format(
+            Locale.ROOT,
+            "%-10s %10d %8d %10.1f %9.1f",
+            name,
+            latency.getCount(),
+            kindStats.errors.sum(),
+            latency.getCount() / seconds,
+            kindStats.bytes.sum() / seconds / (1024 * 1024)));
+    for (double percentile : PERCENTILES) {
+      out.append(
+          String.format(Locale.ROOT, " %10d", toMicros(latency.getValueAtPercentile(percentile))));
+    }
+    out.append(String.format(Locale.ROOT, " %10d%n", toMicros(latency.getMax())));
+  }
+
+  private static long toMicros(final long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  private static final class KindStats {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    private void record(final long nanos, final long bytes, final boolean ok) {
+      latency.record(nanos);
+      this.bytes.add(bytes);
+      if (!ok) {
+        errors.increment();
+      }
+    }
+
+    private boolean isEmpty() {
+      return latency.getCount() == 0 && errors.sum() == 0;
+    }
+  }
+}
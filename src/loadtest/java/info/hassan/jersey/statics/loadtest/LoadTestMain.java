@@ -0,0 +1,83 @@
+package info.hassan.jersey.statics.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import info.hassan.jersey.statics.metrics.ResourceMetrics;
+import info.hassan.jersey.statics.services.ResourceServiceConfig;
+import info.hassan.jersey.statics.services.ResourceServiceImpl;
+import org.apache.catalina.LifecycleException;
+
+/**
+ * Generates a site, serves it from an embedded server on the loopback address and puts it under
+ * load, then prints the throughput and latency of each kind of request and what the cache saw.
+ * Takes {@code name=value} options, see {@link LoadTestOptions#USAGE}.
+ */
+public final class LoadTestMain {
+
+  private LoadTestMain() {}
+
+  public static void main(final String[] args)
+      throws IOException, InterruptedException, LifecycleException {
+    final LoadTestOptions options;
+    try {
+      options = LoadTestOptions.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(LoadTestOptions.USAGE);
+      System.exit(2);
+      return;
+    }
+    System.out.println(options);
+    final SyntheticSite site = SyntheticSite.create(options);
+    final Path workDir = Files.createTempDirectory("jersey-statics-tomcat");
+    try {
+      // Room for the hot set and its gzip siblings, the cold pool is far bigger so misses stay
+      final long hotBytes = (long) options.getHotFiles() * options.getFileSize();
+      final ResourceServiceImpl service =
+          new ResourceServiceImpl(
+              site.getBaseDir(),
+              ResourceServiceConfig.builder()
+                  .cacheMaxWeight(Math.max(4 * hotBytes, 1024 * 1024))
+                  .build());
+      System.out.printf(
+          Locale.ROOT,
+          "Serving %d MB from %s%n",
+          site.getBytes() / (1024 * 1024),
+          site.getBaseDir());
+      try (EmbeddedServer server = EmbeddedServer.start(service, options.isAsync(), workDir)) {
+        System.out.printf(
+            Locale.ROOT,
+            "Warming up for %ds, then measuring for %ds on http://%s:%d/%n",
+            options.getWarmupSeconds(),
+            options.getDurationSeconds(),
+            server.getHost(),
+            server.getPort());
+        final LoadReport report =
+            new LoadGenerator(options, site, server.getHost(), server.getPort()).run();
+        System.out.println();
+        System.out.print(report.format());
+        printMetrics(service.getMetrics());
+      }
+    } finally {
+      SyntheticSite.deleteDirectory(workDir);
+      site.delete();
+    }
+  }
+
+  private static void printMetrics(final ResourceMetrics metrics) {
+    System.out.println();
+    System.out.printf(
+        Locale.ROOT,
+        "Cache since the start: hit ratio %.3f, %d loads, %d evictions, %d entries, %d KB%n",
+        metrics.getHitRatio(),
+        metrics.getLoads(),
+        metrics.getEvictions(),
+        metrics.getCachedEntries(),
+        metrics.getCachedBytes() / 1024);
+    System.out.println("Lookup latency: " + metrics.getLookupLatencyMicros());
+    System.out.println("Load latency: " + metrics.getLoadLatencyMicros());
+  }
+}
@@ -0,0 +1,197 @@
+package info.hassan.jersey.statics.loadtest;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * The options of a load test, given on the command line as {@code name=value} pairs, e.g. {@code
+ * concurrency=64 duration=60 mix=hit:90,miss:10}. Every option has a default.
+ */
+final class LoadTestOptions {
+
+  private static final Pattern COMMA = Pattern.compile(",");
+  private static final Pattern COLON = Pattern.compile(":");
+
+  static final String USAGE =
+      "Options, as name=value:\n"
+          + "  concurrency    connections sending requests, one at a time each (16)\n"
+          + "  warmup         seconds of load before measuring (5)\n"
+          + "  duration       seconds of measured load (30)\n"
+          + "  mix            weights of the request kinds (hit:80,miss:10,large:5,notFound:5)\n"
+          + "  hotFiles       resources in the cached hot set (200)\n"
+          + "  coldFiles      resources in the pool misses are picked from (10000)\n"
+          + "  fileSize       bytes in each hot and cold resource (8192)\n"
+          + "  largeFiles     files bigger than the streaming threshold (4)\n"
+          + "  largeFileSize  bytes in each large file (16777216)\n"
+          + "  gzip           true to accept gzip encoded responses (true)\n"
+          + "  async          true to serve with AsyncStaticsResource (false)\n"
+          + "  seed           seed of the generated site and of the request picks (42)";
+
+  private int concurrency = 16;
+  private int warmupSeconds = 5;
+  private int durationSeconds = 30;
+  private Map<RequestKind, Integer> mix = parseMix("hit:80,miss:10,large:5,notFound:5");
+  private int hotFiles = 200;
+  private int coldFiles = 10_000;
+  private int fileSize = 8192;
+  private int largeFiles = 4;
+  private int largeFileSize = 16 * 1024 * 1024;
+  private boolean gzip = true;
+  private boolean async;
+  private long seed = 42L;
+
+  private LoadTestOptions() {}
+
+  /**
+   * @param args the command line, {@code name=value} pairs
+   * @return the options with the defaults of those not given
+   * @throws IllegalArgumentException if an option is unknown or its value is not valid
+   */
+  static LoadTestOptions parse(final String... args) {
+    final LoadTestOptions options = new LoadTestOptions();
+    for (String arg : args) {
+      final int separator = arg.indexOf('=');
+      if (separator < 1) {
+        throw new IllegalArgumentException("Expected name=value, got: " + arg);
+      }
+      options.set(arg.substring(0, separator), arg.substring(separator + 1));
+    }
+    return options;
+  }
+
+  private void set(final String name, final String value) {
+    switch (name) {
+      case "concurrency":
+        concurrency = positive(name, value);
+        break;
+      case "warmup":
+        warmupSeconds = Integer.parseInt(value);
+        break;
+      case "duration":
+        durationSeconds = positive(name, value);
+        break;
+      case "mix":
+        mix = parseMix(value);
+        break;
+      case "hotFiles":
+        hotFiles = positive(name, value);
+        break;
+      case "coldFiles":
+        coldFiles = positive(name, value);
+        break;
+      case "fileSize":
+        fileSize = positive(name, value);
+        break;
+      case "largeFiles":
+        largeFiles = positive(name, value);
+        break;
+      case "largeFileSize":
+        largeFileSize = positive(name, value);
+        break;
+      case "gzip":
+        gzip = Boolean.parseBoolean(value);
+        break;
+      case "async":
+        async = Boolean.parseBoolean(value);
+        break;
+      case "seed":
+        seed = Long.parseLong(value);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown option: " + name);
+    }
+  }
+
+  private static int positive(final String name, final String value) {
+    final int parsed = Integer.parseInt(value);
+    if (parsed < 1) {
+      throw new IllegalArgumentException(name + " must be positive");
+    }
+    return parsed;
+  }
+
+  private static Map<RequestKind, Integer> parseMix(final String value) {
+    final Map<RequestKind, Integer> weights = new EnumMap<>(RequestKind.class);
+    for (String weight : COMMA.split(value)) {
+      final String[] parts = COLON.split(weight);
+      if (parts.length != 2 || Integer.parseInt(parts[1]) < 0) {
+        throw new IllegalArgumentException("Expected kind:weight, got: " + weight);
+      }
+      weights.put(RequestKind.ofOptionName(parts[0].trim()), Integer.parseInt(parts[1]));
+    }
+    if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+      throw new IllegalArgumentException("The mix must have a positive weight");
+    }
+    return Collections.unmodifiableMap(weights);
+  }
+
+  int getConcurrency() {
+    return concurrency;
+  }
+
+  int getWarmupSeconds() {
+    return warmupSeconds;
+  }
+
+  int getDurationSeconds() {
+    return durationSeconds;
+  }
+
+  /** @return the weight of each request kind, kinds left out are never sent */
+  Map<RequestKind, Integer> getMix() {
+    return mix;
+  }
+
+  int getHotFiles() {
+    return hotFiles;
+  }
+
+  int getColdFiles() {
+    return coldFiles;
+  }
+
+  int getFileSize() {
+    return fileSize;
+  }
+
+  int getLargeFiles() {
+    return largeFiles;
+  }
+
+  int getLargeFileSize() {
+    return largeFileSize;
+  }
+
+  boolean isGzip() {
+    return gzip;
+  }
+
+  boolean isAsync() {
+    return async;
+  }
+
+  long getSeed() {
+    return seed;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", LoadTestOptions.class.getSimpleName() + "[", "]")
+        .add("concurrency=" + concurrency)
+        .add("warmupSeconds=" + warmupSeconds)
+        .add("durationSeconds=" + durationSeconds)
+        .add("mix=" + mix)
+        .add("hotFiles=" + hotFiles)
+        .add("coldFiles=" + coldFiles)
+        .add("fileSize=" + fileSize)
+        .add("largeFiles=" + largeFiles)
+        .add("largeFileSize=" + largeFileSize)
+        .add("gzip=" + gzip)
+        .add("async=" + async)
+        .add("seed=" + seed)
+        .toString();
+  }
+}
@@ -0,0 +1,44 @@
+package info.hassan.jersey.statics.loadtest;
+
+/** The kinds of requests in a load test mix, each expecting its own status code. */
+enum RequestKind {
+  /** A resource of the hot set, cached once warmed up */
+  HIT("hit", 200),
+  /** A resource picked from a pool much bigger than the cache */
+  MISS("miss", 200),
+  /** A file bigger than the streaming threshold */
+  LARGE("large", 200),
+  /** A path that doesn't exist, as a vulnerability scanner would ask for */
+  NOT_FOUND("notFound", 404);
+
+  private final String optionName;
+  private final int expectedStatus;
+
+  RequestKind(final String optionName, final int expectedStatus) {
+    this.optionName = optionName;
+    this.expectedStatus = expectedStatus;
+  }
+
+  /** @return the name of the kind in the mix option, e.g. notFound */
+  String getOptionName() {
+    return optionName;
+  }
+
+  int getExpectedStatus() {
+    return expectedStatus;
+  }
+
+  /**
+   * @param optionName the name of a kind in the mix option
+   * @return the kind
+   * @throws IllegalArgumentException if there is no such kind
+   */
+  static RequestKind ofOptionName(final String optionName) {
+    for (RequestKind kind : values()) {
+      if (kind.optionName.equals(optionName)) {
+        return kind;
+      }
+    }
+    throw new IllegalArgumentException("Unknown request kind: " + optionName);
+  }
+}
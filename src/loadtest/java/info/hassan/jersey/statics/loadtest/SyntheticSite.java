@@ -0,0 +1,161 @@
+package info.hassan.jersey.statics.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * A generated base directory with a hot set, a pool of cold resources and a few large files, the
+ * same seed always gives the same content. Hot and cold resources are text that compresses, large
+ * files are random bytes.
+ */
+final class SyntheticSite {
+
+  private static final String[] HOT_EXTENSIONS = {".css", ".js", ".html", ".svg"};
+  private static final String[] WORDS = {
+    "color", "margin", "function", "return", "const", "display", "border", "width", "<div>", "0px"
+  };
+
+  private final Path baseDir;
+  private final int hotFiles;
+  private final int coldFiles;
+  private final int largeFiles;
+  private final long bytes;
+
+  private SyntheticSite(
+      final Path baseDir,
+      final int hotFiles,
+      final int coldFiles,
+      final int largeFiles,
+      final long bytes) {
+    this.baseDir = baseDir;
+    this.hotFiles = hotFiles;
+    this.coldFiles = coldFiles;
+    this.largeFiles = largeFiles;
+    this.bytes = bytes;
+  }
+
+  /**
+   * @param options the number and size of the files
+   * @return a site in a new temporary directory, see {@link #delete()}
+   */
+  static SyntheticSite create(final LoadTestOptions options) throws IOException {
+    final Path baseDir = Files.createTempDirectory("jersey-statics-loadtest");
+    final Random random = new Random(options.getSeed());
+    final byte[] text = new byte[options.getFileSize()];
+    long bytes = 0;
+    Files.createDirectories(baseDir.resolve("hot"));
+    for (int i = 0; i < options.getHotFiles(); i++) {
+      fillText(random, text);
+      Files.write(baseDir.resolve(hotPath(i)), text);
+      bytes += text.length;
+    }
+    Files.createDirectories(baseDir.resolve("cold"));
+    for (int i = 0; i < options.getColdFiles(); i++) {
+      fillText(random, text);
+      Files.write(baseDir.resolve(coldPath(i)), text);
+      bytes += text.length;
+    }
+    Files.createDirectories(baseDir.resolve("large"));
+    final byte[] chunk = new byte[64 * 1024];
+    for (int i = 0; i < options.getLargeFiles(); i++) {
+      try (OutputStream out = Files.newOutputStream(baseDir.resolve(largePath(i)))) {
+        for (int left = options.getLargeFileSize(); left > 0; left -= chunk.length) {
+          random.nextBytes(chunk);
+          out.write(chunk, 0, Math.min(left, chunk.length));
+        }
+      }
+      bytes += options.getLargeFileSize();
+    }
+    Files.write(
+        baseDir.resolve("index.html"),
+        "<html><body>jersey-statics load test</body></html>".getBytes(StandardCharsets.UTF_8));
+    return new SyntheticSite(
+        baseDir, options.getHotFiles(), options.getColdFiles(), options.getLargeFiles(), bytes);
+  }
+
+  private static void fillText(final Random random, final byte[] text) {
+    int i = 0;
+    while (i < text.length) {
+      final byte[] word = WORDS[random.nextInt(WORDS.length)].getBytes(StandardCharsets.US_ASCII);
+      for (int j = 0; j < word.length && i < text.length; j++) {
+        text[i++] = word[j];
+      }
+      if (i < text.length) {
+        text[i++] = (byte) (random.nextInt(8) == 0 ? '\n' : ' ');
+      }
+    }
+  }
+
+  private static String hotPath(final int i) {
+    return "hot/" + i + HOT_EXTENSIONS[i % HOT_EXTENSIONS.length];
+  }
+
+  private static String coldPath(final int i) {
+    return "cold/" + i + ".js";
+  }
+
+  private static String largePath(final int i) {
+    return "large/" + i + ".bin";
+  }
+
+  /**
+   * @param kind the kind of request
+   * @param random picks the resource
+   * @return the path of a resource of that kind, relative to the base directory
+   */
+  String pickPath(final RequestKind kind, final Random random) {
+    switch (kind) {
+      case HIT:
+        return hotPath(random.nextInt(hotFiles));
+      case MISS:
+        return coldPath(random.nextInt(coldFiles));
+      case LARGE:
+        return largePath(random.nextInt(largeFiles));
+      case NOT_FOUND:
+        return "wp-admin/" + Long.toHexString(random.nextLong()) + ".php";
+      default:
+        throw new IllegalArgumentException("Unknown request kind: " + kind);
+    }
+  }
+
+  Path getBaseDir() {
+    return baseDir;
+  }
+
+  /** @return the bytes in all the generated files */
+  long getBytes() {
+    return bytes;
+  }
+
+  void delete() throws IOException {
+    deleteDirectory(baseDir);
+  }
+
+  /** @param root a directory to delete with everything in it */
+  static void deleteDirectory(final Path root) throws IOException {
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(final Path dir, final IOException e)
+              throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+}
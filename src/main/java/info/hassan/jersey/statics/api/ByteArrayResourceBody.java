@@ -0,0 +1,46 @@
+package info.hassan.jersey.statics.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+final class ByteArrayResourceBody implements ResourceBody {
+
+  private final byte[] data;
+
+  ByteArrayResourceBody(final byte[] data) {
+    if (data == null) {
+      throw new IllegalArgumentException("Data must not be null");
+    }
+    this.data = data;
+  }
+
+  @Override
+  public long length() {
+    return data.length;
+  }
+
+  @Override
+  public boolean isInMemory() {
+    return true;
+  }
+
+  @Override
+  public void writeTo(final OutputStream out) throws IOException {
+    out.write(data);
+  }
+
+  @Override
+  public void writeTo(final OutputStream out, final long offset, final long length)
+      throws IOException {
+    if (offset < 0 || length < 0 || offset + length > data.length) {
+      throw new IndexOutOfBoundsException(
+          "Slice " + offset + "+" + length + " is not within " + data.length + " bytes");
+    }
+    out.write(data, (int) offset, (int) length);
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    return data;
+  }
+}
@@ -0,0 +1,57 @@
+package info.hassan.jersey.statics.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A slice of a buffer, typically of a memory-mapped file. Each write works on its own view of the
+ * buffer, so concurrent writes don't share a position.
+ */
+final class ByteBufferResourceBody implements ResourceBody {
+
+  private final ByteBuffer buffer;
+
+  ByteBufferResourceBody(final ByteBuffer buffer) {
+    if (buffer == null) {
+      throw new IllegalArgumentException("Buffer must not be null");
+    }
+    this.buffer = buffer.slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public long length() {
+    return buffer.capacity();
+  }
+
+  /** The bytes are off the heap, getting them as an array is a copy. */
+  @Override
+  public boolean isInMemory() {
+    return false;
+  }
+
+  @Override
+  public void writeTo(final OutputStream out, final long offset, final long length)
+      throws IOException {
+    if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+      throw new IndexOutOfBoundsException(
+          "Slice " + offset + "+" + length + " is not within " + buffer.capacity() + " bytes");
+    }
+    final ByteBuffer slice = buffer.duplicate();
+    slice.position((int) offset).limit((int) (offset + length));
+    // Not closed as that would close the stream we don't own
+    final WritableByteChannel target = Channels.newChannel(out);
+    while (slice.hasRemaining()) {
+      target.write(slice);
+    }
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    final byte[] data = new byte[buffer.capacity()];
+    buffer.duplicate().get(data);
+    return data;
+  }
+}
@@ -0,0 +1,126 @@
+package info.hassan.jersey.statics.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A body copied into a direct buffer, outside the heap, so the garbage collector never copies or
+ * scans it. The memory is given back with the last reference rather than by the collector: the body
+ * is made with the reference of its owner, typically a cache entry, each response holding it {@link
+ * #retain() retains} another and each write or copy holds one while it runs. The buffer is freed
+ * once all of them were released.
+ */
+final class DirectResourceBody implements ResourceBody {
+
+  /** sun.misc.Unsafe#invokeCleaner, null if the JVM doesn't let us free direct buffers */
+  private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+  private final ByteBuffer buffer;
+  private final AtomicInteger references = new AtomicInteger(1);
+
+  DirectResourceBody(final byte[] data) {
+    if (data == null) {
+      throw new IllegalArgumentException("Data must not be null");
+    }
+    final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+    direct.put(data).flip();
+    this.buffer = direct;
+  }
+
+  private static MethodHandle findInvokeCleaner() {
+    try {
+      final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      return MethodHandles.lookup()
+          .findVirtual(
+              unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+          .bindTo(theUnsafe.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // The buffers are then freed by the garbage collector, once they are unreachable
+      return null;
+    }
+  }
+
+  @Override
+  public long length() {
+    return buffer.capacity();
+  }
+
+  /** The bytes are off the heap, getting them as an array is a copy. */
+  @Override
+  public boolean isInMemory() {
+    return false;
+  }
+
+  @Override
+  public void writeTo(final OutputStream out, final long offset, final long length)
+      throws IOException {
+    if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+      throw new IndexOutOfBoundsException(
+          "Slice " + offset + "+" + length + " is not within " + buffer.capacity() + " bytes");
+    }
+    if (!retain()) {
+      throw new IOException("The body was freed before it could be written");
+    }
+    try {
+      final ByteBuffer slice = buffer.duplicate();
+      slice.position((int) offset).limit((int) (offset + length));
+      // Not closed as that would close the stream we don't own
+      final WritableByteChannel target = Channels.newChannel(out);
+      while (slice.hasRemaining()) {
+        target.write(slice);
+      }
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    if (!retain()) {
+      throw new IllegalStateException("The body was freed before it could be copied");
+    }
+    try {
+      final byte[] data = new byte[buffer.capacity()];
+      buffer.duplicate().get(data);
+      return data;
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public boolean retain() {
+    int count;
+    do {
+      count = references.get();
+      if (count == 0) {
+        return false;
+      }
+    } while (!references.compareAndSet(count, count + 1));
+    return true;
+  }
+
+  @Override
+  public void release() {
+    final int count = references.decrementAndGet();
+    if (count < 0) {
+      throw new IllegalStateException("The body was released more times than it was retained");
+    } else if (count == 0 && INVOKE_CLEANER != null) {
+      try {
+        INVOKE_CLEANER.invokeExact(buffer);
+      } catch (Throwable e) {
+        // Left to the garbage collector, the buffer is no longer used either way
+      }
+    }
+  }
+}
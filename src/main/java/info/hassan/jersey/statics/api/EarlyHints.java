@@ -0,0 +1,22 @@
+package info.hassan.jersey.statics.api;
+
+/**
+ * Sends a 103 Early Hints response ahead of a page, so the browser starts fetching what the page
+ * preloads while the page itself is being found. JAX-RS has no informational responses, so this is
+ * left to the container, e.g. with the servlet response of the request kept by a filter.
+ *
+ * <p>It is called on the request thread before the resource is looked up, only for pages whose Link
+ * header is already known, and must not block.
+ */
+@FunctionalInterface
+public interface EarlyHints {
+
+  /** Sends nothing */
+  EarlyHints NONE = (resourceName, links) -> {};
+
+  /**
+   * @param resourceName the name of the resource as requested, e.g. index.html
+   * @param links the Link header value of the resources the page preloads
+   */
+  void send(String resourceName, String links);
+}
@@ -0,0 +1,91 @@
+package info.hassan.jersey.statics.api;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Streams a file, or a region of it such as an entry stored in an archive, with {@link
+ * FileChannel#transferTo(long, long, WritableByteChannel)}, so the file is never copied onto the
+ * heap. Exactly the length seen at load time is written, if the file shrinks in the meantime
+ * writing fails rather than sending a short body.
+ */
+final class FileResourceBody implements ResourceBody {
+
+  private final Path path;
+  /** Position of the first byte of the body in the file */
+  private final long start;
+
+  private final long length;
+
+  FileResourceBody(final Path path, final long start, final long length) {
+    if (path == null) {
+      throw new IllegalArgumentException("Path must not be null");
+    } else if (start < 0) {
+      throw new IllegalArgumentException("Start must not be negative");
+    } else if (length < 0) {
+      throw new IllegalArgumentException("Length must not be negative");
+    }
+    this.path = path;
+    this.start = start;
+    this.length = length;
+  }
+
+  @Override
+  public long length() {
+    return length;
+  }
+
+  @Override
+  public boolean isInMemory() {
+    return false;
+  }
+
+  @Override
+  public void writeTo(final OutputStream out, final long offset, final long length)
+      throws IOException {
+    if (offset < 0 || length < 0 || offset + length > this.length) {
+      throw new IndexOutOfBoundsException(
+          "Slice " + offset + "+" + length + " is not within " + this.length + " bytes");
+    }
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      // Not closed as that would close the stream we don't own
+      final WritableByteChannel target = Channels.newChannel(out);
+      long position = start + offset;
+      final long end = position + length;
+      while (position < end) {
+        final long transferred = channel.transferTo(position, end - position, target);
+        if (transferred <= 0) {
+          throw new EOFException(path + " is shorter than " + this.length + " bytes");
+        }
+        position += transferred;
+      }
+    }
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    if (length > Integer.MAX_VALUE - 8) {
+      throw new UnsupportedOperationException(path + " is too big to fit in a byte array");
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate((int) length);
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, start + buffer.position()) < 0) {
+          throw new EOFException(path + " is shorter than " + length + " bytes");
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return buffer.array();
+  }
+}
@@ -0,0 +1,111 @@
+package info.hassan.jersey.statics.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * The bytes of a resource. Small resources are held in memory, big ones are streamed from disk each
+ * time they are written so they never have to fit on the heap, and resources of a bundle are slices
+ * of the memory-mapped bundle file. Big cached resources may be held in direct buffers, outside the
+ * heap, and must be released by their owner.
+ */
+public interface ResourceBody {
+
+  /**
+   * @param data the bytes to hold, the array is not copied
+   * @return a body backed by the array
+   */
+  static ResourceBody of(final byte[] data) {
+    return new ByteArrayResourceBody(data);
+  }
+
+  /**
+   * @param path the file to stream from
+   * @param length number of bytes to stream, i.e. the size of the file when it was loaded
+   * @return a body that is read from the file each time it is written
+   */
+  static ResourceBody ofFile(final Path path, final long length) {
+    return new FileResourceBody(path, 0, length);
+  }
+
+  /**
+   * @param path the file to stream from
+   * @param offset position of the first byte of the body in the file, e.g. of an archive entry
+   * @param length number of bytes to stream
+   * @return a body that is read from the region of the file each time it is written
+   */
+  static ResourceBody ofFile(final Path path, final long offset, final long length) {
+    return new FileResourceBody(path, offset, length);
+  }
+
+  /**
+   * @param buffer the bytes between the position and the limit of the buffer, typically a slice of
+   *     a memory-mapped file, they are not copied
+   * @return a body backed by the buffer
+   */
+  static ResourceBody of(final ByteBuffer buffer) {
+    return new ByteBufferResourceBody(buffer);
+  }
+
+  /**
+   * @param data the bytes to hold, they are copied into a direct buffer outside the heap
+   * @return a body that holds its memory until its last reference is {@link #release() released}
+   */
+  static ResourceBody ofDirect(final byte[] data) {
+    return new DirectResourceBody(data);
+  }
+
+  /** @return number of bytes in this body */
+  long length();
+
+  /** @return true if the bytes are held on the heap and {@link #toByteArray()} is free */
+  boolean isInMemory();
+
+  /**
+   * Writes the whole body.
+   *
+   * @param out the stream to write to, it is not closed
+   * @throws IOException if reading the body or writing to the stream fails
+   */
+  default void writeTo(OutputStream out) throws IOException {
+    writeTo(out, 0, length());
+  }
+
+  /**
+   * Writes a slice of the body, e.g. for a byte range request. Only the requested bytes are read.
+   *
+   * @param out the stream to write to, it is not closed
+   * @param offset index of the first byte to write
+   * @param length number of bytes to write
+   * @throws IOException if reading the body or writing to the stream fails
+   * @throws IndexOutOfBoundsException if the slice is not within the body
+   */
+  void writeTo(OutputStream out, long offset, long length) throws IOException;
+
+  /**
+   * Materializes the body on the heap, for streamed bodies this reads the whole file.
+   *
+   * @return the bytes of this body
+   * @throws java.io.UncheckedIOException if a streamed body couldn't be read
+   */
+  byte[] toByteArray();
+
+  /**
+   * Takes a reference on the memory this body holds outside the heap, so it is not freed before the
+   * reference is {@link #release() released}, e.g. by a response until it is written. Bodies on the
+   * heap or on disk hold nothing to free.
+   *
+   * @return true if the reference was taken, false if the memory was already freed
+   */
+  default boolean retain() {
+    return true;
+  }
+
+  /**
+   * Gives back a reference: the one the body was made with, by its owner, e.g. the cache evicting
+   * it, or one taken by {@link #retain()}. The memory is freed with the last reference.
+   */
+  default void release() {}
+}
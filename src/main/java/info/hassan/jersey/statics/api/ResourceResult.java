@@ -1,26 +1,98 @@
 package info.hassan.jersey.statics.api;
 
 import static java.util.Comparator.comparingInt;
+import static java.util.Comparator.naturalOrder;
 import static java.util.Comparator.nullsFirst;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.StringJoiner;
 
+/**
+ * A resource as it is cached and served. Everything a response needs, the content type, the
+ * variants and their validators, is computed once when the result is built, so serving a cached
+ * result doesn't allocate anything per request.
+ */
 public class ResourceResult implements Comparable<ResourceResult> {
 
+  /** The gzip content-coding */
+  public static final String GZIP = "gzip";
+  /** The brotli content-coding */
+  public static final String BROTLI = "br";
+
+  /** IMF-fixdate, the preferred HTTP-date format of RFC 7231 */
+  private static final DateTimeFormatter HTTP_DATE =
+      DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+          .withZone(ZoneOffset.UTC);
+
   private final int statusCode;
-  private String mimeType;
-  private byte[] data;
+  private final String mimeType;
+  private final String contentType;
+  private final ResourceBody body;
+  private final Map<String, ResourceBody> encodedBodies;
+  private final String contentHash;
+  private final String entityTagValue;
+  private final String entityTag;
+  private final Map<String, String> variantEntityTags;
+  private final long lastModified;
+  private final String lastModifiedHeader;
+  private final String cacheControl;
+  private final String links;
 
   public ResourceResult(int statusCode) {
-    this.statusCode = statusCode;
+    this(statusCode, null, null);
   }
 
   public ResourceResult(int statusCode, String mimeType, byte[] data) {
-    this.statusCode = statusCode;
-    this.mimeType = mimeType;
-    this.data = data;
+    this(builder(statusCode).mimeType(mimeType).data(data));
+  }
+
+  private ResourceResult(final Builder builder) {
+    this.statusCode = builder.statusCode;
+    this.mimeType = builder.mimeType;
+    this.contentType = builder.contentType == null ? builder.mimeType : builder.contentType;
+    this.body = builder.body;
+    this.encodedBodies =
+        builder.encodedBodies.isEmpty()
+            ? Collections.emptyMap()
+            : Collections.unmodifiableMap(new HashMap<>(builder.encodedBodies));
+    this.contentHash = builder.contentHash;
+    this.entityTagValue = builder.entityTagValue;
+    this.entityTag = builder.entityTagValue == null ? null : '"' + builder.entityTagValue + '"';
+    this.variantEntityTags = variantEntityTags(entityTagValue, encodedBodies.keySet());
+    this.lastModified = builder.lastModified;
+    this.lastModifiedHeader =
+        lastModified < 0 ? null : HTTP_DATE.format(Instant.ofEpochMilli(lastModified));
+    this.cacheControl = builder.cacheControl;
+    this.links = builder.links;
+  }
+
+  private static Map<String, String> variantEntityTags(
+      final String entityTagValue, final Set<String> encodings) {
+    if (entityTagValue == null || encodings.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    final Map<String, String> tags = new HashMap<>();
+    for (String encoding : encodings) {
+      tags.put(encoding, '"' + entityTagValue + '-' + encoding + '"');
+    }
+    return Collections.unmodifiableMap(tags);
+  }
+
+  /**
+   * @param statusCode the http status code
+   * @return a builder for a result with all the validators and variants
+   */
+  public static Builder builder(final int statusCode) {
+    return new Builder(statusCode);
   }
 
   public int getStatusCode() {
@@ -43,16 +115,160 @@ public class ResourceResult implements Comparable<ResourceResult> {
     return mimeType;
   }
 
+  /** @return the Content-Type header value, the mime-type with its charset if it has one */
+  public String getContentType() {
+    return contentType;
+  }
+
   public boolean hasMimeType() {
     return null != this.mimeType && !this.mimeType.isEmpty();
   }
 
   public boolean hasData() {
-    return this.data != null && this.data.length > 0;
+    return this.body != null && this.body.length() > 0;
   }
 
+  /**
+   * @return the data bytes, a streamed body is read into memory so prefer {@link #getBody()} for
+   *     writing the data out
+   */
   public byte[] getData() {
-    return data;
+    return body == null ? null : body.toByteArray();
+  }
+
+  /** @return the body of the data, or null if there is none */
+  public ResourceBody getBody() {
+    return body;
+  }
+
+  /** @return number of bytes in the data */
+  public long getContentLength() {
+    return body == null ? 0 : body.length();
+  }
+
+  /** @return the content-codings, e.g. gzip or br, that this data is also available in */
+  public Set<String> getEncodings() {
+    return encodedBodies.keySet();
+  }
+
+  public boolean hasEncodings() {
+    return !encodedBodies.isEmpty();
+  }
+
+  /**
+   * @param encoding a content-coding, e.g. gzip or br
+   * @return the encoded data bytes or null if the data is not available in that encoding
+   */
+  public byte[] getEncodedData(final String encoding) {
+    final ResourceBody encodedBody = encodedBodies.get(encoding);
+    return encodedBody == null ? null : encodedBody.toByteArray();
+  }
+
+  /**
+   * @param encoding a content-coding, e.g. gzip or br
+   * @return the encoded body or null if the data is not available in that encoding
+   */
+  public ResourceBody getEncodedBody(final String encoding) {
+    return encodedBodies.get(encoding);
+  }
+
+  /** @return hex encoded hash of the data, or null if it is not known */
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  /** @return the strong entity-tag of the data, quoted as in the ETag header, or null */
+  public String getEntityTag() {
+    return entityTag;
+  }
+
+  /**
+   * The entity-tag of an encoded variant. Each content-coding is a different representation, so it
+   * gets its own strong entity-tag.
+   *
+   * @param encoding a content-coding or null for the identity
+   * @return the quoted entity-tag of that variant, or null
+   */
+  public String getEntityTag(final String encoding) {
+    if (encoding == null || entityTag == null) {
+      return entityTag;
+    }
+    return variantEntityTags.get(encoding);
+  }
+
+  public boolean hasEntityTag() {
+    return entityTag != null;
+  }
+
+  /** @return last modified time in milliseconds since the epoch, or -1 if it is not known */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public boolean hasLastModified() {
+    return lastModified >= 0;
+  }
+
+  /** @return the last modified time formatted as the Last-Modified header, or null */
+  public String getLastModifiedHeader() {
+    return lastModifiedHeader;
+  }
+
+  /** @return the Cache-Control header value, or null if the response has none */
+  public String getCacheControl() {
+    return cacheControl;
+  }
+
+  public boolean hasCacheControl() {
+    return cacheControl != null;
+  }
+
+  /** @return the Link header value, e.g. of what a page preloads, or null if it has none */
+  public String getLinks() {
+    return links;
+  }
+
+  public boolean hasLinks() {
+    return links != null;
+  }
+
+  /**
+   * @param body the same bytes as the body of this result, held elsewhere
+   * @param encodedBodies the same variants as this result, held elsewhere
+   * @return a result with the headers and validators of this one, e.g. moved off the heap
+   */
+  public ResourceResult withBodies(
+      final ResourceBody body, final Map<String, ResourceBody> encodedBodies) {
+    return toBuilder().body(body).encodedBodies(encodedBodies).build();
+  }
+
+  /**
+   * @param cacheControl the Cache-Control header value
+   * @return a result with the bodies, headers and validators of this one and that Cache-Control
+   */
+  public ResourceResult withCacheControl(final String cacheControl) {
+    return toBuilder().cacheControl(cacheControl).build();
+  }
+
+  /**
+   * @param links the Link header value
+   * @return a result with the bodies, headers and validators of this one and that Link header
+   */
+  public ResourceResult withLinks(final String links) {
+    return toBuilder().links(links).build();
+  }
+
+  private Builder toBuilder() {
+    return builder(statusCode)
+        .mimeType(mimeType)
+        .contentType(contentType)
+        .body(body)
+        .encodedBodies(encodedBodies)
+        .contentHash(contentHash)
+        .entityTag(entityTagValue)
+        .lastModified(lastModified)
+        .cacheControl(cacheControl)
+        .links(links);
   }
 
   @Override
@@ -60,41 +276,169 @@ public class ResourceResult implements Comparable<ResourceResult> {
     return new StringJoiner(", ", ResourceResult.class.getSimpleName() + "[", "]")
         .add("statusCode=" + statusCode)
         .add("mimeType='" + mimeType + "'")
-        .add("dataLength=" + data.length)
+        .add("dataLength=" + getContentLength())
+        .add("encodings=" + encodedBodies.keySet())
+        .add("entityTag=" + entityTag)
+        .add("lastModified=" + lastModified)
+        .add("cacheControl=" + cacheControl)
+        .add("links=" + links)
         .toString();
   }
 
+  /**
+   * Results are equal when they have the same status, mime-type, length and content. The content of
+   * a body held in memory is its content hash, or its bytes if it has no hash. A streamed body is
+   * never read, as it would have to be read from disk, it is told apart by its entity-tag.
+   */
   @Override
   public boolean equals(Object that) {
     if (this == that) return true;
     if (!(that instanceof ResourceResult)) return false;
     ResourceResult thatOne = (ResourceResult) that;
     return statusCode == thatOne.statusCode
-        && mimeType.equals(thatOne.mimeType)
-        && Arrays.equals(data, thatOne.data);
+        && Objects.equals(mimeType, thatOne.mimeType)
+        && getContentLength() == thatOne.getContentLength()
+        && (body == null) == (thatOne.body == null)
+        && isBodyInMemory() == thatOne.isBodyInMemory()
+        && compareContent(thatOne) == 0;
   }
 
   @Override
   public int hashCode() {
-    int result = Objects.hash(statusCode, mimeType);
-    result = 31 * result + Arrays.hashCode(data);
-    return result;
+    return Objects.hash(
+        statusCode,
+        mimeType,
+        getContentLength(),
+        isBodyInMemory() ? Arrays.hashCode(body.toByteArray()) : entityTagValue);
   }
 
+  /** Orders by status, mime-type, length and content, consistent with equals. */
   @Override
   public int compareTo(ResourceResult that) {
     return nullsFirst(
             comparingInt(ResourceResult::getStatusCode)
-                .thenComparing(ResourceResult::getMimeType)
-                .thenComparing(
-                    (one, two) -> {
-                      if (two.getData() == null) {
-                        return 1;
-                      } else if (one.getData() == null) {
-                        return -1;
-                      }
-                      return Integer.compare(one.getData().length, two.getData().length);
-                    }))
+                .thenComparing(ResourceResult::getMimeType, nullsFirst(naturalOrder()))
+                .thenComparing((ResourceResult result) -> result.body != null)
+                .thenComparing(ResourceResult::isBodyInMemory)
+                .thenComparingLong(ResourceResult::getContentLength)
+                .thenComparing(ResourceResult::compareContent))
         .compare(this, that);
   }
+
+  private boolean isBodyInMemory() {
+    return body != null && body.isInMemory();
+  }
+
+  /** Compares results whose bodies are both in memory, or both not. */
+  private int compareContent(final ResourceResult that) {
+    if (!isBodyInMemory()) {
+      return Objects.compare(entityTagValue, that.entityTagValue, nullsFirst(naturalOrder()));
+    } else if (contentHash != null && contentHash.equals(that.contentHash)) {
+      return 0;
+    }
+    return Arrays.compare(body.toByteArray(), that.body.toByteArray());
+  }
+
+  public static final class Builder {
+    private final int statusCode;
+    private String mimeType;
+    private String contentType;
+    private ResourceBody body;
+    private Map<String, ResourceBody> encodedBodies = Collections.emptyMap();
+    private String contentHash;
+    private String entityTagValue;
+    private long lastModified = -1L;
+    private String cacheControl;
+    private String links;
+
+    private Builder(final int statusCode) {
+      this.statusCode = statusCode;
+    }
+
+    public Builder mimeType(final String mimeType) {
+      this.mimeType = mimeType;
+      return this;
+    }
+
+    /**
+     * @param contentType the Content-Type header value if it differs from the mime-type, e.g. with
+     *     a charset parameter
+     * @return this builder
+     */
+    public Builder contentType(final String contentType) {
+      this.contentType = contentType;
+      return this;
+    }
+
+    public Builder data(final byte[] data) {
+      this.body = data == null ? null : ResourceBody.of(data);
+      return this;
+    }
+
+    public Builder body(final ResourceBody body) {
+      this.body = body;
+      return this;
+    }
+
+    /**
+     * @param encodedBodies compressed variants of the data keyed by content-coding, e.g. gzip or br
+     * @return this builder
+     */
+    public Builder encodedBodies(final Map<String, ResourceBody> encodedBodies) {
+      this.encodedBodies = encodedBodies;
+      return this;
+    }
+
+    /**
+     * @param contentHash hex encoded hash of the data, the entity-tag is derived from it
+     * @return this builder
+     */
+    public Builder contentHash(final String contentHash) {
+      this.contentHash = contentHash;
+      this.entityTagValue = contentHash;
+      return this;
+    }
+
+    /**
+     * For data that is not hashed, e.g. a streamed file, the entity-tag can be given directly.
+     *
+     * @param entityTag the unquoted opaque value of the strong entity-tag
+     * @return this builder
+     */
+    public Builder entityTag(final String entityTag) {
+      this.entityTagValue = entityTag;
+      return this;
+    }
+
+    /**
+     * @param lastModified last modified time in milliseconds since the epoch
+     * @return this builder
+     */
+    public Builder lastModified(final long lastModified) {
+      this.lastModified = lastModified;
+      return this;
+    }
+
+    /**
+     * @param cacheControl the Cache-Control header value, e.g. for a resource that never changes
+     * @return this builder
+     */
+    public Builder cacheControl(final String cacheControl) {
+      this.cacheControl = cacheControl;
+      return this;
+    }
+
+    /**
+     * @param links the Link header value, e.g. {@code </css/main.css>; rel=preload; as=style}
+     * @return this builder
+     */
+    public Builder links(final String links) {
+      this.links = links;
+      return this;
+    }
+
+    public ResourceResult build() {
+      return new ResourceResult(this);
+    }
+  }
 }
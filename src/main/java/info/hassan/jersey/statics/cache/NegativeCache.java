@@ -0,0 +1,78 @@
+package info.hassan.jersey.statics.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers keys known to be missing for a while, so repeated requests for them, e.g. from a
+ * scanner trying random URLs, don't hit the file system each time. The number of keys is bounded,
+ * when it is full and nothing has expired new keys are simply not remembered.
+ *
+ * @param <K> the key type
+ */
+public final class NegativeCache<K> {
+
+  private final ConcurrentHashMap<K, Long> expiries = new ConcurrentHashMap<>();
+  private final int maxSize;
+  private final long ttlNanos;
+
+  /**
+   * @param maxSize maximum number of keys to remember, zero disables the cache
+   * @param ttlMillis how long a key is remembered
+   */
+  public NegativeCache(final int maxSize, final long ttlMillis) {
+    if (maxSize < 0 || ttlMillis < 0) {
+      throw new IllegalArgumentException("Negative cache size and ttl must not be negative");
+    }
+    this.maxSize = maxSize;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+  }
+
+  /**
+   * @param key the key to look up
+   * @return true if the key was found missing less than ttl ago
+   */
+  public boolean contains(final K key) {
+    final Long expiry = expiries.get(key);
+    if (expiry == null) {
+      return false;
+    }
+    if (System.nanoTime() - expiry >= 0) {
+      expiries.remove(key, expiry);
+      return false;
+    }
+    return true;
+  }
+
+  /** @param key a key found missing */
+  public void add(final K key) {
+    if (maxSize == 0 || ttlNanos == 0) {
+      return;
+    }
+    if (expiries.size() >= maxSize) {
+      purgeExpired();
+      if (expiries.size() >= maxSize) {
+        return;
+      }
+    }
+    expiries.put(key, System.nanoTime() + ttlNanos);
+  }
+
+  /** @param key a key that may exist now */
+  public void invalidate(final K key) {
+    expiries.remove(key);
+  }
+
+  public void clear() {
+    expiries.clear();
+  }
+
+  public int size() {
+    return expiries.size();
+  }
+
+  private void purgeExpired() {
+    final long now = System.nanoTime();
+    expiries.values().removeIf(expiry -> now - expiry >= 0);
+  }
+}
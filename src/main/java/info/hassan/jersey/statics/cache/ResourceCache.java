@@ -0,0 +1,76 @@
+package info.hassan.jersey.statics.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A cache for loaded resources. Implementations must be safe for concurrent use, and {@link
+ * #get(Object)} should not block on writers as it sits on the hot path of every request.
+ *
+ * @param <K> the key type
+ * @param <V> the cached value type
+ */
+public interface ResourceCache<K, V> {
+
+  /**
+   * @param key the key to look up
+   * @return the cached value or null if there is none
+   */
+  V get(K key);
+
+  /**
+   * Adds or replaces a value. A cache may refuse to hold a value, e.g. when it is too big.
+   *
+   * @param key the key
+   * @param value the value to cache
+   * @return true if the value was admitted into the cache
+   */
+  boolean put(K key, V value);
+
+  /**
+   * Replaces a value only if the key is already cached.
+   *
+   * @param key the key
+   * @param value the new value
+   * @return true if an existing value was replaced
+   */
+  boolean replace(K key, V value);
+
+  /**
+   * @param key the key to remove
+   * @return the removed value or null if there was none
+   */
+  V remove(K key);
+
+  boolean containsKey(K key);
+
+  /** @return a weakly consistent, unmodifiable view of the cached keys */
+  Set<K> keys();
+
+  /** @return number of cached entries */
+  int size();
+
+  /** @return sum of the weights of all cached entries, e.g. bytes */
+  long weightedSize();
+
+  /** @return the maximum total weight of all entries, or Long.MAX_VALUE if there is none */
+  default long maxWeight() {
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * @return the part of {@link #weightedSize()} counted more than once, because entries share
+   *     values, e.g. identical resources under different names
+   */
+  default long sharedWeight() {
+    return 0;
+  }
+
+  /** @return the tiers of this cache by name, a cache of values on the heap is its only tier */
+  default Map<String, ResourceCache<?, ?>> tiers() {
+    return Collections.singletonMap("heap", this);
+  }
+
+  void clear();
+}
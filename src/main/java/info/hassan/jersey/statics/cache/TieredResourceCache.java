@@ -0,0 +1,135 @@
+package info.hassan.jersey.statics.cache;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * A cache of two tiers: values on the heap, and values held in memory the garbage collector doesn't
+ * manage, e.g. direct buffers. Each tier is bounded and evicts on its own, and each key is in at
+ * most one of them. Values are moved off the heap before they are put here, releasing them is left
+ * to the removal listener of the off-heap tier, see {@link WeightedResourceCache}.
+ *
+ * <p>Reads are lock free and look at the heap tier first. Writes are serialized by a single lock,
+ * so a key moving from one tier to the other is never in both.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class TieredResourceCache<K, V> implements ResourceCache<K, V> {
+
+  private final ResourceCache<K, V> heapTier;
+  private final ResourceCache<K, V> offHeapTier;
+  private final Predicate<? super V> isOffHeap;
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  /**
+   * @param heapTier the cache of the values on the heap
+   * @param offHeapTier the cache of the values off the heap
+   * @param isOffHeap tells the values off the heap from the others
+   */
+  public TieredResourceCache(
+      final ResourceCache<K, V> heapTier,
+      final ResourceCache<K, V> offHeapTier,
+      final Predicate<? super V> isOffHeap) {
+    if (heapTier == null || offHeapTier == null || isOffHeap == null) {
+      throw new IllegalArgumentException("Tiers and predicate must not be null");
+    }
+    this.heapTier = heapTier;
+    this.offHeapTier = offHeapTier;
+    this.isOffHeap = isOffHeap;
+  }
+
+  @Override
+  public V get(final K key) {
+    final V value = heapTier.get(key);
+    return value != null ? value : offHeapTier.get(key);
+  }
+
+  @Override
+  public boolean put(final K key, final V value) {
+    writeLock.lock();
+    try {
+      if (isOffHeap.test(value)) {
+        heapTier.remove(key);
+        return offHeapTier.put(key, value);
+      }
+      offHeapTier.remove(key);
+      return heapTier.put(key, value);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean replace(final K key, final V value) {
+    writeLock.lock();
+    try {
+      return containsKey(key) && put(key, value);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public V remove(final K key) {
+    writeLock.lock();
+    try {
+      final V onHeap = heapTier.remove(key);
+      return onHeap != null ? onHeap : offHeapTier.remove(key);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean containsKey(final K key) {
+    return heapTier.containsKey(key) || offHeapTier.containsKey(key);
+  }
+
+  /** A copy rather than a view, there is one set of keys per tier. */
+  @Override
+  public Set<K> keys() {
+    final Set<K> keys = new HashSet<>(heapTier.keys());
+    keys.addAll(offHeapTier.keys());
+    return Collections.unmodifiableSet(keys);
+  }
+
+  @Override
+  public int size() {
+    return heapTier.size() + offHeapTier.size();
+  }
+
+  @Override
+  public long weightedSize() {
+    return heapTier.weightedSize() + offHeapTier.weightedSize();
+  }
+
+  @Override
+  public long maxWeight() {
+    return heapTier.maxWeight() + offHeapTier.maxWeight();
+  }
+
+  @Override
+  public Map<String, ResourceCache<?, ?>> tiers() {
+    final Map<String, ResourceCache<?, ?>> tiers = new LinkedHashMap<>();
+    tiers.put("heap", heapTier);
+    tiers.put("offHeap", offHeapTier);
+    return Collections.unmodifiableMap(tiers);
+  }
+
+  @Override
+  public void clear() {
+    writeLock.lock();
+    try {
+      heapTier.clear();
+      offHeapTier.clear();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+}
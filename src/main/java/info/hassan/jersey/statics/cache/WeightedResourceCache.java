@@ -0,0 +1,308 @@
+package info.hassan.jersey.statics.cache;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * A weight bounded cache with a segmented LRU eviction policy.
+ *
+ * <p>New entries are put on a probation segment, an entry that is read again while on probation is
+ * promoted to the protected segment which may hold up to 80% of the maximum weight. Victims are
+ * taken from the head of the probation segment, so a burst of one-off requests (e.g. a crawler) can
+ * not flush the frequently used resources.
+ *
+ * <p>Reads are lock free, a hit only bumps a small frequency counter on the entry. Writes and
+ * eviction are serialized by a single lock, these are rare compared to reads as they follow a disk
+ * read.
+ *
+ * <p>An optional listener is told about each entry evicted to make room, it is called holding the
+ * lock so it must be quick. Entries removed or replaced explicitly are not evictions. Another
+ * optional listener is handed back each value given to {@link #put(Object, Object)} exactly once,
+ * when it leaves the cache for whatever reason or is refused by it, e.g. to release what the value
+ * holds.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class WeightedResourceCache<K, V> implements ResourceCache<K, V> {
+
+  private static final int MAX_FREQUENCY = 15;
+  private static final int PROTECTED_PERCENTAGE = 80;
+
+  private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final ToLongFunction<? super V> weigher;
+  private final BiConsumer<? super K, ? super V> evictionListener;
+  private final BiConsumer<? super K, ? super V> removalListener;
+  private final long maxWeight;
+  private final long maxEntryWeight;
+  private final long maxProtectedWeight;
+  private final Node<K, V> probation = Node.sentinel();
+  private final Node<K, V> protectedSegment = Node.sentinel();
+  private long weightedSize;
+  private long protectedWeight;
+
+  /**
+   * @param maxWeight the maximum total weight of all entries
+   * @param maxEntryWeight entries heavier than this are never cached
+   * @param weigher computes the weight of a value, e.g. its size in bytes
+   */
+  public WeightedResourceCache(
+      final long maxWeight, final long maxEntryWeight, final ToLongFunction<? super V> weigher) {
+    this(maxWeight, maxEntryWeight, weigher, (key, value) -> {});
+  }
+
+  /**
+   * @param maxWeight the maximum total weight of all entries
+   * @param maxEntryWeight entries heavier than this are never cached
+   * @param weigher computes the weight of a value, e.g. its size in bytes
+   * @param evictionListener called with each entry evicted to make room
+   */
+  public WeightedResourceCache(
+      final long maxWeight,
+      final long maxEntryWeight,
+      final ToLongFunction<? super V> weigher,
+      final BiConsumer<? super K, ? super V> evictionListener) {
+    this(maxWeight, maxEntryWeight, weigher, evictionListener, (key, value) -> {});
+  }
+
+  /**
+   * @param maxWeight the maximum total weight of all entries
+   * @param maxEntryWeight entries heavier than this are never cached
+   * @param weigher computes the weight of a value, e.g. its size in bytes
+   * @param evictionListener called with each entry evicted to make room
+   * @param removalListener called with each entry that is evicted, replaced, removed or cleared,
+   *     and with each value refused by {@link #put(Object, Object)}
+   */
+  public WeightedResourceCache(
+      final long maxWeight,
+      final long maxEntryWeight,
+      final ToLongFunction<? super V> weigher,
+      final BiConsumer<? super K, ? super V> evictionListener,
+      final BiConsumer<? super K, ? super V> removalListener) {
+    if (maxWeight < 0 || maxEntryWeight < 0) {
+      throw new IllegalArgumentException("Cache weights must not be negative");
+    }
+    if (weigher == null || evictionListener == null || removalListener == null) {
+      throw new IllegalArgumentException("Weigher and listeners must not be null");
+    }
+    this.evictionListener = evictionListener;
+    this.removalListener = removalListener;
+    this.maxWeight = maxWeight;
+    this.maxEntryWeight = Math.min(maxEntryWeight, maxWeight);
+    this.maxProtectedWeight = maxWeight / 100 * PROTECTED_PERCENTAGE;
+    this.weigher = weigher;
+  }
+
+  @Override
+  public V get(final K key) {
+    final Node<K, V> node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    node.recordAccess();
+    return node.value;
+  }
+
+  @Override
+  public boolean put(final K key, final V value) {
+    final long weight = weigher.applyAsLong(value);
+    if (weight > maxEntryWeight) {
+      evictionLock.lock();
+      try {
+        remove(key);
+        removalListener.accept(key, value);
+      } finally {
+        evictionLock.unlock();
+      }
+      return false;
+    }
+    final Node<K, V> node = new Node<>(key, value, weight);
+    evictionLock.lock();
+    try {
+      final Node<K, V> old = data.put(key, node);
+      if (old != null) {
+        unlink(old);
+        removalListener.accept(key, old.value);
+      }
+      link(probation, node);
+      evict();
+      return node.isLinked();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean replace(final K key, final V value) {
+    evictionLock.lock();
+    try {
+      return data.containsKey(key) && put(key, value);
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public V remove(final K key) {
+    evictionLock.lock();
+    try {
+      final Node<K, V> node = data.remove(key);
+      if (node == null) {
+        return null;
+      }
+      unlink(node);
+      removalListener.accept(key, node.value);
+      return node.value;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean containsKey(final K key) {
+    return data.containsKey(key);
+  }
+
+  @Override
+  public Set<K> keys() {
+    return Collections.unmodifiableSet(data.keySet());
+  }
+
+  @Override
+  public int size() {
+    return data.size();
+  }
+
+  @Override
+  public long weightedSize() {
+    evictionLock.lock();
+    try {
+      return weightedSize;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public long maxWeight() {
+    return maxWeight;
+  }
+
+  @Override
+  public void clear() {
+    evictionLock.lock();
+    try {
+      data.forEach((key, node) -> removalListener.accept(key, node.value));
+      data.clear();
+      probation.prev = probation.next = probation;
+      protectedSegment.prev = protectedSegment.next = protectedSegment;
+      weightedSize = 0;
+      protectedWeight = 0;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /** Must be called holding the eviction lock. */
+  private void evict() {
+    // Readers keep bumping frequencies while we scan, so the number of second chances is bounded
+    int secondChances = data.size() * 2;
+    while (weightedSize > maxWeight) {
+      Node<K, V> candidate = probation.next;
+      if (candidate == probation) {
+        candidate = protectedSegment.next;
+        if (candidate == protectedSegment) {
+          return;
+        }
+        demote(candidate);
+      }
+      if (candidate.frequency > 0 && secondChances-- > 0) {
+        promote(candidate);
+      } else {
+        data.remove(candidate.key, candidate);
+        unlink(candidate);
+        evictionListener.accept(candidate.key, candidate.value);
+        removalListener.accept(candidate.key, candidate.value);
+      }
+    }
+  }
+
+  private void promote(final Node<K, V> node) {
+    unlink(node);
+    node.frequency = 0;
+    node.isProtected = true;
+    link(protectedSegment, node);
+    while (protectedWeight > maxProtectedWeight) {
+      demote(protectedSegment.next);
+    }
+  }
+
+  private void demote(final Node<K, V> node) {
+    unlink(node);
+    node.frequency = 0;
+    node.isProtected = false;
+    link(probation, node);
+  }
+
+  private void link(final Node<K, V> segment, final Node<K, V> node) {
+    node.prev = segment.prev;
+    node.next = segment;
+    segment.prev.next = node;
+    segment.prev = node;
+    weightedSize += node.weight;
+    if (node.isProtected) {
+      protectedWeight += node.weight;
+    }
+  }
+
+  private void unlink(final Node<K, V> node) {
+    if (!node.isLinked()) {
+      return;
+    }
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = node.next = null;
+    weightedSize -= node.weight;
+    if (node.isProtected) {
+      protectedWeight -= node.weight;
+    }
+  }
+
+  private static final class Node<K, V> {
+    private final K key;
+    private final V value;
+    private final long weight;
+    // Updated by readers without synchronization, a lost increment only weakens the hint
+    private int frequency;
+    private boolean isProtected;
+    private Node<K, V> prev;
+    private Node<K, V> next;
+
+    private Node(final K key, final V value, final long weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+
+    private static <K, V> Node<K, V> sentinel() {
+      final Node<K, V> sentinel = new Node<>(null, null, 0);
+      sentinel.prev = sentinel.next = sentinel;
+      return sentinel;
+    }
+
+    private void recordAccess() {
+      if (frequency < MAX_FREQUENCY) {
+        frequency++;
+      }
+    }
+
+    private boolean isLinked() {
+      return next != null;
+    }
+  }
+}
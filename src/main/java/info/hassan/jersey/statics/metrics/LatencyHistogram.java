@@ -0,0 +1,103 @@
+package info.hassan.jersey.statics.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds with log-linear buckets, in the spirit of HdrHistogram.
+ * Each power of two is split in {@value #SUB_BUCKETS} buckets, so any recorded value is reported
+ * within about 6% of its actual value, from nanoseconds up to centuries. Recording is wait free and
+ * never allocates.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /** @param nanos a duration, negative values are recorded as zero */
+  public void record(final long nanos) {
+    final long value = Math.max(0, nanos);
+    counts.incrementAndGet(indexOf(value));
+    count.increment();
+    sum.add(value);
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  /** @return number of recorded values */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /** @return the largest recorded value */
+  public long getMax() {
+    return max.get();
+  }
+
+  /** @return the mean of the recorded values, or 0 if there are none */
+  public double getMean() {
+    final long total = count.sum();
+    return total == 0 ? 0d : (double) sum.sum() / total;
+  }
+
+  /**
+   * @param percentile between 0 and 100, e.g. 99.9
+   * @return the value below or at which the percentile of the recorded values are, rounded up to
+   *     the end of its bucket, or 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(final double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100");
+    }
+    final long total = count.sum();
+    if (total == 0) {
+      return 0L;
+    }
+    final long rank = Math.max(1L, (long) Math.ceil(percentile / 100d * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestValueOf(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /** Forgets every recorded value, values recorded concurrently may or may not be kept. */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+
+  static int indexOf(final long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long highestValueOf(final int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    final int shift = index / SUB_BUCKETS - 1;
+    final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,366 @@
+package info.hassan.jersey.statics.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import info.hassan.jersey.statics.cache.ResourceCache;
+
+/**
+ * The metrics every service keeps about itself. Counters are striped {@link LongAdder}s and
+ * latencies go to {@link LatencyHistogram}s, so recording is cheap enough to always be on. Cache
+ * hits are only counted, the other paths are also timed. Each event is passed on to the listener
+ * given in the config, to feed another registry.
+ */
+public final class ResourceMetrics implements ResourceMetricsListener, ResourceMetricsMXBean {
+
+  private static final String UNKNOWN_MIME_TYPE = "unknown";
+
+  private final ResourceCache<?, ?> cache;
+  private final ResourceMetricsListener listener;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder notFound = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder reloads = new LongAdder();
+  private final LongAdder transforms = new LongAdder();
+  private final LongAdder transformsReused = new LongAdder();
+  private final LongAdder transformSavedBytes = new LongAdder();
+  private final LongAdder bytesServed = new LongAdder();
+  private final ConcurrentHashMap<String, LongAdder> bytesServedByMimeType =
+      new ConcurrentHashMap<>();
+  private final LatencyHistogram lookupLatency = new LatencyHistogram();
+  private final LatencyHistogram loadLatency = new LatencyHistogram();
+  private final LatencyHistogram reloadLatency = new LatencyHistogram();
+  private final LatencyHistogram transferWait = new LatencyHistogram();
+  private final LongAdder transfersRejected = new LongAdder();
+  /** Large transfers waiting and being written, gauges that are never reset */
+  private final AtomicInteger transfersWaiting = new AtomicInteger();
+
+  private final AtomicInteger transfersActive = new AtomicInteger();
+
+  /**
+   * @param cache the cache of the service, for the entries and bytes cached gauges
+   * @param listener receives every event after it is recorded here
+   */
+  public ResourceMetrics(final ResourceCache<?, ?> cache, final ResourceMetricsListener listener) {
+    if (cache == null || listener == null) {
+      throw new IllegalArgumentException("Cache and listener must not be null");
+    }
+    this.cache = cache;
+    this.listener = listener;
+  }
+
+  @Override
+  public void onCacheHit() {
+    hits.increment();
+    listener.onCacheHit();
+  }
+
+  @Override
+  public void onCacheMiss() {
+    misses.increment();
+    listener.onCacheMiss();
+  }
+
+  @Override
+  public void onNotFound() {
+    notFound.increment();
+    listener.onNotFound();
+  }
+
+  @Override
+  public void onLookup(final long nanos) {
+    lookupLatency.record(nanos);
+    listener.onLookup(nanos);
+  }
+
+  @Override
+  public void onLoad(final long nanos, final long bytes) {
+    loadLatency.record(nanos);
+    listener.onLoad(nanos, bytes);
+  }
+
+  @Override
+  public void onTransform(final long nanos, final long savedBytes) {
+    transforms.increment();
+    transformSavedBytes.add(savedBytes);
+    listener.onTransform(nanos, savedBytes);
+  }
+
+  @Override
+  public void onTransformReused(final long savedBytes) {
+    transformsReused.increment();
+    transformSavedBytes.add(savedBytes);
+    listener.onTransformReused(savedBytes);
+  }
+
+  @Override
+  public void onEviction(final long weight) {
+    evictions.increment();
+    listener.onEviction(weight);
+  }
+
+  @Override
+  public void onReload(final long nanos) {
+    reloads.increment();
+    reloadLatency.record(nanos);
+    listener.onReload(nanos);
+  }
+
+  @Override
+  public void onServed(final String mimeType, final long bytes) {
+    bytesServed.add(bytes);
+    final String key = mimeType == null ? UNKNOWN_MIME_TYPE : mimeType;
+    LongAdder served = bytesServedByMimeType.get(key);
+    if (served == null) {
+      served = bytesServedByMimeType.computeIfAbsent(key, any -> new LongAdder());
+    }
+    served.add(bytes);
+    listener.onServed(mimeType, bytes);
+  }
+
+  @Override
+  public void onTransferQueued() {
+    transfersWaiting.incrementAndGet();
+    listener.onTransferQueued();
+  }
+
+  @Override
+  public void onTransferStarted(final long waitNanos) {
+    transfersWaiting.decrementAndGet();
+    transfersActive.incrementAndGet();
+    transferWait.record(waitNanos);
+    listener.onTransferStarted(waitNanos);
+  }
+
+  @Override
+  public void onTransferRejected(final long waitNanos) {
+    transfersWaiting.decrementAndGet();
+    transfersRejected.increment();
+    listener.onTransferRejected(waitNanos);
+  }
+
+  @Override
+  public void onTransferFinished() {
+    transfersActive.decrementAndGet();
+    listener.onTransferFinished();
+  }
+
+  /**
+   * Registers these metrics with the platform MBean server.
+   *
+   * @param name e.g. info.hassan.jersey.statics:type=ResourceMetrics,name=main
+   * @throws JMException if the name is invalid or already registered
+   */
+  public void registerMBean(final String name) throws JMException {
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+  }
+
+  /**
+   * @param name the name given to {@link #registerMBean(String)}
+   * @throws JMException if the name is invalid or not registered
+   */
+  public void unregisterMBean(final String name) throws JMException {
+    ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(name));
+  }
+
+  @Override
+  public long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public long getNotFound() {
+    return notFound.sum();
+  }
+
+  @Override
+  public double getHitRatio() {
+    final long hitCount = hits.sum();
+    final long total = hitCount + misses.sum();
+    return total == 0 ? 0d : (double) hitCount / total;
+  }
+
+  @Override
+  public long getLoads() {
+    return loadLatency.getCount();
+  }
+
+  @Override
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  @Override
+  public long getReloads() {
+    return reloads.sum();
+  }
+
+  @Override
+  public long getCachedEntries() {
+    return cache.size();
+  }
+
+  @Override
+  public long getCachedBytes() {
+    return cache.weightedSize();
+  }
+
+  @Override
+  public Map<String, Long> getCacheTiers() {
+    final Map<String, Long> tiers = new LinkedHashMap<>();
+    cache
+        .tiers()
+        .forEach(
+            (name, tier) -> {
+              tiers.put(name + ".entries", (long) tier.size());
+              tiers.put(name + ".bytes", tier.weightedSize());
+              tiers.put(name + ".capacity", tier.maxWeight());
+            });
+    return Collections.unmodifiableMap(tiers);
+  }
+
+  @Override
+  public long getDeduplicatedBytes() {
+    return cache.sharedWeight();
+  }
+
+  @Override
+  public long getTransforms() {
+    return transforms.sum();
+  }
+
+  @Override
+  public long getTransformsReused() {
+    return transformsReused.sum();
+  }
+
+  @Override
+  public long getTransformSavedBytes() {
+    return transformSavedBytes.sum();
+  }
+
+  @Override
+  public long getBytesServed() {
+    return bytesServed.sum();
+  }
+
+  @Override
+  public Map<String, Long> getBytesServedByMimeType() {
+    final Map<String, Long> served = new TreeMap<>();
+    bytesServedByMimeType.forEach((mimeType, bytes) -> served.put(mimeType, bytes.sum()));
+    return Collections.unmodifiableMap(served);
+  }
+
+  @Override
+  public long getTransfersWaiting() {
+    return transfersWaiting.get();
+  }
+
+  @Override
+  public long getTransfersActive() {
+    return transfersActive.get();
+  }
+
+  @Override
+  public long getTransfersRejected() {
+    return transfersRejected.sum();
+  }
+
+  @Override
+  public Map<String, Long> getLookupLatencyMicros() {
+    return toMicros(lookupLatency);
+  }
+
+  @Override
+  public Map<String, Long> getLoadLatencyMicros() {
+    return toMicros(loadLatency);
+  }
+
+  @Override
+  public Map<String, Long> getReloadLatencyMicros() {
+    return toMicros(reloadLatency);
+  }
+
+  @Override
+  public Map<String, Long> getTransferWaitMicros() {
+    return toMicros(transferWait);
+  }
+
+  /** @return latency of the requests that were not cache hits */
+  public LatencyHistogram getLookupLatency() {
+    return lookupLatency;
+  }
+
+  /** @return latency of reading resources from disk */
+  public LatencyHistogram getLoadLatency() {
+    return loadLatency;
+  }
+
+  /** @return latency of reloading changed resources */
+  public LatencyHistogram getReloadLatency() {
+    return reloadLatency;
+  }
+
+  /** @return time the large transfers that started waited for their turn */
+  public LatencyHistogram getTransferWait() {
+    return transferWait;
+  }
+
+  @Override
+  public void reset() {
+    hits.reset();
+    misses.reset();
+    notFound.reset();
+    evictions.reset();
+    reloads.reset();
+    transforms.reset();
+    transformsReused.reset();
+    transformSavedBytes.reset();
+    bytesServed.reset();
+    bytesServedByMimeType.clear();
+    lookupLatency.reset();
+    loadLatency.reset();
+    reloadLatency.reset();
+    transferWait.reset();
+    transfersRejected.reset();
+  }
+
+  private static Map<String, Long> toMicros(final LatencyHistogram histogram) {
+    final Map<String, Long> micros = new LinkedHashMap<>();
+    micros.put("count", histogram.getCount());
+    micros.put("p50", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(50)));
+    micros.put("p99", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(99)));
+    micros.put("p999", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(99.9)));
+    micros.put("max", TimeUnit.NANOSECONDS.toMicros(histogram.getMax()));
+    micros.put("mean", (long) (histogram.getMean() / 1000));
+    return Collections.unmodifiableMap(micros);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", ResourceMetrics.class.getSimpleName() + "[", "]")
+        .add("hits=" + getHits())
+        .add("misses=" + getMisses())
+        .add("notFound=" + getNotFound())
+        .add("evictions=" + getEvictions())
+        .add("reloads=" + getReloads())
+        .add("bytesServed=" + getBytesServed())
+        .toString();
+  }
+}
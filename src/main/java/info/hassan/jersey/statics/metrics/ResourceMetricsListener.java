@@ -0,0 +1,93 @@
+package info.hassan.jersey.statics.metrics;
+
+/**
+ * Receives the events of a {@link info.hassan.jersey.statics.services.ResourceService}, e.g. to
+ * forward them to a metrics registry. The methods are called on the request threads, and for
+ * evictions while the cache holds its lock, so they must be cheap and must not block.
+ */
+public interface ResourceMetricsListener {
+
+  /** A listener that ignores everything */
+  ResourceMetricsListener NONE = new ResourceMetricsListener() {};
+
+  /** A resource was served from the cache. */
+  default void onCacheHit() {}
+
+  /** A resource was not in the cache and is being loaded from disk. */
+  default void onCacheMiss() {}
+
+  /** A resource doesn't exist, the 404 page is served. */
+  default void onNotFound() {}
+
+  /**
+   * A request that was not a cache hit has been answered.
+   *
+   * @param nanos time it took, including the disk read if there was one
+   */
+  default void onLookup(final long nanos) {}
+
+  /**
+   * A resource was read from disk.
+   *
+   * @param nanos time it took to read it and build its variants
+   * @param bytes size of the resource
+   */
+  default void onLoad(final long nanos, final long bytes) {}
+
+  /**
+   * The transforms of a resource read from disk ran.
+   *
+   * @param nanos time they took
+   * @param savedBytes bytes the transformed resource has less than the one on disk
+   */
+  default void onTransform(final long nanos, final long savedBytes) {}
+
+  /**
+   * A resource read from disk got the result of transforms that ran before on the same content.
+   *
+   * @param savedBytes bytes the transformed resource has less than the one on disk
+   */
+  default void onTransformReused(final long savedBytes) {}
+
+  /**
+   * A resource was evicted from the cache to make room.
+   *
+   * @param weight the weight it had in the cache
+   */
+  default void onEviction(final long weight) {}
+
+  /**
+   * A resource changed on disk and its cached result was reloaded.
+   *
+   * @param nanos time it took
+   */
+  default void onReload(final long nanos) {}
+
+  /**
+   * A response body was handed to the container.
+   *
+   * @param mimeType mime-type of the resource, may be null
+   * @param bytes number of bytes in the body
+   */
+  default void onServed(final String mimeType, final long bytes) {}
+
+  /** A large transfer is waiting for its turn, see {@code TransferScheduler}. */
+  default void onTransferQueued() {}
+
+  /**
+   * A large transfer got its turn and is being written.
+   *
+   * @param waitNanos time it waited in line
+   */
+  default void onTransferStarted(final long waitNanos) {}
+
+  /**
+   * A large transfer waited too long and is answered with 503 Service Unavailable.
+   *
+   * @param waitNanos time it waited in line
+   */
+  default void onTransferRejected(final long waitNanos) {}
+
+  /** A large transfer that started is done writing, or failed to. */
+  default void onTransferFinished() {}
+}
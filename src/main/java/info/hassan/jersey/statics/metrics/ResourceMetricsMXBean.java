@@ -0,0 +1,75 @@
+package info.hassan.jersey.statics.metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics of a {@link info.hassan.jersey.statics.services.ResourceService} as seen through JMX.
+ * Latencies are maps of p50, p99, p999, max and mean to microseconds, plus their count.
+ */
+public interface ResourceMetricsMXBean {
+
+  long getHits();
+
+  long getMisses();
+
+  long getNotFound();
+
+  /** @return hits over hits and misses, 404s excluded, or 0 before the first request */
+  double getHitRatio();
+
+  long getLoads();
+
+  long getEvictions();
+
+  long getReloads();
+
+  long getCachedEntries();
+
+  long getCachedBytes();
+
+  /**
+   * @return entries, bytes and capacity of each tier of the cache, e.g. "heap.bytes" and
+   *     "offHeap.capacity"
+   */
+  Map<String, Long> getCacheTiers();
+
+  /** @return cached bytes held once for several names, as their contents are identical */
+  long getDeduplicatedBytes();
+
+  /** @return number of resources the transforms ran on, not counting the reused results */
+  long getTransforms();
+
+  /** @return number of resources that got the result of transforms that ran on the same content */
+  long getTransformsReused();
+
+  /** @return bytes the transforms took off the resources read from disk */
+  long getTransformSavedBytes();
+
+  long getBytesServed();
+
+  Map<String, Long> getBytesServedByMimeType();
+
+  /** @return large transfers waiting for their turn, see the large transfer options */
+  long getTransfersWaiting();
+
+  /** @return large transfers being written */
+  long getTransfersActive();
+
+  /** @return large transfers answered with 503 as they waited too long */
+  long getTransfersRejected();
+
+  Map<String, Long> getLookupLatencyMicros();
+
+  Map<String, Long> getLoadLatencyMicros();
+
+  Map<String, Long> getReloadLatencyMicros();
+
+  /** @return time the large transfers that started waited for their turn */
+  Map<String, Long> getTransferWaitMicros();
+
+  /**
+   * Sets the counters and histograms back to zero, the cache and transfer gauges are left as they
+   * are.
+   */
+  void reset();
+}
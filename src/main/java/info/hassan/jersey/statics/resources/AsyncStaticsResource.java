@@ -0,0 +1,91 @@
+package info.hassan.jersey.statics.resources;
+
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.services.ResourceService;
+
+/**
+ * Serves the same paths and responses as {@link StaticsResource} without holding a container thread
+ * while a resource is read from disk. Cached resources are answered on the request thread, the
+ * others once the service has loaded them, see {@link
+ * ResourceService#getDataForResourceAsync(String)}. A load that can't start or finish in time is
+ * answered with 503 Service Unavailable.
+ */
+public class AsyncStaticsResource {
+
+  static final String RETRY_AFTER = "Retry-After";
+  static final String RETRY_AFTER_SECONDS = "1";
+
+  private final ResourceService resourceService;
+
+  @Inject
+  public AsyncStaticsResource(ResourceService resourceService) {
+    this.resourceService = resourceService;
+  }
+
+  @GET
+  @Produces("text/html")
+  @Path("/{parameter: |index|index.html}")
+  public void index(
+      @Context final HttpHeaders headers, @Suspended final AsyncResponse asyncResponse) {
+    resume("index.html", headers, asyncResponse);
+  }
+
+  @Path("/{anyResource:.*}")
+  @GET
+  public void getResource(
+      @PathParam("anyResource") final String anyResource,
+      @Context final HttpHeaders headers,
+      @Suspended final AsyncResponse asyncResponse) {
+    resume(anyResource, headers, asyncResponse);
+  }
+
+  private void resume(
+      final String resourceName, final HttpHeaders headers, final AsyncResponse asyncResponse) {
+    StaticsResponses.sendEarlyHints(resourceService, resourceName);
+    resourceService
+        .getDataForResourceAsync(resourceName)
+        .whenComplete(
+            (result, error) -> {
+              if (error == null) {
+                asyncResponse.resume(buildResponseFromStaticsResponse(result, headers));
+              } else {
+                final Throwable cause =
+                    error instanceof CompletionException ? error.getCause() : error;
+                if (isUnavailable(cause)) {
+                  asyncResponse.resume(
+                      Response.status(SERVICE_UNAVAILABLE)
+                          .header(RETRY_AFTER, RETRY_AFTER_SECONDS)
+                          .build());
+                } else {
+                  asyncResponse.resume(cause);
+                }
+              }
+            });
+  }
+
+  private Response buildResponseFromStaticsResponse(
+      final ResourceResult response, final HttpHeaders headers) {
+    return StaticsResponses.build(response, headers, resourceService);
+  }
+
+  /** @return true if the load was rejected or timed out, the resource may be there next time */
+  private static boolean isUnavailable(final Throwable cause) {
+    return cause instanceof TimeoutException || cause instanceof RejectedExecutionException;
+  }
+}
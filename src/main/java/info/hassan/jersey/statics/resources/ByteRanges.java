@@ -0,0 +1,195 @@
+package info.hassan.jersey.statics.resources;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_LENGTH;
+import static javax.ws.rs.core.Response.Status.PARTIAL_CONTENT;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import info.hassan.jersey.statics.api.ResourceBody;
+import info.hassan.jersey.statics.services.TransferScheduler;
+
+/** Parses the Range request header and builds 206 Partial Content responses, see RFC 7233. */
+final class ByteRanges {
+
+  static final String ACCEPT_RANGES = "Accept-Ranges";
+  static final String CONTENT_RANGE = "Content-Range";
+  static final String IF_RANGE = "If-Range";
+  static final String RANGE = "Range";
+  static final String BYTES = "bytes";
+
+  /** More ranges than this are answered with the whole body, it is cheaper than many slices */
+  private static final int MAX_RANGES = 16;
+
+  private static final String BYTES_PREFIX = BYTES + '=';
+
+  private ByteRanges() {}
+
+  /**
+   * Overlapping and adjacent ranges are merged.
+   *
+   * @param header value of the Range request header
+   * @param length length of the selected representation
+   * @return the satisfiable ranges sorted by position, an empty list if none of the ranges is
+   *     satisfiable, or null if the header is invalid and should be ignored
+   */
+  static List<Range> parse(final String header, final long length) {
+    if (!header.startsWith(BYTES_PREFIX)) {
+      return null;
+    }
+    final List<Range> ranges = new ArrayList<>();
+    int specs = 0;
+    for (int from = BYTES_PREFIX.length(); from <= header.length(); ) {
+      final int comma = header.indexOf(',', from);
+      final int to = comma < 0 ? header.length() : comma;
+      final String spec = header.substring(from, to).trim();
+      from = to + 1;
+      // Empty list elements, e.g. "0-1,,5-6", are allowed and skipped
+      if (spec.isEmpty()) {
+        continue;
+      } else if (++specs > MAX_RANGES) {
+        return null;
+      }
+      final int dash = spec.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+      try {
+        if (dash == 0) {
+          final long suffix = Long.parseLong(spec.substring(1));
+          if (suffix < 0) {
+            return null;
+          } else if (suffix > 0 && length > 0) {
+            ranges.add(new Range(Math.max(0, length - suffix), length - 1));
+          }
+        } else {
+          final long start = Long.parseLong(spec.substring(0, dash));
+          final long end =
+              dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+          if (end < start) {
+            return null;
+          } else if (start < length) {
+            ranges.add(new Range(start, Math.min(end, length - 1)));
+          }
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return specs == 0 ? null : coalesce(ranges);
+  }
+
+  private static List<Range> coalesce(final List<Range> ranges) {
+    if (ranges.size() < 2) {
+      return ranges;
+    }
+    ranges.sort(Comparator.comparingLong(range -> range.start));
+    final List<Range> coalesced = new ArrayList<>(ranges.size());
+    Range current = ranges.get(0);
+    for (Range next : ranges.subList(1, ranges.size())) {
+      if (next.start <= current.end + 1) {
+        current = new Range(current.start, Math.max(current.end, next.end));
+      } else {
+        coalesced.add(current);
+        current = next;
+      }
+    }
+    coalesced.add(current);
+    return Collections.unmodifiableList(coalesced);
+  }
+
+  /**
+   * @param builder a builder with the headers of the full response already set
+   * @param contentType content type of the body, repeated in each part of a multipart response
+   * @param body the selected representation
+   * @param ranges satisfiable ranges as returned by {@link #parse(String, long)}
+   * @param scheduler schedules the transfer if the ranges make a large one
+   * @return the builder for a 206 response with a single part or multipart/byteranges body
+   */
+  static Response.ResponseBuilder partialContent(
+      final Response.ResponseBuilder builder,
+      final String contentType,
+      final ResourceBody body,
+      final List<Range> ranges,
+      final TransferScheduler scheduler) {
+    builder.status(PARTIAL_CONTENT);
+    if (ranges.size() == 1) {
+      final Range range = ranges.get(0);
+      final StreamingOutput output = out -> body.writeTo(out, range.start, range.length());
+      return builder
+          .header(CONTENT_RANGE, range.toContentRange(body.length()))
+          .header(CONTENT_LENGTH, range.length())
+          .entity(
+              StaticsResponses.hold(
+                  body, StaticsResponses.schedule(output, range.length(), scheduler)));
+    }
+    final String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    final StreamingOutput output =
+        out -> {
+          for (Range range : ranges) {
+            write(out, "\r\n--" + boundary + "\r\n");
+            if (contentType != null) {
+              write(out, "Content-Type: " + contentType + "\r\n");
+            }
+            write(out, CONTENT_RANGE + ": " + range.toContentRange(body.length()) + "\r\n\r\n");
+            body.writeTo(out, range.start, range.length());
+          }
+          write(out, "\r\n--" + boundary + "--\r\n");
+        };
+    return builder
+        .type("multipart/byteranges; boundary=" + boundary)
+        .entity(
+            StaticsResponses.hold(
+                body, StaticsResponses.schedule(output, length(ranges), scheduler)));
+  }
+
+  /** @return number of bytes in the ranges, without the multipart overhead */
+  static long length(final List<Range> ranges) {
+    long length = 0;
+    for (Range range : ranges) {
+      length += range.length();
+    }
+    return length;
+  }
+
+  /** @return the Content-Range header value of a 416 response */
+  static String unsatisfiedContentRange(final long length) {
+    return BYTES + " */" + length;
+  }
+
+  private static void write(final OutputStream out, final String value) throws IOException {
+    out.write(value.getBytes(US_ASCII));
+  }
+
+  /** An inclusive range of byte positions. */
+  static final class Range {
+    final long start;
+    final long end;
+
+    Range(final long start, final long end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    long length() {
+      return end - start + 1;
+    }
+
+    String toContentRange(final long completeLength) {
+      return BYTES + ' ' + start + '-' + end + '/' + completeLength;
+    }
+
+    @Override
+    public String toString() {
+      return start + "-" + end;
+    }
+  }
+}
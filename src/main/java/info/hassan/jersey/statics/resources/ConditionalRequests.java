@@ -0,0 +1,134 @@
+package info.hassan.jersey.statics.resources;
+
+import static info.hassan.jersey.statics.resources.ByteRanges.IF_RANGE;
+import static javax.ws.rs.core.HttpHeaders.IF_MODIFIED_SINCE;
+import static javax.ws.rs.core.HttpHeaders.IF_NONE_MATCH;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import javax.ws.rs.core.HttpHeaders;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+
+/**
+ * Evaluates If-None-Match, If-Modified-Since and If-Range against the validators of a cached
+ * resource.
+ */
+final class ConditionalRequests {
+
+  private ConditionalRequests() {}
+
+  /**
+   * If-None-Match takes precedence, If-Modified-Since is only looked at when there is no
+   * If-None-Match header as RFC 7232 says.
+   *
+   * @param headers the request headers
+   * @param result the resource to be served
+   * @return true if the client's copy is still valid and a 304 should be sent
+   */
+  static boolean isNotModified(final HttpHeaders headers, final ResourceResult result) {
+    final String ifNoneMatch = headers.getHeaderString(IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      return result.hasEntityTag() && matchesAny(ifNoneMatch, result);
+    }
+    final String ifModifiedSince = headers.getHeaderString(IF_MODIFIED_SINCE);
+    if (ifModifiedSince != null && result.hasLastModified()) {
+      if (ifModifiedSince.equals(result.getLastModifiedHeader())) {
+        // The client echoes what it was sent, no need to parse it
+        return true;
+      }
+      final long since = parseHttpDate(ifModifiedSince);
+      // HTTP dates have a one second resolution
+      return since >= 0 && result.getLastModified() / 1000 <= since / 1000;
+    }
+    return false;
+  }
+
+  /**
+   * A range request is only served as such if the client's copy, given by If-Range, is the current
+   * one. Otherwise the whole representation has to be sent.
+   *
+   * @param headers the request headers
+   * @param result the resource to be served
+   * @param encoding the content-coding of the selected representation, or null for the identity
+   * @return true if there is no If-Range header or it matches the selected representation
+   */
+  static boolean isRangeFresh(
+      final HttpHeaders headers, final ResourceResult result, final String encoding) {
+    final String ifRange = headers.getHeaderString(IF_RANGE);
+    if (ifRange == null) {
+      return true;
+    }
+    final String value = ifRange.trim();
+    if (value.startsWith("W/")) {
+      // Weak entity-tags are never good enough for combining ranges
+      return false;
+    } else if (value.startsWith("\"")) {
+      return value.equals(result.getEntityTag(encoding));
+    }
+    final long date = parseHttpDate(value);
+    return date >= 0 && result.hasLastModified() && date / 1000 == result.getLastModified() / 1000;
+  }
+
+  /**
+   * Weak comparison, any variant of the resource matches. The list is parsed by index as an
+   * entity-tag may contain commas.
+   */
+  private static boolean matchesAny(final String ifNoneMatch, final ResourceResult result) {
+    if (matchesExactly(ifNoneMatch, result)) {
+      return true;
+    }
+    int index = 0;
+    while (index < ifNoneMatch.length()) {
+      final char c = ifNoneMatch.charAt(index);
+      if (c == ',' || Character.isWhitespace(c)) {
+        index++;
+        continue;
+      }
+      final int start = ifNoneMatch.startsWith("W/", index) ? index + 2 : index;
+      final int end;
+      if (ifNoneMatch.startsWith("\"", start)) {
+        final int closingQuote = ifNoneMatch.indexOf('"', start + 1);
+        end = closingQuote < 0 ? ifNoneMatch.length() : closingQuote + 1;
+      } else {
+        // Not an entity-tag, "*" or garbage, it ends at the next comma
+        final int comma = ifNoneMatch.indexOf(',', start);
+        end = comma < 0 ? ifNoneMatch.length() : comma;
+      }
+      final String candidate = ifNoneMatch.substring(start, end).trim();
+      if ("*".equals(candidate) || matchesExactly(candidate, result)) {
+        return true;
+      }
+      index = end;
+    }
+    return false;
+  }
+
+  /** The common case of a client sending back the single entity-tag it was given. */
+  private static boolean matchesExactly(final String ifNoneMatch, final ResourceResult result) {
+    if (ifNoneMatch.equals(result.getEntityTag())) {
+      return true;
+    }
+    for (String encoding : result.getEncodings()) {
+      if (ifNoneMatch.equals(result.getEntityTag(encoding))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param value an RFC 1123 date
+   * @return milliseconds since the epoch or -1 if the value couldn't be parsed
+   */
+  static long parseHttpDate(final String value) {
+    try {
+      return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+          .toInstant()
+          .toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return -1L;
+    }
+  }
+}
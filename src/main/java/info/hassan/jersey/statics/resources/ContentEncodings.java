@@ -0,0 +1,76 @@
+package info.hassan.jersey.statics.resources;
+
+import static info.hassan.jersey.statics.api.ResourceResult.BROTLI;
+import static info.hassan.jersey.statics.api.ResourceResult.GZIP;
+
+import java.util.List;
+import java.util.Set;
+
+/** Picks the best content-coding of a resource from an Accept-Encoding header. */
+final class ContentEncodings {
+
+  /** The content-codings we can serve, best first */
+  private static final List<String> PREFERRED = List.of(BROTLI, GZIP);
+
+  private ContentEncodings() {}
+
+  /**
+   * @param acceptEncoding value of the Accept-Encoding request header, may be null
+   * @param available the content-codings the resource is available in
+   * @return the content-coding to respond with, or null for the identity
+   */
+  static String negotiate(final String acceptEncoding, final Set<String> available) {
+    if (acceptEncoding == null || acceptEncoding.isEmpty() || available.isEmpty()) {
+      return null;
+    }
+    String best = null;
+    float bestQuality = 0f;
+    for (String encoding : PREFERRED) {
+      if (available.contains(encoding)) {
+        final float quality = quality(acceptEncoding, encoding);
+        if (quality > bestQuality) {
+          best = encoding;
+          bestQuality = quality;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @return the q-value given to the encoding, either directly or through "*", or 0 when the client
+   *     does not accept it
+   */
+  static float quality(final String acceptEncoding, final String encoding) {
+    float wildcard = 0f;
+    int start = 0;
+    while (start < acceptEncoding.length()) {
+      int end = acceptEncoding.indexOf(',', start);
+      if (end < 0) {
+        end = acceptEncoding.length();
+      }
+      final int parameters = acceptEncoding.indexOf(';', start);
+      final int nameEnd = parameters >= 0 && parameters < end ? parameters : end;
+      final String name = acceptEncoding.substring(start, nameEnd).trim();
+      if (name.equalsIgnoreCase(encoding)) {
+        return parseQuality(acceptEncoding, nameEnd, end);
+      } else if ("*".equals(name)) {
+        wildcard = parseQuality(acceptEncoding, nameEnd, end);
+      }
+      start = end + 1;
+    }
+    return wildcard;
+  }
+
+  private static float parseQuality(final String header, final int start, final int end) {
+    final int q = header.indexOf("q=", start);
+    if (q < 0 || q >= end) {
+      return 1f;
+    }
+    try {
+      return Float.parseFloat(header.substring(q + 2, end).trim());
+    } catch (NumberFormatException e) {
+      return 0f;
+    }
+  }
+}
@@ -5,6 +5,8 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import info.hassan.jersey.statics.api.ResourceResult;
@@ -22,28 +24,23 @@ public class StaticsResource {
   @GET
   @Produces("text/html")
   @Path("/{parameter: |index|index.html}")
-  public Response index() {
-    return buildResponseFromStaticsResponse(resourceService.getDataForResource("index.html"));
+  public Response index(@Context final HttpHeaders headers) {
+    StaticsResponses.sendEarlyHints(resourceService, "index.html");
+    return buildResponseFromStaticsResponse(
+        resourceService.getDataForResource("index.html"), headers);
   }
 
   @Path("/{anyResource:.*}")
   @GET
-  public Response getResource(@PathParam("anyResource") final String anyResource) {
-    return buildResponseFromStaticsResponse(resourceService.getDataForResource(anyResource));
+  public Response getResource(
+      @PathParam("anyResource") final String anyResource, @Context final HttpHeaders headers) {
+    StaticsResponses.sendEarlyHints(resourceService, anyResource);
+    return buildResponseFromStaticsResponse(
+        resourceService.getDataForResource(anyResource), headers);
   }
 
-  private Response buildResponseFromStaticsResponse(final ResourceResult response) {
-    final Response.ResponseBuilder builder = Response.status(response.getStatusCode());
-    if (response.getStatusCode() == 200) {
-      return builder.type(response.getMimeType()).entity(response.getData()).build();
-    } else {
-      if (response.hasMimeType()) {
-        builder.type(response.getMimeType());
-      }
-      if (response.hasData()) {
-        builder.entity(response.getData());
-      }
-      return builder.build();
-    }
+  private Response buildResponseFromStaticsResponse(
+      final ResourceResult response, final HttpHeaders headers) {
+    return StaticsResponses.build(response, headers, resourceService);
   }
 }
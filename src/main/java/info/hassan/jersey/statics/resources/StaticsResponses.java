@@ -0,0 +1,207 @@
+package info.hassan.jersey.statics.resources;
+
+import static info.hassan.jersey.statics.resources.ByteRanges.ACCEPT_RANGES;
+import static info.hassan.jersey.statics.resources.ByteRanges.BYTES;
+import static info.hassan.jersey.statics.resources.ByteRanges.CONTENT_RANGE;
+import static info.hassan.jersey.statics.resources.ByteRanges.RANGE;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.CACHE_CONTROL;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_LENGTH;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.HttpHeaders.ETAG;
+import static javax.ws.rs.core.HttpHeaders.LAST_MODIFIED;
+import static javax.ws.rs.core.HttpHeaders.LINK;
+import static javax.ws.rs.core.HttpHeaders.VARY;
+import static javax.ws.rs.core.Response.Status.NOT_MODIFIED;
+import static javax.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import info.hassan.jersey.statics.api.ResourceBody;
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
+import info.hassan.jersey.statics.services.ResourceService;
+import info.hassan.jersey.statics.services.TransferScheduler;
+
+/**
+ * Builds the responses of the statics resources from the results of a {@link
+ * info.hassan.jersey.statics.services.ResourceService}: content-coding negotiation, conditional and
+ * range requests, and in-memory or streamed bodies. Large bodies are written through the {@link
+ * TransferScheduler} of the service.
+ */
+final class StaticsResponses {
+
+  private StaticsResponses() {}
+
+  /**
+   * @param response the result of the service
+   * @param headers the request headers
+   * @param service told about the bytes of the body handed to the container, and scheduling the
+   *     large ones
+   * @return the response for the request, e.g. 200, 206 or 304 for an existing resource
+   */
+  static Response build(
+      final ResourceResult response, final HttpHeaders headers, final ResourceService service) {
+    final ResourceMetricsListener metrics = service.getMetricsListener();
+    final TransferScheduler scheduler = service.getTransferScheduler();
+    final Response.ResponseBuilder builder = Response.status(response.getStatusCode());
+    if (response.getStatusCode() == 200) {
+      String encoding = null;
+      if (response.hasEncodings()) {
+        builder.header(VARY, ACCEPT_ENCODING);
+        encoding =
+            ContentEncodings.negotiate(
+                headers.getHeaderString(ACCEPT_ENCODING), response.getEncodings());
+      }
+      if (response.hasEntityTag()) {
+        builder.header(ETAG, response.getEntityTag(encoding));
+      }
+      if (response.hasLastModified()) {
+        builder.header(LAST_MODIFIED, response.getLastModifiedHeader());
+      }
+      if (response.hasCacheControl()) {
+        builder.header(CACHE_CONTROL, response.getCacheControl());
+      }
+      if (ConditionalRequests.isNotModified(headers, response)) {
+        return builder.status(NOT_MODIFIED).build();
+      }
+      // Header values are pre-built by the result, nothing is parsed or formatted per request
+      builder.header(CONTENT_TYPE, response.getContentType()).header(ACCEPT_RANGES, BYTES);
+      if (response.hasLinks()) {
+        builder.header(LINK, response.getLinks());
+      }
+      final ResourceBody body;
+      if (encoding != null) {
+        builder.encoding(encoding);
+        body = response.getEncodedBody(encoding);
+      } else {
+        body = response.getBody();
+      }
+      final String range = headers.getHeaderString(RANGE);
+      if (range != null && ConditionalRequests.isRangeFresh(headers, response, encoding)) {
+        final List<ByteRanges.Range> ranges = ByteRanges.parse(range, body.length());
+        if (ranges != null && ranges.isEmpty()) {
+          return Response.status(REQUESTED_RANGE_NOT_SATISFIABLE)
+              .header(CONTENT_RANGE, ByteRanges.unsatisfiedContentRange(body.length()))
+              .build();
+        } else if (ranges != null) {
+          served(metrics, response, ByteRanges.length(ranges));
+          return ByteRanges.partialContent(
+                  builder, response.getContentType(), body, ranges, scheduler)
+              .build();
+        }
+      }
+      served(metrics, response, body.length());
+      return withBody(builder, body, scheduler).build();
+    } else {
+      if (response.hasMimeType()) {
+        builder.type(response.getMimeType());
+      }
+      if (response.hasData()) {
+        served(metrics, response, response.getContentLength());
+        builder.entity(response.getData());
+      }
+      return builder.build();
+    }
+  }
+
+  /**
+   * Sends the Link header of a page ahead of it, see {@link
+   * info.hassan.jersey.statics.api.EarlyHints}, before the page is looked up.
+   *
+   * @param service the service of the page
+   * @param resourceName the name of the resource as requested
+   */
+  static void sendEarlyHints(final ResourceService service, final String resourceName) {
+    final String links = service.getPreloadLinks(resourceName);
+    if (links != null) {
+      service.getEarlyHints().send(resourceName, links);
+    }
+  }
+
+  private static void served(
+      final ResourceMetricsListener metrics, final ResourceResult response, final long bytes) {
+    metrics.onServed(response.getMimeType(), bytes);
+  }
+
+  /**
+   * Bodies held in memory are handed to Jersey as they are, streamed and large bodies are written
+   * through a {@link StreamingOutput} so the file never has to fit on the heap and the transfer can
+   * be scheduled.
+   */
+  private static Response.ResponseBuilder withBody(
+      final Response.ResponseBuilder builder,
+      final ResourceBody body,
+      final TransferScheduler scheduler) {
+    if (body.isInMemory() && !scheduler.isLarge(body.length())) {
+      return builder.entity(body.toByteArray());
+    }
+    final StreamingOutput output = hold(body, schedule(body::writeTo, body.length(), scheduler));
+    return builder.header(CONTENT_LENGTH, body.length()).entity(output);
+  }
+
+  /**
+   * Holds a reference on the body from now until the response is written, so a body outside the
+   * heap is not freed meanwhile, e.g. by the cache evicting it. A response the container never
+   * writes leaves the memory to the garbage collector.
+   *
+   * @param body the body the output writes
+   * @param output writes the body
+   * @return the output, giving the reference back once it ran
+   * @throws WebApplicationException a 503 Service Unavailable if the body was freed since it was
+   *     looked up, a retry finds the resource that replaced it
+   */
+  static StreamingOutput hold(final ResourceBody body, final StreamingOutput output) {
+    if (!body.retain()) {
+      throw serviceUnavailable(null);
+    }
+    return out -> {
+      try {
+        output.write(out);
+      } finally {
+        body.release();
+      }
+    };
+  }
+
+  /**
+   * @param output writes a body
+   * @param length bytes in the body
+   * @param scheduler the transfer scheduler of the service
+   * @return the output as it is for a small body, otherwise writing once the transfer has its turn
+   *     and answering 503 Service Unavailable if it waited too long
+   */
+  static StreamingOutput schedule(
+      final StreamingOutput output, final long length, final TransferScheduler scheduler) {
+    if (!scheduler.isLarge(length)) {
+      return output;
+    }
+    return out -> {
+      final OutputStream paced;
+      try {
+        paced = scheduler.open(out);
+      } catch (RejectedExecutionException e) {
+        // Nothing was written, the container still sends this response instead
+        throw serviceUnavailable(e);
+      }
+      try (OutputStream transfer = paced) {
+        output.write(transfer);
+      }
+    };
+  }
+
+  private static WebApplicationException serviceUnavailable(final Throwable cause) {
+    return new WebApplicationException(
+        cause,
+        Response.status(SERVICE_UNAVAILABLE)
+            .header(AsyncStaticsResource.RETRY_AFTER, AsyncStaticsResource.RETRY_AFTER_SECONDS)
+            .build());
+  }
+}
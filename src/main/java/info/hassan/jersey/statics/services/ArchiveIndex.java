@@ -0,0 +1,211 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the central directory of a zip or jar archive once, into a hash index of the entries under
+ * a prefix. Bytes prepended to the archive, e.g. the launch script of an executable jar, are
+ * accounted for. Zip64 archives, and entries that need its extensions, are not supported.
+ */
+final class ArchiveIndex {
+
+  private static final Logger log = LoggerFactory.getLogger(ArchiveIndex.class);
+
+  static final int STORED = 0;
+  static final int DEFLATED = 8;
+
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int END_BYTES = 22;
+  private static final int CENTRAL_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_BYTES = 46;
+  private static final int LOCAL_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_BYTES = 30;
+  private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+  private ArchiveIndex() {}
+
+  /**
+   * @param channel the archive
+   * @param prefix the entries to index, e.g. "static/", or "" for all of them
+   * @return the files under the prefix keyed by their name without it
+   * @throws IOException if the archive can't be read or isn't a supported zip archive
+   */
+  static Map<String, Entry> read(final FileChannel channel, final String prefix)
+      throws IOException {
+    final long endPosition = findEnd(channel);
+    final ByteBuffer end = read(channel, endPosition, END_BYTES);
+    final int count = end.getShort(10) & 0xFFFF;
+    final long directorySize = end.getInt(12) & ZIP64_MARKER;
+    final long directoryOffset = end.getInt(16) & ZIP64_MARKER;
+    if (count == 0xFFFF || directorySize == ZIP64_MARKER || directoryOffset == ZIP64_MARKER) {
+      throw new IOException("Zip64 archives are not supported");
+    }
+    // Offsets are relative to the start of the zip data, which may follow other bytes
+    final long shift = endPosition - directorySize - directoryOffset;
+    if (shift < 0 || directorySize > Integer.MAX_VALUE) {
+      throw new IOException("The central directory is corrupt");
+    }
+    final ByteBuffer directory = read(channel, directoryOffset + shift, (int) directorySize);
+    final Map<String, Entry> entries = new HashMap<>(count * 2);
+    for (int i = 0; i < count; i++) {
+      if (directory.remaining() < CENTRAL_BYTES || directory.getInt() != CENTRAL_SIGNATURE) {
+        throw new IOException("The central directory is corrupt");
+      }
+      final int start = directory.position() - 4;
+      final int method = directory.getShort(start + 10) & 0xFFFF;
+      final int time = directory.getShort(start + 12) & 0xFFFF;
+      final int date = directory.getShort(start + 14) & 0xFFFF;
+      final long crc = directory.getInt(start + 16) & ZIP64_MARKER;
+      final long compressedSize = directory.getInt(start + 20) & ZIP64_MARKER;
+      final long size = directory.getInt(start + 24) & ZIP64_MARKER;
+      final int nameLength = directory.getShort(start + 28) & 0xFFFF;
+      final int extraLength = directory.getShort(start + 30) & 0xFFFF;
+      final int commentLength = directory.getShort(start + 32) & 0xFFFF;
+      final long localOffset = directory.getInt(start + 42) & ZIP64_MARKER;
+      final byte[] nameBytes = new byte[nameLength];
+      directory.position(start + CENTRAL_BYTES);
+      directory.get(nameBytes);
+      directory.position(directory.position() + extraLength + commentLength);
+      final String name = new String(nameBytes, UTF_8);
+      if (!name.startsWith(prefix) || name.endsWith("/") || name.length() == prefix.length()) {
+        continue;
+      } else if (size == ZIP64_MARKER
+          || compressedSize == ZIP64_MARKER
+          || localOffset == ZIP64_MARKER) {
+        log.warn("Skipping the entry {}, Zip64 entries are not supported", name);
+      } else if (method != STORED && method != DEFLATED) {
+        log.warn("Skipping the entry {}, its compression method {} is not supported", name, method);
+      } else {
+        entries.put(
+            name.substring(prefix.length()),
+            new Entry(
+                name,
+                method,
+                crc,
+                compressedSize,
+                size,
+                localOffset + shift,
+                lastModified(date, time)));
+      }
+    }
+    return Collections.unmodifiableMap(entries);
+  }
+
+  /** The end of central directory record is last, followed by a comment of up to 64 KB. */
+  private static long findEnd(final FileChannel channel) throws IOException {
+    final long size = channel.size();
+    if (size < END_BYTES) {
+      throw new IOException("Not a zip archive");
+    }
+    final int tailLength = (int) Math.min(size, END_BYTES + 0xFFFF);
+    final ByteBuffer tail = read(channel, size - tailLength, tailLength);
+    for (int position = tailLength - END_BYTES; position >= 0; position--) {
+      if (tail.getInt(position) == END_SIGNATURE) {
+        return size - tailLength + position;
+      }
+    }
+    throw new IOException("Not a zip archive");
+  }
+
+  private static long lastModified(final int date, final int time) {
+    try {
+      return LocalDateTime.of(
+              1980 + (date >> 9),
+              (date >> 5) & 0xF,
+              date & 0x1F,
+              time >> 11,
+              (time >> 5) & 0x3F,
+              (time & 0x1F) * 2)
+          .atZone(ZoneId.systemDefault())
+          .toInstant()
+          .toEpochMilli();
+    } catch (DateTimeException e) {
+      return -1L;
+    }
+  }
+
+  /**
+   * @param channel the archive
+   * @param position where to start reading
+   * @param length number of bytes to read
+   * @return a little-endian buffer with the bytes
+   * @throws EOFException if the archive ends before
+   */
+  static ByteBuffer read(final FileChannel channel, final long position, final int length)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("The archive is truncated");
+      }
+    }
+    return buffer.flip();
+  }
+
+  /** A file in the archive, as described by the central directory. */
+  static final class Entry {
+    final String name;
+    final int method;
+    final long crc;
+    final long compressedSize;
+    final long size;
+    final long lastModified;
+    private final long localOffset;
+
+    Entry(
+        final String name,
+        final int method,
+        final long crc,
+        final long compressedSize,
+        final long size,
+        final long localOffset,
+        final long lastModified) {
+      this.name = name;
+      this.method = method;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localOffset = localOffset;
+      this.lastModified = lastModified;
+    }
+
+    /**
+     * The local header repeats the name and has its own extra field, so the data can only be found
+     * by reading it.
+     *
+     * @param channel the archive
+     * @return position of the first byte of the stored or compressed data
+     * @throws IOException if the local header can't be read
+     */
+    long dataOffset(final FileChannel channel) throws IOException {
+      final ByteBuffer header = read(channel, localOffset, LOCAL_BYTES);
+      if (header.getInt(0) != LOCAL_SIGNATURE) {
+        throw new IOException("The local header of " + name + " is corrupt");
+      }
+      return localOffset
+          + LOCAL_BYTES
+          + (header.getShort(26) & 0xFFFF)
+          + (header.getShort(28) & 0xFFFF);
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,375 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static javax.ws.rs.core.MediaType.TEXT_HTML;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import info.hassan.jersey.statics.api.ResourceBody;
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.cache.ResourceCache;
+import info.hassan.jersey.statics.metrics.ResourceMetrics;
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the resources under a prefix of a zip or jar archive, e.g. the assets shipped in the jar
+ * of the application, without extracting them. The central directory is read once into a hash
+ * index, so a resource missing from the archive costs a lookup and nothing else. Resources are
+ * loaded and cached as by {@link ResourceServiceImpl}: stored entries are read at their offset in
+ * the archive, or streamed from it when they are bigger than the streaming threshold, and deflated
+ * entries are inflated once and cached.
+ *
+ * <p>Compressed .gz and .br siblings in the archive are served as variants, mime-types are only
+ * looked up in the table as there is no file to probe, and the cache isn't preloaded.
+ */
+public class ArchiveResourceService implements ResourceService, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(ArchiveResourceService.class);
+
+  private final Path archive;
+  /** Absolute and normalized archive path, names are resolved against it to normalize them */
+  private final Path rootDir;
+
+  private final ResourceServiceConfig config;
+  private final FileChannel channel;
+  private final Map<String, ArchiveIndex.Entry> entries;
+  private final ResourceCache<String, ResourceResult> resourceCache;
+  private final ResourceMetrics metrics;
+  private final TransferScheduler transferScheduler;
+  private final MimeTypes mimeTypes;
+  private final ResourceEncoder encoder;
+  private final ResourceLoads loads = new ResourceLoads();
+  private final ResourceLoader loader;
+  private final ResourceResult notFoundPage;
+  private final ResourceResult serverErrorPage;
+
+  /**
+   * @param archive {@link Path} to a zip or jar archive, all of its files are served
+   * @throws IOException if the archive can't be read or isn't a zip archive
+   */
+  public ArchiveResourceService(final Path archive) throws IOException {
+    this(archive, "", ResourceServiceConfig.defaults());
+  }
+
+  /**
+   * @param archive {@link Path} to a zip or jar archive
+   * @param prefix the directory in the archive to serve, e.g. "static" or "META-INF/resources"
+   * @param config the cache and loading options
+   * @throws FileNotFoundException if the archive doesn't exist
+   * @throws IOException if the archive can't be read or isn't a zip archive
+   */
+  public ArchiveResourceService(
+      final Path archive, final String prefix, final ResourceServiceConfig config)
+      throws IOException {
+    if (archive == null || prefix == null) {
+      throw new IllegalArgumentException("Archive path and prefix must not null");
+    } else if (!Files.isRegularFile(archive)) {
+      throw new FileNotFoundException("Archive must exist: " + archive);
+    } else if (config == null) {
+      throw new IllegalArgumentException("Config must not be null");
+    }
+    this.archive = archive;
+    this.rootDir = archive.toAbsolutePath().normalize();
+    this.config = config;
+    this.channel = FileChannel.open(archive, READ);
+    try {
+      this.entries = ArchiveIndex.read(channel, directoryPrefix(prefix));
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    this.resourceCache = createResourceCache(config);
+    this.metrics = new ResourceMetrics(resourceCache, config.getMetricsListener());
+    this.transferScheduler = new TransferScheduler(config, metrics);
+    this.mimeTypes =
+        new MimeTypes(config.getMimeTypes(), config.isMimeTypeProbing(), config.getTextCharset());
+    this.encoder = new ResourceEncoder(config);
+    this.loader = new ResourceLoader(config);
+    this.notFoundPage = renderErrorPage(404);
+    this.serverErrorPage = renderErrorPage(500);
+    log.info("Serving {} resources from the archive {}", entries.size(), archive);
+  }
+
+  private ResourceCache<String, ResourceResult> createResourceCache(
+      final ResourceServiceConfig config) {
+    return ResourceCaches.create(config, weight -> metrics.onEviction(weight));
+  }
+
+  /**
+   * Serves a directory of the class path, from the archive it is in or, e.g. when running from an
+   * IDE, from the file system with a {@link ResourceServiceImpl}. The directory must have an entry
+   * of its own in the archive, as jars built by Maven or Gradle do.
+   *
+   * @param classLoader the class loader to find the directory with
+   * @param prefix the directory on the class path, e.g. "static"
+   * @param config the cache and loading options
+   * @return a service for the directory
+   * @throws FileNotFoundException if the directory is not on the class path
+   * @throws IOException if it is in an archive nested in another one, or can't be read
+   */
+  public static ResourceService ofClasspath(
+      final ClassLoader classLoader, final String prefix, final ResourceServiceConfig config)
+      throws IOException {
+    final String directory = directoryPrefix(prefix);
+    final URL url = classLoader.getResource(directory);
+    if (url == null) {
+      throw new FileNotFoundException("Not on the class path: " + prefix);
+    }
+    try {
+      if ("file".equals(url.getProtocol())) {
+        return new ResourceServiceImpl(Paths.get(url.toURI()), config);
+      } else if (!"jar".equals(url.getProtocol())) {
+        throw new IOException("Unable to serve resources from " + url);
+      }
+      // e.g. file:/app.jar!/static/ or, for a Spring Boot jar, file:/app.jar!/BOOT-INF/classes!/
+      final String[] parts = url.getPath().split("!/", -1);
+      final StringBuilder entryPrefix = new StringBuilder();
+      for (int i = 1; i < parts.length; i++) {
+        if (i < parts.length - 1 && (parts[i].endsWith(".jar") || parts[i].endsWith(".zip"))) {
+          throw new IOException("Nested archives are not supported: " + url);
+        }
+        entryPrefix.append(directoryPrefix(parts[i]));
+      }
+      return new ArchiveResourceService(
+          Paths.get(new URL(parts[0]).toURI()), entryPrefix.toString(), config);
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      throw new IOException("Unable to serve resources from " + url, e);
+    }
+  }
+
+  /** @return the prefix with a trailing slash and no leading one, or "" for the root */
+  private static String directoryPrefix(final String prefix) {
+    int start = 0;
+    while (start < prefix.length() && prefix.charAt(start) == '/') {
+      start++;
+    }
+    final String directory = prefix.substring(start);
+    return directory.isEmpty() || directory.endsWith("/") ? directory : directory + '/';
+  }
+
+  private ResourceResult renderErrorPage(final int statusCode) {
+    final ArchiveIndex.Entry customPage = entries.get(statusCode + ".html");
+    byte[] data = null;
+    if (customPage != null) {
+      try {
+        data = readBody(customPage, Long.MAX_VALUE).toByteArray();
+      } catch (IOException | DataFormatException e) {
+        log.warn("Unable to read the error page : {}", customPage, e);
+      }
+    }
+    return ErrorPages.render(this, statusCode, data, mimeTypes.contentTypeOf(TEXT_HTML));
+  }
+
+  @Override
+  public ResourceResult getDataForResource(final String resourceName) {
+    final ResourceResult cached = resourceCache.get(resourceName);
+    if (cached != null) {
+      metrics.onCacheHit();
+      return cached;
+    }
+    final long start = System.nanoTime();
+    try {
+      return lookup(resourceName);
+    } finally {
+      metrics.onLookup(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * A cached resource completes right away, anything else is found on a loader thread, see {@link
+   * ResourceServiceConfig#getLoaderMaxConcurrency()}.
+   */
+  @Override
+  public CompletionStage<ResourceResult> getDataForResourceAsync(final String resourceName) {
+    final ResourceResult cached = resourceCache.get(resourceName);
+    if (cached != null) {
+      metrics.onCacheHit();
+      return CompletableFuture.completedFuture(cached);
+    }
+    return loader.submit(() -> getDataForResource(resourceName));
+  }
+
+  private ResourceResult lookup(final String resourceName) {
+    final String resourceKey = ResourceKeys.resourceKeyOf(rootDir, resourceName);
+    if (resourceKey == null) {
+      return notFound();
+    } else if (!resourceKey.equals(resourceName)) {
+      final ResourceResult aliased = resourceCache.get(resourceKey);
+      if (aliased != null) {
+        metrics.onCacheHit();
+        return aliased;
+      }
+    }
+    final ArchiveIndex.Entry entry = entries.get(resourceKey);
+    if (entry == null) {
+      if ("404.html".equals(resourceKey)) {
+        return notFoundPage;
+      } else if ("500.html".equals(resourceKey)) {
+        return serverErrorPage;
+      }
+      return notFound();
+    }
+    return loads
+        .loadOnce(
+            resourceKey,
+            () -> {
+              final ResourceResult loaded = resourceCache.get(resourceKey);
+              if (loaded != null) {
+                metrics.onCacheHit();
+                return Optional.of(loaded);
+              }
+              metrics.onCacheMiss();
+              final Optional<ResourceResult> result = loadResource(resourceKey, entry);
+              result.ifPresent(data -> resourceCache.put(resourceKey, data));
+              return result;
+            })
+        .orElseGet(() -> new ResourceResult(404));
+  }
+
+  private ResourceResult notFound() {
+    metrics.onNotFound();
+    return notFoundPage;
+  }
+
+  private Optional<ResourceResult> loadResource(
+      final String resourceKey, final ArchiveIndex.Entry entry) {
+    final long start = System.nanoTime();
+    try {
+      final ResourceBody body = readBody(entry, config.getStreamingThreshold());
+      final String mimeType = mimeTypes.of(resourceKey);
+      final ResourceResult.Builder builder =
+          ResourceResult.builder(200)
+              .mimeType(mimeType)
+              .contentType(mimeTypes.contentTypeOf(mimeType))
+              .body(body)
+              .encodedBodies(
+                  encoder.encode(mimeType, body, extension -> sibling(resourceKey + extension)))
+              .lastModified(entry.lastModified);
+      if (body.isInMemory()) {
+        builder.contentHash(ContentHash.of(body.toByteArray()));
+      } else {
+        // The archive has a checksum of the entry, no need to read it all for a tag
+        builder.entityTag(Long.toHexString(entry.crc) + '-' + Long.toHexString(entry.size));
+      }
+      final ResourceResult result = builder.build();
+      metrics.onLoad(System.nanoTime() - start, result.getContentLength());
+      return Optional.of(result);
+    } catch (IOException | DataFormatException e) {
+      log.warn("Unable to read the entry : {}", entry, e);
+      return Optional.empty();
+    }
+  }
+
+  private ResourceBody sibling(final String siblingKey) {
+    final ArchiveIndex.Entry sibling = entries.get(siblingKey);
+    if (sibling == null) {
+      return null;
+    }
+    try {
+      return readBody(sibling, config.getStreamingThreshold());
+    } catch (IOException | DataFormatException e) {
+      log.warn("Unable to read the compressed entry : {}", sibling, e);
+      return null;
+    }
+  }
+
+  /**
+   * @param entry the entry to read
+   * @param streamingThreshold stored entries bigger than this are streamed from the archive
+   * @return the body of the entry, deflated entries are always inflated onto the heap
+   */
+  private ResourceBody readBody(final ArchiveIndex.Entry entry, final long streamingThreshold)
+      throws IOException, DataFormatException {
+    final long dataOffset = entry.dataOffset(channel);
+    if (entry.method == ArchiveIndex.STORED && entry.size > streamingThreshold) {
+      return ResourceBody.ofFile(archive, dataOffset, entry.size);
+    } else if (entry.size > Integer.MAX_VALUE - 8 || entry.compressedSize > Integer.MAX_VALUE - 8) {
+      throw new IOException(entry + " is too big to fit in a byte array");
+    }
+    final byte[] data;
+    if (entry.method == ArchiveIndex.STORED) {
+      data = ArchiveIndex.read(channel, dataOffset, (int) entry.size).array();
+    } else {
+      data =
+          inflate(
+              ArchiveIndex.read(channel, dataOffset, (int) entry.compressedSize).array(), entry);
+    }
+    final CRC32 crc = new CRC32();
+    crc.update(data);
+    if (crc.getValue() != entry.crc) {
+      throw new IOException("The checksum of " + entry + " doesn't match");
+    }
+    return ResourceBody.of(data);
+  }
+
+  private static byte[] inflate(final byte[] compressed, final ArchiveIndex.Entry entry)
+      throws IOException, DataFormatException {
+    final byte[] data = new byte[(int) entry.size];
+    final Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(compressed);
+      int inflated = 0;
+      while (inflated < data.length && !inflater.finished()) {
+        final int count = inflater.inflate(data, inflated, data.length - inflated);
+        if (count == 0 && inflater.needsInput()) {
+          break;
+        }
+        inflated += count;
+      }
+      if (inflated != data.length) {
+        throw new IOException(entry + " is shorter than " + data.length + " bytes");
+      }
+    } finally {
+      inflater.end();
+    }
+    return data;
+  }
+
+  /** @return the metrics of this service, see {@link ResourceServiceConfig#getMetricsListener()} */
+  public ResourceMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public ResourceMetricsListener getMetricsListener() {
+    return metrics;
+  }
+
+  @Override
+  public TransferScheduler getTransferScheduler() {
+    return transferScheduler;
+  }
+
+  /** @return the number of resources in the archive under the prefix */
+  public int size() {
+    return entries.size();
+  }
+
+  /** @return the archive, it takes the place of a base directory */
+  @Override
+  public Path getBaseDir() {
+    return archive;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,355 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.file.FileVisitOption.FOLLOW_LINKS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps each resource of a base directory to an alias with a fingerprint of its content in the name,
+ * e.g. css/main.css to css/main.3f9a1c2b.css. The content of an alias never changes, a change of
+ * the resource gives it a new alias, so aliases can be cached by clients for good.
+ *
+ * <p>When references are rewritten, see {@link ResourceServiceConfig#isFingerprintRewriting()}, the
+ * fingerprint of an HTML or CSS document is the one of its rewritten content, which depends on the
+ * aliases of what it references. Documents are then fingerprinted after their references, and a
+ * change of a resource changes the documents referencing it too. References to HTML pages are left
+ * as they are, pages are asked for by their name, and so are references that would make a cycle of
+ * stylesheets.
+ */
+public final class AssetManifest {
+
+  /** Hex digits of the content hash in an alias */
+  static final int FINGERPRINT_LENGTH = 8;
+
+  private static final Logger log = LoggerFactory.getLogger(AssetManifest.class);
+
+  private final Path rootDir;
+  private final ResourceServiceConfig config;
+  private final Function<Path, String> mimeTypes;
+  private final ResourceTransforms transforms;
+  /** Alias by resource key */
+  private final Map<String, String> aliases = new ConcurrentHashMap<>();
+  /** Resource key by alias */
+  private final Map<String, String> resourceKeys = new ConcurrentHashMap<>();
+  /** Stylesheets whose references would make a cycle, they are never rewritten */
+  private final Set<String> cyclic = ConcurrentHashMap.newKeySet();
+  /** Documents by the resource key they reference, guarded by this */
+  private final Map<String, Set<String>> dependents = new HashMap<>();
+
+  /**
+   * @param rootDir absolute and normalized base directory
+   * @param config the streaming threshold and whether references are rewritten
+   * @param mimeTypes finds the mime-type of a resource, tells documents from other resources
+   * @param transforms run on the resources first, as they are when they are loaded
+   */
+  AssetManifest(
+      final Path rootDir,
+      final ResourceServiceConfig config,
+      final Function<Path, String> mimeTypes,
+      final ResourceTransforms transforms) {
+    this.rootDir = rootDir;
+    this.config = config;
+    this.mimeTypes = mimeTypes;
+    this.transforms = transforms;
+  }
+
+  /** A resource whose alias changed, it has none anymore or it has a new one. */
+  static final class Change {
+    private final String resourceKey;
+    private final String oldAlias;
+    private final String newAlias;
+
+    private Change(final String resourceKey, final String oldAlias, final String newAlias) {
+      this.resourceKey = resourceKey;
+      this.oldAlias = oldAlias;
+      this.newAlias = newAlias;
+    }
+
+    String getResourceKey() {
+      return resourceKey;
+    }
+
+    /** @return the alias that is gone, or null if the resource had none */
+    String getOldAlias() {
+      return oldAlias;
+    }
+
+    /** @return the alias the resource has now, or null if it is gone */
+    String getNewAlias() {
+      return newAlias;
+    }
+  }
+
+  /** Fingerprints every resource of the base directory, compressed siblings aside. */
+  synchronized void scan() throws IOException {
+    final long start = System.nanoTime();
+    for (String resourceKey : findResources(rootDir)) {
+      if (!aliases.containsKey(resourceKey)) {
+        refresh(resourceKey, new HashSet<>());
+      }
+    }
+    log.info(
+        "Fingerprinted {} resources under {} in {} ms",
+        aliases.size(),
+        rootDir,
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Fingerprints a resource again, or every resource under a directory, then the documents whose
+   * rewritten content changed with it.
+   *
+   * @param resourceKey key of a resource that changed, was created or deleted
+   * @return the resources whose alias changed, those that are documents have to be loaded again
+   */
+  synchronized List<Change> update(final String resourceKey) {
+    final List<Change> changes = new ArrayList<>();
+    final Set<String> updated = new HashSet<>();
+    final Path resourcePath = rootDir.resolve(resourceKey);
+    if (Files.isDirectory(resourcePath)) {
+      try {
+        for (String key : findResources(resourcePath)) {
+          update(key, changes, updated);
+        }
+      } catch (IOException e) {
+        log.warn("Unable to fingerprint the directory : {}", resourcePath, e);
+      }
+    } else if (ResourceEncoder.getSiblingOwner(resourcePath) == null) {
+      update(resourceKey, changes, updated);
+    }
+    return changes;
+  }
+
+  private void update(
+      final String resourceKey, final List<Change> changes, final Set<String> updated) {
+    if (!updated.add(resourceKey)) {
+      return;
+    }
+    final String oldAlias = aliases.get(resourceKey);
+    final String newAlias = refresh(resourceKey, new HashSet<>());
+    if (oldAlias == null ? newAlias == null : oldAlias.equals(newAlias)) {
+      return;
+    }
+    changes.add(new Change(resourceKey, oldAlias, newAlias));
+    final Set<String> documents = dependents.get(resourceKey);
+    if (documents != null) {
+      for (String document : new ArrayList<>(documents)) {
+        update(document, changes, updated);
+      }
+    }
+  }
+
+  /**
+   * Fingerprints a resource, after the resources it references if it is a document.
+   *
+   * @return the alias of the resource, or null if it is gone
+   */
+  private String refresh(final String resourceKey, final Set<String> visiting) {
+    final String fingerprint = fingerprint(resourceKey, visiting);
+    final String oldAlias =
+        fingerprint == null ? aliases.remove(resourceKey) : aliases.get(resourceKey);
+    if (oldAlias != null) {
+      resourceKeys.remove(oldAlias);
+    }
+    if (fingerprint == null) {
+      return null;
+    }
+    final String alias = aliasOf(resourceKey, fingerprint);
+    aliases.put(resourceKey, alias);
+    resourceKeys.put(alias, resourceKey);
+    return alias;
+  }
+
+  private String fingerprint(final String resourceKey, final Set<String> visiting) {
+    final Path resourcePath = rootDir.resolve(resourceKey);
+    try {
+      final BasicFileAttributes attributes =
+          Files.readAttributes(resourcePath, BasicFileAttributes.class);
+      if (!attributes.isRegularFile()) {
+        return null;
+      } else if (attributes.size() > config.getStreamingThreshold()) {
+        return fingerprintOfEntityTag(
+            '"'
+                + ResourceServiceImpl.fileEntityTag(
+                    attributes.lastModifiedTime().toMillis(), attributes.size())
+                + '"');
+      }
+      final String mimeType = mimeTypes.apply(resourcePath);
+      final byte[] data = transforms.apply(mimeType, Files.readAllBytes(resourcePath));
+      if (!config.isFingerprintRewriting() || !ReferenceRewriter.isDocument(mimeType)) {
+        return ContentHash.of(data);
+      }
+      visiting.add(resourceKey);
+      try {
+        return ContentHash.of(
+            ReferenceRewriter.rewrite(
+                resourceKey,
+                mimeType,
+                data,
+                reference -> {
+                  dependents.computeIfAbsent(reference, key -> new HashSet<>()).add(resourceKey);
+                  if (visiting.contains(reference)) {
+                    cyclic.add(reference);
+                  } else if (!aliases.containsKey(reference)
+                      && Files.isRegularFile(rootDir.resolve(reference))) {
+                    refresh(reference, visiting);
+                  }
+                  return renamed(reference);
+                }));
+      } finally {
+        visiting.remove(resourceKey);
+      }
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      log.warn("Unable to fingerprint the resource : {}", resourcePath, e);
+      return null;
+    }
+  }
+
+  /**
+   * Rewrites the references of a document being loaded to the aliases, the same way the document
+   * was fingerprinted.
+   *
+   * @param resourceKey the resource key of the document
+   * @param mimeType its mime-type
+   * @param data the document as it is on disk
+   * @return the rewritten document, the same array if it is not a document or nothing changed
+   */
+  byte[] rewrite(final String resourceKey, final String mimeType, final byte[] data) {
+    if (!config.isFingerprintRewriting() || !ReferenceRewriter.isDocument(mimeType)) {
+      return data;
+    }
+    return ReferenceRewriter.rewrite(resourceKey, mimeType, data, this::renamed);
+  }
+
+  /**
+   * @param resourceKey the key of a resource
+   * @return what documents point at for the resource once rewritten, its alias or the key itself
+   */
+  String targetOf(final String resourceKey) {
+    final String renamed = config.isFingerprintRewriting() ? renamed(resourceKey) : null;
+    return renamed == null ? resourceKey : renamed;
+  }
+
+  private String renamed(final String reference) {
+    if (cyclic.contains(reference)
+        || ReferenceRewriter.isHtml(mimeTypes.apply(rootDir.resolve(reference)))) {
+      return null;
+    }
+    return aliases.get(reference);
+  }
+
+  /**
+   * @param alias an alias, e.g. css/main.3f9a1c2b.css
+   * @return the resource key of the alias, or null if it is not one
+   */
+  String resourceKeyOf(final String alias) {
+    return resourceKeys.get(alias);
+  }
+
+  /**
+   * @param alias the alias the result was asked for by
+   * @param resourceKey the key of the resource the alias is of
+   * @param result the resource loaded for the alias
+   * @return true if the result has the content the alias was made for
+   */
+  static boolean isCurrent(
+      final String alias, final String resourceKey, final ResourceResult result) {
+    final String fingerprint;
+    if (result.getContentHash() != null) {
+      fingerprint = result.getContentHash();
+    } else if (result.hasEntityTag()) {
+      fingerprint = fingerprintOfEntityTag(result.getEntityTag());
+    } else {
+      return false;
+    }
+    return alias.equals(aliasOf(resourceKey, fingerprint));
+  }
+
+  /** Streamed resources aren't hashed, their fingerprint is the one of their entity-tag. */
+  private static String fingerprintOfEntityTag(final String entityTag) {
+    return ContentHash.of(entityTag.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /** @return the alias, the fingerprint goes before the extension of the file name */
+  static String aliasOf(final String resourceKey, final String fingerprint) {
+    final String hash = fingerprint.substring(0, FINGERPRINT_LENGTH);
+    final int nameStart = resourceKey.lastIndexOf('/') + 1;
+    final int extension = resourceKey.lastIndexOf('.');
+    if (extension <= nameStart) {
+      return resourceKey + '.' + hash;
+    }
+    return resourceKey.substring(0, extension) + '.' + hash + resourceKey.substring(extension);
+  }
+
+  private List<String> findResources(final Path directory) throws IOException {
+    final List<String> resourceKeys = new ArrayList<>();
+    Files.walkFileTree(
+        directory,
+        Set.of(FOLLOW_LINKS),
+        Integer.MAX_VALUE,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && ResourceEncoder.getSiblingOwner(file) == null) {
+              resourceKeys.add(keyOf(file));
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            log.warn("Unable to fingerprint : {}", file, e);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return resourceKeys;
+  }
+
+  private String keyOf(final Path file) {
+    final String key = rootDir.relativize(file.toAbsolutePath().normalize()).toString();
+    return File.separatorChar == '/' ? key : key.replace(File.separatorChar, '/');
+  }
+
+  /**
+   * @param resourceKey the key of a resource, e.g. css/main.css
+   * @return its alias, e.g. css/main.3f9a1c2b.css, to put in a page or template
+   */
+  public Optional<String> aliasOf(final String resourceKey) {
+    return Optional.ofNullable(aliases.get(resourceKey));
+  }
+
+  /** @return every alias by resource key, sorted by key, e.g. to write out as a manifest file */
+  public Map<String, String> getAliases() {
+    return Collections.unmodifiableMap(new TreeMap<>(aliases));
+  }
+
+  /** @return number of resources with an alias */
+  public int size() {
+    return aliases.size();
+  }
+}
@@ -0,0 +1,133 @@
+package info.hassan.jersey.statics.services;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import info.hassan.jersey.statics.api.ResourceBody;
+import info.hassan.jersey.statics.api.ResourceResult;
+
+/**
+ * Layout of the bundle files written by {@link BundlePacker} and served by {@link
+ * BundleResourceService}, all numbers big-endian:
+ *
+ * <pre>
+ * int magic, int version, int index length
+ * index: int entry count, then for each entry sorted by key
+ *   UTF key, entry
+ * data: the bodies, offsets are relative to the first byte after the index
+ *
+ * entry: UTF mime-type or "", UTF content hash, long last modified,
+ *   long offset, long length, byte variant count, then for each variant
+ *     UTF content-coding, long offset, long length
+ * </pre>
+ *
+ * Strings are written with {@link java.io.DataOutput#writeUTF(String)}. The entries are read and
+ * written here, {@link PersistentCache} keeps its resources in the same layout.
+ */
+final class BundleFormat {
+
+  /** "JSB1" */
+  static final int MAGIC = 0x4A534231;
+
+  static final int VERSION = 1;
+  /** Magic, version and index length */
+  static final int HEADER_BYTES = 12;
+
+  private BundleFormat() {}
+
+  /**
+   * Reads from the position until the buffer is full.
+   *
+   * @throws EOFException if the channel ends first
+   */
+  static void readFully(final FileChannel channel, final ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new EOFException("The file is truncated");
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * @param in the index, positioned on an entry
+   * @param data the data section, the bodies are slices of it
+   * @param contentTypes the Content-Type header value of a mime-type
+   * @return the result of the entry
+   * @throws IOException if the entry is truncated or its bodies are not within the data
+   */
+  static ResourceResult readEntry(
+      final DataInput in, final ByteBuffer data, final Function<String, String> contentTypes)
+      throws IOException {
+    final String mimeType = in.readUTF();
+    final String contentHash = in.readUTF();
+    final long lastModified = in.readLong();
+    final ResourceBody body = slice(data, in.readLong(), in.readLong());
+    final int variants = in.readUnsignedByte();
+    final Map<String, ResourceBody> encodedBodies = new HashMap<>(variants * 2);
+    for (int i = 0; i < variants; i++) {
+      encodedBodies.put(in.readUTF(), slice(data, in.readLong(), in.readLong()));
+    }
+    return ResourceResult.builder(200)
+        .mimeType(mimeType.isEmpty() ? null : mimeType)
+        .contentType(mimeType.isEmpty() ? null : contentTypes.apply(mimeType))
+        .body(body)
+        .encodedBodies(encodedBodies)
+        .contentHash(contentHash)
+        .lastModified(lastModified)
+        .build();
+  }
+
+  private static ResourceBody slice(final ByteBuffer data, final long offset, final long length)
+      throws IOException {
+    if (offset < 0 || length < 0 || offset + length > data.capacity()) {
+      throw new EOFException("The file is truncated");
+    }
+    final ByteBuffer slice = data.duplicate();
+    slice.position((int) offset).limit((int) (offset + length));
+    return ResourceBody.of(slice);
+  }
+
+  /**
+   * @param result a 200 result with a content hash
+   * @param index where the entry is written
+   * @param data where the bodies are written
+   * @param offset position of the next body in the data
+   * @return the offset after the bodies of the entry
+   */
+  static long writeEntry(
+      final ResourceResult result,
+      final DataOutput index,
+      final OutputStream data,
+      final long offset)
+      throws IOException {
+    final byte[] bytes = result.getBody().toByteArray();
+    index.writeUTF(result.getMimeType() == null ? "" : result.getMimeType());
+    index.writeUTF(result.getContentHash());
+    index.writeLong(result.getLastModified());
+    index.writeLong(offset);
+    index.writeLong(bytes.length);
+    data.write(bytes);
+    long next = offset + bytes.length;
+    index.writeByte(result.getEncodings().size());
+    for (String encoding : result.getEncodings()) {
+      final byte[] encoded = result.getEncodedBody(encoding).toByteArray();
+      index.writeUTF(encoding);
+      index.writeLong(next);
+      index.writeLong(encoded.length);
+      data.write(encoded);
+      next += encoded.length;
+    }
+    return next;
+  }
+}
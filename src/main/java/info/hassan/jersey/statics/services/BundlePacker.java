@@ -0,0 +1,176 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.file.FileVisitOption.FOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import info.hassan.jersey.statics.api.ResourceBody;
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Packs a base directory into a single bundle file for {@link BundleResourceService}, at build
+ * time, e.g.
+ *
+ * <pre>
+ * java -cp jersey-statics.jar info.hassan.jersey.statics.services.BundlePacker html site.bundle
+ * </pre>
+ *
+ * Each file is read, transformed, hashed and compressed once, here, with the mime-types, transforms
+ * and compression options of the {@link ResourceServiceConfig}. Compressed .gz and .br siblings end
+ * up as variants of the file they belong to rather than as files of their own.
+ */
+public final class BundlePacker {
+
+  private static final Logger log = LoggerFactory.getLogger(BundlePacker.class);
+
+  private final MimeTypes mimeTypes;
+  private final ResourceEncoder encoder;
+  private final ResourceTransforms transforms;
+
+  public BundlePacker() {
+    this(ResourceServiceConfig.defaults());
+  }
+
+  /** @param config the mime-types, transforms and compression options of the bundled resources */
+  public BundlePacker(final ResourceServiceConfig config) {
+    if (config == null) {
+      throw new IllegalArgumentException("Config must not be null");
+    }
+    this.mimeTypes =
+        new MimeTypes(config.getMimeTypes(), config.isMimeTypeProbing(), config.getTextCharset());
+    this.encoder = new ResourceEncoder(config);
+    this.transforms = new ResourceTransforms(config, ResourceMetricsListener.NONE);
+  }
+
+  /**
+   * Usage: {@code BundlePacker <base directory> <bundle file>}
+   *
+   * @param args the base directory and the bundle file to write
+   * @throws IOException if a file can't be read or the bundle can't be written
+   */
+  public static void main(final String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: BundlePacker <base directory> <bundle file>");
+      System.exit(2);
+    }
+    new BundlePacker().pack(Paths.get(args[0]), Paths.get(args[1]));
+  }
+
+  /**
+   * Writes the bundle next to its final place and moves it there, so a service never maps a half
+   * written bundle.
+   *
+   * @param baseDir the directory to pack e.g. /var/www/html
+   * @param bundleFile the bundle file to write, replaced if it exists
+   * @return the number of resources in the bundle
+   * @throws IOException if a file can't be read or the bundle can't be written
+   */
+  public int pack(final Path baseDir, final Path bundleFile) throws IOException {
+    if (!Files.isDirectory(baseDir)) {
+      throw new IllegalArgumentException("Base directory must be a directory: " + baseDir);
+    }
+    final Map<String, Path> files = findFiles(baseDir);
+    final Path directory = bundleFile.toAbsolutePath().getParent();
+    final Path data = Files.createTempFile(directory, bundleFile.getFileName().toString(), ".data");
+    final Path packed =
+        Files.createTempFile(directory, bundleFile.getFileName().toString(), ".tmp");
+    try {
+      final ByteArrayOutputStream index = new ByteArrayOutputStream();
+      try (DataOutputStream indexOut = new DataOutputStream(index);
+          OutputStream dataOut = new BufferedOutputStream(Files.newOutputStream(data))) {
+        indexOut.writeInt(files.size());
+        long offset = 0;
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+          offset = writeEntry(file.getKey(), file.getValue(), indexOut, dataOut, offset);
+        }
+      }
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(packed)))) {
+        out.writeInt(BundleFormat.MAGIC);
+        out.writeInt(BundleFormat.VERSION);
+        out.writeInt(index.size());
+        index.writeTo(out);
+        Files.copy(data, out);
+      }
+      Files.move(packed, bundleFile, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(data);
+      Files.deleteIfExists(packed);
+    }
+    log.info("Packed {} resources of {} into {}", files.size(), baseDir, bundleFile);
+    return files.size();
+  }
+
+  /** @return the files to pack by key, in the order of the bundle index */
+  private static Map<String, Path> findFiles(final Path baseDir) throws IOException {
+    final Path rootDir = baseDir.toAbsolutePath().normalize();
+    final Map<String, Path> files = new TreeMap<>();
+    Files.walkFileTree(
+        rootDir,
+        Set.of(FOLLOW_LINKS),
+        Integer.MAX_VALUE,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            final Path siblingOwner = ResourceEncoder.getSiblingOwner(file);
+            if (attrs.isRegularFile()
+                && (siblingOwner == null || !Files.isRegularFile(siblingOwner))) {
+              final String key = rootDir.relativize(file).toString();
+              files.put(
+                  File.separatorChar == '/' ? key : key.replace(File.separatorChar, '/'), file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return files;
+  }
+
+  /** @return the offset after the bodies of the entry */
+  private long writeEntry(
+      final String key,
+      final Path file,
+      final DataOutputStream index,
+      final OutputStream data,
+      final long offset)
+      throws IOException {
+    final String mimeType = mimeTypes.of(file);
+    final byte[] read = Files.readAllBytes(file);
+    final byte[] bytes = transforms.apply(mimeType, read);
+    // The compressed siblings on disk are of the file as it was before it was transformed
+    final Map<String, ResourceBody> variants =
+        bytes == read
+            ? encoder.encode(file, mimeType, ResourceBody.of(bytes))
+            : encoder.encode(mimeType, ResourceBody.of(bytes), extension -> null);
+    index.writeUTF(key);
+    return BundleFormat.writeEntry(
+        ResourceResult.builder(200)
+            .mimeType(mimeType)
+            .body(ResourceBody.of(bytes))
+            .encodedBodies(variants)
+            .contentHash(ContentHash.of(bytes))
+            .lastModified(Files.getLastModifiedTime(file).toMillis())
+            .build(),
+        index,
+        data,
+        offset);
+  }
+}
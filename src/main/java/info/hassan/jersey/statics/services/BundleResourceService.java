@@ -0,0 +1,172 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static javax.ws.rs.core.MediaType.TEXT_HTML;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the resources of a bundle written by {@link BundlePacker}. Starting costs reading the
+ * index and mapping the bundle file into memory, then every request is a binary search of the
+ * sorted keys: the bodies are slices of the mapping, read by the operating system from its page
+ * cache, without any file being opened, checked or read by the service.
+ *
+ * <p>Everything about a resource, its mime-type, hash and compressed variants, was worked out when
+ * the bundle was packed, and the bundle never changes while it is served. A new build is served by
+ * packing a new bundle and creating a new service, e.g. behind a {@link SnapshotResourceService}
+ * like swap. The bundle, bodies included, must be smaller than 2 GB.
+ */
+public class BundleResourceService implements ResourceService {
+
+  private static final Logger log = LoggerFactory.getLogger(BundleResourceService.class);
+
+  private final Path bundleFile;
+  /** Absolute and normalized bundle file, names are resolved against it to normalize them */
+  private final Path rootDir;
+
+  private final ResourceMetricsListener metrics;
+  private final TransferScheduler transferScheduler;
+  /** Sorted keys of the resources and, at the same index, their results */
+  private final String[] keys;
+
+  private final ResourceResult[] results;
+  private final ResourceResult notFoundPage;
+  private final ResourceResult serverErrorPage;
+
+  /**
+   * @param bundleFile {@link Path} to a bundle written by {@link BundlePacker}
+   * @throws FileNotFoundException if the bundle file doesn't exist
+   * @throws IOException if the bundle can't be read or isn't a bundle
+   */
+  public BundleResourceService(final Path bundleFile) throws IOException {
+    this(bundleFile, ResourceServiceConfig.defaults());
+  }
+
+  /**
+   * @param bundleFile {@link Path} to a bundle written by {@link BundlePacker}
+   * @param config the text charset, metrics listener and large transfer options, the rest was
+   *     applied by the packer
+   * @throws FileNotFoundException if the bundle file doesn't exist
+   * @throws IOException if the bundle can't be read or isn't a bundle
+   */
+  public BundleResourceService(final Path bundleFile, final ResourceServiceConfig config)
+      throws IOException {
+    if (bundleFile == null) {
+      throw new IllegalArgumentException("Bundle file path must not null");
+    } else if (!Files.exists(bundleFile)) {
+      throw new FileNotFoundException("Bundle file must exist: " + bundleFile);
+    } else if (config == null) {
+      throw new IllegalArgumentException("Config must not be null");
+    }
+    this.bundleFile = bundleFile;
+    this.rootDir = bundleFile.toAbsolutePath().normalize();
+    this.metrics = config.getMetricsListener();
+    this.transferScheduler = new TransferScheduler(config, metrics);
+    final MimeTypes mimeTypes =
+        new MimeTypes(config.getMimeTypes(), config.isMimeTypeProbing(), config.getTextCharset());
+    try (FileChannel channel = FileChannel.open(bundleFile, READ)) {
+      final ByteBuffer header = ByteBuffer.allocate(BundleFormat.HEADER_BYTES);
+      BundleFormat.readFully(channel, header, 0);
+      header.flip();
+      if (header.getInt() != BundleFormat.MAGIC) {
+        throw new IOException(bundleFile + " is not a bundle");
+      } else if (header.getInt() != BundleFormat.VERSION) {
+        throw new IOException(bundleFile + " is a bundle of an unsupported version");
+      }
+      final ByteBuffer index = ByteBuffer.allocate(header.getInt());
+      BundleFormat.readFully(channel, index, BundleFormat.HEADER_BYTES);
+      final long dataStart = BundleFormat.HEADER_BYTES + (long) index.capacity();
+      if (channel.size() - dataStart > Integer.MAX_VALUE) {
+        throw new IOException(bundleFile + " is too big to be mapped");
+      }
+      // The mapping stays valid once the channel is closed
+      final MappedByteBuffer data =
+          channel.map(FileChannel.MapMode.READ_ONLY, dataStart, channel.size() - dataStart);
+      try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(index.array()))) {
+        final int count = in.readInt();
+        this.keys = new String[count];
+        this.results = new ResourceResult[count];
+        for (int i = 0; i < count; i++) {
+          keys[i] = in.readUTF();
+          results[i] = BundleFormat.readEntry(in, data, mimeTypes::contentTypeOf);
+        }
+      }
+    }
+    this.notFoundPage = errorPage(404, mimeTypes);
+    this.serverErrorPage = errorPage(500, mimeTypes);
+    log.info("Serving {} resources from the bundle {}", keys.length, bundleFile);
+  }
+
+  /**
+   * A 404.html or 500.html at the root of the bundle replaces the page provided by this library.
+   */
+  private ResourceResult errorPage(final int statusCode, final MimeTypes mimeTypes) {
+    final ResourceResult custom = find(statusCode + ".html");
+    return ErrorPages.render(
+        this,
+        statusCode,
+        custom != null ? custom.getData() : null,
+        mimeTypes.contentTypeOf(TEXT_HTML));
+  }
+
+  @Override
+  public ResourceResult getDataForResource(final String resourceName) {
+    ResourceResult result = find(resourceName);
+    if (result == null) {
+      final String resourceKey = ResourceKeys.resourceKeyOf(rootDir, resourceName);
+      if (resourceKey != null && !resourceKey.equals(resourceName)) {
+        result = find(resourceKey);
+      }
+    }
+    if (result != null) {
+      metrics.onCacheHit();
+      return result;
+    } else if ("404.html".equals(resourceName)) {
+      return notFoundPage;
+    } else if ("500.html".equals(resourceName)) {
+      return serverErrorPage;
+    }
+    metrics.onNotFound();
+    return notFoundPage;
+  }
+
+  private ResourceResult find(final String resourceKey) {
+    final int index = Arrays.binarySearch(keys, resourceKey);
+    return index >= 0 ? results[index] : null;
+  }
+
+  /** @return the number of resources in the bundle */
+  public int size() {
+    return keys.length;
+  }
+
+  /** @return the bundle file, it takes the place of a base directory */
+  @Override
+  public Path getBaseDir() {
+    return bundleFile;
+  }
+
+  @Override
+  public ResourceMetricsListener getMetricsListener() {
+    return metrics;
+  }
+
+  @Override
+  public TransferScheduler getTransferScheduler() {
+    return transferScheduler;
+  }
+}
@@ -0,0 +1,151 @@
+package info.hassan.jersey.statics.services;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import info.hassan.jersey.statics.api.ResourceBody;
+import info.hassan.jersey.statics.api.ResourceResult;
+
+/**
+ * The bodies of the cached resources keyed by their content hash, so identical files under
+ * different names, e.g. a library vendored per locale, are held once. Each blob counts the cached
+ * results using it and its bodies are released with the last one. Only results with a content hash,
+ * i.e. held in memory, are shared.
+ *
+ * <p>A blob holds the compressed variants of the first result it was made from. When an off-heap
+ * tier is configured, the bodies of big blobs are copied into direct buffers as the blob is made,
+ * so results sharing them share the direct buffers too.
+ */
+final class ContentBlobs {
+
+  private final Map<String, Blob> blobs = new HashMap<>();
+  private final long offHeapMinEntryWeight;
+  private final long offHeapMaxEntryWeight;
+  private long sharedWeight;
+
+  /**
+   * @param config the off-heap options, bodies stay on the heap if the off-heap tier is disabled
+   */
+  ContentBlobs(final ResourceServiceConfig config) {
+    this.offHeapMinEntryWeight =
+        config.getOffHeapMaxWeight() == 0 ? Long.MAX_VALUE : config.getOffHeapMinEntryWeight();
+    this.offHeapMaxEntryWeight = config.getOffHeapMaxWeight();
+  }
+
+  /**
+   * Called for each result before it is cached.
+   *
+   * @param result a result that was just loaded
+   * @return the result with the bodies of its blob, made from it if there is none yet
+   */
+  synchronized ResourceResult acquire(final ResourceResult result) {
+    final String contentHash = result.getContentHash();
+    if (contentHash == null || result.getBody() == null) {
+      return result;
+    }
+    Blob blob = blobs.get(contentHash);
+    if (blob == null) {
+      blob = newBlob(result);
+      blobs.put(contentHash, blob);
+    } else if (blob.body.length() != result.getBody().length()) {
+      // Not the same content after all, cached on its own
+      return result;
+    } else {
+      sharedWeight += blob.weight;
+    }
+    blob.references++;
+    return blob.body == result.getBody()
+        ? result
+        : result.withBodies(blob.body, blob.encodedBodies);
+  }
+
+  private Blob newBlob(final ResourceResult result) {
+    final long weight = ResourceServiceImpl.weigh(result);
+    if (!result.getBody().isInMemory()
+        || weight < offHeapMinEntryWeight
+        || weight > offHeapMaxEntryWeight) {
+      return new Blob(result.getBody(), encodedBodiesOf(result), weight, false);
+    }
+    final Map<String, ResourceBody> encodedBodies = new HashMap<>();
+    for (String encoding : result.getEncodings()) {
+      encodedBodies.put(
+          encoding, ResourceBody.ofDirect(result.getEncodedBody(encoding).toByteArray()));
+    }
+    return new Blob(
+        ResourceBody.ofDirect(result.getBody().toByteArray()),
+        encodedBodies.isEmpty() ? Collections.emptyMap() : encodedBodies,
+        weight,
+        true);
+  }
+
+  private static Map<String, ResourceBody> encodedBodiesOf(final ResourceResult result) {
+    final Map<String, ResourceBody> encodedBodies = new HashMap<>();
+    for (String encoding : result.getEncodings()) {
+      encodedBodies.put(encoding, result.getEncodedBody(encoding));
+    }
+    return encodedBodies.isEmpty() ? Collections.emptyMap() : encodedBodies;
+  }
+
+  /**
+   * Called for each result that leaves the cache, the bodies of its blob are released with the last
+   * result using it.
+   *
+   * @param result a result returned by {@link #acquire(ResourceResult)}
+   */
+  synchronized void release(final ResourceResult result) {
+    final Blob blob = blobOf(result);
+    if (blob == null) {
+      return;
+    } else if (--blob.references > 0) {
+      sharedWeight -= blob.weight;
+      return;
+    }
+    blobs.remove(result.getContentHash());
+    blob.body.release();
+    for (ResourceBody encoded : blob.encodedBodies.values()) {
+      encoded.release();
+    }
+  }
+
+  /** @return true if the bodies of the result were copied off the heap */
+  synchronized boolean isOffHeap(final ResourceResult result) {
+    final Blob blob = blobOf(result);
+    return blob != null && blob.offHeap;
+  }
+
+  private Blob blobOf(final ResourceResult result) {
+    final String contentHash = result.getContentHash();
+    final Blob blob = contentHash == null ? null : blobs.get(contentHash);
+    return blob != null && blob.body == result.getBody() ? blob : null;
+  }
+
+  /** @return the weight counted more than once by the cache, as results share the blob */
+  synchronized long getSharedWeight() {
+    return sharedWeight;
+  }
+
+  /** @return the number of distinct bodies */
+  synchronized int size() {
+    return blobs.size();
+  }
+
+  private static final class Blob {
+    private final ResourceBody body;
+    private final Map<String, ResourceBody> encodedBodies;
+    private final long weight;
+    private final boolean offHeap;
+    private int references;
+
+    private Blob(
+        final ResourceBody body,
+        final Map<String, ResourceBody> encodedBodies,
+        final long weight,
+        final boolean offHeap) {
+      this.body = body;
+      this.encodedBodies = encodedBodies;
+      this.weight = weight;
+      this.offHeap = offHeap;
+    }
+  }
+}
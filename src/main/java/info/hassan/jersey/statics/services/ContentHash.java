@@ -0,0 +1,35 @@
+package info.hassan.jersey.statics.services;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** Hashes resource data, the hash is used as the entity-tag of a resource. */
+final class ContentHash {
+
+  /** 128 bits of the SHA-256 digest are plenty to tell resources apart */
+  private static final int HASH_BYTES = 16;
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private ContentHash() {}
+
+  /**
+   * @param data the data bytes
+   * @return lower case hex of the truncated SHA-256 digest of the data
+   */
+  static String of(final byte[] data) {
+    final byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256").digest(data);
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM must support SHA-256
+      throw new IllegalStateException(e);
+    }
+    final char[] hex = new char[HASH_BYTES * 2];
+    for (int i = 0; i < HASH_BYTES; i++) {
+      hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+      hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+    }
+    return new String(hex);
+  }
+}
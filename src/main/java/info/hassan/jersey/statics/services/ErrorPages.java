@@ -0,0 +1,34 @@
+package info.hassan.jersey.statics.services;
+
+import static javax.ws.rs.core.MediaType.TEXT_HTML;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+
+/** Renders the 404 and 500 pages the services answer with. */
+final class ErrorPages {
+
+  private ErrorPages() {}
+
+  /**
+   * @param service the service the page is rendered for
+   * @param statusCode 404 or 500
+   * @param customPage the page among the served resources, e.g. their 404.html, or null for the
+   *     page provided by this library
+   * @param contentType the Content-Type header value of text/html
+   * @return the page
+   */
+  static ResourceResult render(
+      final ResourceService service,
+      final int statusCode,
+      final byte[] customPage,
+      final String contentType) {
+    return ResourceResult.builder(statusCode)
+        .mimeType(TEXT_HTML)
+        .contentType(contentType)
+        .data(
+            customPage != null
+                ? customPage
+                : service.getPageProvidedResources(statusCode).orElse(new byte[0]))
+        .build();
+  }
+}
@@ -0,0 +1,177 @@
+package info.hassan.jersey.statics.services;
+
+import static java.util.Map.entry;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves mime-types from file extensions with a table built once, so the result doesn't depend on
+ * the host and a lookup costs a hash of the extension and a probe or two, without any allocation.
+ * {@link Files#probeContentType(Path)} is only asked about extensions missing from the table, and
+ * only when enabled in the {@link ResourceServiceConfig}.
+ */
+final class MimeTypes {
+
+  /** What websites commonly serve, by lower-case extension */
+  static final Map<String, String> DEFAULTS =
+      Map.ofEntries(
+          entry("html", "text/html"),
+          entry("htm", "text/html"),
+          entry("css", "text/css"),
+          entry("txt", "text/plain"),
+          entry("csv", "text/csv"),
+          entry("md", "text/markdown"),
+          entry("js", "application/javascript"),
+          entry("mjs", "application/javascript"),
+          entry("json", "application/json"),
+          entry("map", "application/json"),
+          entry("webmanifest", "application/manifest+json"),
+          entry("jsonld", "application/ld+json"),
+          entry("xml", "application/xml"),
+          entry("xhtml", "application/xhtml+xml"),
+          entry("rss", "application/rss+xml"),
+          entry("atom", "application/atom+xml"),
+          entry("wasm", "application/wasm"),
+          entry("pdf", "application/pdf"),
+          entry("zip", "application/zip"),
+          entry("gz", "application/gzip"),
+          entry("br", "application/x-brotli"),
+          entry("tar", "application/x-tar"),
+          entry("bin", "application/octet-stream"),
+          entry("png", "image/png"),
+          entry("jpg", "image/jpeg"),
+          entry("jpeg", "image/jpeg"),
+          entry("gif", "image/gif"),
+          entry("svg", "image/svg+xml"),
+          entry("webp", "image/webp"),
+          entry("avif", "image/avif"),
+          entry("ico", "image/x-icon"),
+          entry("bmp", "image/bmp"),
+          entry("tif", "image/tiff"),
+          entry("tiff", "image/tiff"),
+          entry("woff", "font/woff"),
+          entry("woff2", "font/woff2"),
+          entry("ttf", "font/ttf"),
+          entry("otf", "font/otf"),
+          entry("eot", "application/vnd.ms-fontobject"),
+          entry("mp3", "audio/mpeg"),
+          entry("ogg", "audio/ogg"),
+          entry("wav", "audio/wav"),
+          entry("weba", "audio/webm"),
+          entry("mp4", "video/mp4"),
+          entry("webm", "video/webm"),
+          entry("ogv", "video/ogg"),
+          entry("vtt", "text/vtt"));
+
+  /** Mime-types besides text/* whose content type gets the text charset */
+  private static final Set<String> TEXTUAL_MIME_TYPES =
+      Set.of(
+          "application/javascript",
+          "application/json",
+          "application/manifest+json",
+          "application/ld+json",
+          "application/xml",
+          "application/xhtml+xml",
+          "application/rss+xml",
+          "application/atom+xml",
+          "image/svg+xml");
+
+  private final String[] extensions;
+  private final String[] mimeTypes;
+  private final int mask;
+  private final boolean probing;
+  private final Charset textCharset;
+
+  /**
+   * @param overrides mime-types by extension, replacing or added to the {@link #DEFAULTS}
+   * @param probing whether to ask {@link Files#probeContentType(Path)} about unknown extensions
+   * @param textCharset charset of the textual mime-types, null to leave it out of content types
+   */
+  MimeTypes(final Map<String, String> overrides, final boolean probing, final Charset textCharset) {
+    final Map<String, String> table = new HashMap<>(DEFAULTS);
+    for (Map.Entry<String, String> override : overrides.entrySet()) {
+      table.put(override.getKey().toLowerCase(Locale.ROOT), override.getValue());
+    }
+    // At most half full, so a miss ends on an empty slot after a probe or two
+    final int capacity = Integer.highestOneBit(Math.max(table.size(), 1) * 4 - 1);
+    this.extensions = new String[capacity];
+    this.mimeTypes = new String[capacity];
+    this.mask = capacity - 1;
+    for (Map.Entry<String, String> mapping : table.entrySet()) {
+      final String extension = mapping.getKey();
+      int index = hash(extension, 0, extension.length()) & mask;
+      while (extensions[index] != null) {
+        index = (index + 1) & mask;
+      }
+      extensions[index] = extension;
+      mimeTypes[index] = mapping.getValue();
+    }
+    this.probing = probing;
+    this.textCharset = textCharset;
+  }
+
+  /**
+   * @param resourcePath path of the resource
+   * @return the mime-type of its extension, or null if it couldn't be determined
+   */
+  String of(final Path resourcePath) {
+    final Path fileName = resourcePath.getFileName();
+    final String mimeType = fileName == null ? null : of(fileName.toString());
+    return mimeType == null && probing ? probe(resourcePath) : mimeType;
+  }
+
+  /**
+   * @param fileName name of a file, the case of its extension is ignored
+   * @return the mime-type of its extension in the table, or null if it has none
+   */
+  String of(final String fileName) {
+    final int start = fileName.lastIndexOf('.') + 1;
+    final int length = fileName.length() - start;
+    if (start == 0 || length == 0) {
+      return null;
+    }
+    for (int index = hash(fileName, start, fileName.length()) & mask;
+        extensions[index] != null;
+        index = (index + 1) & mask) {
+      final String extension = extensions[index];
+      if (extension.length() == length
+          && fileName.regionMatches(true, start, extension, 0, length)) {
+        return mimeTypes[index];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param mimeType a mime-type, may be null
+   * @return the value of the Content-Type header, with the text charset for textual mime-types
+   */
+  String contentTypeOf(final String mimeType) {
+    final boolean textual =
+        mimeType != null && (mimeType.startsWith("text/") || TEXTUAL_MIME_TYPES.contains(mimeType));
+    return textual && textCharset != null ? mimeType + "; charset=" + textCharset.name() : mimeType;
+  }
+
+  private static String probe(final Path resourcePath) {
+    try {
+      return Files.probeContentType(resourcePath);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static int hash(final String value, final int start, final int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + Character.toLowerCase(value.charAt(i));
+    }
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,362 @@
+package info.hassan.jersey.statics.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Minifiers for the textual resources websites serve, to give to {@link
+ * ResourceServiceConfig.Builder#transformers(List)}. They only drop what can't change how a
+ * resource is read: comments, indentation and the whitespace the syntax doesn't need. Nothing is
+ * renamed or rewritten.
+ *
+ * <p>Resources are minified as ISO-8859-1 text, which maps each byte to one char and back, so UTF-8
+ * and the other ASCII compatible charsets come out as they went in, only multi-byte sequences never
+ * look like whitespace or a quote.
+ */
+public final class Minifiers {
+
+  private static final String[] RAW_TEXT_ELEMENTS = {"pre", "textarea", "script", "style"};
+
+  private Minifiers() {}
+
+  /** @return the HTML, CSS, JSON and JavaScript minifiers */
+  public static List<ResourceTransformer> all() {
+    return List.of(html(), css(), json(), javaScript());
+  }
+
+  /**
+   * Drops comments, conditional comments aside, and collapses runs of whitespace to a single space,
+   * or a single line break if the run has one. The content of pre, textarea, script and style
+   * elements and the values of attributes are left as they are.
+   *
+   * @return the HTML minifier
+   */
+  public static ResourceTransformer html() {
+    return transformer("minify-html", "text/html"::equals, Minifiers::minifyHtml);
+  }
+
+  /**
+   * Drops comments, {@code /*!} license comments aside, the whitespace around braces, semicolons,
+   * commas and child combinators and after colons, and the last semicolon of a block. Strings are
+   * left as they are.
+   *
+   * @return the CSS minifier
+   */
+  public static ResourceTransformer css() {
+    return transformer("minify-css", "text/css"::equals, Minifiers::minifyCss);
+  }
+
+  /**
+   * Drops all the whitespace outside of strings.
+   *
+   * @return the JSON minifier, for application/json and the +json mime-types
+   */
+  public static ResourceTransformer json() {
+    return transformer(
+        "minify-json",
+        mimeType -> "application/json".equals(mimeType) || mimeType.endsWith("+json"),
+        Minifiers::minifyJson);
+  }
+
+  /**
+   * Drops the indentation, the trailing whitespace and the blank lines, outside of template
+   * literals and multi-line strings. Line breaks are kept, as automatic semicolon insertion depends
+   * on them, and so are comments, as telling them from regular expressions needs a parser.
+   *
+   * @return the JavaScript whitespace minifier
+   */
+  public static ResourceTransformer javaScript() {
+    return transformer(
+        "minify-javascript",
+        mimeType -> "application/javascript".equals(mimeType) || "text/javascript".equals(mimeType),
+        Minifiers::minifyJavaScript);
+  }
+
+  private static ResourceTransformer transformer(
+      final String id, final Predicate<String> mimeTypes, final UnaryOperator<String> minify) {
+    return new ResourceTransformer() {
+      @Override
+      public String id() {
+        return id;
+      }
+
+      @Override
+      public boolean appliesTo(final String mimeType) {
+        return mimeType != null && mimeTypes.test(mimeType);
+      }
+
+      @Override
+      public byte[] transform(final String mimeType, final byte[] data) {
+        final String text = new String(data, StandardCharsets.ISO_8859_1);
+        final String minified = minify.apply(text);
+        return minified.length() == text.length()
+            ? data
+            : minified.getBytes(StandardCharsets.ISO_8859_1);
+      }
+    };
+  }
+
+  static String minifyHtml(final String html) {
+    final StringBuilder out = new StringBuilder(html.length());
+    final int length = html.length();
+    int i = 0;
+    while (i < length) {
+      final char c = html.charAt(i);
+      if (html.startsWith("<!--", i)) {
+        final int end = html.indexOf("-->", i + 4);
+        final int next = end < 0 ? length : end + 3;
+        if (html.startsWith("<!--[if", i)) {
+          out.append(html, i, next);
+        }
+        i = next;
+      } else if (c == '<') {
+        final String element = rawTextElement(html, i + 1);
+        i = copyTag(html, i, out);
+        if (element != null) {
+          final int end = indexOfIgnoreCase(html, "</" + element, i);
+          final int next = end < 0 ? length : end;
+          out.append(html, i, next);
+          i = next;
+        }
+      } else if (isSpace(c)) {
+        i = collapseSpaces(html, i, out);
+      } else {
+        out.append(c);
+        i++;
+      }
+    }
+    return out.toString();
+  }
+
+  /** @return the name of the element whose text is copied as it is, if a tag of it starts here */
+  private static String rawTextElement(final String html, final int nameStart) {
+    for (String element : RAW_TEXT_ELEMENTS) {
+      final int nameEnd = nameStart + element.length();
+      if (html.regionMatches(true, nameStart, element, 0, element.length())
+          && nameEnd < html.length()
+          && (isSpace(html.charAt(nameEnd)) || html.charAt(nameEnd) == '>')) {
+        return element;
+      }
+    }
+    return null;
+  }
+
+  /** Copies a tag, quoted attribute values as they are, and returns where it ends. */
+  private static int copyTag(final String html, final int start, final StringBuilder out) {
+    final int length = html.length();
+    int i = start;
+    while (i < length) {
+      final char c = html.charAt(i);
+      if (c == '"' || c == '\'') {
+        final int end = html.indexOf(c, i + 1);
+        final int next = end < 0 ? length : end + 1;
+        out.append(html, i, next);
+        i = next;
+      } else if (isSpace(c)) {
+        i = collapseSpaces(html, i, out);
+      } else {
+        out.append(c);
+        i++;
+        if (c == '>') {
+          break;
+        }
+      }
+    }
+    return i;
+  }
+
+  private static int collapseSpaces(final String text, final int start, final StringBuilder out) {
+    boolean lineBreak = false;
+    int i = start;
+    while (i < text.length() && isSpace(text.charAt(i))) {
+      lineBreak |= text.charAt(i) == '\n';
+      i++;
+    }
+    // Whitespace left around a dropped comment joins the run before it
+    final int last = out.length() - 1;
+    if (last >= 0 && isSpace(out.charAt(last))) {
+      if (lineBreak) {
+        out.setCharAt(last, '\n');
+      }
+    } else {
+      out.append(lineBreak ? '\n' : ' ');
+    }
+    return i;
+  }
+
+  private static int indexOfIgnoreCase(final String text, final String part, final int from) {
+    for (int i = from; i <= text.length() - part.length(); i++) {
+      if (text.regionMatches(true, i, part, 0, part.length())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static String minifyCss(final String css) {
+    final StringBuilder out = new StringBuilder(css.length());
+    final int length = css.length();
+    boolean space = false;
+    int i = 0;
+    while (i < length) {
+      final char c = css.charAt(i);
+      if (c == '/' && i + 1 < length && css.charAt(i + 1) == '*') {
+        final int end = css.indexOf("*/", i + 2);
+        final int next = end < 0 ? length : end + 2;
+        if (i + 2 < length && css.charAt(i + 2) == '!') {
+          out.append(css, i, next);
+        } else {
+          // A comment separates what is around it like whitespace does
+          space = true;
+        }
+        i = next;
+        continue;
+      } else if (isSpace(c)) {
+        space = true;
+        i++;
+        continue;
+      }
+      final int last = out.length() - 1;
+      if (space && last >= 0 && ",;:{}>/".indexOf(out.charAt(last)) < 0 && ",;{}>".indexOf(c) < 0) {
+        out.append(' ');
+      }
+      space = false;
+      if (c == '"' || c == '\'') {
+        i = copyString(css, i, out);
+      } else {
+        if (c == '}' && last >= 0 && out.charAt(last) == ';') {
+          out.setLength(last);
+        }
+        out.append(c);
+        i++;
+      }
+    }
+    return out.toString();
+  }
+
+  static String minifyJson(final String json) {
+    final StringBuilder out = new StringBuilder(json.length());
+    int i = 0;
+    while (i < json.length()) {
+      final char c = json.charAt(i);
+      if (c == '"') {
+        i = copyString(json, i, out);
+      } else {
+        if (!isSpace(c)) {
+          out.append(c);
+        }
+        i++;
+      }
+    }
+    return out.toString();
+  }
+
+  /** Copies a quoted string with its escapes, up to its closing quote or the end of the line. */
+  private static int copyString(final String text, final int start, final StringBuilder out) {
+    final char quote = text.charAt(start);
+    int i = start + 1;
+    while (i < text.length()) {
+      final char c = text.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == quote || c == '\n') {
+        i++;
+        break;
+      } else {
+        i++;
+      }
+    }
+    final int end = Math.min(i, text.length());
+    out.append(text, start, end);
+    return end;
+  }
+
+  static String minifyJavaScript(final String script) {
+    final StringBuilder out = new StringBuilder(script.length());
+    final JavaScriptState state = new JavaScriptState();
+    int lineStart = 0;
+    while (lineStart < script.length()) {
+      int lineEnd = script.indexOf('\n', lineStart);
+      lineEnd = lineEnd < 0 ? script.length() : lineEnd;
+      final boolean verbatimStart = state.inTemplate || state.inString;
+      state.scan(script, lineStart, lineEnd);
+      final boolean verbatimEnd = state.inTemplate || state.inString;
+      int start = lineStart;
+      int end = lineEnd;
+      if (!verbatimStart) {
+        while (start < end && isSpace(script.charAt(start))) {
+          start++;
+        }
+      }
+      if (!verbatimEnd) {
+        while (end > start && isSpace(script.charAt(end - 1))) {
+          end--;
+        }
+      }
+      if (start < end || verbatimStart || verbatimEnd) {
+        out.append(script, start, end);
+        if (lineEnd < script.length()) {
+          out.append('\n');
+        }
+      }
+      lineStart = lineEnd + 1;
+    }
+    final int last = out.length() - 1;
+    if (last >= 0 && out.charAt(last) == '\n' && !script.endsWith("\n")) {
+      out.setLength(last);
+    }
+    return out.toString();
+  }
+
+  /**
+   * What a line of JavaScript ends in: a template literal, a block comment or a continued string.
+   */
+  private static final class JavaScriptState {
+    private boolean inTemplate;
+    private boolean inComment;
+    private boolean inString;
+    private char stringQuote;
+
+    void scan(final String script, final int start, final int end) {
+      int i = start;
+      while (i < end) {
+        final char c = script.charAt(i);
+        if (inComment) {
+          if (c == '*' && i + 1 < end && script.charAt(i + 1) == '/') {
+            inComment = false;
+            i++;
+          }
+        } else if (inString || inTemplate) {
+          if (c == '\\') {
+            i++;
+          } else if (inString ? c == stringQuote : c == '`') {
+            inString = false;
+            inTemplate = false;
+          }
+        } else if (c == '/' && i + 1 < end && script.charAt(i + 1) == '/') {
+          return;
+        } else if (c == '/' && i + 1 < end && script.charAt(i + 1) == '*') {
+          inComment = true;
+          i++;
+        } else if (c == '`') {
+          inTemplate = true;
+        } else if (c == '"' || c == '\'') {
+          inString = true;
+          stringQuote = c;
+        }
+        i++;
+      }
+      // A string only goes on to the next line when the line ends with an escaping backslash
+      if (inString && i <= end) {
+        inString = false;
+      }
+    }
+  }
+
+  /** @return true for the whitespace of HTML, CSS, JSON and JavaScript source, ASCII only */
+  private static boolean isSpace(final char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+  }
+}
@@ -0,0 +1,290 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import info.hassan.jersey.statics.api.ResourceBody;
+import info.hassan.jersey.statics.api.ResourceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the cached resources of a service in a file of {@link
+ * ResourceServiceConfig#getPersistentCacheDir()}, so a restart maps them back into the cache
+ * instead of reading, transforming, hashing and compressing the base directory again. Each entry
+ * holds the size and last modified time the file had when the resource was read, and is only
+ * restored if the file still has them. The layout, all numbers big-endian, is the one of {@link
+ * BundleFormat} with the signature of the config first and the file size before each entry:
+ *
+ * <pre>
+ * int magic, int version, int index length
+ * index: UTF signature, int entry count, then for each entry
+ *   UTF key, long file size, entry as in a bundle
+ * data: the bodies, offsets are relative to the first byte after the index
+ * </pre>
+ *
+ * A file written with a different signature, i.e. a different base directory or different options
+ * changing what is cached for a file, is ignored and replaced by the next write. The restored
+ * bodies are slices of the mapped file, they cost no heap and are read by the operating system from
+ * its page cache. The data must be smaller than 2 GB, the resources past that are not written.
+ */
+final class PersistentCache {
+
+  private static final Logger log = LoggerFactory.getLogger(PersistentCache.class);
+
+  /** "JSP1" */
+  static final int MAGIC = 0x4A535031;
+
+  static final int VERSION = 2;
+  /** Magic, version and index length */
+  static final int HEADER_BYTES = 12;
+
+  private final Path file;
+  private final Path rootDir;
+  private final String signature;
+
+  /**
+   * @param rootDir absolute and normalized base directory
+   * @param config the directory of the file and the options making its signature
+   */
+  PersistentCache(final Path rootDir, final ResourceServiceConfig config) {
+    this.rootDir = rootDir;
+    this.signature = ContentHash.of(signatureOf(rootDir, config).getBytes(StandardCharsets.UTF_8));
+    // Services of different base directories can share the directory
+    final String name = ContentHash.of(rootDir.toString().getBytes(StandardCharsets.UTF_8));
+    this.file =
+        config.getPersistentCacheDir().resolve("statics-" + name.substring(0, 16) + ".cache");
+  }
+
+  /** @return everything that changes the cached result of a file, other than the file itself */
+  static String signatureOf(final Path rootDir, final ResourceServiceConfig config) {
+    final StringJoiner transformers = new StringJoiner(",");
+    for (ResourceTransformer transformer : config.getTransformers()) {
+      transformers.add(transformer.id());
+    }
+    return new StringJoiner("\n")
+        .add(rootDir.toString())
+        .add(String.valueOf(config.getStreamingThreshold()))
+        .add(String.valueOf(config.isCompressionEnabled()))
+        .add(String.valueOf(config.getCompressionMinSize()))
+        .add(new TreeSet<>(config.getCompressibleMimeTypes()).toString())
+        .add(new TreeMap<>(config.getMimeTypes()).toString())
+        .add(String.valueOf(config.isMimeTypeProbing()))
+        .add(transformers.toString())
+        .toString();
+  }
+
+  /** @return the file the resources are kept in */
+  Path getFile() {
+    return file;
+  }
+
+  /**
+   * Maps the file and checks the files of its entries in parallel.
+   *
+   * @param mimeTypes the Content-Type header value of a mime-type
+   * @param parallelism how many files are checked at the same time
+   * @return the results whose file didn't change by key, empty if there is no usable file
+   * @throws IOException if the file can't be read or is truncated
+   */
+  Map<String, ResourceResult> restore(
+      final Function<String, String> mimeTypes, final int parallelism) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return Collections.emptyMap();
+    }
+    final List<Entry> entries = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      BundleFormat.readFully(channel, header, 0);
+      header.flip();
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        log.info("Ignoring the cache file {}, it is of another version", file);
+        return Collections.emptyMap();
+      }
+      final ByteBuffer index = ByteBuffer.allocate(header.getInt());
+      BundleFormat.readFully(channel, index, HEADER_BYTES);
+      final long dataStart = HEADER_BYTES + (long) index.capacity();
+      if (channel.size() - dataStart > Integer.MAX_VALUE) {
+        throw new IOException(file + " is too big to be mapped");
+      }
+      try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(index.array()))) {
+        if (!signature.equals(in.readUTF())) {
+          log.info("Ignoring the cache file {}, it was written with other options", file);
+          return Collections.emptyMap();
+        }
+        // The mapping stays valid once the channel is closed
+        final MappedByteBuffer data =
+            channel.map(FileChannel.MapMode.READ_ONLY, dataStart, channel.size() - dataStart);
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+          entries.add(
+              new Entry(in.readUTF(), in.readLong(), BundleFormat.readEntry(in, data, mimeTypes)));
+        }
+      }
+    }
+    // The parallel stream runs on the pool it is called from
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      return pool.submit(
+              () ->
+                  entries
+                      .parallelStream()
+                      .filter(this::isCurrent)
+                      .collect(Collectors.toMap(entry -> entry.key, entry -> entry.result)))
+          .join();
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private boolean isCurrent(final Entry entry) {
+    try {
+      final BasicFileAttributes attributes =
+          Files.readAttributes(rootDir.resolve(entry.key), BasicFileAttributes.class);
+      return attributes.isRegularFile()
+          && attributes.size() == entry.size
+          && attributes.lastModifiedTime().toMillis() == entry.result.getLastModified();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Writes the results next to the file and moves them there, so a service never maps a half
+   * written file. A result is only written if its file wasn't modified since it was read.
+   *
+   * @param results in-memory results by key, as read from their file
+   * @return the number of resources written
+   * @throws IOException if the file can't be written
+   */
+  int write(final Map<String, ResourceResult> results) throws IOException {
+    final Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    final Path data = Files.createTempFile(directory, file.getFileName().toString(), ".data");
+    final Path written = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    int count = 0;
+    try {
+      final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+      try (DataOutputStream entriesOut = new DataOutputStream(entries);
+          OutputStream dataOut = new BufferedOutputStream(Files.newOutputStream(data))) {
+        long offset = 0;
+        for (Map.Entry<String, ResourceResult> result : results.entrySet()) {
+          final long size = sizeOf(result.getKey(), result.getValue());
+          if (size < 0 || offset + weighOnDisk(result.getValue()) > Integer.MAX_VALUE) {
+            continue;
+          }
+          final List<ResourceBody> bodies = retainBodies(result.getValue());
+          if (bodies == null) {
+            continue;
+          }
+          try {
+            entriesOut.writeUTF(result.getKey());
+            entriesOut.writeLong(size);
+            offset = BundleFormat.writeEntry(result.getValue(), entriesOut, dataOut, offset);
+          } finally {
+            bodies.forEach(ResourceBody::release);
+          }
+          count++;
+        }
+      }
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(written)))) {
+        final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        try (DataOutputStream indexOut = new DataOutputStream(index)) {
+          indexOut.writeUTF(signature);
+          indexOut.writeInt(count);
+          entries.writeTo(indexOut);
+        }
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(index.size());
+        index.writeTo(out);
+        Files.copy(data, out);
+      }
+      Files.move(written, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(data);
+      Files.deleteIfExists(written);
+    }
+    return count;
+  }
+
+  /** @return the size of the file of the result, or -1 if it was modified or is gone */
+  private long sizeOf(final String key, final ResourceResult result) {
+    try {
+      final BasicFileAttributes attributes =
+          Files.readAttributes(rootDir.resolve(key), BasicFileAttributes.class);
+      return attributes.isRegularFile()
+              && attributes.lastModifiedTime().toMillis() == result.getLastModified()
+          ? attributes.size()
+          : -1;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * @return the bodies of the result, each retained until it is written, or null if one was freed
+   *     since, as the result left the cache
+   */
+  private static List<ResourceBody> retainBodies(final ResourceResult result) {
+    final List<ResourceBody> bodies = new ArrayList<>();
+    bodies.add(result.getBody());
+    for (String encoding : result.getEncodings()) {
+      bodies.add(result.getEncodedBody(encoding));
+    }
+    for (int i = 0; i < bodies.size(); i++) {
+      if (!bodies.get(i).retain()) {
+        bodies.subList(0, i).forEach(ResourceBody::release);
+        return null;
+      }
+    }
+    return bodies;
+  }
+
+  private static long weighOnDisk(final ResourceResult result) {
+    long weight = result.getBody().length();
+    for (String encoding : result.getEncodings()) {
+      weight += result.getEncodedBody(encoding).length();
+    }
+    return weight;
+  }
+
+  private static final class Entry {
+    private final String key;
+    private final long size;
+    private final ResourceResult result;
+
+    private Entry(final String key, final long size, final ResourceResult result) {
+      this.key = key;
+      this.size = size;
+      this.result = result;
+    }
+  }
+}
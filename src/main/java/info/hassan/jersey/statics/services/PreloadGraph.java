@@ -0,0 +1,265 @@
+package info.hassan.jersey.statics.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The stylesheets, scripts and fonts each HTML page depends on, found by following its references
+ * and the imports and urls of its stylesheets. Documents are parsed once, pages when they are
+ * loaded and stylesheets when a page first needs them, and the Link header preloading what a page
+ * depends on is built once and kept until one of its dependencies changes.
+ */
+final class PreloadGraph {
+
+  private static final Logger log = LoggerFactory.getLogger(PreloadGraph.class);
+
+  private final Path rootDir;
+  private final Function<Path, String> mimeTypes;
+  private final int maxLinks;
+  private final long maxDocumentSize;
+  /** Gives the resource key a page points at, e.g. the alias of a resource when it is rewritten */
+  private final UnaryOperator<String> targets;
+  /** Resource keys referenced by each parsed document, guarded by this */
+  private final Map<String, List<String>> references = new HashMap<>();
+  /** Pages by resource key they depend on, guarded by this */
+  private final Map<String, Set<String>> pages = new HashMap<>();
+  /** Resource keys each page depends on, guarded by this */
+  private final Map<String, Set<String>> dependencies = new HashMap<>();
+  /** Link header value by page */
+  private final Map<String, String> links = new ConcurrentHashMap<>();
+
+  /**
+   * @param rootDir absolute and normalized base directory
+   * @param config the most links of a page and the size of the stylesheets read from disk
+   * @param mimeTypes finds the mime-type of a resource
+   * @param targets gives the resource key a page points at for a resource key
+   */
+  PreloadGraph(
+      final Path rootDir,
+      final ResourceServiceConfig config,
+      final Function<Path, String> mimeTypes,
+      final UnaryOperator<String> targets) {
+    this.rootDir = rootDir;
+    this.mimeTypes = mimeTypes;
+    this.maxLinks = config.getLinkPreloadMaxLinks();
+    this.maxDocumentSize = config.getStreamingThreshold();
+    this.targets = targets;
+  }
+
+  /**
+   * Parses a document being loaded.
+   *
+   * @param resourceKey the resource key of the document
+   * @param mimeType its mime-type
+   * @param data the document as it is on disk
+   * @return the Link header value of a page, or null if it is not one or preloads nothing
+   */
+  synchronized String parse(final String resourceKey, final String mimeType, final byte[] data) {
+    if (!ReferenceRewriter.isDocument(mimeType)) {
+      return null;
+    }
+    references.put(resourceKey, ReferenceRewriter.references(resourceKey, mimeType, data));
+    return ReferenceRewriter.isHtml(mimeType) ? link(resourceKey) : null;
+  }
+
+  /**
+   * Forgets what a resource, or every resource under a directory, referenced and builds the Link
+   * header of the pages depending on it again.
+   *
+   * @param resourceKey key of a resource that changed, was created or deleted
+   * @return the pages whose Link header changed, with their new value, null if they have none
+   */
+  synchronized Map<String, String> update(final String resourceKey) {
+    final Set<String> changed = new HashSet<>();
+    if (Files.isDirectory(rootDir.resolve(resourceKey))) {
+      final String prefix = resourceKey.isEmpty() ? "" : resourceKey + '/';
+      for (String key : pages.keySet()) {
+        if (key.startsWith(prefix)) {
+          changed.add(key);
+        }
+      }
+      references.keySet().removeIf(key -> key.startsWith(prefix));
+    } else {
+      // A page is parsed again when it is loaded, until then it preloads nothing
+      forget(resourceKey);
+      changed.add(resourceKey);
+      references.remove(resourceKey);
+    }
+    final Map<String, String> updated = new HashMap<>();
+    for (String key : changed) {
+      for (String page : new ArrayList<>(pages.getOrDefault(key, Collections.emptySet()))) {
+        if (!changed.contains(page) && references.containsKey(page)) {
+          final String before = links.get(page);
+          final String after = link(page);
+          if (!Objects.equals(before, after)) {
+            updated.put(page, after);
+          }
+        }
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * @param page resource key of a page
+   * @return its Link header value, or null if it was never loaded or preloads nothing
+   */
+  String linksOf(final String page) {
+    return links.get(page);
+  }
+
+  private String link(final String page) {
+    forget(page);
+    final Set<String> visited = new HashSet<>();
+    visited.add(page);
+    final StringJoiner header = new StringJoiner(", ");
+    final int[] count = {0};
+    visit(page, page, visited, header, count);
+    dependencies.put(page, visited);
+    for (String key : visited) {
+      pages.computeIfAbsent(key, k -> new HashSet<>()).add(page);
+    }
+    if (count[0] == 0) {
+      links.remove(page);
+      return null;
+    }
+    final String value = header.toString();
+    links.put(page, value);
+    return value;
+  }
+
+  /**
+   * Follows the references of a document, and of the stylesheets it references, in the order they
+   * appear. Every reference is a dependency of the page, even one that doesn't exist yet, so the
+   * page gets it once it is created.
+   */
+  private void visit(
+      final String page,
+      final String documentKey,
+      final Set<String> visited,
+      final StringJoiner header,
+      final int[] count) {
+    for (String reference : referencesOf(documentKey)) {
+      if (!visited.add(reference)) {
+        continue;
+      }
+      final Path resourcePath = rootDir.resolve(reference);
+      final String mimeType = mimeTypes.apply(resourcePath);
+      final String destination = destinationOf(mimeType);
+      if (destination == null || !Files.isRegularFile(resourcePath)) {
+        continue;
+      }
+      if (count[0] < maxLinks) {
+        header.add(preload(page, reference, destination, mimeType));
+        count[0]++;
+      }
+      if ("style".equals(destination)) {
+        visit(page, reference, visited, header, count);
+      }
+    }
+  }
+
+  /** Pages are parsed when they are loaded, stylesheets are read once when a page needs them. */
+  private List<String> referencesOf(final String documentKey) {
+    final List<String> known = references.get(documentKey);
+    if (known != null) {
+      return known;
+    }
+    final Path resourcePath = rootDir.resolve(documentKey);
+    List<String> found = Collections.emptyList();
+    try {
+      if (Files.size(resourcePath) <= maxDocumentSize) {
+        found =
+            ReferenceRewriter.references(
+                documentKey, mimeTypes.apply(resourcePath), Files.readAllBytes(resourcePath));
+      }
+    } catch (NoSuchFileException e) {
+      log.debug("The stylesheet {} is gone", resourcePath);
+    } catch (IOException e) {
+      log.warn("Unable to read the stylesheet : {}", resourcePath, e);
+    }
+    references.put(documentKey, found);
+    return found;
+  }
+
+  private void forget(final String page) {
+    final Set<String> keys = dependencies.remove(page);
+    if (keys != null) {
+      for (String key : keys) {
+        final Set<String> dependents = pages.get(key);
+        if (dependents != null && dependents.remove(page) && dependents.isEmpty()) {
+          pages.remove(key);
+        }
+      }
+    }
+    links.remove(page);
+  }
+
+  private String preload(
+      final String page, final String reference, final String destination, final String mimeType) {
+    final String link =
+        '<' + relativize(page, targets.apply(reference)) + ">; rel=preload; as=" + destination;
+    // Fonts are always fetched in CORS mode, the type lets browsers skip formats they can't use
+    return "font".equals(destination) ? link + "; type=\"" + mimeType + "\"; crossorigin" : link;
+  }
+
+  /**
+   * @param mimeType the mime-type of a resource
+   * @return the destination a preload of the resource has, or null if it is not preloaded
+   */
+  static String destinationOf(final String mimeType) {
+    if (mimeType == null) {
+      return null;
+    } else if ("text/css".equals(mimeType)) {
+      return "style";
+    } else if ("application/javascript".equals(mimeType) || "text/javascript".equals(mimeType)) {
+      return "script";
+    } else if (mimeType.startsWith("font/")) {
+      return "font";
+    }
+    return null;
+  }
+
+  /**
+   * Relative references are resolved against the URL of the page, so they hold wherever the statics
+   * resource is mounted.
+   *
+   * @param page resource key of the page
+   * @param resourceKey resource key of what it preloads
+   * @return the reference to the resource from the page
+   */
+  static String relativize(final String page, final String resourceKey) {
+    int common = 0;
+    for (int i = 0; i < Math.min(page.length(), resourceKey.length()); i++) {
+      if (page.charAt(i) != resourceKey.charAt(i)) {
+        break;
+      } else if (page.charAt(i) == '/') {
+        common = i + 1;
+      }
+    }
+    final StringBuilder reference = new StringBuilder();
+    for (int i = common; i < page.length(); i++) {
+      if (page.charAt(i) == '/') {
+        reference.append("../");
+      }
+    }
+    return reference.append(resourceKey, common, resourceKey.length()).toString();
+  }
+}
@@ -0,0 +1,56 @@
+package info.hassan.jersey.statics.services;
+
+import java.util.StringJoiner;
+
+/** What a cache warm-up did and how long it took. */
+public final class PreloadSummary {
+
+  /** The summary of a service that doesn't preload */
+  public static final PreloadSummary NONE = new PreloadSummary(0, 0, 0, 0);
+
+  private final int filesLoaded;
+  private final int filesSkipped;
+  private final long bytesLoaded;
+  private final long elapsedMillis;
+
+  PreloadSummary(
+      final int filesLoaded,
+      final int filesSkipped,
+      final long bytesLoaded,
+      final long elapsedMillis) {
+    this.filesLoaded = filesLoaded;
+    this.filesSkipped = filesSkipped;
+    this.bytesLoaded = bytesLoaded;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /** @return number of files put into the cache */
+  public int getFilesLoaded() {
+    return filesLoaded;
+  }
+
+  /** @return number of matching files left out, because of the byte budget or cache limits */
+  public int getFilesSkipped() {
+    return filesSkipped;
+  }
+
+  /** @return size on disk of the files put into the cache */
+  public long getBytesLoaded() {
+    return bytesLoaded;
+  }
+
+  /** @return wall clock time of the whole warm-up */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", PreloadSummary.class.getSimpleName() + "[", "]")
+        .add("filesLoaded=" + filesLoaded)
+        .add("filesSkipped=" + filesSkipped)
+        .add("bytesLoaded=" + bytesLoaded)
+        .add("elapsedMillis=" + elapsedMillis)
+        .toString();
+  }
+}
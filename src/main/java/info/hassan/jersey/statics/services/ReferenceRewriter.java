@@ -0,0 +1,190 @@
+package info.hassan.jersey.statics.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the references of an HTML or CSS document, src and href attributes, url() and @import, and
+ * rewrites them to other names. Only the file name of a reference is replaced, so relative
+ * references stay relative and any query or fragment is kept. References with a scheme,
+ * protocol-relative ones and those leaving the base directory are never touched.
+ */
+final class ReferenceRewriter {
+
+  private static final Pattern HTML_ATTRIBUTE =
+      Pattern.compile("(?i)\\b(?:src|href)\\s*=\\s*([\"'])(?<ref>[^\"'<>]+)\\1");
+  private static final Pattern CSS_URL =
+      Pattern.compile("(?i)\\burl\\(\\s*([\"']?)(?<ref>[^\"')\\s]+)\\1\\s*\\)");
+  private static final Pattern CSS_IMPORT =
+      Pattern.compile("(?i)@import\\s+([\"'])(?<ref>[^\"']+)\\1");
+
+  private static final Pattern[] HTML_REFERENCES = {HTML_ATTRIBUTE, CSS_URL};
+  private static final Pattern[] CSS_REFERENCES = {CSS_URL, CSS_IMPORT};
+
+  private ReferenceRewriter() {}
+
+  /**
+   * @param mimeType the mime-type of a resource
+   * @return true if the resource is a document whose references can be rewritten
+   */
+  static boolean isDocument(final String mimeType) {
+    return isHtml(mimeType) || "text/css".equals(mimeType);
+  }
+
+  /** @return true for an HTML document, those link pages that are requested by their name */
+  static boolean isHtml(final String mimeType) {
+    return "text/html".equals(mimeType);
+  }
+
+  /**
+   * References are matched on ISO-8859-1 text, which maps each byte to one char and back, so bytes
+   * outside the references are copied as they are whatever the charset of the document is.
+   *
+   * @param documentKey the resource key of the document, relative references are resolved from it
+   * @param mimeType the mime-type of the document, see {@link #isDocument(String)}
+   * @param data the document
+   * @param rename gets the resource key of each reference, returns the key to point at instead or
+   *     null to leave the reference as it is
+   * @return the rewritten document, or the same array if nothing was rewritten
+   */
+  static byte[] rewrite(
+      final String documentKey,
+      final String mimeType,
+      final byte[] data,
+      final UnaryOperator<String> rename) {
+    String document = new String(data, StandardCharsets.ISO_8859_1);
+    boolean rewritten = false;
+    for (Pattern pattern : isHtml(mimeType) ? HTML_REFERENCES : CSS_REFERENCES) {
+      final String next = rewrite(documentKey, document, pattern, rename);
+      if (next != null) {
+        document = next;
+        rewritten = true;
+      }
+    }
+    return rewritten ? document.getBytes(StandardCharsets.ISO_8859_1) : data;
+  }
+
+  /**
+   * @param documentKey the resource key of the document, relative references are resolved from it
+   * @param mimeType the mime-type of the document, see {@link #isDocument(String)}
+   * @param data the document
+   * @return the resource keys the document references, once each, in the order they appear
+   */
+  static List<String> references(
+      final String documentKey, final String mimeType, final byte[] data) {
+    final String document = new String(data, StandardCharsets.ISO_8859_1);
+    final TreeMap<Integer, String> byPosition = new TreeMap<>();
+    for (Pattern pattern : isHtml(mimeType) ? HTML_REFERENCES : CSS_REFERENCES) {
+      final Matcher matcher = pattern.matcher(document);
+      while (matcher.find()) {
+        final String resourceKey = resolve(documentKey, pathOf(matcher.group("ref")));
+        if (resourceKey != null) {
+          byPosition.put(matcher.start(), resourceKey);
+        }
+      }
+    }
+    return new ArrayList<>(new LinkedHashSet<>(byPosition.values()));
+  }
+
+  /** @return the rewritten document, or null if no reference was rewritten */
+  private static String rewrite(
+      final String documentKey,
+      final String document,
+      final Pattern pattern,
+      final UnaryOperator<String> rename) {
+    final Matcher matcher = pattern.matcher(document);
+    StringBuilder out = null;
+    int copied = 0;
+    while (matcher.find()) {
+      final String reference = matcher.group("ref");
+      final String renamed = rename(documentKey, reference, rename);
+      if (renamed != null) {
+        if (out == null) {
+          out = new StringBuilder(document.length() + 64);
+        }
+        out.append(document, copied, matcher.start("ref")).append(renamed);
+        copied = matcher.end("ref");
+      }
+    }
+    if (out == null) {
+      return null;
+    }
+    return out.append(document, copied, document.length()).toString();
+  }
+
+  private static String rename(
+      final String documentKey, final String reference, final UnaryOperator<String> rename) {
+    final String path = pathOf(reference);
+    final String resourceKey = resolve(documentKey, path);
+    if (resourceKey == null) {
+      return null;
+    }
+    final String renamedKey = rename.apply(resourceKey);
+    if (renamedKey == null) {
+      return null;
+    }
+    // The new name is in the same directory, only the file name of the reference changes
+    return path.substring(0, path.lastIndexOf('/') + 1)
+        + renamedKey.substring(renamedKey.lastIndexOf('/') + 1)
+        + reference.substring(path.length());
+  }
+
+  /** @return the reference without its query or fragment */
+  private static String pathOf(final String reference) {
+    for (int i = 0; i < reference.length(); i++) {
+      final char c = reference.charAt(i);
+      if (c == '?' || c == '#') {
+        return reference.substring(0, i);
+      }
+    }
+    return reference;
+  }
+
+  /**
+   * @param documentKey the resource key of the document holding the reference
+   * @param path the path of the reference, without query or fragment
+   * @return the resource key the reference points at, or null if it points outside the base
+   *     directory, has a scheme or is protocol-relative
+   */
+  static String resolve(final String documentKey, final String path) {
+    if (path.isEmpty() || path.startsWith("//") || path.endsWith("/")) {
+      return null;
+    }
+    final int colon = path.indexOf(':');
+    if (colon >= 0 && colon < slashOrEnd(path)) {
+      return null;
+    }
+    final Deque<String> segments = new ArrayDeque<>();
+    if (!path.startsWith("/")) {
+      final int lastSlash = documentKey.lastIndexOf('/');
+      if (lastSlash > 0) {
+        for (String segment : documentKey.substring(0, lastSlash).split("/", -1)) {
+          segments.addLast(segment);
+        }
+      }
+    }
+    for (String segment : path.split("/", -1)) {
+      if ("..".equals(segment)) {
+        if (segments.pollLast() == null) {
+          return null;
+        }
+      } else if (!segment.isEmpty() && !".".equals(segment)) {
+        segments.addLast(segment);
+      }
+    }
+    return segments.isEmpty() ? null : String.join("/", segments);
+  }
+
+  private static int slashOrEnd(final String path) {
+    final int slash = path.indexOf('/');
+    return slash < 0 ? path.length() : slash;
+  }
+}
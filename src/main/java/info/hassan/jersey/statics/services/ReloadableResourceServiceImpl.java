@@ -8,87 +8,232 @@ import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Map;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Keeps the cache in sync with the base directory. A dedicated thread blocks on the {@link
+ * WatchService} and drains every ready key, the changes are coalesced per path until the file
+ * system has been quiet for {@link ResourceServiceConfig#getWatchDebounceMillis()}, so a build
+ * rewriting thousands of files is applied as one batch. Each changed path is then looked at on
+ * disk: cached resources that still exist are reloaded, those that are gone are removed. When the
+ * watch service overflows, the directory that lost events is rescanned.
+ *
+ * <p>With fingerprinting enabled, a changed resource is fingerprinted again before it is reloaded,
+ * and so are the documents referencing it, see {@link #refreshFingerprint(Path)}. Only what the
+ * change affects is hashed and rewritten again, not the whole base directory. Likewise the cached
+ * pages whose preloads depend on a changed stylesheet, script or font get their new Link header,
+ * see {@link #refreshPreloadLinks(Path)}.
+ */
 public class ReloadableResourceServiceImpl extends ResourceServiceImpl implements Closeable {
 
   public static final int MAX_DEPTH = 10;
   private static final Logger log = LoggerFactory.getLogger(ReloadableResourceServiceImpl.class);
-  private static final long DEFAULT_POLL_FOR_CHANGE_IN_MILLIS = 5000L;
+  /** A steady stream of changes is still applied after this many debounce windows */
+  private static final int MAX_DEBOUNCE_WINDOWS = 10;
+
   private static final Kind<?>[] WATCH_EVENTS =
       new Kind<?>[] {ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY, OVERFLOW};
-  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
-  private WatchService watchService;
+  private final WatchService watchService;
+  private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+  private final long debounceMillis;
+  private final Thread watcher;
 
   /**
    * @param baseDir the base directory and all its subdirectories to depth = 10 to be watched
-   * @param pollForChangeInMillis polling for changes in milliseconds, min is 1000L or one second
    * @throws IOException when baseDir couldn't read or some other I/O issues
    */
-  public ReloadableResourceServiceImpl(Path baseDir, final long pollForChangeInMillis)
+  public ReloadableResourceServiceImpl(Path baseDir) throws IOException {
+    this(baseDir, ResourceServiceConfig.defaults());
+  }
+
+  /**
+   * @param baseDir the base directory and all its subdirectories to depth = 10 to be watched
+   * @param config the cache, loading and watching options
+   * @throws IOException when baseDir couldn't read or some other I/O issues
+   */
+  public ReloadableResourceServiceImpl(Path baseDir, final ResourceServiceConfig config)
       throws IOException {
-    super(baseDir);
+    super(baseDir, config);
     watchService = FileSystems.getDefault().newWatchService();
-    baseDir.register(watchService, WATCH_EVENTS);
     addDirectoryToWatchList(baseDir);
+    debounceMillis = config.getWatchDebounceMillis();
+    watcher = new Thread(this::watchForChanges, "jersey-statics-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
 
-    executor.scheduleAtFixedRate(
-        this::pollForChanges,
-        1000L,
-        pollForChangeInMillis <= 1000L ? DEFAULT_POLL_FOR_CHANGE_IN_MILLIS : pollForChangeInMillis,
-        TimeUnit.MILLISECONDS);
+  /**
+   * @param baseDir the base directory and all its subdirectories to depth = 10 to be watched
+   * @param pollForChangeInMillis not used anymore
+   * @throws IOException when baseDir couldn't read or some other I/O issues
+   * @deprecated changes are applied as they happen, use {@link
+   *     #ReloadableResourceServiceImpl(Path)}
+   */
+  @Deprecated
+  public ReloadableResourceServiceImpl(Path baseDir, final long pollForChangeInMillis)
+      throws IOException {
+    this(baseDir);
   }
 
-  private void pollForChanges() {
-    WatchKey key = watchService.poll();
-    if (key != null) {
-      for (WatchEvent<?> event : key.pollEvents()) {
-        if (key.watchable() instanceof Path && event.context() instanceof Path) {
-          final Path resourcePath =
-              Paths.get(key.watchable().toString(), event.context().toString());
-          if (resourcePath.toString().endsWith("~")) { // Still not saved
-            continue;
-          }
-          log.info("This resource {}:  is {}", resourcePath.toString(), event.kind());
-          if (event.kind().equals(ENTRY_MODIFY) && event.count() > 1) {
-            if (resourceCache.containsKey(resourcePath.toString())) {
-              log.debug("Updating cache with new data from resource: {}", resourcePath);
-              readDataFromPath(resourcePath)
-                  .ifPresent(entry -> resourceCache.replace(resourcePath.toString(), entry));
-            }
-          } else if (event.kind().equals(ENTRY_CREATE)) {
-            if (Files.isDirectory(resourcePath)) {
-              addDirectoryToWatchList(resourcePath);
-            }
-          } else if (event.kind().equals(ENTRY_DELETE)) {
-            final Map.Entry<String, byte[]> entry = resourceCache.remove(resourcePath.toString());
-            if (entry != null) {
-              log.debug("Deleted resource: {} from the cache.", resourcePath);
-            }
-          } else if (event.kind().equals(OVERFLOW)) {
-            log.debug("The event for resource : {} lost this time", resourcePath);
-          }
+  /**
+   * @param baseDir the base directory and all its subdirectories to depth = 10 to be watched
+   * @param pollForChangeInMillis not used anymore
+   * @param config the cache, loading and watching options
+   * @throws IOException when baseDir couldn't read or some other I/O issues
+   * @deprecated changes are applied as they happen, use {@link #ReloadableResourceServiceImpl(Path,
+   *     ResourceServiceConfig)}
+   */
+  @Deprecated
+  public ReloadableResourceServiceImpl(
+      Path baseDir, final long pollForChangeInMillis, final ResourceServiceConfig config)
+      throws IOException {
+    this(baseDir, config);
+  }
+
+  private void watchForChanges() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        final Set<Path> changed = new LinkedHashSet<>();
+        collectChanges(watchService.take(), changed);
+        final long deadline =
+            System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(debounceMillis * MAX_DEBOUNCE_WINDOWS);
+        WatchKey key;
+        while (System.nanoTime() - deadline < 0
+            && (key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+          collectChanges(key, changed);
         }
+        applyChanges(changed);
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      log.debug("Stopped watching: {}", baseDir);
+    }
+  }
+
+  private void collectChanges(final WatchKey key, final Set<Path> changed) {
+    if (!(key.watchable() instanceof Path)) {
       key.reset();
+      return;
+    }
+    final Path directory = (Path) key.watchable();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind().equals(OVERFLOW)) {
+        log.info("Events for the directory {} were lost, rescanning it", directory);
+        rescanDirectory(directory, changed);
+      } else if (event.context() instanceof Path) {
+        final Path resourcePath = directory.resolve((Path) event.context());
+        if (!resourcePath.toString().endsWith("~")) { // Still not saved
+          log.debug("This resource {}:  is {}", resourcePath, event.kind());
+          changed.add(resourcePath);
+        }
+      }
+    }
+    if (!key.reset()) {
+      watchedDirectories.remove(directory);
+    }
+  }
+
+  /** Marks everything in the directory, and every resource cached from it, as changed. */
+  private void rescanDirectory(final Path directory, final Set<Path> changed) {
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        changed.add(entry);
+      }
+    } catch (IOException e) {
+      log.warn("Unable to rescan the directory : {}", directory, e);
+    }
+    final String directoryKey = resourceKeyOf(directory);
+    final String prefix = directoryKey.isEmpty() ? "" : directoryKey + '/';
+    for (String resourceKey : resourceCache.keys()) {
+      if (resourceKey.startsWith(prefix) && resourceKey.indexOf('/', prefix.length()) < 0) {
+        changed.add(baseDir.resolve(resourceKey));
+      }
+    }
+  }
+
+  /** Applies a batch of coalesced changes by looking at what is on disk now. */
+  private void applyChanges(final Set<Path> changed) {
+    boolean errorPagesChanged = false;
+    for (Path resourcePath : changed) {
+      try {
+        errorPagesChanged |= isErrorPage(resourcePath);
+        applyChange(resourcePath);
+      } catch (RuntimeException e) {
+        log.warn("Unable to apply the change of resource : {}", resourcePath, e);
+      }
+    }
+    if (errorPagesChanged) {
+      renderErrorPages();
+    }
+    log.info("Applied {} changes under {}", changed.size(), baseDir);
+  }
+
+  private void applyChange(final Path resourcePath) {
+    if (Files.isDirectory(resourcePath)) {
+      if (!watchedDirectories.contains(resourcePath)) {
+        // Anything below the new directory may have been asked for before
+        negativeCache.clear();
+        addDirectoryToWatchList(resourcePath);
+        refreshFingerprint(resourcePath);
+        refreshPreloadLinks(resourcePath);
+      }
+    } else if (Files.exists(resourcePath)) {
+      negativeCache.invalidate(resourceKeyOf(resourcePath));
+      // The reload rewrites the references of a document to the aliases it has from now on
+      refreshFingerprint(resourcePath);
+      refreshPreloadLinks(resourcePath);
+      reloadCachedResource(resourcePath);
+    } else {
+      refreshFingerprint(resourcePath);
+      refreshPreloadLinks(resourcePath);
+      if (resourceCache.remove(resourceKeyOf(resourcePath)) != null) {
+        log.debug("Deleted resource: {} from the cache.", resourcePath);
+      }
+      // A deleted .gz or .br sibling changes the variants of the resource it belongs to
+      final Path siblingOwner = ResourceEncoder.getSiblingOwner(resourcePath);
+      if (siblingOwner != null) {
+        reloadCachedResource(siblingOwner);
+      }
+    }
+  }
+
+  private boolean isErrorPage(final Path resourcePath) {
+    return baseDir.equals(resourcePath.getParent())
+        && ("404.html".equals(resourcePath.getFileName().toString())
+            || "500.html".equals(resourcePath.getFileName().toString()));
+  }
+
+  private void reloadCachedResource(final Path resourcePath) {
+    final String resourceKey = resourceKeyOf(resourcePath);
+    final long start = System.nanoTime();
+    if (reloadResource(resourceKey, resourcePath)) {
+      log.debug("Updated cache with new data from resource: {}", resourcePath);
+      getMetrics().onReload(System.nanoTime() - start);
+    }
+    // A changed .gz or .br sibling changes the variants of the resource it belongs to
+    final Path siblingOwner = ResourceEncoder.getSiblingOwner(resourcePath);
+    if (siblingOwner != null) {
+      reloadCachedResource(siblingOwner);
     }
   }
 
@@ -103,7 +248,7 @@ public class ReloadableResourceServiceImpl extends ResourceServiceImpl implement
               @Override
               public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
                   throws IOException {
-                if (!dir.toString().endsWith("~")) {
+                if (!dir.toString().endsWith("~") && watchedDirectories.add(dir)) {
                   dir.register(watchService, WATCH_EVENTS);
                   log.debug("Watching directory: {}", dir);
                 }
@@ -120,7 +265,7 @@ public class ReloadableResourceServiceImpl extends ResourceServiceImpl implement
 
   @Override
   public void close() throws IOException {
+    watcher.interrupt();
     watchService.close();
-    executor.shutdownNow();
   }
 }
@@ -0,0 +1,57 @@
+package info.hassan.jersey.statics.services;
+
+import java.util.function.LongConsumer;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.cache.ResourceCache;
+import info.hassan.jersey.statics.cache.TieredResourceCache;
+import info.hassan.jersey.statics.cache.WeightedResourceCache;
+
+/**
+ * Builds the cache of a service from its config: a {@link WeightedResourceCache} on the heap and,
+ * when {@link ResourceServiceConfig#getOffHeapMaxWeight()} is set, a second tier holding the big
+ * resources in direct buffers. Identical resources share their bodies through {@link ContentBlobs},
+ * in either tier.
+ */
+final class ResourceCaches {
+
+  private ResourceCaches() {}
+
+  /**
+   * @param config the cache options
+   * @param onEviction told the weight of each result evicted from either tier
+   * @return a new, empty cache
+   */
+  static ResourceCache<String, ResourceResult> create(
+      final ResourceServiceConfig config, final LongConsumer onEviction) {
+    final ContentBlobs blobs = new ContentBlobs(config);
+    final ResourceCache<String, ResourceResult> heapTier =
+        new WeightedResourceCache<>(
+            config.getCacheMaxWeight(),
+            config.getCacheMaxEntryWeight(),
+            ResourceServiceImpl::weigh,
+            (resourceKey, evicted) -> onEviction.accept(ResourceServiceImpl.weigh(evicted)),
+            (resourceKey, removed) -> blobs.release(removed));
+    if (config.getOffHeapMaxWeight() == 0) {
+      return new SharedResourceCache(heapTier, blobs);
+    }
+    final ResourceCache<String, ResourceResult> offHeapTier =
+        new WeightedResourceCache<>(
+            config.getOffHeapMaxWeight(),
+            config.getOffHeapMaxWeight(),
+            ResourceCaches::weighOffHeap,
+            (resourceKey, evicted) -> onEviction.accept(weighOffHeap(evicted)),
+            (resourceKey, removed) -> blobs.release(removed));
+    return new SharedResourceCache(
+        new TieredResourceCache<>(heapTier, offHeapTier, blobs::isOffHeap), blobs);
+  }
+
+  /** @return the bytes a result moved off the heap holds there, all its bodies are */
+  private static long weighOffHeap(final ResourceResult result) {
+    long weight = result.getBody().length();
+    for (String encoding : result.getEncodings()) {
+      weight += result.getEncodedBody(encoding).length();
+    }
+    return weight;
+  }
+}
@@ -0,0 +1,135 @@
+package info.hassan.jersey.statics.services;
+
+import static info.hassan.jersey.statics.api.ResourceResult.BROTLI;
+import static info.hassan.jersey.statics.api.ResourceResult.GZIP;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import info.hassan.jersey.statics.api.ResourceBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the compressed variants of a resource once, when it is loaded. Sibling files with a .gz or
+ * .br extension are used as they are, otherwise a gzip variant is built for compressible
+ * mime-types. There is no brotli encoder in the JDK, so brotli is only served when a .br sibling
+ * exists on disk.
+ */
+final class ResourceEncoder {
+
+  private static final Logger log = LoggerFactory.getLogger(ResourceEncoder.class);
+  private static final Map<String, String> SIBLING_EXTENSIONS = Map.of(GZIP, ".gz", BROTLI, ".br");
+
+  private final ResourceServiceConfig config;
+
+  ResourceEncoder(final ResourceServiceConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * @param resourcePath path of the resource on disk
+   * @return the path without a .gz or .br extension if it is a compressed sibling, otherwise null
+   */
+  static Path getSiblingOwner(final Path resourcePath) {
+    final String fileName = resourcePath.toString();
+    for (String extension : SIBLING_EXTENSIONS.values()) {
+      if (fileName.endsWith(extension) && fileName.length() > extension.length()) {
+        return Paths.get(fileName.substring(0, fileName.length() - extension.length()));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A gzip variant is only built for bodies held in memory, streamed bodies only get the siblings
+   * found on disk.
+   *
+   * @param resourcePath path of the resource on disk
+   * @param mimeType mime-type of the resource
+   * @param body the data as it is on disk
+   * @return compressed variants keyed by content-coding, only those smaller than the data
+   */
+  Map<String, ResourceBody> encode(
+      final Path resourcePath, final String mimeType, final ResourceBody body) {
+    return encode(
+        mimeType,
+        body,
+        extension -> readSibling(Paths.get(resourcePath.toString() + extension), body.length()));
+  }
+
+  /**
+   * @param mimeType mime-type of the resource
+   * @param body the data of the resource
+   * @param siblings finds the compressed sibling of the resource by its extension, e.g. .gz, null
+   *     if it has none
+   * @return compressed variants keyed by content-coding, only those smaller than the data
+   */
+  Map<String, ResourceBody> encode(
+      final String mimeType,
+      final ResourceBody body,
+      final Function<String, ResourceBody> siblings) {
+    if (!config.isCompressionEnabled() || body.length() < config.getCompressionMinSize()) {
+      return Collections.emptyMap();
+    }
+    final Map<String, ResourceBody> encoded = new HashMap<>();
+    for (Map.Entry<String, String> sibling : SIBLING_EXTENSIONS.entrySet()) {
+      final ResourceBody siblingBody = siblings.apply(sibling.getValue());
+      if (siblingBody != null && siblingBody.length() < body.length()) {
+        encoded.put(sibling.getKey(), siblingBody);
+      }
+    }
+    if (!encoded.containsKey(GZIP)
+        && body.isInMemory()
+        && mimeType != null
+        && config.getCompressibleMimeTypes().contains(mimeType)) {
+      final byte[] gzipped = gzip(body.toByteArray());
+      if (gzipped.length < body.length()) {
+        encoded.put(GZIP, ResourceBody.of(gzipped));
+      }
+    }
+    return Collections.unmodifiableMap(encoded);
+  }
+
+  /** @return the sibling if it is smaller than the resource, big ones are streamed */
+  private ResourceBody readSibling(final Path siblingPath, final long resourceLength) {
+    if (Files.isRegularFile(siblingPath)) {
+      try {
+        final long size = Files.size(siblingPath);
+        if (size < resourceLength) {
+          return size > config.getStreamingThreshold()
+              ? ResourceBody.ofFile(siblingPath, size)
+              : ResourceBody.of(Files.readAllBytes(siblingPath));
+        }
+      } catch (IOException e) {
+        log.warn("Unable to read the compressed resource: {}", siblingPath, e);
+      }
+    }
+    return null;
+  }
+
+  private static byte[] gzip(final byte[] data) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2);
+    try (GZIPOutputStream gzip =
+        new GZIPOutputStream(bytes) {
+          {
+            def.setLevel(Deflater.BEST_COMPRESSION);
+          }
+        }) {
+      gzip.write(data);
+    } catch (IOException e) {
+      // Can't happen while writing to memory
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,44 @@
+package info.hassan.jersey.statics.services;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+/**
+ * Turns the names of the requested resources into the keys the services find them by. All of them
+ * go through here, as it is what keeps a request from reaching outside the served directory.
+ */
+final class ResourceKeys {
+
+  private ResourceKeys() {}
+
+  /**
+   * @param rootDir absolute and normalized directory the names are resolved against
+   * @param resourceName name of the resource as requested, leading slashes are ignored
+   * @return the key of the resource, "" for the directory itself, or null if the name is not a
+   *     valid path or points outside the directory
+   */
+  static String resourceKeyOf(final Path rootDir, final String resourceName) {
+    int start = 0;
+    while (start < resourceName.length() && resourceName.charAt(start) == '/') {
+      start++;
+    }
+    final Path resolved;
+    try {
+      resolved = rootDir.resolve(resourceName.substring(start)).normalize();
+    } catch (InvalidPathException e) {
+      return null;
+    }
+    return resolved.startsWith(rootDir) ? relativeKey(rootDir, resolved) : null;
+  }
+
+  /**
+   * @param rootDir absolute and normalized directory
+   * @param normalized absolute and normalized path under the directory
+   * @return the path relative to the directory, with / as the separator
+   */
+  static String relativeKey(final Path rootDir, final Path normalized) {
+    final String key = rootDir.relativize(normalized).toString();
+    final String separator = rootDir.getFileSystem().getSeparator();
+    return "/".equals(separator) ? key : key.replace(separator, "/");
+  }
+}
@@ -0,0 +1,121 @@
+package info.hassan.jersey.statics.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the loads of asynchronous requests off the container threads. On a JVM with virtual threads
+ * each load gets its own and at most {@link ResourceServiceConfig#getLoaderMaxConcurrency()} of
+ * them read at the same time, otherwise the loads run on a pool of that many daemon threads that
+ * stop when idle. Loads beyond the concurrency and the queue capacity are rejected right away.
+ */
+final class ResourceLoader {
+
+  private static final Logger log = LoggerFactory.getLogger(ResourceLoader.class);
+  private static final long IDLE_MILLIS = 60_000L;
+
+  private final Executor executor;
+  /** Loads running or waiting for a loader */
+  private final Semaphore admission;
+
+  private final long timeoutMillis;
+
+  ResourceLoader(final ResourceServiceConfig config) {
+    final int maxConcurrency = config.getLoaderMaxConcurrency();
+    final Executor virtualThreads =
+        config.isLoaderVirtualThreads() ? newVirtualThreadExecutor() : null;
+    this.executor =
+        virtualThreads != null
+            ? limit(virtualThreads, new Semaphore(maxConcurrency))
+            : newThreadPool(maxConcurrency);
+    this.admission = new Semaphore(maxConcurrency + config.getLoaderQueueCapacity());
+    this.timeoutMillis = config.getLoaderTimeoutMillis();
+  }
+
+  /**
+   * A load that times out keeps running and still fills the cache, only the request stops waiting.
+   *
+   * @param load reads the resource, called on a loader thread
+   * @return completes with the result of the load, or exceptionally with a {@link
+   *     RejectedExecutionException} if there is no room for it or a {@link
+   *     java.util.concurrent.TimeoutException} if it takes longer than the configured timeout
+   */
+  <T> CompletableFuture<T> submit(final Supplier<T> load) {
+    if (!admission.tryAcquire()) {
+      return CompletableFuture.failedFuture(
+          new RejectedExecutionException("Too many resources are being loaded"));
+    }
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    try {
+      executor.execute(
+          () -> {
+            try {
+              result.complete(load.get());
+            } catch (RuntimeException | Error e) {
+              result.completeExceptionally(e);
+            } finally {
+              admission.release();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      admission.release();
+      result.completeExceptionally(e);
+    }
+    return timeoutMillis > 0 ? result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS) : result;
+  }
+
+  /** The project targets Java 9, so the executor of JDK 21 is looked up by reflection. */
+  private static Executor newVirtualThreadExecutor() {
+    try {
+      final Executor executor =
+          (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      log.debug("Loading resources on virtual threads");
+      return executor;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static Executor limit(final Executor executor, final Semaphore concurrency) {
+    return runnable ->
+        executor.execute(
+            () -> {
+              concurrency.acquireUninterruptibly();
+              try {
+                runnable.run();
+              } finally {
+                concurrency.release();
+              }
+            });
+  }
+
+  private static Executor newThreadPool(final int maxConcurrency) {
+    final AtomicInteger threads = new AtomicInteger();
+    final ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(
+            maxConcurrency,
+            maxConcurrency,
+            IDLE_MILLIS,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              final Thread thread =
+                  new Thread(runnable, "jersey-statics-loader-" + threads.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+}
@@ -0,0 +1,96 @@
+package info.hassan.jersey.statics.services;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+
+/**
+ * The loads of resources that are running, by resource key, so that a resource is loaded once at a
+ * time: whoever needs it meanwhile waits for the running load instead of starting another one.
+ */
+final class ResourceLoads {
+
+  private final ConcurrentMap<String, CompletableFuture<Optional<ResourceResult>>> running =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Runs a load of the resource unless one is already running, in which case the caller waits for
+   * it and gets its result.
+   *
+   * @param resourceKey key of the resource
+   * @param load reads the resource and caches it, it should return the cached result if there is
+   *     one by the time it runs
+   * @return the result of whichever load ran
+   */
+  Optional<ResourceResult> loadOnce(
+      final String resourceKey, final Supplier<Optional<ResourceResult>> load) {
+    final CompletableFuture<Optional<ResourceResult>> flight = new CompletableFuture<>();
+    final CompletableFuture<Optional<ResourceResult>> other =
+        running.putIfAbsent(resourceKey, flight);
+    return other != null ? await(other) : run(resourceKey, flight, load);
+  }
+
+  /**
+   * Runs a load of the resource after the one already running, if any, e.g. because that one may
+   * have read data that has changed since. Whoever needs the resource meanwhile waits for this
+   * load.
+   *
+   * @param resourceKey key of the resource
+   * @param condition checked once no load is running, nothing is loaded if it is false
+   * @param load reads the resource and caches it
+   * @return the result of the load, empty if it didn't run or found nothing
+   */
+  Optional<ResourceResult> loadAfterRunning(
+      final String resourceKey,
+      final BooleanSupplier condition,
+      final Supplier<Optional<ResourceResult>> load) {
+    while (true) {
+      final CompletableFuture<Optional<ResourceResult>> other = running.get(resourceKey);
+      if (other != null) {
+        // Its failure is reported to its own caller
+        other.handle((result, error) -> result).join();
+      } else if (!condition.getAsBoolean()) {
+        return Optional.empty();
+      } else {
+        final CompletableFuture<Optional<ResourceResult>> flight = new CompletableFuture<>();
+        if (running.putIfAbsent(resourceKey, flight) == null) {
+          return run(resourceKey, flight, load);
+        }
+      }
+    }
+  }
+
+  private Optional<ResourceResult> run(
+      final String resourceKey,
+      final CompletableFuture<Optional<ResourceResult>> flight,
+      final Supplier<Optional<ResourceResult>> load) {
+    try {
+      final Optional<ResourceResult> result = load.get();
+      flight.complete(result);
+      return result;
+    } catch (RuntimeException | Error e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      running.remove(resourceKey, flight);
+    }
+  }
+
+  private static Optional<ResourceResult> await(
+      final CompletableFuture<Optional<ResourceResult>> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.file.FileVisitOption.FOLLOW_LINKS;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks the base directory of a service and loads the matching files into its cache on a fork-join
+ * pool, so the first requests after a deploy don't hit a cold disk.
+ */
+final class ResourcePreloader {
+
+  private static final Logger log = LoggerFactory.getLogger(ResourcePreloader.class);
+
+  private final ResourceServiceImpl service;
+  private final ResourceServiceConfig config;
+  private final List<PathMatcher> includes;
+  private final List<PathMatcher> excludes;
+
+  ResourcePreloader(final ResourceServiceImpl service) {
+    this.service = service;
+    this.config = service.config;
+    final FileSystem fileSystem = service.getBaseDir().getFileSystem();
+    this.includes = toMatchers(fileSystem, config.getPreloadIncludes());
+    this.excludes = toMatchers(fileSystem, config.getPreloadExcludes());
+  }
+
+  private static List<PathMatcher> toMatchers(
+      final FileSystem fileSystem, final List<String> globs) {
+    return globs.stream()
+        .map(glob -> fileSystem.getPathMatcher("glob:" + glob))
+        .collect(Collectors.toList());
+  }
+
+  /** @return completes once every matching file is loaded, never exceptionally */
+  CompletableFuture<PreloadSummary> start() {
+    final ForkJoinPool pool = new ForkJoinPool(config.getPreloadParallelism());
+    return CompletableFuture.supplyAsync(this::preload, pool)
+        .whenComplete((summary, e) -> pool.shutdown());
+  }
+
+  /** Must run on a fork-join pool, the parallel stream uses the pool it is called from. */
+  private PreloadSummary preload() {
+    final long started = System.nanoTime();
+    final List<Candidate> candidates = new ArrayList<>();
+    try {
+      findCandidates(candidates);
+    } catch (IOException e) {
+      log.warn("Unable to walk the base directory : {}", service.getBaseDir(), e);
+    }
+    final AtomicLong budget = new AtomicLong(config.getPreloadMaxBytes());
+    final LongAdder loaded = new LongAdder();
+    final LongAdder skipped = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    candidates
+        .parallelStream()
+        .forEach(
+            candidate -> {
+              // Streamed files only cost their metadata
+              final long cost =
+                  candidate.size > config.getStreamingThreshold() ? 0 : candidate.size;
+              if (budget.addAndGet(-cost) < 0) {
+                budget.addAndGet(cost);
+                skipped.increment();
+                return;
+              }
+              final String resourceKey = service.resourceKeyOf(candidate.path);
+              if (service.resourceCache.containsKey(resourceKey)) {
+                return;
+              }
+              // A request loading the resource at the same time is joined
+              service.loadOnce(
+                  resourceKey,
+                  () -> {
+                    final ResourceResult cached = service.resourceCache.get(resourceKey);
+                    if (cached != null) {
+                      return Optional.of(cached);
+                    }
+                    final Optional<ResourceResult> result = service.loadResource(candidate.path);
+                    if (result.isPresent()
+                        && service.resourceCache.put(resourceKey, result.get())) {
+                      loaded.increment();
+                      bytes.add(candidate.size);
+                    } else {
+                      budget.addAndGet(cost);
+                      skipped.increment();
+                    }
+                    return result;
+                  });
+            });
+    final PreloadSummary summary =
+        new PreloadSummary(
+            loaded.intValue(),
+            skipped.intValue(),
+            bytes.sum(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    log.info("Preloaded base directory {}: {}", service.getBaseDir(), summary);
+    return summary;
+  }
+
+  private void findCandidates(final List<Candidate> candidates) throws IOException {
+    final Path baseDir = service.getBaseDir();
+    Files.walkFileTree(
+        baseDir,
+        Set.of(FOLLOW_LINKS),
+        Integer.MAX_VALUE,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && matches(baseDir.relativize(file))) {
+              candidates.add(new Candidate(file, attrs.size()));
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            log.warn("Unable to preload : {}", file, e);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private boolean matches(final Path relativePath) {
+    for (PathMatcher exclude : excludes) {
+      if (exclude.matches(relativePath)) {
+        return false;
+      }
+    }
+    if (includes.isEmpty()) {
+      return true;
+    }
+    for (PathMatcher include : includes) {
+      if (include.matches(relativePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final class Candidate {
+    private final Path path;
+    private final long size;
+
+    private Candidate(final Path path, final long size) {
+      this.path = path;
+      this.size = size;
+    }
+  }
+}
@@ -1,25 +1,21 @@
 package info.hassan.jersey.statics.services;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.AbstractMap;
-import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
+import info.hassan.jersey.statics.api.EarlyHints;
 import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
 
 /** A service to load static resources */
 public interface ResourceService {
 
-  /** A cache to put the resources for later use */
-  ConcurrentHashMap<String, Map.Entry<String, byte[]>> resourceCache = new ConcurrentHashMap<>();
-
   /**
    * Finds a resource either from cache from from the file system
    *
@@ -29,29 +25,73 @@ public interface ResourceService {
    */
   ResourceResult getDataForResource(final String resourceName);
 
+  /**
+   * Finds a resource without blocking the calling thread on the file system, for the asynchronous
+   * resource. The stage of a cached resource is already complete. This default finds it on the
+   * calling thread, implementations with a cache override it to load misses elsewhere.
+   *
+   * @param resourceName the name of the resource to find, e.g. index.html, css/main.css
+   * @return completes with the result of {@link #getDataForResource(String)}
+   */
+  default CompletionStage<ResourceResult> getDataForResourceAsync(final String resourceName) {
+    return CompletableFuture.completedFuture(getDataForResource(resourceName));
+  }
+
   Path getBaseDir();
+
+  /**
+   * A service that warms up its cache in the background reports false until it is done, e.g. to
+   * back a readiness probe.
+   *
+   * @return true if the service is ready to serve requests at full speed
+   */
+  default boolean isReady() {
+    return true;
+  }
+
+  /** @return where the resource layer reports what it serves, ignored unless overridden */
+  default ResourceMetricsListener getMetricsListener() {
+    return ResourceMetricsListener.NONE;
+  }
+
+  /**
+   * @param resourceName the name of a page, e.g. index.html
+   * @return the Link header value of the resources the page preloads, or null if it is not known
+   */
+  default String getPreloadLinks(final String resourceName) {
+    return null;
+  }
+
+  /** @return where the Link header of a page is sent ahead of it, ignored unless overridden */
+  default EarlyHints getEarlyHints() {
+    return EarlyHints.NONE;
+  }
+
+  /** @return how the resource layer writes large bodies, right away unless overridden */
+  default TransferScheduler getTransferScheduler() {
+    return TransferScheduler.NONE;
+  }
+
   /**
-   * A utility method for getting default page from resources.
+   * A utility method for getting default page from resources. The page is read on each call, so
+   * implementations should keep the result.
    *
    * @param pageNumber e.g 404 or 500
    * @return data bytes or empty
    */
   default Optional<byte[]> getPageProvidedResources(final int pageNumber) {
-    final InputStream stream =
-        Thread.currentThread().getContextClassLoader().getResourceAsStream(pageNumber + ".html");
-    if (stream == null) {
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    if (classLoader == null) {
+      classLoader = ResourceService.class.getClassLoader();
+    }
+    try (InputStream stream = classLoader.getResourceAsStream(pageNumber + ".html")) {
+      if (stream == null) {
+        return Optional.empty();
+      }
+      return Optional.of(stream.readAllBytes());
+    } catch (IOException e) {
       return Optional.empty();
     }
-    return new BufferedReader(new InputStreamReader(stream, Charset.defaultCharset()))
-        .lines()
-        .map(String::getBytes)
-        .reduce(
-            (a, b) -> {
-              final byte[] c = new byte[a.length + b.length];
-              System.arraycopy(a, 0, c, 0, a.length);
-              System.arraycopy(b, 0, c, a.length, b.length);
-              return c;
-            });
   }
 
   /**
@@ -66,9 +106,23 @@ public interface ResourceService {
     }
     try {
       return Optional.of(
-          new AbstractMap.SimpleEntry<>(Files.probeContentType(rPath), Files.readAllBytes(rPath)));
+          new AbstractMap.SimpleEntry<>(readMimeType(rPath), Files.readAllBytes(rPath)));
     } catch (IOException e) {
       return Optional.empty();
     }
   }
+
+  /**
+   * Figures out the mime-type of a path.
+   *
+   * @param rPath resource path
+   * @return the mime-type or null if it couldn't be determined
+   */
+  default String readMimeType(final Path rPath) {
+    try {
+      return Files.probeContentType(rPath);
+    } catch (IOException e) {
+      return null;
+    }
+  }
 }
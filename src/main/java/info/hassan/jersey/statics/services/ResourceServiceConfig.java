@@ -0,0 +1,945 @@
+package info.hassan.jersey.statics.services;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import info.hassan.jersey.statics.api.EarlyHints;
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
+
+/** Tuning options for a {@link ResourceServiceImpl}, use {@link #builder()} to create one. */
+public final class ResourceServiceConfig {
+
+  public static final long DEFAULT_CACHE_MAX_WEIGHT = 128L * 1024 * 1024;
+  public static final long DEFAULT_CACHE_MAX_ENTRY_WEIGHT = 8L * 1024 * 1024;
+  public static final long DEFAULT_STREAMING_THRESHOLD = 8L * 1024 * 1024;
+  public static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+  public static final Set<String> DEFAULT_COMPRESSIBLE_MIME_TYPES =
+      Set.of(
+          "text/html",
+          "text/css",
+          "text/plain",
+          "text/xml",
+          "text/javascript",
+          "application/javascript",
+          "application/json",
+          "application/xml",
+          "image/svg+xml");
+  public static final int DEFAULT_NEGATIVE_CACHE_MAX_SIZE = 10_000;
+  public static final long DEFAULT_NEGATIVE_CACHE_TTL_MILLIS = 10_000L;
+  public static final long DEFAULT_MISS_LOG_INTERVAL_MILLIS = 1000L;
+  public static final Charset DEFAULT_TEXT_CHARSET = StandardCharsets.UTF_8;
+  public static final long DEFAULT_WATCH_DEBOUNCE_MILLIS = 100L;
+  public static final int DEFAULT_LOADER_MAX_CONCURRENCY = 32;
+  public static final int DEFAULT_LOADER_QUEUE_CAPACITY = 1000;
+  public static final long DEFAULT_LOADER_TIMEOUT_MILLIS = 5000L;
+  public static final long DEFAULT_OFF_HEAP_MIN_ENTRY_WEIGHT = 64L * 1024;
+  public static final String DEFAULT_FINGERPRINT_CACHE_CONTROL =
+      "public, max-age=31536000, immutable";
+  public static final int DEFAULT_LINK_PRELOAD_MAX_LINKS = 16;
+  public static final long DEFAULT_TRANSFORM_CACHE_MAX_WEIGHT = 16L * 1024 * 1024;
+  public static final long DEFAULT_LARGE_TRANSFER_THRESHOLD = 1024L * 1024;
+  public static final long DEFAULT_LARGE_TRANSFER_QUEUE_TIMEOUT_MILLIS = 5000L;
+
+  private final long cacheMaxWeight;
+  private final long cacheMaxEntryWeight;
+  private final long streamingThreshold;
+  private final boolean compressionEnabled;
+  private final int compressionMinSize;
+  private final Set<String> compressibleMimeTypes;
+  private final boolean preloadEnabled;
+  private final List<String> preloadIncludes;
+  private final List<String> preloadExcludes;
+  private final long preloadMaxBytes;
+  private final int preloadParallelism;
+  private final int negativeCacheMaxSize;
+  private final long negativeCacheTtlMillis;
+  private final long missLogIntervalMillis;
+  private final Charset textCharset;
+  private final ResourceMetricsListener metricsListener;
+  private final long watchDebounceMillis;
+  private final int loaderMaxConcurrency;
+  private final int loaderQueueCapacity;
+  private final long loaderTimeoutMillis;
+  private final boolean loaderVirtualThreads;
+  private final Map<String, String> mimeTypes;
+  private final boolean mimeTypeProbing;
+  private final long offHeapMaxWeight;
+  private final long offHeapMinEntryWeight;
+  private final boolean fingerprintEnabled;
+  private final boolean fingerprintRewriting;
+  private final String fingerprintCacheControl;
+  private final boolean linkPreloadEnabled;
+  private final int linkPreloadMaxLinks;
+  private final EarlyHints earlyHints;
+  private final List<ResourceTransformer> transformers;
+  private final long transformCacheMaxWeight;
+  private final Path persistentCacheDir;
+  private final long largeTransferThreshold;
+  private final int largeTransferMaxConcurrency;
+  private final long largeTransferQueueTimeoutMillis;
+  private final long transferBytesPerSecond;
+  private final long totalTransferBytesPerSecond;
+
+  private ResourceServiceConfig(final Builder builder) {
+    this.cacheMaxWeight = builder.cacheMaxWeight;
+    this.cacheMaxEntryWeight = builder.cacheMaxEntryWeight;
+    this.streamingThreshold = builder.streamingThreshold;
+    this.compressionEnabled = builder.compressionEnabled;
+    this.compressionMinSize = builder.compressionMinSize;
+    this.compressibleMimeTypes = builder.compressibleMimeTypes;
+    this.preloadEnabled = builder.preloadEnabled;
+    this.preloadIncludes = builder.preloadIncludes;
+    this.preloadExcludes = builder.preloadExcludes;
+    this.preloadMaxBytes = builder.preloadMaxBytes;
+    this.preloadParallelism = builder.preloadParallelism;
+    this.negativeCacheMaxSize = builder.negativeCacheMaxSize;
+    this.negativeCacheTtlMillis = builder.negativeCacheTtlMillis;
+    this.missLogIntervalMillis = builder.missLogIntervalMillis;
+    this.textCharset = builder.textCharset;
+    this.metricsListener = builder.metricsListener;
+    this.watchDebounceMillis = builder.watchDebounceMillis;
+    this.loaderMaxConcurrency = builder.loaderMaxConcurrency;
+    this.loaderQueueCapacity = builder.loaderQueueCapacity;
+    this.loaderTimeoutMillis = builder.loaderTimeoutMillis;
+    this.loaderVirtualThreads = builder.loaderVirtualThreads;
+    this.mimeTypes = builder.mimeTypes;
+    this.mimeTypeProbing = builder.mimeTypeProbing;
+    this.offHeapMaxWeight = builder.offHeapMaxWeight;
+    this.offHeapMinEntryWeight = builder.offHeapMinEntryWeight;
+    this.fingerprintEnabled = builder.fingerprintEnabled;
+    this.fingerprintRewriting = builder.fingerprintRewriting;
+    this.fingerprintCacheControl = builder.fingerprintCacheControl;
+    this.linkPreloadEnabled = builder.linkPreloadEnabled;
+    this.linkPreloadMaxLinks = builder.linkPreloadMaxLinks;
+    this.earlyHints = builder.earlyHints;
+    this.transformers = builder.transformers;
+    this.transformCacheMaxWeight = builder.transformCacheMaxWeight;
+    this.persistentCacheDir = builder.persistentCacheDir;
+    this.largeTransferThreshold = builder.largeTransferThreshold;
+    this.largeTransferMaxConcurrency = builder.largeTransferMaxConcurrency;
+    this.largeTransferQueueTimeoutMillis = builder.largeTransferQueueTimeoutMillis;
+    this.transferBytesPerSecond = builder.transferBytesPerSecond;
+    this.totalTransferBytesPerSecond = builder.totalTransferBytesPerSecond;
+  }
+
+  public static ResourceServiceConfig defaults() {
+    return builder().build();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** @return the maximum number of bytes held by the resource cache */
+  public long getCacheMaxWeight() {
+    return cacheMaxWeight;
+  }
+
+  /** @return resources bigger than this many bytes are never cached */
+  public long getCacheMaxEntryWeight() {
+    return cacheMaxEntryWeight;
+  }
+
+  /**
+   * @return files bigger than this many bytes are streamed from disk on each request instead of
+   *     being read into memory, only their metadata is cached
+   */
+  public long getStreamingThreshold() {
+    return streamingThreshold;
+  }
+
+  /**
+   * @return true if compressed variants are built when a resource is loaded, and sibling .gz or .br
+   *     files are picked up
+   */
+  public boolean isCompressionEnabled() {
+    return compressionEnabled;
+  }
+
+  /** @return resources smaller than this many bytes are not compressed */
+  public int getCompressionMinSize() {
+    return compressionMinSize;
+  }
+
+  /** @return the mime-types that are worth compressing */
+  public Set<String> getCompressibleMimeTypes() {
+    return compressibleMimeTypes;
+  }
+
+  /** @return true if the whole base directory is loaded into the cache when the service starts */
+  public boolean isPreloadEnabled() {
+    return preloadEnabled;
+  }
+
+  /**
+   * @return glob patterns, relative to the base directory, of the files to preload, e.g. "**.css".
+   *     All files are preloaded when empty
+   */
+  public List<String> getPreloadIncludes() {
+    return preloadIncludes;
+  }
+
+  /** @return glob patterns, relative to the base directory, of the files never to preload */
+  public List<String> getPreloadExcludes() {
+    return preloadExcludes;
+  }
+
+  /** @return preloading stops adding files once this many bytes have been loaded */
+  public long getPreloadMaxBytes() {
+    return preloadMaxBytes;
+  }
+
+  /** @return number of threads loading files in parallel while preloading */
+  public int getPreloadParallelism() {
+    return preloadParallelism;
+  }
+
+  /** @return maximum number of missing resources remembered, zero disables the negative cache */
+  public int getNegativeCacheMaxSize() {
+    return negativeCacheMaxSize;
+  }
+
+  /** @return how long a missing resource is remembered before the file system is asked again */
+  public long getNegativeCacheTtlMillis() {
+    return negativeCacheTtlMillis;
+  }
+
+  /** @return at most one missing resource is logged per this interval, the rest are counted */
+  public long getMissLogIntervalMillis() {
+    return missLogIntervalMillis;
+  }
+
+  /** @return charset added to the content type of textual resources, or null for none */
+  public Charset getTextCharset() {
+    return textCharset;
+  }
+
+  /** @return receives the events recorded by the service metrics */
+  public ResourceMetricsListener getMetricsListener() {
+    return metricsListener;
+  }
+
+  /**
+   * @return how long the file system must be quiet before the changes seen by a reloadable service
+   *     are applied together
+   */
+  public long getWatchDebounceMillis() {
+    return watchDebounceMillis;
+  }
+
+  /** @return how many resources are read from disk at the same time for asynchronous requests */
+  public int getLoaderMaxConcurrency() {
+    return loaderMaxConcurrency;
+  }
+
+  /** @return how many asynchronous loads may wait for a loader before new ones are rejected */
+  public int getLoaderQueueCapacity() {
+    return loaderQueueCapacity;
+  }
+
+  /** @return how long an asynchronous request waits for its resource, zero waits forever */
+  public long getLoaderTimeoutMillis() {
+    return loaderTimeoutMillis;
+  }
+
+  /** @return true if asynchronous loads run on virtual threads when the JVM has them */
+  public boolean isLoaderVirtualThreads() {
+    return loaderVirtualThreads;
+  }
+
+  /** @return mime-types by lower-case file extension, replacing or added to the built-in ones */
+  public Map<String, String> getMimeTypes() {
+    return mimeTypes;
+  }
+
+  /**
+   * @return true if {@link java.nio.file.Files#probeContentType(java.nio.file.Path)} is asked about
+   *     extensions the mime-types table doesn't have
+   */
+  public boolean isMimeTypeProbing() {
+    return mimeTypeProbing;
+  }
+
+  /** @return bytes of resources cached outside the heap, zero keeps them all on the heap */
+  public long getOffHeapMaxWeight() {
+    return offHeapMaxWeight;
+  }
+
+  /** @return resources of at least this many bytes are cached outside the heap */
+  public long getOffHeapMinEntryWeight() {
+    return offHeapMinEntryWeight;
+  }
+
+  /**
+   * @return true if each resource is also served under an alias with a hash of its content in the
+   *     name, e.g. css/main.3f9a1c2b.css, see {@link ResourceServiceImpl#getAssetManifest()}
+   */
+  public boolean isFingerprintEnabled() {
+    return fingerprintEnabled;
+  }
+
+  /** @return true if references in HTML and CSS resources are rewritten to the aliases */
+  public boolean isFingerprintRewriting() {
+    return fingerprintRewriting;
+  }
+
+  /** @return the Cache-Control header value of the aliases, their content never changes */
+  public String getFingerprintCacheControl() {
+    return fingerprintCacheControl;
+  }
+
+  /**
+   * @return true if HTML pages are served with a Link header preloading the stylesheets, scripts
+   *     and fonts they depend on
+   */
+  public boolean isLinkPreloadEnabled() {
+    return linkPreloadEnabled;
+  }
+
+  /** @return the most resources a page preloads, the first ones found in the page */
+  public int getLinkPreloadMaxLinks() {
+    return linkPreloadMaxLinks;
+  }
+
+  /**
+   * @return where the Link header of a page is sent as a 103 before the page, see {@link
+   *     EarlyHints}
+   */
+  public EarlyHints getEarlyHints() {
+    return earlyHints;
+  }
+
+  /**
+   * @return the transforms run in this order on each resource read from disk before it is cached,
+   *     none by default
+   */
+  public List<ResourceTransformer> getTransformers() {
+    return transformers;
+  }
+
+  /** @return max bytes of transformed resources kept by content hash, to reuse on reloads */
+  public long getTransformCacheMaxWeight() {
+    return transformCacheMaxWeight;
+  }
+
+  /**
+   * @return the directory where the cached resources are kept across restarts, see {@link
+   *     ResourceServiceImpl#persistCache()}, or null if they are not, the default
+   */
+  public Path getPersistentCacheDir() {
+    return persistentCacheDir;
+  }
+
+  /**
+   * @return bytes from which a response body is a large transfer, written through the {@link
+   *     TransferScheduler}, smaller bodies are handed to the container right away
+   */
+  public long getLargeTransferThreshold() {
+    return largeTransferThreshold;
+  }
+
+  /** @return max large transfers written at the same time, 0 for no limit, the default */
+  public int getLargeTransferMaxConcurrency() {
+    return largeTransferMaxConcurrency;
+  }
+
+  /** @return max millis a large transfer waits for its turn before a 503, 0 to wait for good */
+  public long getLargeTransferQueueTimeoutMillis() {
+    return largeTransferQueueTimeoutMillis;
+  }
+
+  /** @return max bytes per second written by each large transfer, 0 for no limit, the default */
+  public long getTransferBytesPerSecond() {
+    return transferBytesPerSecond;
+  }
+
+  /** @return max bytes per second written by all large transfers, 0 for no limit, the default */
+  public long getTotalTransferBytesPerSecond() {
+    return totalTransferBytesPerSecond;
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", ResourceServiceConfig.class.getSimpleName() + "[", "]")
+        .add("cacheMaxWeight=" + cacheMaxWeight)
+        .add("cacheMaxEntryWeight=" + cacheMaxEntryWeight)
+        .add("streamingThreshold=" + streamingThreshold)
+        .add("compressionEnabled=" + compressionEnabled)
+        .add("compressionMinSize=" + compressionMinSize)
+        .add("compressibleMimeTypes=" + compressibleMimeTypes)
+        .add("preloadEnabled=" + preloadEnabled)
+        .add("preloadIncludes=" + preloadIncludes)
+        .add("preloadExcludes=" + preloadExcludes)
+        .add("preloadMaxBytes=" + preloadMaxBytes)
+        .add("preloadParallelism=" + preloadParallelism)
+        .add("negativeCacheMaxSize=" + negativeCacheMaxSize)
+        .add("negativeCacheTtlMillis=" + negativeCacheTtlMillis)
+        .add("missLogIntervalMillis=" + missLogIntervalMillis)
+        .add("textCharset=" + textCharset)
+        .add("metricsListener=" + metricsListener)
+        .add("watchDebounceMillis=" + watchDebounceMillis)
+        .add("loaderMaxConcurrency=" + loaderMaxConcurrency)
+        .add("loaderQueueCapacity=" + loaderQueueCapacity)
+        .add("loaderTimeoutMillis=" + loaderTimeoutMillis)
+        .add("loaderVirtualThreads=" + loaderVirtualThreads)
+        .add("mimeTypes=" + mimeTypes)
+        .add("mimeTypeProbing=" + mimeTypeProbing)
+        .add("offHeapMaxWeight=" + offHeapMaxWeight)
+        .add("offHeapMinEntryWeight=" + offHeapMinEntryWeight)
+        .add("fingerprintEnabled=" + fingerprintEnabled)
+        .add("fingerprintRewriting=" + fingerprintRewriting)
+        .add("fingerprintCacheControl='" + fingerprintCacheControl + "'")
+        .add("linkPreloadEnabled=" + linkPreloadEnabled)
+        .add("linkPreloadMaxLinks=" + linkPreloadMaxLinks)
+        .add("earlyHints=" + earlyHints)
+        .add("transformers=" + transformers.size())
+        .add("transformCacheMaxWeight=" + transformCacheMaxWeight)
+        .add("persistentCacheDir=" + persistentCacheDir)
+        .add("largeTransferThreshold=" + largeTransferThreshold)
+        .add("largeTransferMaxConcurrency=" + largeTransferMaxConcurrency)
+        .add("largeTransferQueueTimeoutMillis=" + largeTransferQueueTimeoutMillis)
+        .add("transferBytesPerSecond=" + transferBytesPerSecond)
+        .add("totalTransferBytesPerSecond=" + totalTransferBytesPerSecond)
+        .toString();
+  }
+
+  public static final class Builder {
+    private long cacheMaxWeight = DEFAULT_CACHE_MAX_WEIGHT;
+    private long cacheMaxEntryWeight = DEFAULT_CACHE_MAX_ENTRY_WEIGHT;
+    private long streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+    private boolean compressionEnabled = true;
+    private int compressionMinSize = DEFAULT_COMPRESSION_MIN_SIZE;
+    private Set<String> compressibleMimeTypes = DEFAULT_COMPRESSIBLE_MIME_TYPES;
+    private boolean preloadEnabled;
+    private List<String> preloadIncludes = Collections.emptyList();
+    private List<String> preloadExcludes = Collections.emptyList();
+    private long preloadMaxBytes = DEFAULT_CACHE_MAX_WEIGHT;
+    private int preloadParallelism = Runtime.getRuntime().availableProcessors();
+    private int negativeCacheMaxSize = DEFAULT_NEGATIVE_CACHE_MAX_SIZE;
+    private long negativeCacheTtlMillis = DEFAULT_NEGATIVE_CACHE_TTL_MILLIS;
+    private long missLogIntervalMillis = DEFAULT_MISS_LOG_INTERVAL_MILLIS;
+    private Charset textCharset = DEFAULT_TEXT_CHARSET;
+    private ResourceMetricsListener metricsListener = ResourceMetricsListener.NONE;
+    private long watchDebounceMillis = DEFAULT_WATCH_DEBOUNCE_MILLIS;
+    private int loaderMaxConcurrency = DEFAULT_LOADER_MAX_CONCURRENCY;
+    private int loaderQueueCapacity = DEFAULT_LOADER_QUEUE_CAPACITY;
+    private long loaderTimeoutMillis = DEFAULT_LOADER_TIMEOUT_MILLIS;
+    private boolean loaderVirtualThreads = true;
+    private Map<String, String> mimeTypes = Collections.emptyMap();
+    private boolean mimeTypeProbing;
+    private long offHeapMaxWeight;
+    private long offHeapMinEntryWeight = DEFAULT_OFF_HEAP_MIN_ENTRY_WEIGHT;
+    private boolean fingerprintEnabled;
+    private boolean fingerprintRewriting;
+    private String fingerprintCacheControl = DEFAULT_FINGERPRINT_CACHE_CONTROL;
+    private boolean linkPreloadEnabled;
+    private int linkPreloadMaxLinks = DEFAULT_LINK_PRELOAD_MAX_LINKS;
+    private EarlyHints earlyHints = EarlyHints.NONE;
+    private List<ResourceTransformer> transformers = Collections.emptyList();
+    private long transformCacheMaxWeight = DEFAULT_TRANSFORM_CACHE_MAX_WEIGHT;
+    private Path persistentCacheDir;
+    private long largeTransferThreshold = DEFAULT_LARGE_TRANSFER_THRESHOLD;
+    private int largeTransferMaxConcurrency;
+    private long largeTransferQueueTimeoutMillis = DEFAULT_LARGE_TRANSFER_QUEUE_TIMEOUT_MILLIS;
+    private long transferBytesPerSecond;
+    private long totalTransferBytesPerSecond;
+
+    private Builder() {}
+
+    /**
+     * @param cacheMaxWeight maximum number of bytes held by the resource cache
+     * @return this builder
+     */
+    public Builder cacheMaxWeight(final long cacheMaxWeight) {
+      if (cacheMaxWeight < 0) {
+        throw new IllegalArgumentException("Cache max weight must not be negative");
+      }
+      this.cacheMaxWeight = cacheMaxWeight;
+      return this;
+    }
+
+    /**
+     * @param cacheMaxEntryWeight resources bigger than this many bytes are never cached
+     * @return this builder
+     */
+    public Builder cacheMaxEntryWeight(final long cacheMaxEntryWeight) {
+      if (cacheMaxEntryWeight < 0) {
+        throw new IllegalArgumentException("Cache max entry weight must not be negative");
+      }
+      this.cacheMaxEntryWeight = cacheMaxEntryWeight;
+      return this;
+    }
+
+    /**
+     * @param streamingThreshold files bigger than this many bytes are streamed from disk
+     * @return this builder
+     */
+    public Builder streamingThreshold(final long streamingThreshold) {
+      if (streamingThreshold < 0) {
+        throw new IllegalArgumentException("Streaming threshold must not be negative");
+      }
+      this.streamingThreshold = streamingThreshold;
+      return this;
+    }
+
+    /**
+     * @param compressionEnabled whether to build and serve gzip and brotli variants
+     * @return this builder
+     */
+    public Builder compressionEnabled(final boolean compressionEnabled) {
+      this.compressionEnabled = compressionEnabled;
+      return this;
+    }
+
+    /**
+     * @param compressionMinSize resources smaller than this many bytes are not compressed
+     * @return this builder
+     */
+    public Builder compressionMinSize(final int compressionMinSize) {
+      if (compressionMinSize < 0) {
+        throw new IllegalArgumentException("Compression min size must not be negative");
+      }
+      this.compressionMinSize = compressionMinSize;
+      return this;
+    }
+
+    /**
+     * @param compressibleMimeTypes the mime-types that are worth compressing
+     * @return this builder
+     */
+    public Builder compressibleMimeTypes(final Collection<String> compressibleMimeTypes) {
+      if (compressibleMimeTypes == null) {
+        throw new IllegalArgumentException("Compressible mime-types must not be null");
+      }
+      this.compressibleMimeTypes =
+          Collections.unmodifiableSet(new HashSet<>(compressibleMimeTypes));
+      return this;
+    }
+
+    /**
+     * @param preloadEnabled whether to load the whole base directory into the cache at start
+     * @return this builder
+     */
+    public Builder preloadEnabled(final boolean preloadEnabled) {
+      this.preloadEnabled = preloadEnabled;
+      return this;
+    }
+
+    /**
+     * @param preloadIncludes glob patterns, relative to the base directory, of the files to
+     *     preload, e.g. "**.css"
+     * @return this builder
+     */
+    public Builder preloadIncludes(final List<String> preloadIncludes) {
+      if (preloadIncludes == null) {
+        throw new IllegalArgumentException("Preload includes must not be null");
+      }
+      this.preloadIncludes = Collections.unmodifiableList(new ArrayList<>(preloadIncludes));
+      return this;
+    }
+
+    /**
+     * @param preloadExcludes glob patterns, relative to the base directory, of the files never to
+     *     preload, e.g. "img/**"
+     * @return this builder
+     */
+    public Builder preloadExcludes(final List<String> preloadExcludes) {
+      if (preloadExcludes == null) {
+        throw new IllegalArgumentException("Preload excludes must not be null");
+      }
+      this.preloadExcludes = Collections.unmodifiableList(new ArrayList<>(preloadExcludes));
+      return this;
+    }
+
+    /**
+     * @param preloadMaxBytes budget of bytes to load while preloading
+     * @return this builder
+     */
+    public Builder preloadMaxBytes(final long preloadMaxBytes) {
+      if (preloadMaxBytes < 0) {
+        throw new IllegalArgumentException("Preload max bytes must not be negative");
+      }
+      this.preloadMaxBytes = preloadMaxBytes;
+      return this;
+    }
+
+    /**
+     * @param preloadParallelism number of threads loading files in parallel while preloading
+     * @return this builder
+     */
+    public Builder preloadParallelism(final int preloadParallelism) {
+      if (preloadParallelism < 1) {
+        throw new IllegalArgumentException("Preload parallelism must be at least 1");
+      }
+      this.preloadParallelism = preloadParallelism;
+      return this;
+    }
+
+    /**
+     * @param negativeCacheMaxSize maximum number of missing resources remembered, zero disables the
+     *     negative cache
+     * @return this builder
+     */
+    public Builder negativeCacheMaxSize(final int negativeCacheMaxSize) {
+      if (negativeCacheMaxSize < 0) {
+        throw new IllegalArgumentException("Negative cache max size must not be negative");
+      }
+      this.negativeCacheMaxSize = negativeCacheMaxSize;
+      return this;
+    }
+
+    /**
+     * @param negativeCacheTtlMillis how long a missing resource is remembered
+     * @return this builder
+     */
+    public Builder negativeCacheTtlMillis(final long negativeCacheTtlMillis) {
+      if (negativeCacheTtlMillis < 0) {
+        throw new IllegalArgumentException("Negative cache ttl must not be negative");
+      }
+      this.negativeCacheTtlMillis = negativeCacheTtlMillis;
+      return this;
+    }
+
+    /**
+     * @param missLogIntervalMillis at most one missing resource is logged per this interval
+     * @return this builder
+     */
+    public Builder missLogIntervalMillis(final long missLogIntervalMillis) {
+      if (missLogIntervalMillis < 0) {
+        throw new IllegalArgumentException("Miss log interval must not be negative");
+      }
+      this.missLogIntervalMillis = missLogIntervalMillis;
+      return this;
+    }
+
+    /**
+     * @param textCharset charset the textual resources are written in, it is added to their content
+     *     type, null leaves it to the client to guess
+     * @return this builder
+     */
+    public Builder textCharset(final Charset textCharset) {
+      this.textCharset = textCharset;
+      return this;
+    }
+
+    /**
+     * @param metricsListener receives every event recorded by the service metrics, e.g. to feed
+     *     another metrics registry
+     * @return this builder
+     */
+    public Builder metricsListener(final ResourceMetricsListener metricsListener) {
+      if (metricsListener == null) {
+        throw new IllegalArgumentException("Metrics listener must not be null");
+      }
+      this.metricsListener = metricsListener;
+      return this;
+    }
+
+    /**
+     * @param watchDebounceMillis how long the file system must be quiet before the changes seen by
+     *     a reloadable service are applied together, zero applies them as they come
+     * @return this builder
+     */
+    public Builder watchDebounceMillis(final long watchDebounceMillis) {
+      if (watchDebounceMillis < 0) {
+        throw new IllegalArgumentException("Watch debounce must not be negative");
+      }
+      this.watchDebounceMillis = watchDebounceMillis;
+      return this;
+    }
+
+    /**
+     * @param loaderMaxConcurrency how many resources are read from disk at the same time for
+     *     asynchronous requests
+     * @return this builder
+     */
+    public Builder loaderMaxConcurrency(final int loaderMaxConcurrency) {
+      if (loaderMaxConcurrency < 1) {
+        throw new IllegalArgumentException("Loader concurrency must be positive");
+      }
+      this.loaderMaxConcurrency = loaderMaxConcurrency;
+      return this;
+    }
+
+    /**
+     * @param loaderQueueCapacity how many asynchronous loads may wait for a loader, the ones after
+     *     that are answered with 503
+     * @return this builder
+     */
+    public Builder loaderQueueCapacity(final int loaderQueueCapacity) {
+      if (loaderQueueCapacity < 0) {
+        throw new IllegalArgumentException("Loader queue capacity must not be negative");
+      }
+      this.loaderQueueCapacity = loaderQueueCapacity;
+      return this;
+    }
+
+    /**
+     * @param loaderTimeoutMillis how long an asynchronous request waits for its resource before it
+     *     is answered with 503, zero waits forever
+     * @return this builder
+     */
+    public Builder loaderTimeoutMillis(final long loaderTimeoutMillis) {
+      if (loaderTimeoutMillis < 0) {
+        throw new IllegalArgumentException("Loader timeout must not be negative");
+      }
+      this.loaderTimeoutMillis = loaderTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * @param loaderVirtualThreads true to run asynchronous loads on virtual threads when the JVM
+     *     has them, otherwise on a bounded pool of platform threads
+     * @return this builder
+     */
+    public Builder loaderVirtualThreads(final boolean loaderVirtualThreads) {
+      this.loaderVirtualThreads = loaderVirtualThreads;
+      return this;
+    }
+
+    /**
+     * @param mimeTypes mime-types by file extension, e.g. "mjs" to "text/javascript", replacing or
+     *     added to the built-in ones
+     * @return this builder
+     */
+    public Builder mimeTypes(final Map<String, String> mimeTypes) {
+      if (mimeTypes == null) {
+        throw new IllegalArgumentException("Mime-types must not be null");
+      }
+      final Map<String, String> byExtension = new HashMap<>();
+      for (Map.Entry<String, String> mapping : mimeTypes.entrySet()) {
+        final String extension = mapping.getKey();
+        if (extension == null || extension.isEmpty() || mapping.getValue() == null) {
+          throw new IllegalArgumentException("Mime-types must map an extension to a mime-type");
+        }
+        byExtension.put(
+            (extension.charAt(0) == '.' ? extension.substring(1) : extension)
+                .toLowerCase(Locale.ROOT),
+            mapping.getValue());
+      }
+      this.mimeTypes = Collections.unmodifiableMap(byExtension);
+      return this;
+    }
+
+    /**
+     * @param mimeTypeProbing true to ask {@link
+     *     java.nio.file.Files#probeContentType(java.nio.file.Path)} about extensions the mime-types
+     *     table doesn't have, its answer depends on the host
+     * @return this builder
+     */
+    public Builder mimeTypeProbing(final boolean mimeTypeProbing) {
+      this.mimeTypeProbing = mimeTypeProbing;
+      return this;
+    }
+
+    /**
+     * @param offHeapMaxWeight bytes of resources cached in direct buffers outside the heap, zero
+     *     keeps them all on the heap, bounded by the JVM's -XX:MaxDirectMemorySize
+     * @return this builder
+     */
+    public Builder offHeapMaxWeight(final long offHeapMaxWeight) {
+      if (offHeapMaxWeight < 0) {
+        throw new IllegalArgumentException("Off-heap weight must not be negative");
+      }
+      this.offHeapMaxWeight = offHeapMaxWeight;
+      return this;
+    }
+
+    /**
+     * @param offHeapMinEntryWeight resources of at least this many bytes are cached outside the
+     *     heap, smaller ones on it
+     * @return this builder
+     */
+    public Builder offHeapMinEntryWeight(final long offHeapMinEntryWeight) {
+      if (offHeapMinEntryWeight < 0) {
+        throw new IllegalArgumentException("Off-heap entry weight must not be negative");
+      }
+      this.offHeapMinEntryWeight = offHeapMinEntryWeight;
+      return this;
+    }
+
+    /**
+     * @param fingerprintEnabled true to hash the base directory when the service starts and serve
+     *     each resource under an alias with the hash in its name as well
+     * @return this builder
+     */
+    public Builder fingerprintEnabled(final boolean fingerprintEnabled) {
+      this.fingerprintEnabled = fingerprintEnabled;
+      return this;
+    }
+
+    /**
+     * @param fingerprintRewriting true to rewrite the references in HTML and CSS resources to the
+     *     aliases of what they point at, only when fingerprinting is enabled
+     * @return this builder
+     */
+    public Builder fingerprintRewriting(final boolean fingerprintRewriting) {
+      this.fingerprintRewriting = fingerprintRewriting;
+      return this;
+    }
+
+    /**
+     * @param fingerprintCacheControl the Cache-Control header value of the aliases
+     * @return this builder
+     */
+    public Builder fingerprintCacheControl(final String fingerprintCacheControl) {
+      if (fingerprintCacheControl == null || fingerprintCacheControl.isEmpty()) {
+        throw new IllegalArgumentException("Cache-Control of the aliases must not be empty");
+      }
+      this.fingerprintCacheControl = fingerprintCacheControl;
+      return this;
+    }
+
+    /**
+     * @param linkPreloadEnabled true to parse the HTML and CSS resources when they are loaded and
+     *     serve each page with a Link header preloading what it depends on
+     * @return this builder
+     */
+    public Builder linkPreloadEnabled(final boolean linkPreloadEnabled) {
+      this.linkPreloadEnabled = linkPreloadEnabled;
+      return this;
+    }
+
+    /**
+     * @param linkPreloadMaxLinks the most resources a page preloads
+     * @return this builder
+     */
+    public Builder linkPreloadMaxLinks(final int linkPreloadMaxLinks) {
+      if (linkPreloadMaxLinks < 1) {
+        throw new IllegalArgumentException("Max preload links must be positive");
+      }
+      this.linkPreloadMaxLinks = linkPreloadMaxLinks;
+      return this;
+    }
+
+    /**
+     * @param earlyHints sends the Link header of a page as a 103 Early Hints response, only when
+     *     link preloading is enabled
+     * @return this builder
+     */
+    public Builder earlyHints(final EarlyHints earlyHints) {
+      if (earlyHints == null) {
+        throw new IllegalArgumentException("Early hints must not be null");
+      }
+      this.earlyHints = earlyHints;
+      return this;
+    }
+
+    /**
+     * @param transformers run in this order on each resource read from disk, those that apply to
+     *     its mime-type, e.g. {@link Minifiers#all()}. Resources bigger than the streaming
+     *     threshold are never transformed
+     * @return this builder
+     */
+    public Builder transformers(final List<ResourceTransformer> transformers) {
+      if (transformers == null) {
+        throw new IllegalArgumentException("Transformers must not be null");
+      }
+      this.transformers = Collections.unmodifiableList(new ArrayList<>(transformers));
+      return this;
+    }
+
+    /**
+     * @param transformCacheMaxWeight max bytes of transformed resources kept by content hash
+     * @return this builder
+     */
+    public Builder transformCacheMaxWeight(final long transformCacheMaxWeight) {
+      if (transformCacheMaxWeight < 0) {
+        throw new IllegalArgumentException("Transform cache max weight must not be negative");
+      }
+      this.transformCacheMaxWeight = transformCacheMaxWeight;
+      return this;
+    }
+
+    /**
+     * @param persistentCacheDir a directory the service may write to, created if missing, where the
+     *     cached resources are written by {@link ResourceServiceImpl#persistCache()} and restored
+     *     from on the next start if their files didn't change. Null to keep nothing, the default
+     * @return this builder
+     */
+    public Builder persistentCacheDir(final Path persistentCacheDir) {
+      this.persistentCacheDir = persistentCacheDir;
+      return this;
+    }
+
+    /**
+     * @param largeTransferThreshold bytes from which a response body is a large transfer, scheduled
+     *     and throttled by the options below
+     * @return this builder
+     */
+    public Builder largeTransferThreshold(final long largeTransferThreshold) {
+      if (largeTransferThreshold < 0) {
+        throw new IllegalArgumentException("Large transfer threshold must not be negative");
+      }
+      this.largeTransferThreshold = largeTransferThreshold;
+      return this;
+    }
+
+    /**
+     * @param largeTransferMaxConcurrency max large transfers written at the same time, the others
+     *     wait in line, 0 for no limit
+     * @return this builder
+     */
+    public Builder largeTransferMaxConcurrency(final int largeTransferMaxConcurrency) {
+      if (largeTransferMaxConcurrency < 0) {
+        throw new IllegalArgumentException("Large transfer max concurrency must not be negative");
+      }
+      this.largeTransferMaxConcurrency = largeTransferMaxConcurrency;
+      return this;
+    }
+
+    /**
+     * @param largeTransferQueueTimeoutMillis max millis a large transfer waits in line, it is then
+     *     answered with 503 Service Unavailable, 0 to wait for good
+     * @return this builder
+     */
+    public Builder largeTransferQueueTimeoutMillis(final long largeTransferQueueTimeoutMillis) {
+      if (largeTransferQueueTimeoutMillis < 0) {
+        throw new IllegalArgumentException("Large transfer queue timeout must not be negative");
+      }
+      this.largeTransferQueueTimeoutMillis = largeTransferQueueTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * @param transferBytesPerSecond max bytes per second written by each large transfer, 0 for no
+     *     limit
+     * @return this builder
+     */
+    public Builder transferBytesPerSecond(final long transferBytesPerSecond) {
+      if (transferBytesPerSecond < 0) {
+        throw new IllegalArgumentException("Transfer bytes per second must not be negative");
+      }
+      this.transferBytesPerSecond = transferBytesPerSecond;
+      return this;
+    }
+
+    /**
+     * @param totalTransferBytesPerSecond max bytes per second written by all large transfers
+     *     together, 0 for no limit
+     * @return this builder
+     */
+    public Builder totalTransferBytesPerSecond(final long totalTransferBytesPerSecond) {
+      if (totalTransferBytesPerSecond < 0) {
+        throw new IllegalArgumentException("Total transfer bytes per second must not be negative");
+      }
+      this.totalTransferBytesPerSecond = totalTransferBytesPerSecond;
+      return this;
+    }
+
+    public ResourceServiceConfig build() {
+      return new ResourceServiceConfig(this);
+    }
+  }
+}
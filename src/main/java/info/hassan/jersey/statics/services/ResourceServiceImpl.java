@@ -7,23 +7,92 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.AbstractMap;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
+import info.hassan.jersey.statics.api.EarlyHints;
+import info.hassan.jersey.statics.api.ResourceBody;
 import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.cache.NegativeCache;
+import info.hassan.jersey.statics.cache.ResourceCache;
+import info.hassan.jersey.statics.metrics.ResourceMetrics;
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This implementation is intended to be used in production environment. Any resources request and
  * served is cached for later use. If a cached resource is updated at runtime, changes will not be
- * propagated further to clients.
+ * propagated further to clients. The cache is owned by each instance and bounded by the weights
+ * given in the {@link ResourceServiceConfig}, which can also have the whole base directory
+ * preloaded in the background when the service is created.
+ *
+ * <p>Resources are cached under their name relative to the base directory, normalized and with
+ * forward slashes, which is what clients request in the common case. A cache hit is then a single
+ * lookup with the request string, without any {@link Path} being built.
+ *
+ * <p>A resource is read at most once at a time: requests missing it while it is being loaded, or
+ * reloaded, wait for that load instead of reading the file again.
+ *
+ * <p>With {@link ResourceServiceConfig#isFingerprintEnabled()}, each resource is also served under
+ * the alias the {@link AssetManifest} gives it, with a Cache-Control that lets clients keep it for
+ * good. The alias is cached as an entry of its own, which shares its bodies with the resource.
+ *
+ * <p>With {@link ResourceServiceConfig#isLinkPreloadEnabled()}, HTML pages are served with a Link
+ * header preloading the stylesheets, scripts and fonts they depend on, built by a {@link
+ * PreloadGraph} when the page is loaded.
+ *
+ * <p>Resources are read from disk through the {@link ResourceServiceConfig#getTransformers()}, e.g.
+ * minifiers, and what they read is fingerprinted, compressed and cached as transformed.
+ *
+ * <p>With {@link ResourceServiceConfig#getPersistentCacheDir()}, the cache written by {@link
+ * #persistCache()} is restored when the service is created, for the files that didn't change since,
+ * so a restart doesn't read the base directory again.
  */
 public class ResourceServiceImpl implements ResourceService {
 
   private static final Logger log = LoggerFactory.getLogger(ResourceServiceImpl.class);
+  private static final long STREAMED_BODY_WEIGHT = 256L;
+
   protected final Path baseDir;
+  /** Absolute and normalized base directory, resource keys are relative to it */
+  private final Path rootDir;
+
+  protected final ResourceServiceConfig config;
+  /** A cache to put the resources for later use */
+  protected final ResourceCache<String, ResourceResult> resourceCache;
+
+  private final MimeTypes mimeTypes;
+  private final ResourceEncoder encoder;
+  private final ResourceLoader loader;
+  private final ResourceMetrics metrics;
+  private final CompletableFuture<PreloadSummary> readiness;
+  private final ResourceTransforms transforms;
+  private final AssetManifest assetManifest;
+  private final PreloadGraph preloadGraph;
+  /** Where the cache is kept across restarts, null unless a directory is configured */
+  private final PersistentCache persistentCache;
+
+  private final TransferScheduler transferScheduler;
+  /** Loads running by resource key, joined by whoever needs the same resource meanwhile */
+  private final ResourceLoads loads = new ResourceLoads();
+  /** Resources known to be missing, so repeated misses don't hit the file system */
+  protected final NegativeCache<String> negativeCache;
+
+  private final long missLogIntervalNanos;
+  private final AtomicLong nextMissLogNanos = new AtomicLong(System.nanoTime());
+  private final LongAdder suppressedMisses = new LongAdder();
+  private volatile ResourceResult notFoundPage;
+  private volatile ResourceResult serverErrorPage;
 
   /**
    * @param baseDir {@link Path} to the base directory e.g. /var/www/html
@@ -31,46 +100,569 @@ public class ResourceServiceImpl implements ResourceService {
    *     false
    */
   public ResourceServiceImpl(Path baseDir) throws IOException {
+    this(baseDir, ResourceServiceConfig.defaults());
+  }
+
+  /**
+   * @param baseDir {@link Path} to the base directory e.g. /var/www/html
+   * @param config the cache and loading options
+   * @throws FileNotFoundException if the path {@link Files#exists(Path, LinkOption...)} returns
+   *     false
+   */
+  public ResourceServiceImpl(Path baseDir, final ResourceServiceConfig config) throws IOException {
     if (baseDir == null) {
       throw new IllegalArgumentException("Base directory path must not null");
     } else if (!Files.exists(baseDir)) {
       throw new FileNotFoundException("Base directory path must exist");
+    } else if (config == null) {
+      throw new IllegalArgumentException("Config must not be null");
     }
     this.baseDir = baseDir;
+    this.rootDir = baseDir.toAbsolutePath().normalize();
+    this.config = config;
+    this.resourceCache = createResourceCache(config);
+    this.metrics = new ResourceMetrics(resourceCache, config.getMetricsListener());
+    this.mimeTypes =
+        new MimeTypes(config.getMimeTypes(), config.isMimeTypeProbing(), config.getTextCharset());
+    this.encoder = new ResourceEncoder(config);
+    this.loader = new ResourceLoader(config);
+    this.negativeCache =
+        new NegativeCache<>(config.getNegativeCacheMaxSize(), config.getNegativeCacheTtlMillis());
+    this.missLogIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getMissLogIntervalMillis());
+    this.transforms = new ResourceTransforms(config, metrics);
+    this.transferScheduler = new TransferScheduler(config, metrics);
+    this.assetManifest = new AssetManifest(rootDir, config, this::readMimeType, transforms);
+    if (config.isFingerprintEnabled()) {
+      assetManifest.scan();
+    }
+    this.preloadGraph =
+        new PreloadGraph(rootDir, config, this::readMimeType, assetManifest::targetOf);
+    renderErrorPages();
+    this.persistentCache =
+        config.getPersistentCacheDir() == null ? null : new PersistentCache(rootDir, config);
+    if (persistentCache != null) {
+      restoreCache();
+    }
+    this.readiness =
+        config.isPreloadEnabled()
+            ? new ResourcePreloader(this).start().thenApply(this::persistPreloaded)
+            : CompletableFuture.completedFuture(PreloadSummary.NONE);
+  }
+
+  /** Puts the resources kept by the last service of the base directory back into the cache. */
+  private void restoreCache() {
+    final long start = System.nanoTime();
+    final Map<String, ResourceResult> restored;
+    try {
+      restored = persistentCache.restore(this::contentTypeOf, config.getPreloadParallelism());
+    } catch (IOException | RuntimeException e) {
+      log.warn("Unable to restore the cache from {}", persistentCache.getFile(), e);
+      return;
+    }
+    int cached = 0;
+    for (Map.Entry<String, ResourceResult> entry : restored.entrySet()) {
+      if (resourceCache.put(entry.getKey(), entry.getValue())) {
+        cached++;
+      }
+    }
+    log.info(
+        "Restored {} resources from {} in {} ms",
+        cached,
+        persistentCache.getFile(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  /** Keeps what the preload read, nothing new to keep if the cache was restored whole. */
+  private PreloadSummary persistPreloaded(final PreloadSummary summary) {
+    if (persistentCache != null && summary.getFilesLoaded() > 0) {
+      try {
+        persistCache();
+      } catch (IOException | RuntimeException e) {
+        log.warn("Unable to persist the cache to {}", persistentCache.getFile(), e);
+      }
+    }
+    return summary;
+  }
+
+  /**
+   * Creates the cache owned by this service, override to plug in a different {@link ResourceCache}.
+   *
+   * @param config the options given to this service
+   * @return a new, empty cache
+   */
+  protected ResourceCache<String, ResourceResult> createResourceCache(
+      final ResourceServiceConfig config) {
+    return ResourceCaches.create(config, weight -> metrics.onEviction(weight));
+  }
+
+  /** @return what the result costs in a cache, the bytes it holds on the heap */
+  static long weigh(final ResourceResult result) {
+    long weight = weigh(result.getBody());
+    for (String encoding : result.getEncodings()) {
+      weight += weigh(result.getEncodedBody(encoding));
+    }
+    return weight;
+  }
+
+  /** Streamed bodies only cost their metadata, they are read from disk on each request. */
+  private static long weigh(final ResourceBody body) {
+    return body.isInMemory() ? body.length() : STREAMED_BODY_WEIGHT;
   }
 
   @Override
   public ResourceResult getDataForResource(final String resourceName) {
-    final Path resourcePath = Paths.get(baseDir.toString(), resourceName);
-    final String resourceKey = resourcePath.toString();
-    if (resourceCache.containsKey(resourceKey)) {
-      return new ResourceResult(
-          200, resourceCache.get(resourceKey).getKey(), resourceCache.get(resourceKey).getValue());
+    // The hot path, requests are almost always for the key itself
+    final ResourceResult cached = resourceCache.get(resourceName);
+    if (cached != null) {
+      metrics.onCacheHit();
+      return cached;
+    }
+    // Only what is not a plain hit is timed, a hit costs no more than a counter increment
+    final long start = System.nanoTime();
+    try {
+      return lookup(resourceName);
+    } finally {
+      metrics.onLookup(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * A cached resource completes right away, anything else is found on a loader thread, see {@link
+   * ResourceServiceConfig#getLoaderMaxConcurrency()}.
+   */
+  @Override
+  public CompletionStage<ResourceResult> getDataForResourceAsync(final String resourceName) {
+    final ResourceResult cached = resourceCache.get(resourceName);
+    if (cached != null) {
+      metrics.onCacheHit();
+      return CompletableFuture.completedFuture(cached);
     }
+    return loader.submit(() -> getDataForResource(resourceName));
+  }
+
+  private ResourceResult lookup(final String resourceName) {
+    final String resourceKey = resourceKeyOf(resourceName);
+    if (resourceKey == null) {
+      logMiss(resourceName);
+      return notFound();
+    } else if (!resourceKey.equals(resourceName)) {
+      final ResourceResult aliased = resourceCache.get(resourceKey);
+      if (aliased != null) {
+        metrics.onCacheHit();
+        return aliased;
+      }
+    }
+    if (config.isFingerprintEnabled()) {
+      final String fingerprinted = assetManifest.resourceKeyOf(resourceKey);
+      if (fingerprinted != null) {
+        return lookupAlias(resourceKey, fingerprinted);
+      }
+    }
+    if (negativeCache.contains(resourceKey)) {
+      return notFound();
+    }
+    final Path resourcePath = baseDir.resolve(resourceKey);
     if (!Files.exists(resourcePath)) {
-      final String msg = String.format("Path %s doesn't exists", resourcePath);
-      log.warn(msg);
-      if ("404.html".equals(resourceName)) {
-        return new ResourceResult(
-            404, TEXT_HTML, getPageProvidedResources(404).orElse(new byte[0]));
-      } else if ("500.html".equals(resourceName)) {
-        return new ResourceResult(
-            500, TEXT_HTML, getPageProvidedResources(500).orElse(new byte[0]));
+      logMiss(resourcePath);
+      if ("404.html".equals(resourceKey)) {
+        return notFoundPage;
+      } else if ("500.html".equals(resourceKey)) {
+        return serverErrorPage;
+      } else {
+        negativeCache.add(resourceKey);
+        return notFound();
+      }
+    } else {
+      final Optional<ResourceResult> result =
+          loads.loadOnce(
+              resourceKey,
+              () -> {
+                // The load this request could have joined may have just finished
+                final ResourceResult cached = resourceCache.get(resourceKey);
+                if (cached != null) {
+                  metrics.onCacheHit();
+                  return Optional.of(cached);
+                }
+                metrics.onCacheMiss();
+                final Optional<ResourceResult> loaded = loadResource(resourcePath);
+                loaded.ifPresent(data -> resourceCache.put(resourceKey, data));
+                return loaded;
+              });
+      return result.orElseGet(() -> new ResourceResult(404));
+    }
+  }
+
+  /** Finds the resource an alias is of, it is served under the alias only if it didn't change. */
+  private ResourceResult lookupAlias(final String alias, final String resourceKey) {
+    ResourceResult result = resourceCache.get(resourceKey);
+    if (result == null) {
+      result = lookup(resourceKey);
+    } else {
+      metrics.onCacheHit();
+    }
+    if (!result.isResponseOk() || !AssetManifest.isCurrent(alias, resourceKey, result)) {
+      return notFound();
+    }
+    final ResourceResult immutable = result.withCacheControl(config.getFingerprintCacheControl());
+    resourceCache.put(alias, immutable);
+    return immutable;
+  }
+
+  /**
+   * Runs a load of the resource unless one is already running, see {@link
+   * ResourceLoads#loadOnce(String, Supplier)}.
+   */
+  final Optional<ResourceResult> loadOnce(
+      final String resourceKey, final Supplier<Optional<ResourceResult>> load) {
+    return loads.loadOnce(resourceKey, load);
+  }
+
+  /**
+   * Loads a cached resource again and replaces its entry. A load of the resource already running
+   * may have read the file before it changed, so the reload waits for it and runs after it, and
+   * requests missing the resource meanwhile wait for the reload.
+   *
+   * @param resourceKey key of the resource
+   * @param resourcePath path of the resource on disk
+   * @return true if the resource was cached and has been loaded again
+   */
+  protected final boolean reloadResource(final String resourceKey, final Path resourcePath) {
+    return loads
+        .loadAfterRunning(
+            resourceKey,
+            () -> resourceCache.containsKey(resourceKey),
+            () -> {
+              final Optional<ResourceResult> loaded = loadResource(resourcePath);
+              loaded.ifPresent(data -> resourceCache.replace(resourceKey, data));
+              return loaded;
+            })
+        .isPresent();
+  }
+
+  /**
+   * Fingerprints a resource again after it changed, was created or deleted, along with the
+   * documents referencing it when references are rewritten. The aliases that are gone leave the
+   * cache and the cached documents are loaded again with the new aliases in them. Does nothing
+   * unless fingerprinting is enabled.
+   *
+   * @param resourcePath path of the resource, or of a directory, on disk
+   */
+  protected final void refreshFingerprint(final Path resourcePath) {
+    if (!config.isFingerprintEnabled()) {
+      return;
+    }
+    final String resourceKey = resourceKeyOf(resourcePath);
+    final List<AssetManifest.Change> changes = assetManifest.update(resourceKey);
+    for (AssetManifest.Change change : changes) {
+      if (change.getOldAlias() != null) {
+        resourceCache.remove(change.getOldAlias());
+      }
+      if (!change.getResourceKey().equals(resourceKey) && change.getNewAlias() != null) {
+        reloadResource(change.getResourceKey(), baseDir.resolve(change.getResourceKey()));
+      }
+    }
+  }
+
+  /**
+   * Builds the Link header of the pages depending on a resource again after it changed, was created
+   * or deleted, and replaces it in the cached pages. Does nothing unless link preloading is
+   * enabled.
+   *
+   * @param resourcePath path of the resource, or of a directory, on disk
+   */
+  protected final void refreshPreloadLinks(final Path resourcePath) {
+    if (!config.isLinkPreloadEnabled()) {
+      return;
+    }
+    final Map<String, String> updated = preloadGraph.update(resourceKeyOf(resourcePath));
+    for (Map.Entry<String, String> page : updated.entrySet()) {
+      // Runs after any load of the page, which would have put the Link header it had
+      loads.loadAfterRunning(
+          page.getKey(),
+          () -> resourceCache.containsKey(page.getKey()),
+          () -> {
+            final ResourceResult cached = resourceCache.get(page.getKey());
+            if (cached == null) {
+              return Optional.empty();
+            }
+            final ResourceResult linked = cached.withLinks(page.getValue());
+            resourceCache.replace(page.getKey(), linked);
+            return Optional.of(linked);
+          });
+    }
+  }
+
+  private ResourceResult notFound() {
+    metrics.onNotFound();
+    return notFoundPage;
+  }
+
+  /**
+   * @param resourceName name of the resource as requested
+   * @return the cache key of the resource, or null if the name is not a valid path or points
+   *     outside the base directory
+   */
+  protected final String resourceKeyOf(final String resourceName) {
+    return ResourceKeys.resourceKeyOf(rootDir, resourceName);
+  }
+
+  /**
+   * @param resourcePath path of a resource under the base directory
+   * @return the cache key of the resource
+   */
+  protected final String resourceKeyOf(final Path resourcePath) {
+    return ResourceKeys.relativeKey(rootDir, resourcePath.toAbsolutePath().normalize());
+  }
+
+  /**
+   * @param mimeType a mime-type, may be null
+   * @return the Content-Type header value, with the configured charset for textual mime-types
+   */
+  protected String contentTypeOf(final String mimeType) {
+    return mimeTypes.contentTypeOf(mimeType);
+  }
+
+  /**
+   * Looks the extension up in the mime-types table, see {@link
+   * ResourceServiceConfig#getMimeTypes()}.
+   */
+  @Override
+  public String readMimeType(final Path rPath) {
+    return mimeTypes.of(rPath);
+  }
+
+  /**
+   * Renders the 404 and 500 pages once, from 404.html and 500.html in the base directory if they
+   * exist there, otherwise from the pages provided by this library.
+   */
+  protected final void renderErrorPages() {
+    notFoundPage = renderErrorPage(404);
+    serverErrorPage = renderErrorPage(500);
+  }
+
+  private ResourceResult renderErrorPage(final int statusCode) {
+    final Path customPage = baseDir.resolve(statusCode + ".html");
+    byte[] data = null;
+    if (Files.isRegularFile(customPage)) {
+      try {
+        data = Files.readAllBytes(customPage);
+      } catch (IOException e) {
+        log.warn("Unable to read the error page : {}", customPage, e);
+      }
+    }
+    return ErrorPages.render(this, statusCode, data, contentTypeOf(TEXT_HTML));
+  }
+
+  /** Logs at most one miss per interval, so scanners can't flood the log. */
+  private void logMiss(final Object resourcePath) {
+    if (!log.isWarnEnabled()) {
+      return;
+    }
+    final long now = System.nanoTime();
+    final long next = nextMissLogNanos.get();
+    if (now - next >= 0 && nextMissLogNanos.compareAndSet(next, now + missLogIntervalNanos)) {
+      final long suppressed = suppressedMisses.sumThenReset();
+      if (suppressed > 0) {
+        log.warn(
+            "Path {} doesn't exists, {} more missing paths since the last message",
+            resourcePath,
+            suppressed);
       } else {
-        return getDataForResource("404.html");
+        log.warn("Path {} doesn't exists", resourcePath);
       }
     } else {
-      final Optional<AbstractMap.SimpleEntry<String, byte[]>> dataWithMimeType =
-          readDataFromPath(resourcePath);
-      dataWithMimeType.ifPresent(data -> resourceCache.put(resourceKey, data));
-      return dataWithMimeType
-          .map(entry -> new ResourceResult(200, entry.getKey(), entry.getValue()))
-          .orElseGet(() -> new ResourceResult(404));
+      suppressedMisses.increment();
+    }
+  }
+
+  /**
+   * Reads a resource from disk and builds its compressed variants and validators.
+   *
+   * @param resourcePath resource path
+   * @return an Optional of the result to cache, empty if the resource couldn't be read
+   */
+  protected Optional<ResourceResult> loadResource(final Path resourcePath) {
+    final long start = System.nanoTime();
+    final Optional<ResourceResult> result = readResource(resourcePath);
+    result.ifPresent(
+        loaded -> metrics.onLoad(System.nanoTime() - start, loaded.getContentLength()));
+    return result;
+  }
+
+  private Optional<ResourceResult> readResource(final Path resourcePath) {
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(resourcePath, BasicFileAttributes.class);
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+    final long lastModified = attributes.lastModifiedTime().toMillis();
+    if (attributes.isRegularFile() && attributes.size() > config.getStreamingThreshold()) {
+      final String mimeType = readMimeType(resourcePath);
+      final ResourceBody body = ResourceBody.ofFile(resourcePath, attributes.size());
+      return Optional.of(
+          ResourceResult.builder(200)
+              .mimeType(mimeType)
+              .contentType(contentTypeOf(mimeType))
+              .body(body)
+              .encodedBodies(encoder.encode(resourcePath, mimeType, body))
+              .entityTag(fileEntityTag(lastModified, body.length()))
+              .lastModified(lastModified)
+              .build());
+    }
+    return readDataFromPath(resourcePath)
+        .map(
+            entry -> {
+              final byte[] transformed = transforms.apply(entry.getKey(), entry.getValue());
+              final byte[] data = rewriteReferences(resourcePath, entry.getKey(), transformed);
+              final String links = preloadLinksOf(resourcePath, entry.getKey(), entry.getValue());
+              final ResourceBody body = ResourceBody.of(data);
+              // The compressed siblings on disk are of the resource as it was before any change
+              final Map<String, ResourceBody> encodedBodies =
+                  data == entry.getValue()
+                      ? encoder.encode(resourcePath, entry.getKey(), body)
+                      : encoder.encode(entry.getKey(), body, extension -> null);
+              return ResourceResult.builder(200)
+                  .mimeType(entry.getKey())
+                  .contentType(contentTypeOf(entry.getKey()))
+                  .body(body)
+                  .encodedBodies(encodedBodies)
+                  .contentHash(ContentHash.of(data))
+                  .lastModified(lastModified)
+                  .links(links)
+                  .build();
+            });
+  }
+
+  private byte[] rewriteReferences(
+      final Path resourcePath, final String mimeType, final byte[] data) {
+    if (!config.isFingerprintEnabled()) {
+      return data;
     }
+    return assetManifest.rewrite(resourceKeyOf(resourcePath), mimeType, data);
+  }
+
+  private String preloadLinksOf(final Path resourcePath, final String mimeType, final byte[] data) {
+    if (!config.isLinkPreloadEnabled()) {
+      return null;
+    }
+    return preloadGraph.parse(resourceKeyOf(resourcePath), mimeType, data);
+  }
+
+  /**
+   * Hashing a huge file would mean reading it all, so its entity-tag is made from size and time.
+   *
+   * @param lastModified last modified time of the file in milliseconds since the epoch
+   * @param size bytes in the file
+   * @return the unquoted entity-tag of the file
+   */
+  static String fileEntityTag(final long lastModified, final long size) {
+    return Long.toHexString(lastModified) + '-' + Long.toHexString(size);
+  }
+
+  /**
+   * Writes the cached resources to {@link ResourceServiceConfig#getPersistentCacheDir()}, from
+   * where the next service of the same base directory restores those whose file didn't change.
+   * Called once the cache is preloaded, and meant to be called on shutdown too. Streamed resources,
+   * aliases, and documents depending on other resources, i.e. with rewritten references or a Link
+   * header, are left out and read again after a restart.
+   *
+   * @return the number of resources written, 0 if no directory is configured
+   * @throws IOException if the cache file can't be written
+   */
+  public int persistCache() throws IOException {
+    if (persistentCache == null) {
+      return 0;
+    }
+    final long start = System.nanoTime();
+    final Map<String, ResourceResult> persistable = new TreeMap<>();
+    for (String resourceKey : resourceCache.keys()) {
+      final ResourceResult result = resourceCache.get(resourceKey);
+      if (result != null && isPersistable(resourceKey, result)) {
+        persistable.put(resourceKey, result);
+      }
+    }
+    final int written = persistentCache.write(persistable);
+    log.info(
+        "Persisted {} resources to {} in {} ms",
+        written,
+        persistentCache.getFile(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    return written;
+  }
+
+  private boolean isPersistable(final String resourceKey, final ResourceResult result) {
+    if (!result.isResponseOk() || result.getContentHash() == null || result.hasLinks()) {
+      return false;
+    } else if (config.isLinkPreloadEnabled() && ReferenceRewriter.isHtml(result.getMimeType())) {
+      // The Link header of a page is only known once the page is parsed
+      return false;
+    }
+    return !config.isFingerprintEnabled()
+        || (assetManifest.resourceKeyOf(resourceKey) == null
+            && !(config.isFingerprintRewriting()
+                && ReferenceRewriter.isDocument(result.getMimeType())));
+  }
+
+  /**
+   * @return the aliases of the resources, empty unless {@link
+   *     ResourceServiceConfig#isFingerprintEnabled()}
+   */
+  public AssetManifest getAssetManifest() {
+    return assetManifest;
+  }
+
+  /** The Link header of a page is known once the page has been loaded. */
+  @Override
+  public String getPreloadLinks(final String resourceName) {
+    if (!config.isLinkPreloadEnabled()) {
+      return null;
+    }
+    final String links = preloadGraph.linksOf(resourceName);
+    if (links != null) {
+      return links;
+    }
+    final String resourceKey = resourceKeyOf(resourceName);
+    return resourceKey == null ? null : preloadGraph.linksOf(resourceKey);
+  }
+
+  @Override
+  public EarlyHints getEarlyHints() {
+    return config.getEarlyHints();
+  }
+
+  /** Large transfers are scheduled as configured, see {@link TransferScheduler}. */
+  @Override
+  public TransferScheduler getTransferScheduler() {
+    return transferScheduler;
+  }
+
+  /** @return the metrics of this service, see {@link ResourceServiceConfig#getMetricsListener()} */
+  public ResourceMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public ResourceMetricsListener getMetricsListener() {
+    return metrics;
   }
 
   @Override
   public Path getBaseDir() {
     return this.baseDir;
   }
+
+  /** @return false while the cache is being preloaded, see {@link #getReadiness()} */
+  @Override
+  public boolean isReady() {
+    return readiness.isDone();
+  }
+
+  /**
+   * @return completes with a summary once the cache is preloaded, or right away when preloading is
+   *     not enabled in the {@link ResourceServiceConfig}
+   */
+  public CompletionStage<PreloadSummary> getReadiness() {
+    return readiness;
+  }
 }
@@ -0,0 +1,34 @@
+package info.hassan.jersey.statics.services;
+
+/**
+ * Transforms a resource between the disk and the cache, e.g. to minify it, see {@link
+ * ResourceServiceConfig#getTransformers()} and {@link Minifiers}. A transform must only depend on
+ * the mime-type and the data, as its result is reused for any resource with the same content.
+ */
+public interface ResourceTransformer {
+
+  /**
+   * @param mimeType the mime-type of a resource, may be null
+   * @return true if this transform applies to resources of that mime-type
+   */
+  boolean appliesTo(String mimeType);
+
+  /**
+   * @param mimeType the mime-type of the resource
+   * @param data the resource as it is on disk, or as the previous transform left it
+   * @return the transformed resource, or the same array if nothing changed
+   */
+  byte[] transform(String mimeType, byte[] data);
+
+  /**
+   * Names this transform in the signature of the {@link
+   * ResourceServiceConfig#getPersistentCacheDir() persistent cache}, whose content is only restored
+   * by a service with the same transforms. The default, the class name, is only stable across
+   * restarts for named classes: lambdas and anonymous classes should override it.
+   *
+   * @return a name that changes whenever the output of this transform may change
+   */
+  default String id() {
+    return getClass().getName();
+  }
+}
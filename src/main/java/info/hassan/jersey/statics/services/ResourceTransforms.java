@@ -0,0 +1,108 @@
+package info.hassan.jersey.statics.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the transforms of the config, in their order, on a resource read from disk before it is
+ * cached. Results are kept by the content hash of what was read, so a resource reloaded without
+ * changes, or with the content of another one, is not transformed again. The results are bounded by
+ * {@link ResourceServiceConfig#getTransformCacheMaxWeight()}, least recently used first out.
+ */
+final class ResourceTransforms {
+
+  private static final Logger log = LoggerFactory.getLogger(ResourceTransforms.class);
+  /** Kept in place of a result that is the data itself, so the data is not held twice */
+  private static final byte[] UNCHANGED = new byte[0];
+
+  private final List<ResourceTransformer> transformers;
+  private final ResourceMetricsListener metrics;
+  private final long maxWeight;
+  /** Transformed data by mime-type and content hash, in access order, guarded by this */
+  private final Map<String, byte[]> results = new LinkedHashMap<>(16, 0.75f, true);
+  /** Bytes held by the results, guarded by this */
+  private long weight;
+
+  /**
+   * @param config the transforms and how many bytes of results to keep
+   * @param metrics told about each transform and the bytes it saved
+   */
+  ResourceTransforms(final ResourceServiceConfig config, final ResourceMetricsListener metrics) {
+    this.transformers = config.getTransformers();
+    this.metrics = metrics;
+    this.maxWeight = config.getTransformCacheMaxWeight();
+  }
+
+  /**
+   * @param mimeType the mime-type of the resource
+   * @param data the resource as it is on disk
+   * @return the transformed resource, or the same array if no transform applies or changed it
+   */
+  byte[] apply(final String mimeType, final byte[] data) {
+    final List<ResourceTransformer> applicable = applicableTo(mimeType);
+    if (applicable.isEmpty()) {
+      return data;
+    }
+    final String key = mimeType + ' ' + ContentHash.of(data);
+    final byte[] known = get(key);
+    if (known != null) {
+      final byte[] result = known == UNCHANGED ? data : known;
+      metrics.onTransformReused(data.length - result.length);
+      return result;
+    }
+    final long start = System.nanoTime();
+    byte[] result = data;
+    for (ResourceTransformer transformer : applicable) {
+      try {
+        result = transformer.transform(mimeType, result);
+      } catch (RuntimeException e) {
+        log.warn("Unable to transform a resource of {}, it is served as it is", mimeType, e);
+        result = data;
+        break;
+      }
+    }
+    metrics.onTransform(System.nanoTime() - start, data.length - result.length);
+    put(key, result == data ? UNCHANGED : result);
+    return result;
+  }
+
+  private List<ResourceTransformer> applicableTo(final String mimeType) {
+    final List<ResourceTransformer> applicable = new ArrayList<>(transformers.size());
+    for (ResourceTransformer transformer : transformers) {
+      if (transformer.appliesTo(mimeType)) {
+        applicable.add(transformer);
+      }
+    }
+    return applicable;
+  }
+
+  private synchronized byte[] get(final String key) {
+    return results.get(key);
+  }
+
+  private synchronized void put(final String key, final byte[] result) {
+    if (weigh(key, result) > maxWeight) {
+      return;
+    }
+    final byte[] replaced = results.put(key, result);
+    weight += weigh(key, result) - (replaced == null ? 0 : weigh(key, replaced));
+    final Iterator<Map.Entry<String, byte[]>> eldest = results.entrySet().iterator();
+    while (weight > maxWeight && eldest.hasNext()) {
+      final Map.Entry<String, byte[]> entry = eldest.next();
+      weight -= weigh(entry.getKey(), entry.getValue());
+      eldest.remove();
+    }
+  }
+
+  /** The key counts too, so results that are the data itself are bounded as well. */
+  private static long weigh(final String key, final byte[] result) {
+    return key.length() + (long) result.length;
+  }
+}
@@ -0,0 +1,104 @@
+package info.hassan.jersey.statics.services;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.cache.ResourceCache;
+
+/**
+ * Puts the results into a cache with the bodies of their {@link ContentBlobs blob}, the cache hands
+ * each of them back to {@link ContentBlobs#release(ResourceResult)} through its removal listener.
+ */
+final class SharedResourceCache implements ResourceCache<String, ResourceResult> {
+
+  private final ResourceCache<String, ResourceResult> cache;
+  private final ContentBlobs blobs;
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  /**
+   * @param cache the cache, its removal listener must release the results from the blobs
+   * @param blobs the bodies shared by the cached results
+   */
+  SharedResourceCache(final ResourceCache<String, ResourceResult> cache, final ContentBlobs blobs) {
+    this.cache = cache;
+    this.blobs = blobs;
+  }
+
+  @Override
+  public ResourceResult get(final String key) {
+    return cache.get(key);
+  }
+
+  @Override
+  public boolean put(final String key, final ResourceResult value) {
+    return cache.put(key, blobs.acquire(value));
+  }
+
+  /** Checks for the key first, a result is only acquired if the cache takes it. */
+  @Override
+  public boolean replace(final String key, final ResourceResult value) {
+    writeLock.lock();
+    try {
+      return cache.containsKey(key) && put(key, value);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public ResourceResult remove(final String key) {
+    writeLock.lock();
+    try {
+      return cache.remove(key);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean containsKey(final String key) {
+    return cache.containsKey(key);
+  }
+
+  @Override
+  public Set<String> keys() {
+    return cache.keys();
+  }
+
+  @Override
+  public int size() {
+    return cache.size();
+  }
+
+  @Override
+  public long weightedSize() {
+    return cache.weightedSize();
+  }
+
+  @Override
+  public long maxWeight() {
+    return cache.maxWeight();
+  }
+
+  @Override
+  public long sharedWeight() {
+    return blobs.getSharedWeight();
+  }
+
+  @Override
+  public Map<String, ResourceCache<?, ?>> tiers() {
+    return cache.tiers();
+  }
+
+  @Override
+  public void clear() {
+    writeLock.lock();
+    try {
+      cache.clear();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package info.hassan.jersey.statics.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import info.hassan.jersey.statics.api.EarlyHints;
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves a whole site from a versioned snapshot, for deployments where every file of a build must
+ * be served together, e.g. an index.html and the bundles it references. A new snapshot, of the same
+ * base directory or of a new one, is built in the background by {@link #deploy(Path)}, preloaded if
+ * the config says so, and swapped in with a single reference update. Requests never see a mix of
+ * the two. Snapshots are swapped in the order they were deployed: one whose preload finishes after
+ * that of a later deploy is dropped.
+ *
+ * <p>The snapshot that was replaced is kept for a grace period: resources the current snapshot
+ * doesn't have are served from it, so pages loaded before the swap can still get their bundles, and
+ * {@link #rollback()} can bring it back.
+ *
+ * <p>Each snapshot is a {@link ResourceServiceImpl} that loads lazily, so a snapshot of a directory
+ * rewritten in place is only consistent for what was preloaded. Deploying each build to a new
+ * directory avoids that.
+ */
+public class SnapshotResourceService implements ResourceService, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(SnapshotResourceService.class);
+
+  private final ResourceServiceConfig config;
+  private final long graceMillis;
+  private final AtomicReference<Snapshot> current = new AtomicReference<>();
+  private final AtomicReference<Snapshot> previous = new AtomicReference<>();
+  /** Builds the snapshots one at a time */
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            final Thread thread = new Thread(runnable, "jersey-statics-snapshots");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** Orders the deploys, the first snapshot is 0 */
+  private final AtomicLong deploys = new AtomicLong();
+
+  private long lastVersion;
+  /** Deploy sequence of the snapshot last swapped in, guarded by this */
+  private long lastSwapped;
+
+  /**
+   * @param baseDir {@link Path} to the base directory of the first snapshot e.g. /var/www/html
+   * @param config the options of every snapshot, with preloading enabled a snapshot is swapped in
+   *     only once it is warm
+   * @param graceMillis how long a replaced snapshot is kept, zero drops it right away
+   * @throws IOException if the first snapshot can't be created
+   */
+  public SnapshotResourceService(
+      final Path baseDir, final ResourceServiceConfig config, final long graceMillis)
+      throws IOException {
+    if (graceMillis < 0) {
+      throw new IllegalArgumentException("Grace period must not be negative");
+    }
+    this.config = config;
+    this.graceMillis = graceMillis;
+    current.set(new Snapshot(++lastVersion, new ResourceServiceImpl(baseDir, config)));
+  }
+
+  /**
+   * Builds a snapshot of the base directory in the background and swaps it in once it is ready.
+   *
+   * @param baseDir base directory of the new snapshot, may be the current one
+   * @return completes with the version of the new snapshot once it serves requests, or
+   *     exceptionally if it couldn't be created or a later deploy was swapped in first, in which
+   *     case the current one stays
+   */
+  public CompletionStage<Long> deploy(final Path baseDir) {
+    final long sequence = deploys.incrementAndGet();
+    return CompletableFuture.supplyAsync(() -> createService(baseDir), executor)
+        .thenCompose(service -> service.getReadiness().thenApply(summary -> service))
+        .thenApply(service -> swap(sequence, service));
+  }
+
+  /** @return the same as {@link #deploy(Path)} with the current base directory */
+  public CompletionStage<Long> refresh() {
+    return deploy(getBaseDir());
+  }
+
+  /**
+   * Swaps the replaced snapshot back in, if it is still within its grace period. The snapshot
+   * rolled back from then gets the grace period, so the rollback can itself be undone.
+   *
+   * @return true if a snapshot was rolled back to
+   */
+  public synchronized boolean rollback() {
+    final Snapshot rolledBackTo = previous.getAndSet(null);
+    if (rolledBackTo == null) {
+      return false;
+    }
+    retire(current.getAndSet(rolledBackTo));
+    log.info("Rolled back to snapshot {} of {}", rolledBackTo.version, rolledBackTo.baseDir());
+    return true;
+  }
+
+  private ResourceServiceImpl createService(final Path baseDir) {
+    try {
+      return new ResourceServiceImpl(baseDir, config);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private synchronized long swap(final long sequence, final ResourceServiceImpl service) {
+    if (sequence < lastSwapped) {
+      log.info("Dropped snapshot of {}, a later deploy was swapped in", service.getBaseDir());
+      throw new IllegalStateException(
+          "Snapshot of " + service.getBaseDir() + " was superseded by a later deploy");
+    }
+    lastSwapped = sequence;
+    final Snapshot next = new Snapshot(++lastVersion, service);
+    retire(current.getAndSet(next));
+    log.info("Swapped in snapshot {} of {}", next.version, next.baseDir());
+    return next.version;
+  }
+
+  private void retire(final Snapshot retired) {
+    if (graceMillis == 0) {
+      previous.set(null);
+      return;
+    }
+    previous.set(retired);
+    CompletableFuture.delayedExecutor(graceMillis, TimeUnit.MILLISECONDS)
+        .execute(
+            () -> {
+              if (previous.compareAndSet(retired, null)) {
+                log.debug("Dropped snapshot {} of {}", retired.version, retired.baseDir());
+              }
+            });
+  }
+
+  /**
+   * A resource the current snapshot doesn't have is served from the replaced one while it is within
+   * its grace period.
+   */
+  @Override
+  public ResourceResult getDataForResource(final String resourceName) {
+    final ResourceResult result = current.get().service.getDataForResource(resourceName);
+    return result.isResponseNotFound() ? fallback(resourceName, result) : result;
+  }
+
+  @Override
+  public CompletionStage<ResourceResult> getDataForResourceAsync(final String resourceName) {
+    return current
+        .get()
+        .service
+        .getDataForResourceAsync(resourceName)
+        .thenApply(result -> result.isResponseNotFound() ? fallback(resourceName, result) : result);
+  }
+
+  private ResourceResult fallback(final String resourceName, final ResourceResult notFound) {
+    final Snapshot replaced = previous.get();
+    if (replaced != null) {
+      final ResourceResult fallback = replaced.service.getDataForResource(resourceName);
+      if (fallback.isResponseOk()) {
+        return fallback;
+      }
+    }
+    return notFound;
+  }
+
+  /** @return version of the snapshot serving requests, starting at 1 and increasing by deploy */
+  public long getVersion() {
+    return current.get().version;
+  }
+
+  /** @return the base directory of the snapshot serving requests */
+  @Override
+  public Path getBaseDir() {
+    return current.get().baseDir();
+  }
+
+  @Override
+  public boolean isReady() {
+    return current.get().service.isReady();
+  }
+
+  @Override
+  public ResourceMetricsListener getMetricsListener() {
+    return current.get().service.getMetricsListener();
+  }
+
+  @Override
+  public String getPreloadLinks(final String resourceName) {
+    return current.get().service.getPreloadLinks(resourceName);
+  }
+
+  @Override
+  public EarlyHints getEarlyHints() {
+    return current.get().service.getEarlyHints();
+  }
+
+  @Override
+  public TransferScheduler getTransferScheduler() {
+    return current.get().service.getTransferScheduler();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private static final class Snapshot {
+    private final long version;
+    private final ResourceServiceImpl service;
+
+    private Snapshot(final long version, final ResourceServiceImpl service) {
+      this.version = version;
+      this.service = service;
+    }
+
+    private Path baseDir() {
+      return service.getBaseDir();
+    }
+  }
+}
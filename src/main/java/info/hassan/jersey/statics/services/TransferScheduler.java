@@ -0,0 +1,202 @@
+package info.hassan.jersey.statics.services;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
+
+/**
+ * Schedules the response bodies by size, so a few slow clients downloading big files can't hold
+ * back the small resources pages need. Bodies smaller than {@link
+ * ResourceServiceConfig#getLargeTransferThreshold()} are not scheduled at all. Large transfers take
+ * turns, at most {@link ResourceServiceConfig#getLargeTransferMaxConcurrency()} at the same time
+ * and first come first served, and are written in chunks paced to the per transfer and total
+ * throughput limits.
+ *
+ * <p>A transfer is only scheduled once the container writes its body, so responses without one,
+ * e.g. to HEAD or conditional requests, never wait.
+ */
+public final class TransferScheduler {
+
+  /** Schedules nothing and reports nothing, every transfer is written right away */
+  public static final TransferScheduler NONE =
+      new TransferScheduler(
+          ResourceServiceConfig.builder().largeTransferThreshold(Long.MAX_VALUE).build(),
+          ResourceMetricsListener.NONE);
+
+  /** Bytes written between two pauses of a throttled transfer */
+  static final int CHUNK_BYTES = 64 * 1024;
+
+  private final long largeThreshold;
+  /** Turns of the large transfers, null if they don't take turns */
+  private final Semaphore turns;
+
+  private final long queueTimeoutNanos;
+  private final long transferBytesPerSecond;
+  /** Paces all the large transfers together, null without a total limit */
+  private final Throttle total;
+
+  private final ResourceMetricsListener metrics;
+
+  /**
+   * @param config the large transfer options
+   * @param metrics told about the waits and the turns of the large transfers
+   */
+  public TransferScheduler(
+      final ResourceServiceConfig config, final ResourceMetricsListener metrics) {
+    if (config == null || metrics == null) {
+      throw new IllegalArgumentException("Config and metrics must not be null");
+    }
+    this.largeThreshold = config.getLargeTransferThreshold();
+    this.turns =
+        config.getLargeTransferMaxConcurrency() == 0
+            ? null
+            : new Semaphore(config.getLargeTransferMaxConcurrency(), true);
+    this.queueTimeoutNanos =
+        TimeUnit.MILLISECONDS.toNanos(config.getLargeTransferQueueTimeoutMillis());
+    this.transferBytesPerSecond = config.getTransferBytesPerSecond();
+    this.total =
+        config.getTotalTransferBytesPerSecond() == 0
+            ? null
+            : new Throttle(config.getTotalTransferBytesPerSecond());
+    this.metrics = metrics;
+  }
+
+  /**
+   * @param length bytes in a response body
+   * @return true if the body is a large transfer, to write through {@link #open(OutputStream)}
+   */
+  public boolean isLarge(final long length) {
+    return length >= largeThreshold;
+  }
+
+  /**
+   * Waits for the turn of a large transfer.
+   *
+   * @param out the stream of the response
+   * @return a stream writing to the response at the pace of the throughput limits, to close once
+   *     the body is written to give the turn to the next transfer, the response stream stays open
+   * @throws RejectedExecutionException if the transfer waited longer than the queue timeout
+   * @throws InterruptedIOException if the thread was interrupted while waiting
+   */
+  public OutputStream open(final OutputStream out) throws IOException {
+    final long queued = System.nanoTime();
+    metrics.onTransferQueued();
+    final boolean started;
+    try {
+      started = takeTurn();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      metrics.onTransferRejected(System.nanoTime() - queued);
+      throw new InterruptedIOException("Interrupted while waiting for the turn of a transfer");
+    }
+    if (!started) {
+      metrics.onTransferRejected(System.nanoTime() - queued);
+      throw new RejectedExecutionException("Too many large transfers are being written");
+    }
+    metrics.onTransferStarted(System.nanoTime() - queued);
+    return new PacedOutputStream(out);
+  }
+
+  private boolean takeTurn() throws InterruptedException {
+    if (turns == null) {
+      return true;
+    } else if (queueTimeoutNanos == 0) {
+      turns.acquire();
+      return true;
+    }
+    return turns.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Spaces the writes so they don't go over a number of bytes per second on average. A pause
+   * doesn't earn credit, what could have been written meanwhile is not written faster later.
+   */
+  private static final class Throttle {
+    private final long bytesPerSecond;
+    /** When the bytes reserved so far are written at the limit, guarded by this */
+    private long nextNanos = System.nanoTime();
+
+    private Throttle(final long bytesPerSecond) {
+      this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /** @return nanos to wait before writing the bytes */
+    synchronized long reserve(final long bytes, final long now) {
+      final long start = nextNanos - now > 0 ? nextNanos : now;
+      nextNanos = start + bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+      return start - now;
+    }
+  }
+
+  /** Writes in chunks, each after the pause the throttles ask for. */
+  private final class PacedOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final Throttle transfer;
+    private boolean closed;
+
+    private PacedOutputStream(final OutputStream out) {
+      this.out = out;
+      this.transfer = transferBytesPerSecond == 0 ? null : new Throttle(transferBytesPerSecond);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      pace(1);
+      out.write(b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      if (transfer == null && total == null) {
+        out.write(b, off, len);
+        return;
+      }
+      int written = 0;
+      while (written < len) {
+        final int chunk = Math.min(CHUNK_BYTES, len - written);
+        pace(chunk);
+        out.write(b, off + written, chunk);
+        written += chunk;
+      }
+    }
+
+    private void pace(final int bytes) throws IOException {
+      final long now = System.nanoTime();
+      long wait = transfer == null ? 0 : transfer.reserve(bytes, now);
+      if (total != null) {
+        wait = Math.max(wait, total.reserve(bytes, now));
+      }
+      if (wait > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while pacing a transfer");
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    /** Gives the turn to the next transfer, the response stream is the container's to close. */
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (turns != null) {
+        turns.release();
+      }
+      metrics.onTransferFinished();
+    }
+  }
+}
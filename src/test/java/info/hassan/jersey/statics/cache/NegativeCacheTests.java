@@ -0,0 +1,35 @@
+package info.hassan.jersey.statics.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing the cache of missing resources")
+class NegativeCacheTests {
+
+  @DisplayName("A missing key is remembered until its ttl expires or it is invalidated")
+  @Test
+  void rememberedUntilExpiredOrInvalidated() throws InterruptedException {
+    final NegativeCache<String> cache = new NegativeCache<>(10, 50);
+    cache.add("wp-login.php");
+    cache.add(".env");
+    assertTrue(cache.contains("wp-login.php"));
+    cache.invalidate(".env");
+    assertFalse(cache.contains(".env"));
+    Thread.sleep(100L);
+    assertFalse(cache.contains("wp-login.php"));
+  }
+
+  @DisplayName("No more keys than the max size are remembered")
+  @Test
+  void boundedBySize() {
+    final NegativeCache<String> cache = new NegativeCache<>(10, 60_000);
+    for (int i = 0; i < 100; i++) {
+      cache.add("scan-" + i);
+    }
+    assertEquals(10, cache.size());
+  }
+}
@@ -0,0 +1,83 @@
+package info.hassan.jersey.statics.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing the two tier resource cache")
+class TieredResourceCacheTests {
+
+  private final List<String> released = new ArrayList<>();
+  private TieredResourceCache<String, String> cache;
+
+  /** Values marked with a leading '*' are off the heap, and released when they leave the cache */
+  @BeforeEach
+  void setup() {
+    cache =
+        new TieredResourceCache<>(
+            new WeightedResourceCache<>(100, 100, String::length),
+            new WeightedResourceCache<>(
+                30, 30, String::length, (key, value) -> {}, (key, value) -> released.add(value)),
+            value -> value.startsWith("*"));
+  }
+
+  @DisplayName("Values go to the tier they are held in")
+  @Test
+  void valuesAreTiered() {
+    assertTrue(cache.put("small", "tiny"));
+    assertTrue(cache.put("big", "*123456789"));
+    assertEquals("tiny", cache.get("small"));
+    assertEquals("*123456789", cache.get("big"));
+    assertEquals(1, cache.tiers().get("heap").size());
+    assertEquals(1, cache.tiers().get("offHeap").size());
+    assertEquals(2, cache.size());
+    assertEquals(14, cache.weightedSize());
+    assertEquals(130, cache.maxWeight());
+    assertEquals(Set.of("small", "big"), cache.keys());
+  }
+
+  @DisplayName("A key moving to the other tier leaves the one it was in")
+  @Test
+  void keyMovesBetweenTiers() {
+    cache.put("index.html", "*123456789");
+    cache.put("index.html", "small");
+    assertEquals("small", cache.get("index.html"));
+    assertEquals(List.of("*123456789"), released);
+    assertEquals(0, cache.tiers().get("offHeap").size());
+    cache.put("index.html", "*abcdefghi");
+    assertEquals("*abcdefghi", cache.get("index.html"));
+    assertEquals(0, cache.tiers().get("heap").size());
+  }
+
+  @DisplayName("Values off the heap are released when evicted, removed or cleared")
+  @Test
+  void offHeapValuesAreReleased() {
+    cache.put("a", "*aaaaaaaaa");
+    cache.put("b", "*bbbbbbbbb");
+    cache.put("c", "*ccccccccc");
+    cache.put("d", "*ddddddddd");
+    assertEquals(List.of("*aaaaaaaaa"), released);
+    cache.remove("b");
+    assertEquals(List.of("*aaaaaaaaa", "*bbbbbbbbb"), released);
+    cache.clear();
+    assertEquals(4, released.size());
+    assertEquals(0, cache.size());
+  }
+
+  @DisplayName("Replacing a missing key doesn't add it")
+  @Test
+  void replaceMissingKey() {
+    assertFalse(cache.replace("missing", "*123456789"));
+    assertNull(cache.get("missing"));
+    assertTrue(released.isEmpty());
+  }
+}
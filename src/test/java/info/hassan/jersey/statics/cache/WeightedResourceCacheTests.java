@@ -0,0 +1,108 @@
+package info.hassan.jersey.statics.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing the weight bounded resource cache")
+class WeightedResourceCacheTests {
+
+  private ResourceCache<String, byte[]> cache;
+
+  @BeforeEach
+  void setup() {
+    cache = new WeightedResourceCache<>(100, 40, data -> data.length);
+  }
+
+  @DisplayName("Total weight never goes beyond the maximum weight")
+  @Test
+  void boundedByWeight() {
+    for (int i = 0; i < 50; i++) {
+      cache.put("resource-" + i, new byte[10]);
+      assertTrue(cache.weightedSize() <= 100);
+    }
+    assertEquals(10, cache.size());
+    assertEquals(100, cache.weightedSize());
+  }
+
+  @DisplayName("Entries heavier than the max entry weight are never cached")
+  @Test
+  void tooBigEntryIsRejected() {
+    assertTrue(cache.put("big", new byte[40]));
+    assertFalse(cache.put("big", new byte[41]));
+    assertNull(cache.get("big"));
+    assertEquals(0, cache.weightedSize());
+  }
+
+  @DisplayName("Frequently read entries survive a scan of one-off entries")
+  @Test
+  void frequentlyUsedEntriesSurvive() {
+    cache.put("index.html", new byte[20]);
+    cache.put("main.css", new byte[20]);
+    cache.get("index.html");
+    cache.get("main.css");
+    for (int i = 0; i < 100; i++) {
+      cache.put("scan-" + i, new byte[10]);
+    }
+    assertNotNull(cache.get("index.html"));
+    assertNotNull(cache.get("main.css"));
+  }
+
+  @DisplayName("Replacing and removing entries keeps the weight in sync")
+  @Test
+  void replaceAndRemove() {
+    assertFalse(cache.replace("index.html", new byte[10]));
+    cache.put("index.html", new byte[10]);
+    assertTrue(cache.replace("index.html", new byte[30]));
+    assertEquals(30, cache.weightedSize());
+    assertEquals(30, cache.remove("index.html").length);
+    assertEquals(0, cache.weightedSize());
+    assertFalse(cache.containsKey("index.html"));
+  }
+
+  @DisplayName("The eviction listener is told about evicted entries only")
+  @Test
+  void evictionsAreReported() {
+    final List<String> evicted = new ArrayList<>();
+    cache =
+        new WeightedResourceCache<>(100, 40, data -> data.length, (key, data) -> evicted.add(key));
+    cache.put("index.html", new byte[40]);
+    cache.remove("index.html");
+    for (int i = 0; i < 11; i++) {
+      cache.put("resource-" + i, new byte[10]);
+    }
+    assertEquals(List.of("resource-0"), evicted);
+  }
+
+  @DisplayName("The removal listener is handed back every value put, once")
+  @Test
+  void removalsAreReported() {
+    final List<Integer> removed = new ArrayList<>();
+    cache =
+        new WeightedResourceCache<>(
+            100,
+            40,
+            data -> data.length,
+            (key, data) -> {},
+            (key, data) -> removed.add(data.length));
+    cache.put("index.html", new byte[1]);
+    cache.put("index.html", new byte[2]);
+    cache.put("too-big.html", new byte[41]);
+    cache.remove("index.html");
+    for (int i = 0; i < 11; i++) {
+      cache.put("resource-" + i, new byte[10]);
+    }
+    cache.clear();
+    assertEquals(List.of(1, 41, 2, 10), removed.subList(0, 4));
+    assertEquals(14, removed.size());
+  }
+}
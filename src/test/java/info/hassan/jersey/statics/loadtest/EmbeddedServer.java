@@ -0,0 +1,98 @@
+package info.hassan.jersey.statics.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import info.hassan.jersey.statics.resources.AsyncStaticsResource;
+import info.hassan.jersey.statics.resources.StaticsResource;
+import info.hassan.jersey.statics.services.ResourceService;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.glassfish.jersey.internal.inject.AbstractBinder;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.servlet.ServletContainer;
+
+/**
+ * An embedded Tomcat serving a {@link ResourceService} at the root through {@link StaticsResource},
+ * or {@link AsyncStaticsResource}, registered the way the README shows. It only listens on the
+ * loopback address, on a free port.
+ */
+final class EmbeddedServer implements Closeable {
+
+  private static final String LOOPBACK = "127.0.0.1";
+
+  private final Tomcat tomcat;
+  private final int port;
+
+  private EmbeddedServer(final Tomcat tomcat, final int port) {
+    this.tomcat = tomcat;
+    this.port = port;
+  }
+
+  /**
+   * @param service serves the resources
+   * @param async true to register {@link AsyncStaticsResource}
+   * @param workDir where Tomcat keeps its files
+   * @return the started server
+   */
+  static EmbeddedServer start(
+      final ResourceService service, final boolean async, final Path workDir)
+      throws LifecycleException {
+    final ResourceConfig resourceConfig = new ResourceConfig();
+    resourceConfig.registerResources(
+        Resource.builder(async ? AsyncStaticsResource.class : StaticsResource.class)
+            .path("/")
+            .build());
+    resourceConfig.register(
+        new AbstractBinder() {
+          @Override
+          protected void configure() {
+            bind(service).to(ResourceService.class);
+          }
+        });
+
+    final Tomcat tomcat = new Tomcat();
+    tomcat.setBaseDir(workDir.toString());
+    final Connector connector = new Connector("HTTP/1.1");
+    connector.setPort(0);
+    connector.setProperty("address", LOOPBACK);
+    // Connections are only closed by the load generator, as a browser keeps them open
+    connector.setProperty("maxKeepAliveRequests", "-1");
+    tomcat.setConnector(connector);
+
+    final StandardContext context = (StandardContext) tomcat.addContext("", null);
+    // The web application is never redeployed, and clearing these needs reflection newer JDKs deny
+    context.setClearReferencesObjectStreamClassCaches(false);
+    context.setClearReferencesRmiTargets(false);
+    context.setClearReferencesThreadLocals(false);
+    final Wrapper servlet =
+        Tomcat.addServlet(context, "statics", new ServletContainer(resourceConfig));
+    servlet.setAsyncSupported(true);
+    context.addServletMappingDecoded("/*", "statics");
+    tomcat.start();
+    return new EmbeddedServer(tomcat, connector.getLocalPort());
+  }
+
+  String getHost() {
+    return LOOPBACK;
+  }
+
+  int getPort() {
+    return port;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      tomcat.stop();
+      tomcat.destroy();
+    } catch (LifecycleException e) {
+      throw new IOException("Could not stop the server", e);
+    }
+  }
+}
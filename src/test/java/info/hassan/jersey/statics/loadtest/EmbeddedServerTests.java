@@ -0,0 +1,90 @@
+package info.hassan.jersey.statics.loadtest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.condition.OS.MAC;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import info.hassan.jersey.statics.services.ResourceServiceConfig;
+import info.hassan.jersey.statics.services.ResourceServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing the resources served by Jersey from an embedded server")
+@DisabledOnOs({WINDOWS, MAC})
+class EmbeddedServerTests {
+
+  @TempDir Path tempDir;
+  private byte[] css;
+  private ResourceServiceImpl service;
+  private EmbeddedServer server;
+
+  @BeforeEach
+  void setup() throws Exception {
+    final Path baseDir = Files.createDirectory(tempDir.resolve("site"));
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      text.append(".class-").append(i).append(" { color: #fffb99; }\n");
+    }
+    css = text.toString().getBytes(UTF_8);
+    Files.write(baseDir.resolve("main.css"), css);
+    service =
+        new ResourceServiceImpl(
+            baseDir,
+            ResourceServiceConfig.builder()
+                .largeTransferThreshold(1024)
+                .largeTransferMaxConcurrency(1)
+                .largeTransferQueueTimeoutMillis(50)
+                .build());
+    server = EmbeddedServer.start(service, false, Files.createDirectory(tempDir.resolve("tomcat")));
+  }
+
+  @AfterEach
+  void stop() throws IOException {
+    server.close();
+  }
+
+  private HttpURLConnection get(final String resourceName) throws IOException {
+    final HttpURLConnection connection =
+        (HttpURLConnection)
+            new URL("http", server.getHost(), server.getPort(), "/" + resourceName)
+                .openConnection();
+    connection.setRequestProperty("Accept-Encoding", "identity");
+    return connection;
+  }
+
+  @DisplayName("A large transfer waiting too long for its turn reaches the client as a 503")
+  @Test
+  void rejectedTransferIsServiceUnavailable() throws IOException {
+    final OutputStream running = service.getTransferScheduler().open(new ByteArrayOutputStream());
+    try {
+      final HttpURLConnection rejected = get("main.css");
+      assertEquals(503, rejected.getResponseCode());
+      assertNotNull(rejected.getHeaderField("Retry-After"));
+      rejected.disconnect();
+    } finally {
+      running.close();
+    }
+    assertEquals(1L, service.getMetrics().getTransfersRejected());
+    final HttpURLConnection served = get("main.css");
+    assertEquals(200, served.getResponseCode());
+    try (InputStream in = served.getInputStream()) {
+      assertArrayEquals(css, in.readAllBytes());
+    }
+  }
+}
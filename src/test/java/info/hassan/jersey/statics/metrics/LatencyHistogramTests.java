@@ -0,0 +1,60 @@
+package info.hassan.jersey.statics.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing the latency histogram")
+class LatencyHistogramTests {
+
+  private LatencyHistogram histogram;
+
+  @BeforeEach
+  void setup() {
+    histogram = new LatencyHistogram();
+  }
+
+  @DisplayName("Percentiles are within the precision of a bucket")
+  @Test
+  void percentiles() {
+    for (long micros = 1; micros <= 1000; micros++) {
+      histogram.record(micros * 1000);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1_000_000, histogram.getMax());
+    assertWithin(500_000, histogram.getValueAtPercentile(50));
+    assertWithin(990_000, histogram.getValueAtPercentile(99));
+    assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    assertWithin(500_500, (long) histogram.getMean());
+  }
+
+  @DisplayName("Every value falls in a bucket that holds it")
+  @Test
+  void bucketsHoldTheirValues() {
+    for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 33, 1000, 1 << 20, Long.MAX_VALUE}) {
+      final int index = LatencyHistogram.indexOf(value);
+      assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+      assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+    }
+  }
+
+  @DisplayName("An empty or reset histogram reports zeros")
+  @Test
+  void emptyAndReset() {
+    assertEquals(0, histogram.getValueAtPercentile(99));
+    histogram.record(42);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getValueAtPercentile(50));
+  }
+
+  private static void assertWithin(final long expected, final long actual) {
+    assertTrue(
+        Math.abs(actual - expected) <= expected / 16,
+        () -> actual + " is not within 6% of " + expected);
+  }
+}
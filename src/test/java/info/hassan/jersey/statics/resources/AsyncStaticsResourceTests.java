@@ -0,0 +1,215 @@
+package info.hassan.jersey.statics.resources;
+
+import static info.hassan.jersey.statics.resources.AsyncStaticsResource.RETRY_AFTER;
+import static info.hassan.jersey.statics.services.TestsHelper.requestHeaders;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.condition.OS.MAC;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.services.ResourceServiceConfig;
+import info.hassan.jersey.statics.services.ResourceServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing the AsyncStaticsResource responses")
+@DisabledOnOs({WINDOWS, MAC})
+class AsyncStaticsResourceTests {
+
+  private static final HttpHeaders NO_HEADERS = requestHeaders(ACCEPT_ENCODING, "identity");
+
+  @TempDir Path baseDir;
+  private final CountDownLatch loads = new CountDownLatch(1);
+
+  @BeforeEach
+  void setup() throws IOException {
+    Files.write(baseDir.resolve("index.html"), "<html></html>".getBytes(StandardCharsets.UTF_8));
+    Files.write(baseDir.resolve("main.css"), "body {}".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @AfterEach
+  void release() {
+    loads.countDown();
+  }
+
+  @DisplayName("A cached resource is answered on the request thread")
+  @Test
+  void cachedIsInline() throws IOException {
+    final ResourceServiceImpl service = new ResourceServiceImpl(baseDir);
+    service.getDataForResource("main.css");
+    final CapturingAsyncResponse asyncResponse = new CapturingAsyncResponse();
+    new AsyncStaticsResource(service).getResource("main.css", NO_HEADERS, asyncResponse);
+    assertTrue(asyncResponse.resumed.isDone());
+    assertEquals(200, asyncResponse.response().getStatus());
+  }
+
+  @DisplayName("A resource that isn't cached is loaded and then answered")
+  @Test
+  void missIsLoaded() throws IOException {
+    final ResourceServiceImpl service = new ResourceServiceImpl(baseDir);
+    final CapturingAsyncResponse asyncResponse = new CapturingAsyncResponse();
+    new AsyncStaticsResource(service).index(NO_HEADERS, asyncResponse);
+    final Response response = asyncResponse.response();
+    assertEquals(200, response.getStatus());
+    assertArrayEquals(
+        "<html></html>".getBytes(StandardCharsets.UTF_8), (byte[]) response.getEntity());
+    assertEquals(1, service.getMetrics().getMisses());
+  }
+
+  @DisplayName("A load that takes longer than the timeout is answered with 503")
+  @Test
+  void timeoutIsUnavailable() throws IOException {
+    final ResourceServiceConfig config =
+        ResourceServiceConfig.builder().loaderTimeoutMillis(50).build();
+    final CapturingAsyncResponse asyncResponse = new CapturingAsyncResponse();
+    new AsyncStaticsResource(new BlockingResourceService(baseDir, config))
+        .getResource("main.css", NO_HEADERS, asyncResponse);
+    final Response response = asyncResponse.response();
+    assertEquals(503, response.getStatus());
+    assertNotNull(response.getHeaderString(RETRY_AFTER));
+  }
+
+  @DisplayName("A load beyond the concurrency and queue capacity is answered with 503")
+  @Test
+  void rejectedIsUnavailable() throws IOException {
+    final ResourceServiceConfig config =
+        ResourceServiceConfig.builder()
+            .loaderMaxConcurrency(1)
+            .loaderQueueCapacity(0)
+            .loaderTimeoutMillis(0)
+            .build();
+    final AsyncStaticsResource resource =
+        new AsyncStaticsResource(new BlockingResourceService(baseDir, config));
+    final CapturingAsyncResponse blocked = new CapturingAsyncResponse();
+    resource.getResource("main.css", NO_HEADERS, blocked);
+    final CapturingAsyncResponse rejected = new CapturingAsyncResponse();
+    resource.getResource("index.html", NO_HEADERS, rejected);
+    assertEquals(503, rejected.response().getStatus());
+    loads.countDown();
+    assertEquals(200, blocked.response().getStatus());
+  }
+
+  /** Holds every load until the test lets it go */
+  private class BlockingResourceService extends ResourceServiceImpl {
+
+    BlockingResourceService(final Path baseDir, final ResourceServiceConfig config)
+        throws IOException {
+      super(baseDir, config);
+    }
+
+    @Override
+    protected Optional<ResourceResult> loadResource(final Path resourcePath) {
+      try {
+        loads.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return super.loadResource(resourcePath);
+    }
+  }
+
+  /** Keeps what the resource is resumed with */
+  private static class CapturingAsyncResponse implements AsyncResponse {
+
+    private final CompletableFuture<Object> resumed = new CompletableFuture<>();
+
+    Response response() {
+      return (Response) resumed.orTimeout(10, TimeUnit.SECONDS).join();
+    }
+
+    @Override
+    public boolean resume(final Object response) {
+      return resumed.complete(response);
+    }
+
+    @Override
+    public boolean resume(final Throwable response) {
+      return resumed.completeExceptionally(response);
+    }
+
+    @Override
+    public boolean cancel() {
+      return resumed.cancel(false);
+    }
+
+    @Override
+    public boolean cancel(final int retryAfter) {
+      return cancel();
+    }
+
+    @Override
+    public boolean cancel(final Date retryAfter) {
+      return cancel();
+    }
+
+    @Override
+    public boolean isSuspended() {
+      return !resumed.isDone();
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return resumed.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return resumed.isDone();
+    }
+
+    @Override
+    public boolean setTimeout(final long time, final TimeUnit unit) {
+      return true;
+    }
+
+    @Override
+    public void setTimeoutHandler(final TimeoutHandler handler) {}
+
+    @Override
+    public Collection<Class<?>> register(final Class<?> callback) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(
+        final Class<?> callback, final Class<?>... callbacks) {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public Collection<Class<?>> register(final Object callback) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(
+        final Object callback, final Object... callbacks) {
+      return Collections.emptyMap();
+    }
+  }
+}
@@ -0,0 +1,465 @@
+package info.hassan.jersey.statics.resources;
+
+import static info.hassan.jersey.statics.services.TestsHelper.requestHeaders;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_LENGTH;
+import static javax.ws.rs.core.HttpHeaders.ETAG;
+import static javax.ws.rs.core.HttpHeaders.IF_MODIFIED_SINCE;
+import static javax.ws.rs.core.HttpHeaders.IF_NONE_MATCH;
+import static javax.ws.rs.core.HttpHeaders.LAST_MODIFIED;
+import static javax.ws.rs.core.HttpHeaders.LINK;
+import static javax.ws.rs.core.HttpHeaders.VARY;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.condition.OS.MAC;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import info.hassan.jersey.statics.services.ResourceServiceConfig;
+import info.hassan.jersey.statics.services.ResourceServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing the StaticsResource responses")
+@DisabledOnOs({WINDOWS, MAC})
+class StaticsResourceTests {
+
+  @TempDir Path baseDir;
+  private byte[] css;
+  private StaticsResource resource;
+
+  @BeforeEach
+  void setup() throws IOException {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      builder.append(".class-").append(i).append(" { color: #fffb99; margin: 5px auto; }\n");
+    }
+    css = builder.toString().getBytes(StandardCharsets.UTF_8);
+    Files.write(baseDir.resolve("main.css"), css);
+    Files.write(baseDir.resolve("index.html"), "<html></html>".getBytes(StandardCharsets.UTF_8));
+    resource = new StaticsResource(new ResourceServiceImpl(baseDir));
+  }
+
+  @DisplayName("Testing the preload links of pages")
+  @Nested
+  class PreloadTests {
+
+    private final List<String> hints = new ArrayList<>();
+
+    @BeforeEach
+    void setup() throws IOException {
+      Files.createDirectories(baseDir.resolve("css"));
+      Files.createDirectories(baseDir.resolve("fonts"));
+      Files.createDirectories(baseDir.resolve("docs"));
+      write(
+          "index.html",
+          "<html><head><link rel=\"stylesheet\" href=\"css/site.css\">"
+              + "<link rel=\"icon\" href=\"favicon.ico\"><script src=\"app.js\"></script>"
+              + "</head><body><a href=\"docs/page.html\">Docs</a></body></html>");
+      write("docs/page.html", "<html><link rel=\"stylesheet\" href=\"../css/site.css\"></html>");
+      write("css/site.css", "@import 'base.css';\nbody { font-family: x; }");
+      write("css/base.css", "@font-face { src: url(../fonts/x.woff2); }");
+      write("fonts/x.woff2", "woff2");
+      write("favicon.ico", "ico");
+      write("app.js", "console.log('app');");
+      resource =
+          new StaticsResource(
+              new ResourceServiceImpl(
+                  baseDir,
+                  ResourceServiceConfig.builder()
+                      .linkPreloadEnabled(true)
+                      .earlyHints((resourceName, links) -> hints.add(resourceName + " " + links))
+                      .build()));
+    }
+
+    private void write(final String resourceKey, final String content) throws IOException {
+      Files.write(baseDir.resolve(resourceKey), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @DisplayName("A page preloads its stylesheets, scripts and the fonts of its stylesheets")
+    @Test
+    void pageHasLinks() {
+      final Response response = resource.index(requestHeaders());
+      assertEquals(
+          "<css/site.css>; rel=preload; as=style, "
+              + "<css/base.css>; rel=preload; as=style, "
+              + "<fonts/x.woff2>; rel=preload; as=font; type=\"font/woff2\"; crossorigin, "
+              + "<app.js>; rel=preload; as=script",
+          response.getHeaderString(LINK));
+      assertNull(resource.getResource("css/site.css", requestHeaders()).getHeaderString(LINK));
+    }
+
+    @DisplayName("Links are relative to the page")
+    @Test
+    void linksAreRelative() {
+      final String links =
+          resource.getResource("docs/page.html", requestHeaders()).getHeaderString(LINK);
+      assertTrue(links.startsWith("<../css/site.css>; rel=preload; as=style"), links);
+    }
+
+    @DisplayName("The links of a page already loaded are sent as early hints before it")
+    @Test
+    void earlyHintsAreSent() {
+      resource.index(requestHeaders());
+      assertTrue(hints.isEmpty());
+      final String links = resource.index(requestHeaders()).getHeaderString(LINK);
+      assertEquals(List.of("index.html " + links), hints);
+    }
+  }
+
+  @DisplayName("Testing content-coding negotiation")
+  @Nested
+  class ContentEncodingTests {
+
+    @DisplayName("A client accepting gzip gets the gzip variant built at load time")
+    @Test
+    void gzipVariantIsServed() throws IOException {
+      final Response response =
+          resource.getResource("main.css", requestHeaders(ACCEPT_ENCODING, "deflate, gzip"));
+      assertEquals(200, response.getStatus());
+      assertEquals("gzip", response.getHeaderString(CONTENT_ENCODING));
+      assertEquals(ACCEPT_ENCODING, response.getHeaderString(VARY));
+      try (GZIPInputStream gzip =
+          new GZIPInputStream(new ByteArrayInputStream((byte[]) response.getEntity()))) {
+        assertArrayEquals(css, gzip.readAllBytes());
+      }
+    }
+
+    @DisplayName("A client not accepting any coding gets the identity with Vary")
+    @Test
+    void identityIsServed() {
+      final Response response =
+          resource.getResource("main.css", requestHeaders(ACCEPT_ENCODING, "gzip;q=0, br;q=0"));
+      assertNull(response.getHeaderString(CONTENT_ENCODING));
+      assertEquals(ACCEPT_ENCODING, response.getHeaderString(VARY));
+      assertArrayEquals(css, (byte[]) response.getEntity());
+    }
+
+    @DisplayName("A brotli sibling on disk is preferred when the client accepts it")
+    @Test
+    void brotliSiblingIsServed() throws IOException {
+      final byte[] brotli = "not really brotli".getBytes(StandardCharsets.UTF_8);
+      Files.write(baseDir.resolve("main.css.br"), brotli);
+      resource = new StaticsResource(new ResourceServiceImpl(baseDir));
+      final Response response =
+          resource.getResource("main.css", requestHeaders(ACCEPT_ENCODING, "gzip, br"));
+      assertEquals("br", response.getHeaderString(CONTENT_ENCODING));
+      assertArrayEquals(brotli, (byte[]) response.getEntity());
+    }
+
+    @DisplayName("Resources below the minimum size are never compressed")
+    @Test
+    void smallResourceIsNotCompressed() {
+      final Response response = resource.index(requestHeaders(ACCEPT_ENCODING, "gzip"));
+      assertNull(response.getHeaderString(CONTENT_ENCODING));
+      assertNull(response.getHeaderString(VARY));
+    }
+  }
+
+  @DisplayName("Testing conditional requests")
+  @Nested
+  class ConditionalRequestTests {
+
+    @DisplayName("A matching If-None-Match gets a bodyless 304")
+    @Test
+    void notModifiedByEntityTag() {
+      final Response first = resource.getResource("main.css", requestHeaders());
+      final String entityTag = first.getHeaderString(ETAG);
+      assertNotNull(entityTag);
+      assertNotNull(first.getHeaderString(LAST_MODIFIED));
+      final Response second =
+          resource.getResource(
+              "main.css", requestHeaders(IF_NONE_MATCH, "\"other\", " + entityTag));
+      assertEquals(304, second.getStatus());
+      assertEquals(entityTag, second.getHeaderString(ETAG));
+      assertNull(second.getEntity());
+    }
+
+    @DisplayName("Entity-tags of the If-None-Match list may contain commas")
+    @Test
+    void entityTagListWithCommas() {
+      final String entityTag =
+          resource.getResource("main.css", requestHeaders()).getHeaderString(ETAG);
+      assertEquals(
+          304,
+          resource
+              .getResource("main.css", requestHeaders(IF_NONE_MATCH, "\"a, b\",, W/" + entityTag))
+              .getStatus());
+      assertEquals(
+          200,
+          resource.getResource("main.css", requestHeaders(IF_NONE_MATCH, "\"x,*,y\"")).getStatus());
+    }
+
+    @DisplayName("Each content-coding gets its own entity-tag")
+    @Test
+    void variantsHaveDifferentEntityTags() {
+      final String identity =
+          resource.getResource("main.css", requestHeaders()).getHeaderString(ETAG);
+      final String gzip =
+          resource
+              .getResource("main.css", requestHeaders(ACCEPT_ENCODING, "gzip"))
+              .getHeaderString(ETAG);
+      assertNotEquals(identity, gzip);
+      assertEquals(
+          304,
+          resource
+              .getResource("main.css", requestHeaders(ACCEPT_ENCODING, "gzip", IF_NONE_MATCH, gzip))
+              .getStatus());
+    }
+
+    @DisplayName("An If-Modified-Since not older than the resource gets a 304")
+    @Test
+    void notModifiedByDate() {
+      final String lastModified =
+          resource.getResource("main.css", requestHeaders()).getHeaderString(LAST_MODIFIED);
+      assertEquals(
+          304,
+          resource
+              .getResource("main.css", requestHeaders(IF_MODIFIED_SINCE, lastModified))
+              .getStatus());
+      assertEquals(
+          200,
+          resource
+              .getResource(
+                  "main.css", requestHeaders(IF_MODIFIED_SINCE, "Thu, 01 Jan 1970 00:00:00 GMT"))
+              .getStatus());
+    }
+
+    @DisplayName("A stale entity-tag gets the full resource")
+    @Test
+    void modifiedWhenEntityTagDiffers() {
+      final Response response =
+          resource.getResource("main.css", requestHeaders(IF_NONE_MATCH, "\"stale\""));
+      assertEquals(200, response.getStatus());
+      assertArrayEquals(css, (byte[]) response.getEntity());
+    }
+  }
+
+  @DisplayName("Testing files above the streaming threshold")
+  @Nested
+  class StreamingTests {
+
+    @BeforeEach
+    void setup() throws IOException {
+      resource =
+          new StaticsResource(
+              new ResourceServiceImpl(
+                  baseDir, ResourceServiceConfig.builder().streamingThreshold(1024).build()));
+    }
+
+    @DisplayName("A big file is written through a StreamingOutput with its length")
+    @Test
+    void bigFileIsStreamed() throws IOException {
+      final Response response =
+          resource.getResource("main.css", requestHeaders(ACCEPT_ENCODING, "gzip"));
+      assertEquals(200, response.getStatus());
+      assertEquals(String.valueOf(css.length), response.getHeaderString(CONTENT_LENGTH));
+      assertNull(response.getHeaderString(CONTENT_ENCODING));
+      assertTrue(response.getEntity() instanceof StreamingOutput);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ((StreamingOutput) response.getEntity()).write(out);
+      assertArrayEquals(css, out.toByteArray());
+    }
+
+    @DisplayName("Small files keep being served from memory")
+    @Test
+    void smallFileIsInMemory() {
+      assertTrue(resource.index(requestHeaders()).getEntity() instanceof byte[]);
+    }
+  }
+
+  @DisplayName("Testing the scheduling of large transfers")
+  @Nested
+  class TransferTests {
+
+    private ResourceServiceImpl service;
+
+    private void schedule(final ResourceServiceConfig.Builder builder) throws IOException {
+      service = new ResourceServiceImpl(baseDir, builder.largeTransferThreshold(1024).build());
+      resource = new StaticsResource(service);
+    }
+
+    @DisplayName("Large bodies take a turn to be written, small ones are handed over right away")
+    @Test
+    void largeBodyIsScheduled() throws IOException {
+      schedule(ResourceServiceConfig.builder());
+      assertTrue(resource.index(requestHeaders()).getEntity() instanceof byte[]);
+      final Response response = resource.getResource("main.css", requestHeaders());
+      assertEquals(String.valueOf(css.length), response.getHeaderString(CONTENT_LENGTH));
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ((StreamingOutput) response.getEntity()).write(out);
+      assertArrayEquals(css, out.toByteArray());
+      assertEquals(1L, service.getMetrics().getTransferWait().getCount());
+      assertEquals(0L, service.getMetrics().getTransfersActive());
+      assertEquals(0L, service.getMetrics().getTransfersWaiting());
+    }
+
+    @DisplayName("A transfer waiting too long for its turn gets a 503")
+    @Test
+    void waitingTooLongIsRejected() throws IOException {
+      schedule(
+          ResourceServiceConfig.builder()
+              .largeTransferMaxConcurrency(1)
+              .largeTransferQueueTimeoutMillis(50));
+      final StreamingOutput output =
+          (StreamingOutput) resource.getResource("main.css", requestHeaders()).getEntity();
+      final OutputStream running = service.getTransferScheduler().open(new ByteArrayOutputStream());
+      try {
+        assertEquals(1L, service.getMetrics().getTransfersActive());
+        final WebApplicationException rejected =
+            assertThrows(
+                WebApplicationException.class, () -> output.write(new ByteArrayOutputStream()));
+        assertEquals(503, rejected.getResponse().getStatus());
+        assertNotNull(rejected.getResponse().getHeaderString("Retry-After"));
+      } finally {
+        running.close();
+      }
+      assertEquals(1L, service.getMetrics().getTransfersRejected());
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      output.write(out);
+      assertArrayEquals(css, out.toByteArray());
+    }
+
+    @DisplayName("A transfer is written no faster than its throughput limit")
+    @Test
+    void transferIsThrottled() throws IOException {
+      schedule(ResourceServiceConfig.builder().transferBytesPerSecond(1024 * 1024));
+      final long start = System.nanoTime();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (OutputStream paced = service.getTransferScheduler().open(out)) {
+        paced.write(new byte[192 * 1024]);
+      }
+      assertEquals(192 * 1024, out.size());
+      // The first chunk goes right away, the two others wait 62.5 ms each
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(120));
+    }
+  }
+
+  @DisplayName("Testing byte range requests")
+  @Nested
+  class RangeTests {
+
+    @DisplayName("A single range gets a 206 with only the requested bytes")
+    @Test
+    void singleRange() throws IOException {
+      final Response response =
+          resource.getResource("main.css", requestHeaders("Range", "bytes=10-19"));
+      assertEquals(206, response.getStatus());
+      assertEquals("bytes 10-19/" + css.length, response.getHeaderString("Content-Range"));
+      assertEquals("10", response.getHeaderString(CONTENT_LENGTH));
+      assertArrayEquals(Arrays.copyOfRange(css, 10, 20), write(response));
+    }
+
+    @DisplayName("A suffix range of a streamed file is read from the file")
+    @Test
+    void suffixRangeOfStreamedFile() throws IOException {
+      resource =
+          new StaticsResource(
+              new ResourceServiceImpl(
+                  baseDir, ResourceServiceConfig.builder().streamingThreshold(1024).build()));
+      final Response response =
+          resource.getResource("main.css", requestHeaders("Range", "bytes=-5"));
+      assertEquals(206, response.getStatus());
+      assertArrayEquals(Arrays.copyOfRange(css, css.length - 5, css.length), write(response));
+    }
+
+    @DisplayName("Several ranges get a multipart/byteranges body, overlapping ones are merged")
+    @Test
+    void multipleRanges() throws IOException {
+      final Response response =
+          resource.getResource("main.css", requestHeaders("Range", "bytes=0-4, 3-9, 100-109"));
+      assertEquals(206, response.getStatus());
+      assertTrue(response.getHeaderString(CONTENT_TYPE).startsWith("multipart/byteranges"));
+      final String body = new String(write(response), StandardCharsets.US_ASCII);
+      assertTrue(body.contains("Content-Range: bytes 0-9/" + css.length));
+      assertTrue(body.contains("Content-Range: bytes 100-109/" + css.length));
+      assertTrue(body.contains(new String(css, 0, 10, StandardCharsets.US_ASCII)));
+    }
+
+    @DisplayName("Empty elements of the range list are skipped, a list of only those is ignored")
+    @Test
+    void emptyRangeElements() throws IOException {
+      final Response response =
+          resource.getResource("main.css", requestHeaders("Range", "bytes=,10-19, ,"));
+      assertEquals(206, response.getStatus());
+      assertEquals("bytes 10-19/" + css.length, response.getHeaderString("Content-Range"));
+      assertArrayEquals(Arrays.copyOfRange(css, 10, 20), write(response));
+      assertEquals(
+          200, resource.getResource("main.css", requestHeaders("Range", "bytes= , ")).getStatus());
+    }
+
+    @DisplayName("A range beyond the end gets a 416")
+    @Test
+    void unsatisfiableRange() {
+      final Response response =
+          resource.getResource("main.css", requestHeaders("Range", "bytes=100000-"));
+      assertEquals(416, response.getStatus());
+      assertEquals("bytes */" + css.length, response.getHeaderString("Content-Range"));
+    }
+
+    @DisplayName("A stale If-Range gets the whole body")
+    @Test
+    void staleIfRange() {
+      final Response response =
+          resource.getResource(
+              "main.css", requestHeaders("Range", "bytes=0-9", "If-Range", "\"stale\""));
+      assertEquals(200, response.getStatus());
+      assertEquals("bytes", response.getHeaderString("Accept-Ranges"));
+      assertArrayEquals(css, (byte[]) response.getEntity());
+    }
+
+    @DisplayName("A current If-Range gets the range")
+    @Test
+    void currentIfRange() {
+      final String entityTag =
+          resource.getResource("main.css", requestHeaders()).getHeaderString(ETAG);
+      final Response response =
+          resource.getResource(
+              "main.css", requestHeaders("Range", "bytes=0-9", "If-Range", entityTag));
+      assertEquals(206, response.getStatus());
+    }
+
+    @DisplayName("Only the bytes of the ranges are counted as served")
+    @Test
+    void rangeBytesAreCounted() throws IOException {
+      final ResourceServiceImpl service = new ResourceServiceImpl(baseDir);
+      resource = new StaticsResource(service);
+      resource.getResource("main.css", requestHeaders("Range", "bytes=0-4, 100-109"));
+      resource.getResource("index.html", requestHeaders());
+      assertEquals(15L, service.getMetrics().getBytesServedByMimeType().get("text/css"));
+      assertEquals(28L, service.getMetrics().getBytesServed());
+    }
+
+    private byte[] write(final Response response) throws IOException {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ((StreamingOutput) response.getEntity()).write(out);
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package info.hassan.jersey.statics.services;
+
+import static info.hassan.jersey.statics.api.ResourceResult.GZIP;
+import static info.hassan.jersey.statics.services.TestsHelper.APPLICATION_JAVASCRIPT;
+import static info.hassan.jersey.statics.services.TestsHelper.IMAGE_PNG;
+import static info.hassan.jersey.statics.services.TestsHelper.TEXT_CSS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.condition.OS.MAC;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing ArchiveResourceService")
+@DisabledOnOs({WINDOWS, MAC})
+class ArchiveResourceServiceTests {
+
+  private static final Path BASE_DIR = Paths.get("src", "test", "resources", "html");
+  private static final String[] NAMES = {
+    "index.html", "css/main.css", "js/main.js", "js/app.json", "img/home.png", "img/home.svg"
+  };
+
+  @TempDir Path tempDir;
+  private Path archive;
+  private byte[] bigCss;
+  private ArchiveResourceService service;
+
+  @BeforeEach
+  void setup() throws IOException {
+    final StringBuilder css = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      css.append(".class-").append(i).append(" { color: #fffb99; margin: 5px auto; }\n");
+    }
+    bigCss = css.toString().getBytes(StandardCharsets.UTF_8);
+    archive = tempDir.resolve("app.jar");
+    try (OutputStream out = Files.newOutputStream(archive)) {
+      writeArchive(out);
+    }
+    service = new ArchiveResourceService(archive, "static", config());
+  }
+
+  @AfterEach
+  void close() throws IOException {
+    service.close();
+  }
+
+  private static ResourceServiceConfig config() {
+    return ResourceServiceConfig.builder().streamingThreshold(1024).build();
+  }
+
+  /** Files of the base directory under static/, stored and deflated in turn */
+  private void writeArchive(final OutputStream out) throws IOException {
+    try (ZipOutputStream zip = new ZipOutputStream(out)) {
+      zip.putNextEntry(new ZipEntry("static/"));
+      zip.closeEntry();
+      for (int i = 0; i < NAMES.length; i++) {
+        final byte[] data = Files.readAllBytes(BASE_DIR.resolve(NAMES[i]));
+        putEntry(zip, "static/" + NAMES[i], data, i % 2 == 0);
+      }
+      putEntry(zip, "static/big.css", bigCss, true);
+      putEntry(zip, "static/big.css.gz", gzip(bigCss), true);
+      putEntry(zip, "outside.txt", "outside".getBytes(StandardCharsets.UTF_8), false);
+    }
+  }
+
+  private static void putEntry(
+      final ZipOutputStream zip, final String name, final byte[] data, final boolean stored)
+      throws IOException {
+    final ZipEntry entry = new ZipEntry(name);
+    if (stored) {
+      final CRC32 crc = new CRC32();
+      crc.update(data);
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(data.length);
+      entry.setCompressedSize(data.length);
+      entry.setCrc(crc.getValue());
+    }
+    zip.putNextEntry(entry);
+    zip.write(data);
+    zip.closeEntry();
+  }
+
+  private static byte[] gzip(final byte[] data) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+      gzip.write(data);
+    }
+    return bytes.toByteArray();
+  }
+
+  @DisplayName("Stored and deflated entries are served as they are on disk")
+  @Test
+  void entriesAreServed() throws IOException {
+    assertEquals(NAMES.length + 2, service.size());
+    for (String name : NAMES) {
+      final ResourceResult result = service.getDataForResource(name);
+      assertEquals(200, result.getStatusCode());
+      assertArrayEquals(Files.readAllBytes(BASE_DIR.resolve(name)), result.getData());
+      assertNotNull(result.getEntityTag());
+    }
+    assertEquals(TEXT_CSS, service.getDataForResource("css/main.css").getMimeType());
+    assertEquals(APPLICATION_JAVASCRIPT, service.getDataForResource("js/main.js").getMimeType());
+    assertEquals(IMAGE_PNG, service.getDataForResource("img/home.png").getMimeType());
+  }
+
+  @DisplayName("Entries are read once and then served from the cache")
+  @Test
+  void entriesAreCached() {
+    final ResourceResult index = service.getDataForResource("index.html");
+    assertSame(index, service.getDataForResource("index.html"));
+    assertSame(index, service.getDataForResource("/index.html"));
+    assertEquals(1, service.getMetrics().getMisses());
+  }
+
+  @DisplayName("A big stored entry is streamed from the archive with its compressed sibling")
+  @Test
+  void bigEntryIsStreamed() throws IOException {
+    final ResourceResult big = service.getDataForResource("big.css");
+    assertFalse(big.getBody().isInMemory());
+    assertArrayEquals(bigCss, big.getData());
+    assertEquals(Set.of(GZIP), big.getEncodings());
+    final ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+    big.getEncodedBody(GZIP).writeTo(gzipped);
+    assertArrayEquals(gzip(bigCss), gzipped.toByteArray());
+  }
+
+  @DisplayName("Names are normalized and can't reach outside the prefix")
+  @Test
+  void namesAreNormalized() {
+    final ResourceResult css = service.getDataForResource("css/main.css");
+    assertEquals(css, service.getDataForResource("js/../css/./main.css"));
+    assertEquals(404, service.getDataForResource("../outside.txt").getStatusCode());
+    assertEquals(404, service.getDataForResource("").getStatusCode());
+    assertEquals(404, service.getDataForResource("css/missing.css").getStatusCode());
+    assertEquals(404, service.getDataForResource("css").getStatusCode());
+  }
+
+  @DisplayName("Bytes prepended to the archive, as in an executable jar, are skipped")
+  @Test
+  void prependedBytesAreSkipped() throws IOException {
+    final Path executable = tempDir.resolve("app.run");
+    try (OutputStream out = Files.newOutputStream(executable)) {
+      out.write("#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.UTF_8));
+      writeArchive(out);
+    }
+    try (ArchiveResourceService fromExecutable =
+        new ArchiveResourceService(executable, "static/", config())) {
+      for (String name : NAMES) {
+        assertArrayEquals(
+            Files.readAllBytes(BASE_DIR.resolve(name)),
+            fromExecutable.getDataForResource(name).getData());
+      }
+    }
+  }
+
+  @DisplayName("Large entries are written by a scheduler made from the config")
+  @Test
+  void largeTransfersAreScheduled() throws IOException {
+    try (ArchiveResourceService scheduled =
+        new ArchiveResourceService(
+            archive,
+            "static",
+            ResourceServiceConfig.builder().largeTransferThreshold(1024).build())) {
+      assertTrue(scheduled.getTransferScheduler().isLarge(bigCss.length));
+      assertFalse(service.getTransferScheduler().isLarge(bigCss.length));
+    }
+  }
+
+  @DisplayName("A file that isn't an archive is refused")
+  @Test
+  void notAnArchive() throws IOException {
+    final Path notAnArchive = tempDir.resolve("index.html");
+    Files.write(notAnArchive, "<html></html>".getBytes(StandardCharsets.UTF_8));
+    assertThrows(IOException.class, () -> new ArchiveResourceService(notAnArchive));
+  }
+
+  @Nested
+  @DisplayName("Testing resources found on the class path")
+  class TestingClasspath {
+
+    @DisplayName("A directory in a jar is served from the jar")
+    @Test
+    void directoryInJar() throws IOException {
+      try (URLClassLoader classLoader =
+          new URLClassLoader(new URL[] {archive.toUri().toURL()}, null)) {
+        final ResourceService fromClasspath =
+            ArchiveResourceService.ofClasspath(classLoader, "/static", config());
+        assertTrue(fromClasspath instanceof ArchiveResourceService);
+        assertArrayEquals(
+            Files.readAllBytes(BASE_DIR.resolve("index.html")),
+            fromClasspath.getDataForResource("index.html").getData());
+        ((ArchiveResourceService) fromClasspath).close();
+      }
+    }
+
+    @DisplayName("A directory on disk is served from the disk")
+    @Test
+    void directoryOnDisk() throws IOException {
+      final ResourceService fromClasspath =
+          ArchiveResourceService.ofClasspath(getClass().getClassLoader(), "html", config());
+      assertTrue(fromClasspath instanceof ResourceServiceImpl);
+      assertEquals(200, fromClasspath.getDataForResource("css/main.css").getStatusCode());
+    }
+
+    @DisplayName("A directory that isn't on the class path is refused")
+    @Test
+    void missingDirectory() {
+      assertThrows(
+          FileNotFoundException.class,
+          () ->
+              ArchiveResourceService.ofClasspath(getClass().getClassLoader(), "missing", config()));
+    }
+  }
+}
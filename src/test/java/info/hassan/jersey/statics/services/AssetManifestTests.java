@@ -0,0 +1,203 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.condition.OS.MAC;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing the fingerprinted aliases of resources")
+@DisabledOnOs({WINDOWS, MAC})
+class AssetManifestTests {
+
+  @TempDir Path baseDir;
+
+  @BeforeEach
+  void setup() throws IOException {
+    Files.createDirectories(baseDir.resolve("css"));
+    Files.createDirectories(baseDir.resolve("img"));
+    Files.createDirectories(baseDir.resolve("js"));
+    write(
+        "index.html",
+        "<html><head><link rel=\"stylesheet\" href=\"css/main.css\">"
+            + "<script src='/js/app.js?v=1#top'></script></head>"
+            + "<body><a href=\"about.html\">About</a><img src=\"https://cdn.example.com/x.png\">"
+            + "<div style=\"background: url(img/logo.png)\"></div></body></html>");
+    write("about.html", "<html><a href=\"index.html\">Home</a></html>");
+    write(
+        "css/main.css",
+        "@import 'base.css';\nbody { background: url(\"../img/logo.png\"); }\n"
+            + ".x { background: url(data:image/png;base64,AAAA); }");
+    write("css/base.css", "p { margin: 0; }");
+    write("css/main.css.gz", "not really gzip");
+    write("img/logo.png", "png");
+    write("js/app.js", "console.log('app');");
+  }
+
+  private void write(final String resourceKey, final String content) throws IOException {
+    Files.write(baseDir.resolve(resourceKey), content.getBytes(UTF_8));
+  }
+
+  private ResourceServiceImpl service(final boolean rewriting) throws IOException {
+    return new ResourceServiceImpl(
+        baseDir,
+        ResourceServiceConfig.builder()
+            .fingerprintEnabled(true)
+            .fingerprintRewriting(rewriting)
+            .build());
+  }
+
+  private static String content(final ResourceResult result) {
+    return new String(result.getData(), UTF_8);
+  }
+
+  @DisplayName("Testing the aliases")
+  @Nested
+  class AliasTests {
+
+    @DisplayName("Each resource has an alias with a hash of its content before the extension")
+    @Test
+    void aliasesAreNamedByContent() throws IOException {
+      final AssetManifest manifest = service(false).getAssetManifest();
+      final String alias = manifest.aliasOf("img/logo.png").get();
+      assertTrue(alias.matches("img/logo\\.[0-9a-f]{8}\\.png"), alias);
+      assertEquals(
+          Set.of(
+              "index.html",
+              "about.html",
+              "css/main.css",
+              "css/base.css",
+              "img/logo.png",
+              "js/app.js"),
+          manifest.getAliases().keySet());
+      assertEquals("LICENSE.1234abcd", AssetManifest.aliasOf("LICENSE", "1234abcd5678"));
+      assertEquals("a.b/c.1234abcd", AssetManifest.aliasOf("a.b/c", "1234abcd5678"));
+    }
+
+    @DisplayName("An alias is served like its resource, with a Cache-Control to keep it for good")
+    @Test
+    void aliasIsImmutable() throws IOException {
+      final ResourceServiceImpl service = service(false);
+      final String alias = service.getAssetManifest().aliasOf("js/app.js").get();
+      final ResourceResult aliased = service.getDataForResource(alias);
+      final ResourceResult original = service.getDataForResource("js/app.js");
+      assertEquals(200, aliased.getStatusCode());
+      assertEquals(
+          ResourceServiceConfig.DEFAULT_FINGERPRINT_CACHE_CONTROL, aliased.getCacheControl());
+      assertFalse(original.hasCacheControl());
+      assertArrayEquals(original.getData(), aliased.getData());
+      assertEquals(original.getEntityTag(), aliased.getEntityTag());
+      assertSame(aliased, service.getDataForResource("/" + alias), "The alias is cached");
+    }
+
+    @DisplayName("An alias of other content, or of nothing, is not found")
+    @Test
+    void unknownAliasIsNotFound() throws IOException {
+      final ResourceServiceImpl service = service(false);
+      assertEquals(404, service.getDataForResource("js/app.00000000.js").getStatusCode());
+      assertEquals(404, service.getDataForResource("js/missing.00000000.js").getStatusCode());
+    }
+
+    @DisplayName("Without fingerprinting there are no aliases")
+    @Test
+    void disabledByDefault() throws IOException {
+      final ResourceServiceImpl service = new ResourceServiceImpl(baseDir);
+      assertEquals(0, service.getAssetManifest().size());
+      assertEquals("<html>", content(service.getDataForResource("index.html")).substring(0, 6));
+    }
+  }
+
+  @DisplayName("Testing the rewriting of references")
+  @Nested
+  class RewritingTests {
+
+    @DisplayName("References in HTML point at the aliases, keeping their query and fragment")
+    @Test
+    void htmlIsRewritten() throws IOException {
+      final ResourceServiceImpl service = service(true);
+      final AssetManifest manifest = service.getAssetManifest();
+      final String html = content(service.getDataForResource("index.html"));
+      final String css = manifest.aliasOf("css/main.css").get();
+      final String js = manifest.aliasOf("js/app.js").get();
+      final String logo = manifest.aliasOf("img/logo.png").get();
+      assertTrue(html.contains("href=\"" + css + "\""), html);
+      assertTrue(html.contains("src='/" + js + "?v=1#top'"), html);
+      assertTrue(html.contains("url(" + logo + ")"), html);
+      assertTrue(html.contains("href=\"about.html\""), "Pages keep their name");
+      assertTrue(html.contains("https://cdn.example.com/x.png"));
+    }
+
+    @DisplayName("References in CSS stay relative and the alias is of the rewritten content")
+    @Test
+    void cssIsRewritten() throws IOException {
+      final ResourceServiceImpl service = service(true);
+      final AssetManifest manifest = service.getAssetManifest();
+      final String css = content(service.getDataForResource("css/main.css"));
+      final String logo = manifest.aliasOf("img/logo.png").get();
+      final String base = manifest.aliasOf("css/base.css").get();
+      assertTrue(css.contains("url(\"../" + logo + "\")"), css);
+      assertTrue(css.contains("@import '" + base.substring(4) + "'"), css);
+      assertTrue(css.contains("url(data:image/png;base64,AAAA)"));
+      final ResourceResult aliased =
+          service.getDataForResource(manifest.aliasOf("css/main.css").get());
+      assertEquals(200, aliased.getStatusCode());
+      assertEquals(css, content(aliased));
+    }
+
+    @DisplayName("A rewritten document doesn't get the compressed sibling of the original")
+    @Test
+    void siblingOfRewrittenDocumentIsIgnored() throws IOException {
+      final ResourceResult css = service(true).getDataForResource("css/main.css");
+      assertNull(css.getEncodedBody(ResourceResult.GZIP));
+    }
+
+    @DisplayName("Without rewriting documents are served as they are on disk")
+    @Test
+    void rewritingIsOptional() throws IOException {
+      final ResourceServiceImpl service = service(false);
+      assertTrue(content(service.getDataForResource("index.html")).contains("css/main.css\""));
+    }
+
+    @DisplayName("Stylesheets importing each other keep their names and their aliases work")
+    @Test
+    void cyclicImports() throws IOException {
+      write("css/a.css", "@import 'b.css'; a {}");
+      write("css/b.css", "@import 'a.css'; b {}");
+      final ResourceServiceImpl service = service(true);
+      final AssetManifest manifest = service.getAssetManifest();
+      for (String resourceKey : new String[] {"css/a.css", "css/b.css"}) {
+        final String alias = manifest.aliasOf(resourceKey).get();
+        assertEquals(200, service.getDataForResource(alias).getStatusCode(), resourceKey);
+      }
+    }
+
+    @DisplayName("References are resolved against the document, never out of the base directory")
+    @Test
+    void referencesAreResolved() {
+      assertEquals("img/a.png", ReferenceRewriter.resolve("css/main.css", "../img/a.png"));
+      assertEquals("css/a.png", ReferenceRewriter.resolve("css/main.css", "./a.png"));
+      assertEquals("a.js", ReferenceRewriter.resolve("css/main.css", "/a.js"));
+      assertNull(ReferenceRewriter.resolve("css/main.css", "../../a.png"));
+      assertNull(ReferenceRewriter.resolve("index.html", "//cdn.example.com/a.js"));
+      assertNull(ReferenceRewriter.resolve("index.html", "mailto:someone@example.com"));
+      assertNull(ReferenceRewriter.resolve("index.html", "css/"));
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package info.hassan.jersey.statics.services;
+
+import static info.hassan.jersey.statics.api.ResourceResult.GZIP;
+import static info.hassan.jersey.statics.services.TestsHelper.APPLICATION_JAVASCRIPT;
+import static info.hassan.jersey.statics.services.TestsHelper.IMAGE_PNG;
+import static info.hassan.jersey.statics.services.TestsHelper.TEXT_CSS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.condition.OS.MAC;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing the bundle packer and BundleResourceService")
+@DisabledOnOs({WINDOWS, MAC})
+class BundleResourceServiceTests {
+
+  private static final Path BASE_DIR = Paths.get("src", "test", "resources", "html");
+
+  @TempDir Path tempDir;
+  private Path bundleFile;
+  private BundleResourceService service;
+
+  @BeforeEach
+  void setup() throws IOException {
+    bundleFile = tempDir.resolve("site.bundle");
+    assertEquals(7, new BundlePacker().pack(BASE_DIR, bundleFile));
+    service = new BundleResourceService(bundleFile);
+  }
+
+  @DisplayName("Every file of the base directory is served as it is on disk")
+  @Test
+  void filesAreServed() throws IOException {
+    assertEquals(7, service.size());
+    for (String name : new String[] {"index.html", "css/main.css", "js/main.js", "img/home.png"}) {
+      final ResourceResult result = service.getDataForResource(name);
+      assertEquals(200, result.getStatusCode());
+      assertFalse(result.getBody().isInMemory());
+      assertArrayEquals(Files.readAllBytes(BASE_DIR.resolve(name)), result.getData());
+    }
+    assertEquals(TEXT_CSS, service.getDataForResource("css/main.css").getMimeType());
+    assertEquals(APPLICATION_JAVASCRIPT, service.getDataForResource("js/main.js").getMimeType());
+    assertEquals(IMAGE_PNG, service.getDataForResource("img/home.png").getMimeType());
+  }
+
+  @DisplayName("The compressed variants and validators are read from the index")
+  @Test
+  void variantsAndValidators() throws IOException {
+    final Path site = Files.createDirectory(tempDir.resolve("site"));
+    final StringBuilder css = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      css.append(".class-").append(i).append(" { color: #fffb99; margin: 5px auto; }\n");
+    }
+    Files.write(site.resolve("main.css"), css.toString().getBytes(StandardCharsets.UTF_8));
+    new BundlePacker().pack(site, bundleFile);
+    final ResourceResult fromDisk = new ResourceServiceImpl(site).getDataForResource("main.css");
+    final ResourceResult fromBundle =
+        new BundleResourceService(bundleFile).getDataForResource("main.css");
+    assertEquals(fromDisk.getEntityTag(), fromBundle.getEntityTag());
+    assertEquals(fromDisk.getContentType(), fromBundle.getContentType());
+    assertEquals(fromDisk.getLastModified(), fromBundle.getLastModified());
+    assertEquals(Set.of(GZIP), fromBundle.getEncodings());
+    final ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+    fromBundle.getEncodedBody(GZIP).writeTo(gzipped);
+    try (GZIPInputStream gzip =
+        new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray()))) {
+      assertArrayEquals(fromBundle.getData(), gzip.readAllBytes());
+    }
+  }
+
+  @DisplayName("Names are normalized and can't reach outside the bundle")
+  @Test
+  void namesAreNormalized() {
+    final ResourceResult css = service.getDataForResource("css/main.css");
+    assertEquals(css, service.getDataForResource("/css/main.css"));
+    assertEquals(css, service.getDataForResource("js/../css/./main.css"));
+    assertEquals(404, service.getDataForResource("../site.bundle").getStatusCode());
+    assertEquals(404, service.getDataForResource("").getStatusCode());
+    assertEquals(404, service.getDataForResource("css/missing.css").getStatusCode());
+  }
+
+  @DisplayName("A slice of a body is written without the rest of it")
+  @Test
+  void sliceIsWritten() throws IOException {
+    final ResourceResult index = service.getDataForResource("index.html");
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.getBody().writeTo(out, 5, 10);
+    final byte[] expected = new byte[10];
+    System.arraycopy(index.getData(), 5, expected, 0, 10);
+    assertArrayEquals(expected, out.toByteArray());
+  }
+
+  @DisplayName("Large bodies are written by a scheduler made from the config")
+  @Test
+  void largeTransfersAreScheduled() throws IOException {
+    final BundleResourceService scheduled =
+        new BundleResourceService(
+            bundleFile, ResourceServiceConfig.builder().largeTransferThreshold(1024).build());
+    assertTrue(scheduled.getTransferScheduler().isLarge(4096));
+    assertFalse(service.getTransferScheduler().isLarge(4096));
+  }
+
+  @DisplayName("A file that isn't a bundle is refused")
+  @Test
+  void notABundle() throws IOException {
+    final Path notABundle = tempDir.resolve("index.html");
+    Files.write(notABundle, "<html></html>".getBytes(StandardCharsets.UTF_8));
+    assertThrows(IOException.class, () -> new BundleResourceService(notABundle));
+  }
+}
@@ -0,0 +1,57 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testing the mime-types table")
+class MimeTypesTests {
+
+  private final MimeTypes mimeTypes = new MimeTypes(Collections.emptyMap(), false, UTF_8);
+
+  @DisplayName("Every built-in extension resolves to its mime-type, whatever its case")
+  @Test
+  void builtInExtensions() {
+    for (Map.Entry<String, String> mapping : MimeTypes.DEFAULTS.entrySet()) {
+      assertEquals(mapping.getValue(), mimeTypes.of("file." + mapping.getKey()));
+      assertEquals(mapping.getValue(), mimeTypes.of("FILE." + mapping.getKey().toUpperCase()));
+    }
+    assertEquals("application/javascript", mimeTypes.of(Paths.get("js", "main.min.js")));
+  }
+
+  @DisplayName("Names without a known extension have no mime-type unless probing is enabled")
+  @Test
+  void unknownExtensions() {
+    assertNull(mimeTypes.of("README"));
+    assertNull(mimeTypes.of("archive."));
+    assertNull(mimeTypes.of("data.unknown"));
+    assertNull(mimeTypes.of(Paths.get("/")));
+  }
+
+  @DisplayName("Overrides replace and extend the built-in extensions")
+  @Test
+  void overrides() {
+    final MimeTypes overridden =
+        new MimeTypes(Map.of("js", "text/javascript", "avro", "application/avro"), false, UTF_8);
+    assertEquals("text/javascript", overridden.of("main.js"));
+    assertEquals("application/avro", overridden.of("events.AVRO"));
+    assertEquals("text/css", overridden.of("main.css"));
+  }
+
+  @DisplayName("Textual mime-types get the charset in their content type")
+  @Test
+  void contentTypes() {
+    assertEquals("text/css; charset=UTF-8", mimeTypes.contentTypeOf("text/css"));
+    assertEquals("image/svg+xml; charset=UTF-8", mimeTypes.contentTypeOf("image/svg+xml"));
+    assertEquals("image/png", mimeTypes.contentTypeOf("image/png"));
+    assertNull(mimeTypes.contentTypeOf(null));
+    assertEquals("text/css", new MimeTypes(Map.of(), false, null).contentTypeOf("text/css"));
+  }
+}
@@ -0,0 +1,178 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.condition.OS.MAC;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing the minifiers and the transforms of resources")
+class MinifiersTests {
+
+  @DisplayName("Testing the minifiers")
+  @Nested
+  @SuppressWarnings("ClassCanBeStatic") // @Nested classes must not be static
+  class MinifierTests {
+
+    @DisplayName("HTML loses comments and indentation, not the text of raw elements or attributes")
+    @Test
+    void html() {
+      assertEquals(
+          "<html>\n<head>\n<title a=\"x  y\">T</title>\n"
+              + "<script>\n  if (a  <  b) {}\n</script>\n</head>\n"
+              + "<pre>  keep\n   this</pre> <b>bold</b>\n<!--[if IE]>ie<![endif]-->\n</html>\n",
+          Minifiers.minifyHtml(
+              "<html>\n  <head>\n    <!-- a comment -->\n    <title   a=\"x  y\">T</title>\n"
+                  + "    <script>\n  if (a  <  b) {}\n</script>\n  </head>\n"
+                  + "  <pre>  keep\n   this</pre>   <b>bold</b>\n<!--[if IE]>ie<![endif]-->\n"
+                  + "</html>\n"));
+    }
+
+    @DisplayName("CSS loses comments and spaces, keeps strings, license comments and descendants")
+    @Test
+    void css() {
+      assertEquals(
+          "/*! MIT */.a :hover,.b>.c{color:red;content:\"a  b\"}"
+              + "@media screen and (max-width:100px){.d{margin:0 auto;width:calc(1px + 2px)}}",
+          Minifiers.minifyCss(
+              "/*! MIT */\n.a :hover,\n.b > .c {\n  color: red; /* why */\n  content: \"a  b\";\n}\n"
+                  + "@media screen and (max-width: 100px) {\n"
+                  + "  .d { margin: 0 auto; width: calc(1px + 2px); }\n}\n"));
+    }
+
+    @DisplayName("JSON loses every space outside of strings")
+    @Test
+    void json() {
+      assertEquals(
+          "{\"a\":[1,2],\"b\":\"x  \\\" y\"}",
+          Minifiers.minifyJson("{\n  \"a\": [ 1, 2 ],\n  \"b\": \"x  \\\" y\"\n}\n"));
+    }
+
+    @DisplayName("JavaScript loses indentation and blank lines, not the lines of template literals")
+    @Test
+    void javaScript() {
+      assertEquals(
+          "function f() {\n// `not a template\nconst t = `a\n    b`;\n"
+              + "const s = 'x\\\n    y';\n/* `also\nnot */\nreturn t;\n}\n",
+          Minifiers.minifyJavaScript(
+              "function f() {\n    // `not a template\n\n    const t = `a\n    b`;   \n"
+                  + "    const s = 'x\\\n    y';\n    /* `also\n     not */\n    return t;\n}\n"));
+    }
+
+    @DisplayName(
+        "A transformer only applies to its mime-types and keeps the array if it saved nothing")
+    @Test
+    void appliesTo() {
+      assertTrue(Minifiers.json().appliesTo("application/manifest+json"));
+      assertTrue(Minifiers.javaScript().appliesTo("application/javascript"));
+      assertTrue(!Minifiers.css().appliesTo("text/html") && !Minifiers.css().appliesTo(null));
+      final byte[] minified = "a{b:c}".getBytes(UTF_8);
+      assertSame(minified, Minifiers.css().transform("text/css", minified));
+    }
+  }
+
+  @DisplayName("Testing the transforms of a service")
+  @DisabledOnOs({WINDOWS, MAC})
+  @Nested
+  @SuppressWarnings("ClassCanBeStatic") // @Nested classes must not be static
+  class TransformTests {
+
+    @TempDir Path baseDir;
+
+    private ResourceServiceImpl service(final ResourceServiceConfig.Builder builder)
+        throws IOException {
+      return new ResourceServiceImpl(baseDir, builder.transformers(Minifiers.all()).build());
+    }
+
+    @DisplayName("Resources are cached minified and the saved bytes are reported")
+    @Test
+    void resourcesAreMinified() throws IOException {
+      Files.write(baseDir.resolve("app.json"), "{\n  \"a\": 1\n}\n".getBytes(UTF_8));
+      Files.write(baseDir.resolve("logo.png"), "  png  ".getBytes(UTF_8));
+      final ResourceServiceImpl service = service(ResourceServiceConfig.builder());
+      final ResourceResult json = service.getDataForResource("app.json");
+      assertEquals("{\"a\":1}", new String(json.getData(), UTF_8));
+      assertEquals(ContentHash.of("{\"a\":1}".getBytes(UTF_8)), json.getContentHash());
+      assertEquals("  png  ", new String(service.getDataForResource("logo.png").getData(), UTF_8));
+      assertEquals(1, service.getMetrics().getTransforms());
+      assertEquals(6, service.getMetrics().getTransformSavedBytes());
+    }
+
+    @DisplayName("The same content is only transformed once")
+    @Test
+    void resultsAreReused() throws IOException {
+      final byte[] css = ".a {\n  color: red;\n}\n".getBytes(UTF_8);
+      Files.write(baseDir.resolve("a.css"), css);
+      Files.write(baseDir.resolve("b.css"), css);
+      final ResourceServiceImpl service = service(ResourceServiceConfig.builder());
+      final ResourceResult a = service.getDataForResource("a.css");
+      final ResourceResult b = service.getDataForResource("b.css");
+      assertArrayEquals(a.getData(), b.getData());
+      assertEquals(1, service.getMetrics().getTransforms());
+      assertEquals(1, service.getMetrics().getTransformsReused());
+      assertEquals(
+          2L * (css.length - a.getContentLength()), service.getMetrics().getTransformSavedBytes());
+    }
+
+    @DisplayName("A minified resource doesn't get the compressed sibling of the original")
+    @Test
+    void siblingOfTransformedResourceIsIgnored() throws IOException {
+      Files.write(baseDir.resolve("a.css"), ".a {\n  color: red;\n}\n".getBytes(UTF_8));
+      Files.write(baseDir.resolve("a.css.gz"), "not really gzip".getBytes(UTF_8));
+      final ResourceResult css =
+          service(ResourceServiceConfig.builder()).getDataForResource("a.css");
+      assertNull(css.getEncodedBody(ResourceResult.GZIP));
+    }
+
+    @DisplayName("Aliases are of the minified content")
+    @Test
+    void aliasesAreOfMinifiedContent() throws IOException {
+      Files.write(baseDir.resolve("a.css"), ".a {\n  color: red;\n}\n".getBytes(UTF_8));
+      final ResourceServiceImpl service =
+          service(ResourceServiceConfig.builder().fingerprintEnabled(true));
+      final String alias = service.getAssetManifest().aliasOf("a.css").get();
+      final ResourceResult aliased = service.getDataForResource(alias);
+      assertEquals(200, aliased.getStatusCode());
+      assertEquals(".a{color:red}", new String(aliased.getData(), UTF_8));
+      assertNotNull(aliased.getCacheControl());
+    }
+
+    @DisplayName("A failing transform leaves the resource as it is")
+    @Test
+    void failingTransform() throws IOException {
+      Files.write(baseDir.resolve("a.css"), "a { }".getBytes(UTF_8));
+      final ResourceTransformer failing =
+          new ResourceTransformer() {
+            @Override
+            public boolean appliesTo(final String mimeType) {
+              return true;
+            }
+
+            @Override
+            public byte[] transform(final String mimeType, final byte[] data) {
+              throw new IllegalStateException("Broken");
+            }
+          };
+      final ResourceServiceImpl service =
+          new ResourceServiceImpl(
+              baseDir, ResourceServiceConfig.builder().transformers(List.of(failing)).build());
+      assertEquals("a { }", new String(service.getDataForResource("a.css").getData(), UTF_8));
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package info.hassan.jersey.statics.services;
+
+import static info.hassan.jersey.statics.api.ResourceResult.GZIP;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.condition.OS.MAC;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import info.hassan.jersey.statics.api.ResourceResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing the cache kept across restarts")
+@DisabledOnOs({WINDOWS, MAC})
+class PersistentCacheTests {
+
+  @TempDir Path tempDir;
+  private Path baseDir;
+  private Path cacheDir;
+  private byte[] css;
+
+  @BeforeEach
+  void setup() throws IOException {
+    baseDir = Files.createDirectory(tempDir.resolve("site"));
+    cacheDir = tempDir.resolve("cache");
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      text.append(".class-").append(i).append(" { color: #fffb99; margin: 5px auto; }\n");
+    }
+    css = text.toString().getBytes(UTF_8);
+    Files.write(baseDir.resolve("main.css"), css);
+    Files.write(baseDir.resolve("app.js"), "console.log('app');\n".getBytes(UTF_8));
+  }
+
+  private ResourceServiceImpl service(final ResourceServiceConfig.Builder builder)
+      throws IOException {
+    return new ResourceServiceImpl(baseDir, builder.persistentCacheDir(cacheDir).build());
+  }
+
+  private ResourceServiceImpl persisted(final ResourceServiceConfig.Builder builder)
+      throws IOException {
+    final ResourceServiceImpl service = service(builder);
+    service.getDataForResource("main.css");
+    service.getDataForResource("app.js");
+    assertEquals(2, service.persistCache());
+    return service;
+  }
+
+  @DisplayName("A restarted service serves the kept resources without reading them")
+  @Test
+  void restartIsHot() throws IOException {
+    final ResourceResult original =
+        persisted(ResourceServiceConfig.builder()).getDataForResource("main.css");
+    final ResourceServiceImpl restarted = service(ResourceServiceConfig.builder());
+    final ResourceResult restored = restarted.getDataForResource("main.css");
+    assertEquals(0, restarted.getMetrics().getMisses());
+    assertEquals(0, restarted.getMetrics().getLoads());
+    assertFalse(restored.getBody().isInMemory());
+    assertArrayEquals(css, restored.getData());
+    assertEquals(original.getEntityTag(), restored.getEntityTag());
+    assertEquals(original.getContentType(), restored.getContentType());
+    assertEquals(original.getLastModified(), restored.getLastModified());
+    assertArrayEquals(
+        original.getEncodedBody(GZIP).toByteArray(), restored.getEncodedBody(GZIP).toByteArray());
+  }
+
+  @DisplayName("A file modified while the service was down is read again")
+  @Test
+  void modifiedFileIsReadAgain() throws IOException {
+    persisted(ResourceServiceConfig.builder());
+    final Path js = baseDir.resolve("app.js");
+    Files.write(js, "console.log('new');\n".getBytes(UTF_8));
+    Files.setLastModifiedTime(
+        js,
+        FileTime.fromMillis(
+            Files.getLastModifiedTime(js).toMillis() + TimeUnit.MINUTES.toMillis(1)));
+    final ResourceServiceImpl restarted = service(ResourceServiceConfig.builder());
+    assertEquals(
+        "console.log('new');\n",
+        new String(restarted.getDataForResource("app.js").getData(), UTF_8));
+    assertEquals(1, restarted.getMetrics().getMisses());
+    assertArrayEquals(css, restarted.getDataForResource("main.css").getData());
+    assertEquals(1, restarted.getMetrics().getMisses());
+  }
+
+  @DisplayName("What was kept with other options is ignored")
+  @Test
+  void otherOptionsAreIgnored() throws IOException {
+    persisted(ResourceServiceConfig.builder());
+    final ResourceServiceImpl restarted =
+        service(ResourceServiceConfig.builder().transformers(Minifiers.all()));
+    assertTrue(restarted.getDataForResource("main.css").getBody().isInMemory());
+    assertEquals(1, restarted.getMetrics().getMisses());
+  }
+
+  @DisplayName("What was kept with other transforms is ignored")
+  @Test
+  void otherTransformsAreIgnored() throws IOException {
+    persisted(ResourceServiceConfig.builder().transformers(List.of(Minifiers.html())));
+    final ResourceServiceImpl restarted =
+        service(ResourceServiceConfig.builder().transformers(List.of(Minifiers.css())));
+    assertTrue(restarted.getDataForResource("main.css").getBody().isInMemory());
+    assertEquals(1, restarted.getMetrics().getMisses());
+  }
+
+  @DisplayName("Documents with rewritten references and aliases are not kept")
+  @Test
+  void dependentDocumentsAreNotKept() throws IOException {
+    final ResourceServiceImpl service =
+        service(
+            ResourceServiceConfig.builder().fingerprintEnabled(true).fingerprintRewriting(true));
+    service.getDataForResource("main.css");
+    service.getDataForResource(service.getAssetManifest().aliasOf("app.js").get());
+    assertEquals(1, service.persistCache());
+  }
+
+  @DisplayName("A preloaded cache is kept once it is ready")
+  @Test
+  void preloadedCacheIsKept() throws Exception {
+    final ResourceServiceImpl service =
+        service(ResourceServiceConfig.builder().preloadEnabled(true));
+    assertEquals(2, service.getReadiness().toCompletableFuture().get().getFilesLoaded());
+    final ResourceServiceImpl restarted =
+        service(ResourceServiceConfig.builder().preloadEnabled(true));
+    assertEquals(0, restarted.getReadiness().toCompletableFuture().get().getFilesLoaded());
+    assertFalse(restarted.getDataForResource("app.js").getBody().isInMemory());
+  }
+}
@@ -2,44 +2,58 @@ package info.hassan.jersey.statics.services;
 
 import static info.hassan.jersey.statics.services.TestsHelper.TEXT_HTML;
 import static info.hassan.jersey.statics.services.TestsHelper.assertEverythingInResource;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.condition.OS.MAC;
 import static org.junit.jupiter.api.condition.OS.WINDOWS;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
 
 import info.hassan.jersey.statics.api.ResourceResult;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
 
 @DisplayName("Testing the Reloadable ResourceService")
 @DisabledOnOs({WINDOWS, MAC})
 class ReloadableResourceServiceImplTests {
 
-  private ResourceService service;
+  private ReloadableResourceServiceImpl service;
 
   @BeforeEach
   void setup() throws IOException {
-    service =
-        new ReloadableResourceServiceImpl(
-            Paths.get("src", "test", "resources", "html"), SECONDS.toMillis(1));
+    service = new ReloadableResourceServiceImpl(Paths.get("src", "test", "resources", "html"));
   }
 
-  @DisplayName("When a resource is updated at runtime, it gets reloaded after 1 second")
+  @AfterEach
+  void tearDown() throws IOException {
+    service.close();
+  }
+
+  @DisplayName("When a resource is updated at runtime, it gets reloaded right away")
   @Test
   void reloadingIndexPage() throws IOException, InterruptedException {
     ResourceResult index = service.getDataForResource("index.html");
     assertEverythingInResource(index, 200, TEXT_HTML);
     final byte[] existingData = index.getData();
+    final String existingEntityTag = index.getEntityTag();
     final Document document = Jsoup.parse(new String(index.getData(), Charset.defaultCharset()));
     document.head().append("<script id='to-delete'>console.log('Adding test script');</script>");
     final String html = document.html();
@@ -51,9 +65,174 @@ class ReloadableResourceServiceImplTests {
     Thread.sleep(1500L);
     index = service.getDataForResource("index.html");
     assertNotEquals(existingData.length, index.getData().length);
+    assertNotEquals(existingEntityTag, index.getEntityTag());
     Files.write(
         service.getBaseDir().resolve("index.html"),
         existingData,
         StandardOpenOption.TRUNCATE_EXISTING);
   }
+
+  @DisplayName("Testing how changes on disk are applied")
+  @Nested
+  class ChangesOnDisk {
+
+    @TempDir Path baseDir;
+
+    @BeforeEach
+    void setup() throws IOException {
+      service.close();
+      service =
+          new ReloadableResourceServiceImpl(
+              baseDir, ResourceServiceConfig.builder().watchDebounceMillis(200).build());
+    }
+
+    @DisplayName("A burst of writes to a resource is applied as one reload")
+    @Test
+    void burstIsCoalesced() throws IOException {
+      final Path css = baseDir.resolve("main.css");
+      Files.write(css, bytes("body {}"));
+      assertEquals(200, service.getDataForResource("main.css").getStatusCode());
+      for (int i = 0; i < 20; i++) {
+        Files.write(css, bytes("body { margin: " + i + "px; }"));
+      }
+      eventually(
+          () ->
+              "body { margin: 19px; }"
+                  .equals(new String(service.getDataForResource("main.css").getData(), UTF_8)));
+      assertTrue(service.getMetrics().getReloads() < 20);
+    }
+
+    @DisplayName("Deleted resources are dropped and created ones are found")
+    @Test
+    void deletedAndCreated() throws IOException {
+      final Path deleted = Files.write(baseDir.resolve("deleted.css"), bytes("body {}"));
+      assertEquals(200, service.getDataForResource("deleted.css").getStatusCode());
+      assertEquals(404, service.getDataForResource("created.css").getStatusCode());
+      Files.delete(deleted);
+      Files.write(baseDir.resolve("created.css"), bytes("p {}"));
+      eventually(() -> service.getDataForResource("deleted.css").getStatusCode() == 404);
+      eventually(() -> service.getDataForResource("created.css").getStatusCode() == 200);
+    }
+
+    @DisplayName("Resources in a directory created at runtime are watched too")
+    @Test
+    void newDirectoryIsWatched() throws IOException {
+      final Path css = Files.createDirectory(baseDir.resolve("css")).resolve("main.css");
+      Files.write(css, bytes("body {}"));
+      assertEquals(200, service.getDataForResource("css/main.css").getStatusCode());
+      // Writes made before the directory is registered are not seen, so keep writing
+      eventually(
+          () -> {
+            try {
+              Files.write(css, bytes("body { margin: 0; }"));
+            } catch (IOException e) {
+              return false;
+            }
+            return service.getMetrics().getReloads() > 0;
+          });
+      // Once the writes stop, the last batch reads the file as it was left
+      eventually(
+          () ->
+              Arrays.equals(
+                  bytes("body { margin: 0; }"),
+                  service.getDataForResource("css/main.css").getData()));
+    }
+
+    @DisplayName("A reloaded resource stops sharing the body of its former duplicate")
+    @Test
+    void reloadedDuplicateIsUnshared() throws IOException {
+      Files.write(baseDir.resolve("a.css"), bytes("body { margin: 0; }"));
+      final Path b = Files.write(baseDir.resolve("b.css"), bytes("body { margin: 0; }"));
+      for (String name : new String[] {"a.css", "b.css", "a.css", "b.css"}) {
+        service.getDataForResource(name);
+      }
+      assertTrue(service.getMetrics().getDeduplicatedBytes() > 0);
+      Files.write(b, bytes("body { margin: 1px; }"));
+      eventually(
+          () ->
+              "body { margin: 1px; }"
+                  .equals(new String(service.getDataForResource("b.css").getData(), UTF_8)));
+      assertEquals(0, service.getMetrics().getDeduplicatedBytes());
+      assertArrayEquals(
+          bytes("body { margin: 0; }"), service.getDataForResource("a.css").getData());
+    }
+
+    @DisplayName("A changed image gets a new alias and the stylesheet using it is rewritten")
+    @Test
+    void changedReferenceIsRewritten() throws IOException {
+      final Path png = Files.write(baseDir.resolve("logo.png"), bytes("png"));
+      Files.write(baseDir.resolve("main.css"), bytes("body { background: url(logo.png); }"));
+      service.close();
+      service =
+          new ReloadableResourceServiceImpl(
+              baseDir,
+              ResourceServiceConfig.builder()
+                  .watchDebounceMillis(200)
+                  .fingerprintEnabled(true)
+                  .fingerprintRewriting(true)
+                  .build());
+      final AssetManifest manifest = service.getAssetManifest();
+      final String oldLogo = manifest.aliasOf("logo.png").get();
+      final String oldCss = manifest.aliasOf("main.css").get();
+      assertEquals(200, service.getDataForResource(oldCss).getStatusCode());
+      Files.write(png, bytes("another png"));
+      // The stylesheet gets its new alias after the image
+      eventually(() -> !oldCss.equals(manifest.aliasOf("main.css").get()));
+      final String newLogo = manifest.aliasOf("logo.png").get();
+      final String newCss = manifest.aliasOf("main.css").get();
+      assertNotEquals(oldLogo, newLogo);
+      // The stylesheet is reloaded right after the manifest changed
+      eventually(() -> service.getDataForResource(newCss).getStatusCode() == 200);
+      assertEquals(404, service.getDataForResource(oldLogo).getStatusCode());
+      assertEquals(404, service.getDataForResource(oldCss).getStatusCode());
+      final ResourceResult css = service.getDataForResource(newCss);
+      assertEquals("body { background: url(" + newLogo + "); }", new String(css.getData(), UTF_8));
+      assertEquals(200, service.getDataForResource(newLogo).getStatusCode());
+    }
+
+    @DisplayName("A stylesheet importing another one changes the Link header of the page")
+    @Test
+    void changedStylesheetChangesLinks() throws IOException {
+      Files.write(
+          baseDir.resolve("index.html"), bytes("<link rel=\"stylesheet\" href=\"main.css\">"));
+      final Path css = Files.write(baseDir.resolve("main.css"), bytes("body {}"));
+      Files.write(baseDir.resolve("extra.css"), bytes("p {}"));
+      service.close();
+      service =
+          new ReloadableResourceServiceImpl(
+              baseDir,
+              ResourceServiceConfig.builder()
+                  .watchDebounceMillis(200)
+                  .linkPreloadEnabled(true)
+                  .build());
+      final ResourceResult index = service.getDataForResource("index.html");
+      assertEquals("<main.css>; rel=preload; as=style", index.getLinks());
+      Files.write(css, bytes("@import 'extra.css';"));
+      eventually(
+          () ->
+              "<main.css>; rel=preload; as=style, <extra.css>; rel=preload; as=style"
+                  .equals(service.getDataForResource("index.html").getLinks()));
+      assertArrayEquals(index.getData(), service.getDataForResource("index.html").getData());
+      assertEquals(
+          service.getDataForResource("index.html").getLinks(),
+          service.getPreloadLinks("/index.html"));
+    }
+
+    private byte[] bytes(final String text) {
+      return text.getBytes(UTF_8);
+    }
+
+    private void eventually(final BooleanSupplier condition) {
+      final long deadline = System.nanoTime() + SECONDS.toNanos(10);
+      while (!condition.getAsBoolean()) {
+        assertTrue(System.nanoTime() - deadline < 0, "The change was not applied in time");
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
 }
@@ -7,23 +7,47 @@ import static info.hassan.jersey.statics.services.TestsHelper.IMAGE_SVG;
 import static info.hassan.jersey.statics.services.TestsHelper.TEXT_CSS;
 import static info.hassan.jersey.statics.services.TestsHelper.TEXT_HTML;
 import static info.hassan.jersey.statics.services.TestsHelper.assertEverythingInResource;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.condition.OS.MAC;
 import static org.junit.jupiter.api.condition.OS.WINDOWS;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
 
+import info.hassan.jersey.statics.api.ResourceBody;
 import info.hassan.jersey.statics.api.ResourceResult;
+import info.hassan.jersey.statics.metrics.ResourceMetrics;
+import info.hassan.jersey.statics.metrics.ResourceMetricsListener;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,6 +55,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
 
 @DisplayName("Testing default ResourceServiceImpl")
 @DisabledOnOs({WINDOWS, MAC})
@@ -108,6 +133,46 @@ class ResourceResultServiceImplTests {
       assertNotEquals(defaultNotFound, service.getDataForResource("404.html"));
       Files.deleteIfExists(new404);
     }
+
+    @DisplayName("A custom 404.html in baseDir is served with a 404 status for missing resources")
+    @Test
+    void customNotFoundPage() throws IOException {
+      final byte[] data =
+          "<html><body><p>Custom 404</p></body></html>".getBytes(Charset.defaultCharset());
+      final Path new404 =
+          Files.write(
+              Paths.get(service.getBaseDir().toString(), "404.html"),
+              data,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+        service = new ResourceServiceImpl(Paths.get("src", "test", "resources", "html"));
+        final ResourceResult notFound = service.getDataForResource("abc/xyz/123.html");
+        assertEverythingInResource(notFound, 404, TEXT_HTML);
+        assertArrayEquals(data, notFound.getData());
+      } finally {
+        Files.deleteIfExists(new404);
+      }
+    }
+
+    @DisplayName("A missing resource is remembered until the negative cache is invalidated")
+    @Test
+    void missingResourceIsRemembered() throws IOException {
+      final ResourceServiceImpl remembering =
+          new ResourceServiceImpl(
+              Paths.get("src", "test", "resources", "html"),
+              ResourceServiceConfig.builder().negativeCacheTtlMillis(60_000L).build());
+      final Path created = remembering.getBaseDir().resolve("created-later.css");
+      assertEquals(404, remembering.getDataForResource("created-later.css").getStatusCode());
+      Files.write(created, "body {}".getBytes(Charset.defaultCharset()));
+      try {
+        assertEquals(404, remembering.getDataForResource("created-later.css").getStatusCode());
+        remembering.negativeCache.invalidate("created-later.css");
+        assertEquals(200, remembering.getDataForResource("created-later.css").getStatusCode());
+      } finally {
+        Files.deleteIfExists(created);
+      }
+    }
   }
 
   @DisplayName("Testing the service by getting resources placed at different sub levels")
@@ -161,5 +226,410 @@ class ResourceResultServiceImplTests {
           index.getData(),
           StandardOpenOption.TRUNCATE_EXISTING);
     }
+
+    @DisplayName("Spellings of the same resource share one cached result")
+    @Test
+    void normalizedNamesShareTheEntry() {
+      final ResourceResult css = service.getDataForResource("css/main.css");
+      assertSame(css, service.getDataForResource("/css/main.css"));
+      assertSame(css, service.getDataForResource("css/./../css/main.css"));
+      assertEquals("text/css; charset=UTF-8", css.getContentType());
+    }
+
+    @DisplayName("Names pointing outside the base directory are not found")
+    @Test
+    void traversalIsNotFound() {
+      assertEquals(404, service.getDataForResource("../../../../pom.xml").getStatusCode());
+      assertEquals(404, service.getDataForResource("css/../../../../../pom.xml").getStatusCode());
+    }
+
+    @DisplayName("Comparing results never reads their bodies, streamed files aren't read from disk")
+    @Test
+    void comparingDoesNotReadBodies(@TempDir final Path baseDir) throws IOException {
+      Files.write(baseDir.resolve("big.bin"), new byte[4096]);
+      final ResourceServiceConfig config =
+          ResourceServiceConfig.builder().streamingThreshold(1024).build();
+      final ResourceResult first =
+          new ResourceServiceImpl(baseDir, config).getDataForResource("big.bin");
+      final ResourceResult second =
+          new ResourceServiceImpl(baseDir, config).getDataForResource("big.bin");
+      // A body read now would fail
+      Files.delete(baseDir.resolve("big.bin"));
+      assertEquals(first, second);
+      assertEquals(first.hashCode(), second.hashCode());
+      assertEquals(0, first.compareTo(second));
+      assertNotEquals(first, service.getDataForResource("css/main.css"));
+    }
+
+    @DisplayName("Results of the same length with different content are different")
+    @Test
+    void sameLengthDifferentContent() {
+      final ResourceResult one =
+          new ResourceResult(200, "text/plain", "one".getBytes(StandardCharsets.UTF_8));
+      final ResourceResult two =
+          new ResourceResult(200, "text/plain", "two".getBytes(StandardCharsets.UTF_8));
+      assertNotEquals(one, two);
+      assertNotEquals(one.hashCode(), two.hashCode());
+      assertTrue(one.compareTo(two) < 0);
+      assertTrue(two.compareTo(one) > 0);
+      final ResourceResult same =
+          new ResourceResult(200, "text/plain", "one".getBytes(StandardCharsets.UTF_8));
+      assertEquals(one, same);
+      assertEquals(one.hashCode(), same.hashCode());
+      assertEquals(0, one.compareTo(same));
+    }
+  }
+
+  @DisplayName("Testing the cache warm-up at start")
+  @Nested
+  @SuppressWarnings("ClassCanBeStatic") // @Nested classes must not be static
+  class TestingPreload {
+
+    @DisplayName("Matching files are loaded into the cache before the service is ready")
+    @Test
+    void preloadMatchingFiles() throws Exception {
+      final ResourceServiceImpl preloaded =
+          new ResourceServiceImpl(
+              Paths.get("src", "test", "resources", "html"),
+              ResourceServiceConfig.builder()
+                  .preloadEnabled(true)
+                  .preloadIncludes(List.of("**.css", "**.js", "*.html"))
+                  .preloadExcludes(List.of("js/**"))
+                  .build());
+      final PreloadSummary summary =
+          preloaded.getReadiness().toCompletableFuture().get(10, SECONDS);
+      assertTrue(preloaded.isReady());
+      assertEquals(2, summary.getFilesLoaded());
+      assertTrue(preloaded.resourceCache.containsKey("index.html"));
+      assertTrue(preloaded.resourceCache.containsKey("css/main.css"));
+      assertFalse(preloaded.resourceCache.containsKey("js/main.js"));
+    }
+
+    @DisplayName("Files beyond the byte budget are skipped")
+    @Test
+    void preloadWithinBudget() throws Exception {
+      final ResourceServiceImpl preloaded =
+          new ResourceServiceImpl(
+              Paths.get("src", "test", "resources", "html"),
+              ResourceServiceConfig.builder().preloadEnabled(true).preloadMaxBytes(1024).build());
+      final PreloadSummary summary =
+          preloaded.getReadiness().toCompletableFuture().get(10, SECONDS);
+      assertTrue(summary.getBytesLoaded() <= 1024);
+      assertTrue(summary.getFilesSkipped() > 0);
+    }
+  }
+
+  @DisplayName("Testing the service metrics")
+  @Nested
+  @SuppressWarnings("ClassCanBeStatic") // @Nested classes must not be static
+  class TestingMetrics {
+
+    @DisplayName("Hits, misses and 404s are counted and forwarded to the listener")
+    @Test
+    void requestsAreCounted() throws IOException {
+      final LongAdder forwardedHits = new LongAdder();
+      final ResourceServiceImpl measured =
+          new ResourceServiceImpl(
+              Paths.get("src", "test", "resources", "html"),
+              ResourceServiceConfig.builder()
+                  .metricsListener(
+                      new ResourceMetricsListener() {
+                        @Override
+                        public void onCacheHit() {
+                          forwardedHits.increment();
+                        }
+                      })
+                  .build());
+      measured.getDataForResource("css/main.css");
+      measured.getDataForResource("css/main.css");
+      measured.getDataForResource("/css/main.css");
+      measured.getDataForResource("css/missing.css");
+      final ResourceMetrics metrics = measured.getMetrics();
+      assertEquals(2, metrics.getHits());
+      assertEquals(2, forwardedHits.sum());
+      assertEquals(1, metrics.getMisses());
+      assertEquals(1, metrics.getNotFound());
+      assertEquals(1, metrics.getLoads());
+      assertEquals(3, metrics.getLookupLatency().getCount());
+      assertEquals(1, metrics.getCachedEntries());
+      assertTrue(metrics.getCachedBytes() > 0);
+    }
+
+    @DisplayName("The metrics can be read through JMX")
+    @Test
+    void metricsThroughJmx() throws Exception {
+      final String name = "info.hassan.jersey.statics:type=ResourceMetrics,name=tests";
+      final ResourceServiceImpl measured =
+          new ResourceServiceImpl(Paths.get("src", "test", "resources", "html"));
+      measured.getMetrics().registerMBean(name);
+      try {
+        measured.getDataForResource("index.html");
+        assertEquals(
+            1L,
+            ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(name), "Misses"));
+      } finally {
+        measured.getMetrics().unregisterMBean(name);
+      }
+    }
+  }
+
+  @Nested
+  @DisplayName("Testing the off-heap tier of the cache")
+  @SuppressWarnings("ClassCanBeStatic") // @Nested classes must not be static
+  class TestingOffHeapTier {
+
+    private final Path baseDir = Paths.get("src", "test", "resources", "html");
+
+    @DisplayName("Big resources are cached outside the heap and served as they are on disk")
+    @Test
+    void bigResourcesAreOffHeap() throws IOException {
+      final ResourceServiceImpl tiered =
+          new ResourceServiceImpl(
+              baseDir,
+              ResourceServiceConfig.builder()
+                  .offHeapMaxWeight(1024 * 1024)
+                  .offHeapMinEntryWeight(4096)
+                  .build());
+      // The request that loads a resource is served the loaded result, the next ones the cached one
+      tiered.getDataForResource("img/home.png");
+      final ResourceResult png = tiered.getDataForResource("img/home.png");
+      final ResourceResult css = tiered.getDataForResource("css/main.css");
+      assertFalse(png.getBody().isInMemory());
+      assertTrue(css.getBody().isInMemory());
+      assertArrayEquals(Files.readAllBytes(baseDir.resolve("img/home.png")), png.getData());
+      assertSame(png, tiered.getDataForResource("img/home.png"));
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      png.getBody().writeTo(out, 8, 16);
+      assertEquals(16, out.size());
+      final Map<String, Long> tiers = tiered.getMetrics().getCacheTiers();
+      assertEquals(1L, tiers.get("heap.entries"));
+      assertEquals(1L, tiers.get("offHeap.entries"));
+      assertEquals(png.getContentLength(), tiers.get("offHeap.bytes"));
+      assertEquals(1024L * 1024, tiers.get("offHeap.capacity"));
+    }
+
+    @DisplayName(
+        "Resources removed from the cache are freed once the responses holding them are done")
+    @Test
+    void removedResourcesAreReleased() throws IOException {
+      final ResourceServiceImpl tiered =
+          new ResourceServiceImpl(
+              baseDir,
+              ResourceServiceConfig.builder()
+                  .offHeapMaxWeight(1024 * 1024)
+                  .offHeapMinEntryWeight(4096)
+                  .build());
+      tiered.getDataForResource("img/home.png");
+      final ResourceResult png = tiered.getDataForResource("img/home.png");
+      final ResourceBody body = png.getBody();
+      // As a response built before the removal holds it
+      assertTrue(body.retain());
+      tiered.resourceCache.remove("img/home.png");
+      assertEquals(0L, tiered.getMetrics().getCacheTiers().get("offHeap.bytes"));
+      final byte[] onDisk = Files.readAllBytes(baseDir.resolve("img/home.png"));
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      body.writeTo(out);
+      assertArrayEquals(onDisk, out.toByteArray());
+      assertArrayEquals(onDisk, png.getData());
+      body.release();
+      assertFalse(body.retain());
+      assertThrows(IOException.class, () -> body.writeTo(new ByteArrayOutputStream()));
+    }
+
+    @DisplayName("Resources reloaded or evicted are freed right away")
+    @Test
+    void reloadedAndEvictedResourcesAreReleased(@TempDir final Path siteDir) throws IOException {
+      final Path first = Files.write(siteDir.resolve("first.bin"), content(5000, 1));
+      for (final String name : Arrays.asList("second.bin", "third.bin", "fourth.bin")) {
+        Files.write(siteDir.resolve(name), content(5000, name.length()));
+      }
+      final ResourceServiceImpl tiered =
+          new ResourceServiceImpl(
+              siteDir,
+              ResourceServiceConfig.builder()
+                  .offHeapMaxWeight(16 * 1024)
+                  .offHeapMinEntryWeight(4096)
+                  .build());
+      tiered.getDataForResource("first.bin");
+      final ResourceBody loaded = tiered.getDataForResource("first.bin").getBody();
+      assertFalse(loaded.isInMemory());
+      Files.write(first, content(5000, 3));
+      assertTrue(tiered.reloadResource("first.bin", first));
+      assertFalse(loaded.retain());
+
+      final ResourceBody reloaded = tiered.getDataForResource("first.bin").getBody();
+      assertArrayEquals(content(5000, 3), reloaded.toByteArray());
+      tiered.getDataForResource("second.bin");
+      tiered.getDataForResource("second.bin");
+      tiered.getDataForResource("third.bin");
+      tiered.getDataForResource("third.bin");
+      // The first newcomer pushes first.bin through the protected segment back to probation,
+      // the second one evicts it
+      tiered.getDataForResource("fourth.bin");
+      assertTrue(reloaded.retain());
+      reloaded.release();
+      tiered.getDataForResource("fourth.bin");
+      assertFalse(tiered.resourceCache.containsKey("first.bin"));
+      assertFalse(reloaded.retain());
+    }
+
+    private byte[] content(final int length, final int seed) {
+      final byte[] data = new byte[length];
+      new Random(seed).nextBytes(data);
+      return data;
+    }
+  }
+
+  @Nested
+  @DisplayName("Testing identical resources sharing their bodies")
+  @SuppressWarnings("ClassCanBeStatic") // @Nested classes must not be static
+  class TestingDeduplication {
+
+    @TempDir Path baseDir;
+    private byte[] library;
+
+    @BeforeEach
+    void setup() throws IOException {
+      final StringBuilder js = new StringBuilder();
+      for (int i = 0; i < 500; i++) {
+        js.append("function f").append(i).append("() { return ").append(i).append("; }\n");
+      }
+      library = js.toString().getBytes(StandardCharsets.UTF_8);
+      for (String locale : new String[] {"en", "fr"}) {
+        Files.write(Files.createDirectory(baseDir.resolve(locale)).resolve("lib.js"), library);
+      }
+      Files.write(baseDir.resolve("main.js"), "main();".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ResourceResult cached(final ResourceServiceImpl shared, final String name) {
+      shared.getDataForResource(name);
+      return shared.getDataForResource(name);
+    }
+
+    @DisplayName("Identical resources share one body and its variants")
+    @Test
+    void identicalResourcesShareBodies() throws IOException {
+      final ResourceServiceImpl shared = new ResourceServiceImpl(baseDir);
+      final ResourceResult en = cached(shared, "en/lib.js");
+      final ResourceResult fr = cached(shared, "fr/lib.js");
+      cached(shared, "main.js");
+      assertSame(en.getBody(), fr.getBody());
+      assertSame(en.getEncodedBody("gzip"), fr.getEncodedBody("gzip"));
+      assertEquals(en.getEntityTag(), fr.getEntityTag());
+      assertArrayEquals(library, fr.getData());
+      final long weight = ResourceServiceImpl.weigh(en);
+      assertEquals(weight, shared.getMetrics().getDeduplicatedBytes());
+      shared.resourceCache.remove("en/lib.js");
+      assertEquals(0, shared.getMetrics().getDeduplicatedBytes());
+      assertSame(fr, shared.getDataForResource("fr/lib.js"));
+    }
+
+    @DisplayName("A body off the heap is freed with the last resource sharing it")
+    @Test
+    void sharedOffHeapBodyIsFreedLast() throws IOException {
+      final ResourceServiceImpl shared =
+          new ResourceServiceImpl(
+              baseDir,
+              ResourceServiceConfig.builder()
+                  .offHeapMaxWeight(1024 * 1024)
+                  .offHeapMinEntryWeight(1024)
+                  .build());
+      final ResourceResult en = cached(shared, "en/lib.js");
+      final ResourceResult fr = cached(shared, "fr/lib.js");
+      assertSame(en.getBody(), fr.getBody());
+      assertFalse(en.getBody().isInMemory());
+      assertEquals(2L, shared.getMetrics().getCacheTiers().get("offHeap.entries"));
+      shared.resourceCache.remove("en/lib.js");
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      fr.getBody().writeTo(out);
+      assertArrayEquals(library, out.toByteArray());
+      shared.resourceCache.remove("fr/lib.js");
+      assertFalse(fr.getBody().retain());
+    }
+  }
+
+  @Nested
+  @DisplayName("Testing that a resource is loaded once at a time")
+  class TestingSingleFlight {
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final AtomicInteger diskReads = new AtomicInteger();
+
+    @DisplayName("Concurrent requests missing a resource read it from disk once")
+    @Test
+    void concurrentMissesReadOnce() throws Exception {
+      final ResourceServiceImpl gated =
+          new GatedResourceService(Paths.get("src", "test", "resources", "html"));
+      final int requests = 16;
+      final ExecutorService executor = Executors.newFixedThreadPool(requests);
+      try {
+        final List<Future<ResourceResult>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+          results.add(executor.submit(() -> gated.getDataForResource("css/main.css")));
+        }
+        assertTrue(started.await(10, SECONDS));
+        Thread.sleep(100);
+        gate.countDown();
+        final ResourceResult first = results.get(0).get(10, SECONDS);
+        assertEquals(200, first.getStatusCode());
+        for (Future<ResourceResult> result : results) {
+          assertSame(first, result.get(10, SECONDS));
+        }
+        assertEquals(1, diskReads.get());
+        assertEquals(1, gated.getMetrics().getLoads());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    @DisplayName("A reload runs after a load that read the file before it changed")
+    @Test
+    void reloadWaitsForRunningLoad(@TempDir final Path baseDir) throws Exception {
+      final Path resourcePath = baseDir.resolve("main.js");
+      Files.write(resourcePath, "old".getBytes(StandardCharsets.UTF_8));
+      final ResourceServiceImpl gated = new GatedResourceService(baseDir);
+      final ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+        final Future<ResourceResult> loading =
+            executor.submit(() -> gated.getDataForResource("main.js"));
+        assertTrue(started.await(10, SECONDS));
+        Files.write(resourcePath, "new".getBytes(StandardCharsets.UTF_8));
+        final Future<Boolean> reloading =
+            executor.submit(() -> gated.reloadResource("main.js", resourcePath));
+        Thread.sleep(100);
+        assertFalse(reloading.isDone());
+        gate.countDown();
+        assertEquals(200, loading.get(10, SECONDS).getStatusCode());
+        assertTrue(reloading.get(10, SECONDS));
+        assertArrayEquals(
+            "new".getBytes(StandardCharsets.UTF_8), gated.getDataForResource("main.js").getData());
+        assertEquals(2, diskReads.get());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    /** Counts the reads from disk and holds the first one until the test opens the gate */
+    private class GatedResourceService extends ResourceServiceImpl {
+
+      GatedResourceService(final Path baseDir) throws IOException {
+        super(baseDir);
+      }
+
+      @Override
+      protected Optional<ResourceResult> loadResource(final Path resourcePath) {
+        final Optional<ResourceResult> result = super.loadResource(resourcePath);
+        diskReads.incrementAndGet();
+        started.countDown();
+        try {
+          gate.await(10, SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return result;
+      }
+    }
   }
 }
@@ -0,0 +1,175 @@
+package info.hassan.jersey.statics.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.condition.OS.MAC;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testing the snapshot ResourceService")
+@DisabledOnOs({WINDOWS, MAC})
+class SnapshotResourceServiceTests {
+
+  @TempDir Path releases;
+  private Path first;
+  private Path second;
+  private SnapshotResourceService service;
+
+  @BeforeEach
+  void setup() throws IOException {
+    first = release("first", "app-1.js");
+    second = release("second", "app-2.js");
+    service =
+        new SnapshotResourceService(
+            first, ResourceServiceConfig.builder().preloadEnabled(true).build(), 60_000L);
+  }
+
+  @AfterEach
+  void tearDown() {
+    service.close();
+  }
+
+  @DisplayName("A deployed snapshot replaces the whole site at once")
+  @Test
+  void deploySwapsTheSite() throws Exception {
+    assertEquals("first", index());
+    assertEquals(2L, service.deploy(second).toCompletableFuture().get(10, SECONDS));
+    assertEquals("second", index());
+    assertEquals(second, service.getBaseDir());
+    assertEquals(200, service.getDataForResource("app-2.js").getStatusCode());
+  }
+
+  @DisplayName("Resources of the replaced snapshot are served during the grace period")
+  @Test
+  void replacedSnapshotIsKept() throws Exception {
+    service.deploy(second).toCompletableFuture().get(10, SECONDS);
+    assertEquals(200, service.getDataForResource("app-1.js").getStatusCode());
+    assertEquals(404, service.getDataForResource("app-3.js").getStatusCode());
+  }
+
+  @DisplayName("Without a grace period the replaced snapshot is dropped")
+  @Test
+  void noGracePeriod() throws Exception {
+    service.close();
+    service = new SnapshotResourceService(first, ResourceServiceConfig.defaults(), 0L);
+    service.deploy(second).toCompletableFuture().get(10, SECONDS);
+    assertEquals(404, service.getDataForResource("app-1.js").getStatusCode());
+    assertFalse(service.rollback());
+  }
+
+  @DisplayName("A rollback brings the replaced snapshot back")
+  @Test
+  void rollback() throws Exception {
+    service.deploy(second).toCompletableFuture().get(10, SECONDS);
+    assertTrue(service.rollback());
+    assertEquals("first", index());
+    assertEquals(1L, service.getVersion());
+    assertTrue(service.rollback());
+    assertEquals("second", index());
+  }
+
+  @DisplayName("A failed deploy leaves the current snapshot serving")
+  @Test
+  void failedDeploy() {
+    assertThrows(
+        ExecutionException.class,
+        () -> service.deploy(releases.resolve("missing")).toCompletableFuture().get(10, SECONDS));
+    assertEquals("first", index());
+    assertEquals(1L, service.getVersion());
+  }
+
+  @DisplayName("Preload links and early hints come from the current snapshot")
+  @Test
+  void linksOfTheCurrentSnapshot() throws Exception {
+    final List<String> hints = new ArrayList<>();
+    Files.write(second.resolve("index.html"), "<script src=\"app-2.js\"></script>".getBytes(UTF_8));
+    service.close();
+    service =
+        new SnapshotResourceService(
+            first,
+            ResourceServiceConfig.builder()
+                .preloadEnabled(true)
+                .linkPreloadEnabled(true)
+                .earlyHints((resourceName, links) -> hints.add(resourceName + " " + links))
+                .build(),
+            60_000L);
+    assertNull(service.getPreloadLinks("/index.html"));
+    service.deploy(second).toCompletableFuture().get(10, SECONDS);
+    assertEquals("<app-2.js>; rel=preload; as=script", service.getPreloadLinks("/index.html"));
+    service.getEarlyHints().send("index.html", service.getPreloadLinks("/index.html"));
+    assertEquals(Collections.singletonList("index.html <app-2.js>; rel=preload; as=script"), hints);
+  }
+
+  @DisplayName("A deploy whose preload finishes last doesn't replace a later deploy")
+  @Test
+  void slowPreloadIsDropped() throws Exception {
+    final CountDownLatch slow = new CountDownLatch(1);
+    final ResourceTransformer blocking =
+        new ResourceTransformer() {
+          @Override
+          public boolean appliesTo(final String mimeType) {
+            return true;
+          }
+
+          @Override
+          public byte[] transform(final String mimeType, final byte[] data) {
+            if ("second".equals(new String(data, UTF_8))) {
+              try {
+                slow.await(10, SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            return data;
+          }
+        };
+    service.close();
+    service =
+        new SnapshotResourceService(
+            first,
+            ResourceServiceConfig.builder()
+                .preloadEnabled(true)
+                .transformers(Collections.singletonList(blocking))
+                .build(),
+            60_000L);
+    final Path third = release("third", "app-3.js");
+    final CompletableFuture<Long> slowDeploy = service.deploy(second).toCompletableFuture();
+    assertEquals(2L, service.deploy(third).toCompletableFuture().get(10, SECONDS));
+    slow.countDown();
+    assertThrows(ExecutionException.class, () -> slowDeploy.get(10, SECONDS));
+    assertEquals("third", index());
+    assertEquals(2L, service.getVersion());
+  }
+
+  private Path release(final String name, final String bundle) throws IOException {
+    final Path release = Files.createDirectory(releases.resolve(name));
+    Files.write(release.resolve("index.html"), name.getBytes(UTF_8));
+    Files.write(release.resolve(bundle), "console.log('loaded');".getBytes(UTF_8));
+    return release;
+  }
+
+  private String index() {
+    return new String(service.getDataForResource("index.html").getData(), UTF_8);
+  }
+}
@@ -5,7 +5,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.net.URI;
+import javax.ws.rs.core.HttpHeaders;
+
 import info.hassan.jersey.statics.api.ResourceResult;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
 
 public final class TestsHelper {
   public static final String TEXT_HTML = "text/html";
@@ -29,4 +34,22 @@ public final class TestsHelper {
                 resource.getData().length > 0,
                 "The length of data array must be creator than zero"));
   }
+
+  /**
+   * @param namesAndValues request header names each followed by its value
+   * @return the headers of a GET request
+   */
+  public static HttpHeaders requestHeaders(final String... namesAndValues) {
+    final ContainerRequest request =
+        new ContainerRequest(
+            URI.create("http://localhost/"),
+            URI.create("http://localhost/index.html"),
+            "GET",
+            null,
+            new MapPropertiesDelegate());
+    for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+      request.header(namesAndValues[i], namesAndValues[i + 1]);
+    }
+    return request;
+  }
 }